@@ -0,0 +1,105 @@
+package io.xjar.benchmark;
+
+import io.xjar.XJdkDecryptor;
+import io.xjar.XJdkEncryptor;
+import io.xjar.XKit;
+import io.xjar.boot.XBoot;
+import io.xjar.boot.XBootClassLoader;
+import io.xjar.key.XKey;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.loader.LaunchedURLClassLoader;
+import org.springframework.boot.loader.archive.Archive;
+import org.springframework.boot.loader.archive.JarFileArchive;
+import org.springframework.boot.loader.jar.JarFile;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 运行时通过 XBootClassLoader 定义类的吞吐量，每次操作新建类加载器并加载 BOOT-INF/classes 下的全部类，
+ * 以 Spring-Boot 原生的 LaunchedURLClassLoader 加载未加密的JAR包作为基线。
+ *
+ * @author Payne 646742615@qq.com
+ * 2018/12/17 14:10
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class XBootClassLoaderBenchmark {
+    private static final String PASSWORD = "io.xjar";
+
+    @Param({"2000"})
+    public int classes;
+
+    @Param({"512", "4096"})
+    public int classSize;
+
+    private File plain;
+    private File encrypted;
+    private URL[] plainURLs;
+    private URL[] encryptedURLs;
+    private XKey key;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        plain = File.createTempFile("xjar-benchmark-", ".jar");
+        encrypted = File.createTempFile("xjar-benchmark-", ".xjar");
+        new XFatJarGenerator(classes, classSize, 0, 0, 0).generate(plain);
+        XBoot.encrypt(plain, encrypted, PASSWORD, 1);
+        JarFile.registerUrlProtocolHandler();
+        plainURLs = urls(plain);
+        encryptedURLs = urls(encrypted);
+        key = XKit.key(PASSWORD);
+    }
+
+    private static URL[] urls(File file) throws Exception {
+        JarFileArchive archive = new JarFileArchive(file);
+        List<Archive> archives = archive.getNestedArchives(new Archive.EntryFilter() {
+            @Override
+            public boolean matches(Archive.Entry entry) {
+                return entry.isDirectory() ? entry.getName().equals("BOOT-INF/classes/") : entry.getName().startsWith("BOOT-INF/lib/");
+            }
+        });
+        URL[] urls = new URL[archives.size()];
+        for (int i = 0; i < urls.length; i++) {
+            urls[i] = archives.get(i).getUrl();
+        }
+        return urls;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        plain.delete();
+        encrypted.delete();
+    }
+
+    @Benchmark
+    public int plain() throws Exception {
+        try (URLClassLoader classLoader = new LaunchedURLClassLoader(plainURLs, ClassLoader.getSystemClassLoader())) {
+            return load(classLoader);
+        }
+    }
+
+    @Benchmark
+    public int encrypted() throws Exception {
+        XJdkDecryptor xDecryptor = new XJdkDecryptor(key.getAlgorithm());
+        XJdkEncryptor xEncryptor = new XJdkEncryptor(key.getAlgorithm());
+        try (URLClassLoader classLoader = new XBootClassLoader(encryptedURLs, ClassLoader.getSystemClassLoader(), xDecryptor, xEncryptor, key, 0, null, null)) {
+            return load(classLoader);
+        }
+    }
+
+    private int load(ClassLoader classLoader) throws Exception {
+        int hash = 0;
+        for (int i = 0; i < classes; i++) {
+            hash += classLoader.loadClass(XFatJarGenerator.className(i)).hashCode();
+        }
+        return hash;
+    }
+}
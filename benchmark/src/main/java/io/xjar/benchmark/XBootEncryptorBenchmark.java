@@ -0,0 +1,138 @@
+package io.xjar.benchmark;
+
+import io.xjar.XConstants;
+import io.xjar.boot.XBoot;
+import io.xjar.boot.XBootClassesFilter;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * XBootEncryptor 对合成的 Spring-Boot JAR 包的端到端加密耗时，包括随机访问的多线程加密、单线程的流式加密及流水线的流式加密，
+ * 流式加密可以限制输入的带宽模拟网络管道等慢速输入，此时单线程的流式加密先读完再加密，流水线加密的读取与加密互相重叠。
+ *
+ * @author Payne 646742615@qq.com
+ * 2018/12/17 11:30
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class XBootEncryptorBenchmark {
+    @Param({"1000", "10000"})
+    public int classes;
+
+    @Param({"2048"})
+    public int classSize;
+
+    @Param({"100"})
+    public int resources;
+
+    @Param({"20"})
+    public int libs;
+
+    @Param({"50"})
+    public int libClasses;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    /**
+     * 流式加密输入的带宽，单位 MB/s ，为 0 时不限制
+     */
+    @Param({"0", "16"})
+    public int bandwidth;
+
+    private File src;
+    private File dest;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        src = File.createTempFile("xjar-benchmark-", ".jar");
+        dest = File.createTempFile("xjar-benchmark-", ".xjar");
+        new XFatJarGenerator(classes, classSize, resources, libs, libClasses).generate(src);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        src.delete();
+        dest.delete();
+    }
+
+    @Benchmark
+    public long encrypt() throws Exception {
+        XBoot.encrypt(src, dest, "io.xjar", threads);
+        return dest.length();
+    }
+
+    @Benchmark
+    public long stream() throws Exception {
+        try (
+                InputStream in = input();
+                OutputStream out = new BufferedOutputStream(new FileOutputStream(dest))
+        ) {
+            XBoot.encrypt(in, out, "io.xjar", XConstants.DEFAULT_ALGORITHM, XConstants.DEFAULT_KEYSIZE, XConstants.DEFAULT_IVSIZE, new XBootClassesFilter());
+        }
+        return dest.length();
+    }
+
+    @Benchmark
+    public long pipelined() throws Exception {
+        try (
+                InputStream in = input();
+                OutputStream out = new BufferedOutputStream(new FileOutputStream(dest))
+        ) {
+            XBoot.encrypt(in, out, "io.xjar", new XBootClassesFilter(), threads);
+        }
+        return dest.length();
+    }
+
+    private InputStream input() throws IOException {
+        InputStream in = new BufferedInputStream(new FileInputStream(src));
+        return bandwidth > 0 ? new XThrottledInputStream(in, bandwidth * 1024L * 1024L) : in;
+    }
+
+    /**
+     * 限制读取速度的输入流，读取的总字节数超过按带宽计算的可读字节数时等待
+     */
+    static class XThrottledInputStream extends FilterInputStream {
+        private final long bandwidth;
+        private final long start = System.nanoTime();
+        private long total;
+
+        XThrottledInputStream(InputStream in, long bandwidth) {
+            super(in);
+            this.bandwidth = bandwidth;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) throttle(1);
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) throttle(n);
+            return n;
+        }
+
+        private void throttle(int n) throws InterruptedIOException {
+            total += n;
+            long wait = total * 1000L / bandwidth - (System.nanoTime() - start) / 1000000L;
+            if (wait > 0) {
+                try {
+                    Thread.sleep(wait);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException(e.getMessage());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package io.xjar.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.SecureRandom;
+import java.security.spec.AlgorithmParameterSpec;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 各加密模式在不同数据块大小下的原始吞吐量，吞吐量乘以数据块大小即为每秒处理的字节数。
+ * 每次操作都重新初始化Cipher对象，GCM 模式下每次加密还会使用新的 IV ，与逐个记录加密的实际情况一致。
+ *
+ * @author Payne 646742615@qq.com
+ * 2018/12/17 10:40
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class XCipherBenchmark {
+    @Param({"AES/ECB/PKCS5Padding", "AES/CBC/PKCS5Padding", "AES/CTR/NoPadding", "AES/GCM/NoPadding"})
+    public String transformation;
+
+    @Param({"1024", "16384", "1048576"})
+    public int size;
+
+    private SecretKeySpec key;
+    private byte[] iv;
+    private byte[] plaintext;
+    private byte[] ciphertext;
+    private Cipher encryptor;
+    private Cipher decryptor;
+    private long counter;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        SecureRandom random = new SecureRandom();
+        byte[] bytes = new byte[16];
+        random.nextBytes(bytes);
+        key = new SecretKeySpec(bytes, "AES");
+        iv = new byte[transformation.contains("GCM") ? 12 : 16];
+        random.nextBytes(iv);
+        plaintext = new byte[size];
+        random.nextBytes(plaintext);
+        encryptor = Cipher.getInstance(transformation);
+        decryptor = Cipher.getInstance(transformation);
+        init(encryptor, Cipher.ENCRYPT_MODE, iv);
+        ciphertext = encryptor.doFinal(plaintext);
+    }
+
+    private void init(Cipher cipher, int mode, byte[] iv) throws Exception {
+        AlgorithmParameterSpec spec = null;
+        if (transformation.contains("GCM")) {
+            spec = new GCMParameterSpec(128, iv);
+        } else if (!transformation.contains("ECB")) {
+            spec = new IvParameterSpec(iv);
+        }
+        if (spec != null) {
+            cipher.init(mode, key, spec);
+        } else {
+            cipher.init(mode, key);
+        }
+    }
+
+    @Benchmark
+    public byte[] encrypt() throws Exception {
+        // GCM 模式不允许同一个密钥重复使用同一个 IV
+        byte[] nonce = iv.clone();
+        long n = ++counter;
+        for (int i = 0; i < 8; i++) {
+            nonce[nonce.length - 1 - i] ^= (byte) (n >>> (i * 8));
+        }
+        init(encryptor, Cipher.ENCRYPT_MODE, nonce);
+        return encryptor.doFinal(plaintext);
+    }
+
+    @Benchmark
+    public byte[] decrypt() throws Exception {
+        init(decryptor, Cipher.DECRYPT_MODE, iv);
+        return decryptor.doFinal(ciphertext);
+    }
+}
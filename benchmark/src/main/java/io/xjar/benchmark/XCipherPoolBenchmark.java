@@ -0,0 +1,83 @@
+package io.xjar.benchmark;
+
+import io.xjar.XCipherPool;
+import org.openjdk.jmh.annotations.*;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 逐个记录加密时从 XCipherPool 借出Cipher对象与每次通过 Cipher.getInstance 新建的开销对比，
+ * 池在所有线程间共享，多线程的方法同时反映并发借还时的竞争情况。
+ *
+ * @author Payne 646742615@qq.com
+ * 2018/12/27 15:20
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class XCipherPoolBenchmark {
+    @Param({"AES", "AES/CTR/NoPadding"})
+    public String algorithm;
+
+    @Param({"512", "2048"})
+    public int size;
+
+    private byte[] key;
+    private IvParameterSpec iv;
+    private byte[] plaintext;
+    private XCipherPool pool;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(size);
+        key = new byte[16];
+        random.nextBytes(key);
+        byte[] bytes = new byte[16];
+        random.nextBytes(bytes);
+        iv = algorithm.contains("/CTR/") ? new IvParameterSpec(bytes) : null;
+        plaintext = new byte[size];
+        random.nextBytes(plaintext);
+        pool = new XCipherPool(algorithm, Cipher.ENCRYPT_MODE);
+    }
+
+    @Benchmark
+    public byte[] pooled() throws Exception {
+        Cipher cipher = pool.acquire(key, iv);
+        try {
+            return cipher.doFinal(plaintext);
+        } finally {
+            pool.release(cipher);
+        }
+    }
+
+    @Benchmark
+    public byte[] getInstance() throws Exception {
+        Cipher cipher = Cipher.getInstance(algorithm);
+        SecretKeySpec spec = new SecretKeySpec(key, "AES");
+        if (iv != null) {
+            cipher.init(Cipher.ENCRYPT_MODE, spec, iv);
+        } else {
+            cipher.init(Cipher.ENCRYPT_MODE, spec);
+        }
+        return cipher.doFinal(plaintext);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public byte[] pooledContended() throws Exception {
+        return pooled();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public byte[] getInstanceContended() throws Exception {
+        return getInstance();
+    }
+}
@@ -0,0 +1,72 @@
+package io.xjar.benchmark;
+
+import io.xjar.XDecryptor;
+import io.xjar.XEncryptor;
+import io.xjar.XKit;
+import io.xjar.key.XKey;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单个类大小的记录经过 XKit.encryptor / XKit.decryptor 创建的加解密器加解密的耗时，以 XKit.transfer 的纯复制作为基线，
+ * 差值即为每个记录的加解密开销，AES/GCM/NoPadding 对应分块的认证加密格式。
+ *
+ * @author Payne 646742615@qq.com
+ * 2018/12/17 11:05
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class XEntryBenchmark {
+    @Param({"AES", "AES/GCM/NoPadding"})
+    public String algorithm;
+
+    @Param({"256", "1024", "4096", "16384"})
+    public int size;
+
+    private XKey key;
+    private XEncryptor encryptor;
+    private XDecryptor decryptor;
+    private byte[] plaintext;
+    private byte[] ciphertext;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        key = XKit.key(algorithm, "io.xjar");
+        encryptor = XKit.encryptor(algorithm);
+        decryptor = XKit.decryptor(algorithm);
+        plaintext = new byte[size];
+        new Random(size).nextBytes(plaintext);
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        encryptor.encrypt(key, new ByteArrayInputStream(plaintext), bos);
+        ciphertext = bos.toByteArray();
+    }
+
+    @Benchmark
+    public int transfer() throws Exception {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(size);
+        XKit.transfer(new ByteArrayInputStream(plaintext), bos);
+        return bos.size();
+    }
+
+    @Benchmark
+    public int encrypt() throws Exception {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(size + 64);
+        encryptor.encrypt(key, new ByteArrayInputStream(plaintext), bos);
+        return bos.size();
+    }
+
+    @Benchmark
+    public int decrypt() throws Exception {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(size);
+        decryptor.decrypt(key, new ByteArrayInputStream(ciphertext), bos);
+        return bos.size();
+    }
+}
@@ -0,0 +1,174 @@
+package io.xjar.benchmark;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * 合成的 Spring-Boot 风格 JAR 包生成器，包含 BOOT-INF/classes 下指定数量及大小的可加载类、若干资源文件以及 BOOT-INF/lib 下的嵌套JAR包，
+ * 同样的参数总是生成同样的内容，便于对比。
+ *
+ * @author Payne 646742615@qq.com
+ * 2018/12/17 10:02
+ */
+public class XFatJarGenerator {
+    public static final String PACKAGE = "io/xjar/synthetic/";
+    public static final String START_CLASS = "io.xjar.synthetic.C0";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final int classes;
+    private final int classSize;
+    private final int resources;
+    private final int libs;
+    private final int libClasses;
+
+    /**
+     * 构造
+     *
+     * @param classes    BOOT-INF/classes 下的类数量
+     * @param classSize  每个类的大致字节数
+     * @param resources  BOOT-INF/classes 下的资源文件数量
+     * @param libs       BOOT-INF/lib 下的嵌套JAR包数量
+     * @param libClasses 每个嵌套JAR包中的类数量
+     */
+    public XFatJarGenerator(int classes, int classSize, int resources, int libs, int libClasses) {
+        this.classes = classes;
+        this.classSize = classSize;
+        this.resources = resources;
+        this.libs = libs;
+        this.libClasses = libClasses;
+    }
+
+    /**
+     * @param i 序号
+     * @return BOOT-INF/classes 下第 i 个类的全限定名
+     */
+    public static String className(int i) {
+        return (PACKAGE + "C" + i).replace('/', '.');
+    }
+
+    /**
+     * 生成JAR包
+     *
+     * @param file 目标文件
+     * @throws IOException I/O 异常
+     */
+    public void generate(File file) throws IOException {
+        generate(file, START_CLASS, Collections.<String, byte[]>emptyMap());
+    }
+
+    /**
+     * 生成JAR包
+     *
+     * @param file       目标文件
+     * @param startClass 启动类
+     * @param extras     额外的记录，键为记录名称，值为内容，例如 Spring-Boot 的启动器类以及真正可运行的启动类
+     * @throws IOException I/O 异常
+     */
+    public void generate(File file, String startClass, Map<String, byte[]> extras) throws IOException {
+        Random random = new Random(classes * 31L + classSize);
+        try (ZipOutputStream zos = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            zos.putNextEntry(new ZipEntry("META-INF/"));
+            zos.closeEntry();
+            zos.putNextEntry(new ZipEntry("META-INF/MANIFEST.MF"));
+            zos.write(("Manifest-Version: 1.0\r\n"
+                    + "Main-Class: org.springframework.boot.loader.JarLauncher\r\n"
+                    + "Start-Class: " + startClass + "\r\n"
+                    + "Spring-Boot-Classes: BOOT-INF/classes/\r\n"
+                    + "Spring-Boot-Lib: BOOT-INF/lib/\r\n\r\n").getBytes(UTF_8));
+            zos.closeEntry();
+            for (Map.Entry<String, byte[]> extra : extras.entrySet()) {
+                zos.putNextEntry(new ZipEntry(extra.getKey()));
+                zos.write(extra.getValue());
+                zos.closeEntry();
+            }
+            zos.putNextEntry(new ZipEntry("BOOT-INF/"));
+            zos.closeEntry();
+            zos.putNextEntry(new ZipEntry("BOOT-INF/classes/"));
+            zos.closeEntry();
+            for (int i = 0; i < classes; i++) {
+                zos.putNextEntry(new ZipEntry("BOOT-INF/classes/" + PACKAGE + "C" + i + ".class"));
+                zos.write(clazz(PACKAGE + "C" + i, classSize, random));
+                zos.closeEntry();
+            }
+            for (int i = 0; i < resources; i++) {
+                zos.putNextEntry(new ZipEntry("BOOT-INF/classes/" + PACKAGE + "r" + i + ".properties"));
+                for (int j = 0; j < 64; j++) {
+                    zos.write(("key." + j + "=value-" + random.nextInt() + "\n").getBytes(UTF_8));
+                }
+                zos.closeEntry();
+            }
+            zos.putNextEntry(new ZipEntry("BOOT-INF/lib/"));
+            zos.closeEntry();
+            for (int i = 0; i < libs; i++) {
+                ByteArrayOutputStream bos = new ByteArrayOutputStream();
+                try (ZipOutputStream lib = new ZipOutputStream(bos)) {
+                    for (int j = 0; j < libClasses; j++) {
+                        lib.putNextEntry(new ZipEntry("io/xjar/lib" + i + "/L" + j + ".class"));
+                        lib.write(clazz("io/xjar/lib" + i + "/L" + j, classSize, random));
+                        lib.closeEntry();
+                    }
+                }
+                // Spring-Boot 要求嵌套JAR包不压缩存储
+                byte[] bytes = bos.toByteArray();
+                CRC32 crc = new CRC32();
+                crc.update(bytes);
+                ZipEntry entry = new ZipEntry("BOOT-INF/lib/lib" + i + ".jar");
+                entry.setMethod(ZipEntry.STORED);
+                entry.setSize(bytes.length);
+                entry.setCrc(crc.getValue());
+                zos.putNextEntry(entry);
+                zos.write(bytes);
+                zos.closeEntry();
+            }
+        }
+    }
+
+    /**
+     * 生成一个可被加载的最简类，通过一个不被引用的字符串常量把类文件填充到指定大小。
+     *
+     * @param name   内部类名
+     * @param size   大致字节数
+     * @param random 随机数
+     * @return 类文件
+     * @throws IOException I/O 异常
+     */
+    static byte[] clazz(String name, int size, Random random) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(size + 64);
+        DataOutputStream dos = new DataOutputStream(bos);
+        dos.writeInt(0xCAFEBABE);
+        dos.writeShort(0);
+        dos.writeShort(52);
+        // 常量池：#1 本类 #2 本类名 #3 父类 #4 父类名 #5 填充
+        dos.writeShort(6);
+        dos.writeByte(7);
+        dos.writeShort(2);
+        dos.writeByte(1);
+        dos.writeUTF(name);
+        dos.writeByte(7);
+        dos.writeShort(4);
+        dos.writeByte(1);
+        dos.writeUTF("java/lang/Object");
+        char[] padding = new char[Math.max(0, Math.min(size - 64, 65535))];
+        for (int i = 0; i < padding.length; i++) {
+            padding[i] = (char) ('a' + random.nextInt(26));
+        }
+        dos.writeByte(1);
+        dos.writeUTF(new String(padding));
+        dos.writeShort(0x0021);
+        dos.writeShort(1);
+        dos.writeShort(3);
+        dos.writeShort(0);
+        dos.writeShort(0);
+        dos.writeShort(0);
+        dos.writeShort(0);
+        dos.flush();
+        return bos.toByteArray();
+    }
+}
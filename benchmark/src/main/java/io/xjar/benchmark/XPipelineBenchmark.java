@@ -0,0 +1,80 @@
+package io.xjar.benchmark;
+
+import io.xjar.*;
+import io.xjar.key.XKey;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于流的 XJdkEncryptor / XJdkDecryptor 与基于 ByteBuffer 的 XNioEncryptor / XNioDecryptor 的单线程吞吐量对比，
+ * 吞吐量乘以数据大小即为单核每秒处理的字节数。
+ *
+ * @author Payne 646742615@qq.com
+ * 2018/12/21 14:30
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class XPipelineBenchmark {
+    private static final OutputStream NULL = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+
+    @Param({"jdk", "nio", "nio-direct"})
+    public String pipeline;
+
+    @Param({"AES", "AES/CTR/NoPadding"})
+    public String algorithm;
+
+    @Param({"65536", "16777216"})
+    public int size;
+
+    private XKey key;
+    private XEncryptor encryptor;
+    private XDecryptor decryptor;
+    private byte[] plaintext;
+    private byte[] ciphertext;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        key = XKit.key(algorithm, "io.xjar");
+        if ("jdk".equals(pipeline)) {
+            encryptor = new XJdkEncryptor(algorithm);
+            decryptor = new XJdkDecryptor(algorithm);
+        } else {
+            boolean direct = "nio-direct".equals(pipeline);
+            encryptor = new XNioEncryptor(algorithm, XConstants.DEFAULT_BUFFER_SIZE, direct);
+            decryptor = new XNioDecryptor(algorithm, XConstants.DEFAULT_BUFFER_SIZE, direct);
+        }
+        plaintext = new byte[size];
+        new Random(size).nextBytes(plaintext);
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        encryptor.encrypt(key, new ByteArrayInputStream(plaintext), bos);
+        ciphertext = bos.toByteArray();
+    }
+
+    @Benchmark
+    public void encrypt() throws IOException {
+        encryptor.encrypt(key, new ByteArrayInputStream(plaintext), NULL);
+    }
+
+    @Benchmark
+    public void decrypt() throws IOException {
+        decryptor.decrypt(key, new ByteArrayInputStream(ciphertext), NULL);
+    }
+}
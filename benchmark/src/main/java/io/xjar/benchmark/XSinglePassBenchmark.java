@@ -0,0 +1,80 @@
+package io.xjar.benchmark;
+
+import io.xjar.XJdkDecryptor;
+import io.xjar.XJdkEncryptor;
+import io.xjar.XKit;
+import io.xjar.key.XKey;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 小记录的一次 doFinal 加解密与流式加解密的开销对比，流式解密按类加载器的方式读入明文长度的字节数组，
+ * 覆盖大多数 .class 文件所在的长度范围。
+ *
+ * @author Payne 646742615@qq.com
+ * 2018/12/27 11:00
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class XSinglePassBenchmark {
+    @Param({"stream", "single"})
+    public String path;
+
+    @Param({"AES", "AES/CTR/NoPadding"})
+    public String algorithm;
+
+    @Param({"512", "2048", "8192"})
+    public int size;
+
+    private XKey key;
+    private XJdkEncryptor encryptor;
+    private XJdkDecryptor decryptor;
+    private byte[] plaintext;
+    private byte[] ciphertext;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        key = XKit.key(algorithm, "io.xjar");
+        encryptor = new XJdkEncryptor(algorithm);
+        decryptor = new XJdkDecryptor(algorithm);
+        plaintext = new byte[size];
+        new Random(size).nextBytes(plaintext);
+        ciphertext = encryptor.encrypt(key, plaintext, 0, plaintext.length);
+    }
+
+    @Benchmark
+    public byte[] encrypt() throws IOException {
+        if ("single".equals(path)) {
+            return encryptor.encrypt(key, plaintext, 0, plaintext.length);
+        }
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(ciphertext.length);
+        encryptor.encrypt(key, new ByteArrayInputStream(plaintext), bos);
+        return bos.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] decrypt() throws IOException {
+        if ("single".equals(path)) {
+            return decryptor.decrypt(key, ciphertext, 0, ciphertext.length);
+        }
+        byte[] bytes = new byte[size];
+        try (InputStream in = decryptor.decrypt(key, new ByteArrayInputStream(ciphertext))) {
+            int length = 0;
+            int n;
+            while (length < bytes.length && (n = in.read(bytes, length, bytes.length - length)) != -1) {
+                length += n;
+            }
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,275 @@
+package io.xjar.benchmark;
+
+import io.xjar.XEntryFilter;
+import io.xjar.XKit;
+import io.xjar.boot.XBoot;
+import io.xjar.boot.XBootClassesFilter;
+import org.apache.commons.compress.archivers.jar.JarArchiveEntry;
+import org.springframework.boot.loader.JarLauncher;
+
+import java.io.*;
+import java.util.*;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 启动耗时测试，生成合成的 Spring-Boot JAR 包并用多种过滤器加密，在全新的JVM中轮流启动未加密及各个加密的版本，
+ * 每次启动输出一行 JSON 结果，最后输出每个版本的中位数汇总，便于回归对比。整个过程不需要网络。
+ * <p>
+ * 用法：java -cp benchmarks.jar io.xjar.benchmark.XStartupHarness [classes=3000] [classSize=2048] [resources=200]
+ * [libs=20] [libClasses=100] [runs=10] [warmups=2] [dir=临时目录] [out=结果文件] [jvm="-Xmx256m -Xshare:off"]
+ *
+ * @author Payne 646742615@qq.com
+ * 2018/12/18 10:05
+ */
+public class XStartupHarness {
+    private static final String PASSWORD = "io.xjar";
+    private static final String PROBE = "BOOT-INF/classes/io/xjar/benchmark/XStartupProbe.class";
+    private static final String LOADER = "org/springframework/boot/loader/";
+    private static final Pattern NUMBER = Pattern.compile("\"(\\w+)\":(-?\\d+)");
+    private static final String[] METRICS = {"wallMs", "startClassMs", "mainMs", "readyMs", "decryptions", "gcCount", "gcTimeMs", "allocatedBytes"};
+
+    private final int classes;
+    private final int classSize;
+    private final int resources;
+    private final int libs;
+    private final int libClasses;
+    private final int runs;
+    private final int warmups;
+    private final File dir;
+    private final List<String> jvm;
+
+    public XStartupHarness(Map<String, String> options) throws IOException {
+        this.classes = Integer.valueOf(option(options, "classes", "3000"));
+        this.classSize = Integer.valueOf(option(options, "classSize", "2048"));
+        this.resources = Integer.valueOf(option(options, "resources", "200"));
+        this.libs = Integer.valueOf(option(options, "libs", "20"));
+        this.libClasses = Integer.valueOf(option(options, "libClasses", "100"));
+        this.runs = Integer.valueOf(option(options, "runs", "10"));
+        this.warmups = Integer.valueOf(option(options, "warmups", "2"));
+        String dir = options.get("dir");
+        this.dir = dir != null ? new File(dir) : createTempDir();
+        String jvm = option(options, "jvm", "").trim();
+        this.jvm = jvm.isEmpty() ? Collections.<String>emptyList() : Arrays.asList(jvm.split("\\s+"));
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int index = arg.indexOf('=');
+            if (index < 0) {
+                throw new IllegalArgumentException("illegal argument: " + arg + ", expected key=value");
+            }
+            options.put(arg.substring(0, index), arg.substring(index + 1));
+        }
+        String out = options.get("out");
+        try (PrintStream ps = out != null ? new PrintStream(new FileOutputStream(out), true, "UTF-8") : System.out) {
+            new XStartupHarness(options).run(ps);
+        }
+    }
+
+    /**
+     * 参与对比的加密过滤器，键为版本名称，未加密的版本名称为 plain 。
+     * XBootEncryptor 总会再叠加 BOOT-INF/classes 的安全过滤器，所以只在 BOOT-INF/classes 范围内区分。
+     *
+     * @return 加密过滤器
+     */
+    protected Map<String, XEntryFilter<JarArchiveEntry>> filters() {
+        Map<String, XEntryFilter<JarArchiveEntry>> filters = new LinkedHashMap<>();
+        filters.put("boot-classes", new XBootClassesFilter());
+        filters.put("class-files", new XEntryFilter<JarArchiveEntry>() {
+            @Override
+            public boolean filtrate(JarArchiveEntry entry) {
+                return entry.getName().startsWith("BOOT-INF/classes/") && entry.getName().endsWith(".class");
+            }
+        });
+        filters.put("half-classes", new XEntryFilter<JarArchiveEntry>() {
+            @Override
+            public boolean filtrate(JarArchiveEntry entry) {
+                String name = entry.getName();
+                return name.startsWith("BOOT-INF/classes/") && name.endsWith(".class")
+                        && (name.equals(PROBE) || (name.charAt(name.length() - 7) - '0') % 2 == 0);
+            }
+        });
+        filters.put("resources", new XEntryFilter<JarArchiveEntry>() {
+            @Override
+            public boolean filtrate(JarArchiveEntry entry) {
+                return entry.getName().startsWith("BOOT-INF/classes/") && !entry.getName().endsWith(".class");
+            }
+        });
+        return filters;
+    }
+
+    /**
+     * 生成、加密并轮流启动各个版本，结果写到输出流。
+     *
+     * @param out 输出流
+     * @throws Exception 异常
+     */
+    public void run(PrintStream out) throws Exception {
+        Map<String, File> jars = new LinkedHashMap<>();
+        File plain = new File(dir, "plain.jar");
+        Map<String, byte[]> extras = loader();
+        extras.put(PROBE, read(XStartupHarness.class.getResourceAsStream("XStartupProbe.class")));
+        new XFatJarGenerator(classes, classSize, resources, libs, libClasses).generate(plain, XStartupProbe.class.getName(), extras);
+        jars.put("plain", plain);
+        for (Map.Entry<String, XEntryFilter<JarArchiveEntry>> filter : filters().entrySet()) {
+            File encrypted = new File(dir, filter.getKey() + ".jar");
+            long start = System.nanoTime();
+            XBoot.encrypt(plain, encrypted, PASSWORD, filter.getValue(), Runtime.getRuntime().availableProcessors());
+            out.println("{\"type\":\"encrypt\",\"variant\":\"" + filter.getKey() + "\""
+                    + ",\"encryptMs\":" + (System.nanoTime() - start) / 1000000L
+                    + ",\"jarBytes\":" + encrypted.length() + "}");
+            jars.put(filter.getKey(), encrypted);
+        }
+
+        Map<String, Map<String, List<Long>>> results = new LinkedHashMap<>();
+        for (int run = -warmups; run < runs; run++) {
+            // 各版本轮流启动，避免机器状态的漂移只影响某一个版本
+            for (Map.Entry<String, File> jar : jars.entrySet()) {
+                String variant = jar.getKey();
+                String line = launch(jar.getValue(), !"plain".equals(variant));
+                if (run < 0) {
+                    continue;
+                }
+                out.println("{\"type\":\"run\",\"variant\":\"" + variant + "\",\"run\":" + run + "," + line.substring(1));
+                Map<String, List<Long>> metrics = results.get(variant);
+                if (metrics == null) {
+                    results.put(variant, metrics = new LinkedHashMap<>());
+                }
+                Matcher matcher = NUMBER.matcher(line);
+                while (matcher.find()) {
+                    List<Long> values = metrics.get(matcher.group(1));
+                    if (values == null) {
+                        metrics.put(matcher.group(1), values = new ArrayList<>());
+                    }
+                    values.add(Long.valueOf(matcher.group(2)));
+                }
+            }
+        }
+
+        for (Map.Entry<String, Map<String, List<Long>>> result : results.entrySet()) {
+            StringBuilder summary = new StringBuilder();
+            summary.append("{\"type\":\"summary\",\"variant\":\"").append(result.getKey()).append("\",\"runs\":").append(runs);
+            for (String metric : METRICS) {
+                List<Long> values = result.getValue().get(metric);
+                if (values == null || values.isEmpty()) {
+                    continue;
+                }
+                Collections.sort(values);
+                summary.append(",\"").append(metric).append("\":").append(values.get(values.size() / 2));
+            }
+            out.println(summary.append("}"));
+        }
+    }
+
+    /**
+     * 在全新的JVM中启动JAR包并等待其退出
+     *
+     * @param jar       JAR包
+     * @param encrypted 是否加密
+     * @return 启动类输出的 JSON 结果，附加了从创建进程到进程退出的耗时
+     * @throws Exception 异常
+     */
+    private String launch(File jar, boolean encrypted) throws Exception {
+        List<String> command = new ArrayList<>();
+        command.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getPath());
+        command.addAll(jvm);
+        command.add("-jar");
+        command.add(jar.getPath());
+        command.add(String.valueOf(classes));
+        command.add(String.valueOf(resources));
+        command.add(String.valueOf(libs));
+        command.add(String.valueOf(libClasses));
+        if (encrypted) {
+            command.add("--xjar.password=" + PASSWORD);
+        }
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        String result = null;
+        StringBuilder output = new StringBuilder();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), "UTF-8"))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(XStartupProbe.MARKER)) {
+                    result = line.substring(XStartupProbe.MARKER.length());
+                } else {
+                    output.append(line).append('\n');
+                }
+            }
+        }
+        int code = process.waitFor();
+        long wall = (System.nanoTime() - start) / 1000000L;
+        if (code != 0 || result == null) {
+            throw new IOException("launching " + jar + " failed with exit code " + code + ":\n" + output);
+        }
+        return "{\"wallMs\":" + wall + "," + result.substring(1);
+    }
+
+    /**
+     * 读取当前类路径中的 Spring-Boot 启动器类，放到合成JAR包的根目录，使其可以直接通过 java -jar 启动。
+     *
+     * @return 启动器类
+     * @throws IOException I/O 异常
+     */
+    private static Map<String, byte[]> loader() throws IOException {
+        Map<String, byte[]> loader = new TreeMap<>();
+        File location;
+        try {
+            location = new File(JarLauncher.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+        if (location.isDirectory()) {
+            collect(new File(location, LOADER), LOADER, loader);
+        } else {
+            try (JarFile jarFile = new JarFile(location)) {
+                Enumeration<JarEntry> entries = jarFile.entries();
+                while (entries.hasMoreElements()) {
+                    JarEntry entry = entries.nextElement();
+                    if (!entry.isDirectory() && entry.getName().startsWith(LOADER)) {
+                        loader.put(entry.getName(), read(jarFile.getInputStream(entry)));
+                    }
+                }
+            }
+        }
+        if (loader.isEmpty()) {
+            throw new IOException("spring-boot-loader classes not found in " + location);
+        }
+        return loader;
+    }
+
+    private static void collect(File file, String name, Map<String, byte[]> loader) throws IOException {
+        File[] files = file.listFiles();
+        if (files == null) {
+            loader.put(name, read(new FileInputStream(file)));
+            return;
+        }
+        for (File child : files) {
+            collect(child, name + child.getName() + (child.isDirectory() ? "/" : ""), loader);
+        }
+    }
+
+    private static byte[] read(InputStream in) throws IOException {
+        try (InputStream input = in) {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            XKit.transfer(input, bos);
+            return bos.toByteArray();
+        }
+    }
+
+    private static String option(Map<String, String> options, String key, String value) {
+        String option = options.get(key);
+        return option != null ? option : value;
+    }
+
+    private static File createTempDir() throws IOException {
+        File dir = File.createTempFile("xjar-startup-", "");
+        if (!dir.delete() || !dir.mkdirs()) {
+            throw new IOException("could not create directory " + dir);
+        }
+        return dir;
+    }
+}
@@ -0,0 +1,94 @@
+package io.xjar.benchmark;
+
+import java.io.InputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * 合成JAR包的启动类，由 XStartupHarness 放入 BOOT-INF/classes 下并在独立的JVM中启动，
+ * 模拟应用启动时的类加载及资源读取，完成后输出一行以 {@link #MARKER} 开头的 JSON 结果。
+ * 只能依赖JDK，因为未加密的JAR包中没有 XJar 的类。
+ *
+ * @author Payne 646742615@qq.com
+ * 2018/12/18 9:20
+ */
+public class XStartupProbe {
+    public static final String MARKER = "XJAR-STARTUP ";
+
+    // 启动类的初始化时刻，即 Spring-Boot 启动器创建类加载器并加载 Start-Class 之后、调用 main 方法之前，
+    // 与其他 BOOT-INF/classes 下的类是否加密无关，只反映启动器本身及本类的加载耗时
+    private static final long START_CLASS = System.currentTimeMillis();
+
+    /**
+     * @param args 类数量 资源数量 嵌套JAR包数量 每个嵌套JAR包中的类数量
+     * @throws Exception 异常
+     */
+    public static void main(String[] args) throws Exception {
+        long main = System.currentTimeMillis();
+        long start = ManagementFactory.getRuntimeMXBean().getStartTime();
+        int classes = Integer.parseInt(args[0]);
+        int resources = Integer.parseInt(args[1]);
+        int libs = Integer.parseInt(args[2]);
+        int libClasses = Integer.parseInt(args[3]);
+
+        ClassLoader classLoader = XStartupProbe.class.getClassLoader();
+        int loaded = 1;
+        for (int i = 0; i < classes; i++) {
+            Class.forName("io.xjar.synthetic.C" + i, false, classLoader);
+            loaded++;
+        }
+        byte[] buffer = new byte[4096];
+        for (int i = 0; i < resources; i++) {
+            try (InputStream in = classLoader.getResourceAsStream("io/xjar/synthetic/r" + i + ".properties")) {
+                while (in.read(buffer) != -1) {
+                    // 只读取，不处理
+                }
+            }
+        }
+        for (int i = 0; i < libs; i++) {
+            for (int j = 0; j < libClasses; j++) {
+                Class.forName("io.xjar.lib" + i + ".L" + j, false, classLoader);
+                loaded++;
+            }
+        }
+        long ready = System.currentTimeMillis();
+        // 加密包的类加载器统计实际解密的次数，未加密的包中没有这个方法
+        int decrypted = 0;
+        try {
+            decrypted = (Integer) classLoader.getClass().getMethod("getDecryptedCount").invoke(classLoader);
+        } catch (NoSuchMethodException e) {
+            // 未加密
+        }
+
+        long gcCount = 0;
+        long gcTime = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            gcCount += Math.max(0, bean.getCollectionCount());
+            gcTime += Math.max(0, bean.getCollectionTime());
+        }
+        long allocated = -1;
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        if (threadMXBean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) threadMXBean;
+            allocated = 0;
+            for (long id : bean.getAllThreadIds()) {
+                allocated += Math.max(0, bean.getThreadAllocatedBytes(id));
+            }
+        }
+        long heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+
+        System.out.println(MARKER + "{"
+                + "\"startClassMs\":" + (START_CLASS - start)
+                + ",\"mainMs\":" + (main - start)
+                + ",\"readyMs\":" + (ready - start)
+                + ",\"classesLoaded\":" + loaded
+                + ",\"decryptions\":" + decrypted
+                + ",\"jvmClassesLoaded\":" + ManagementFactory.getClassLoadingMXBean().getTotalLoadedClassCount()
+                + ",\"gcCount\":" + gcCount
+                + ",\"gcTimeMs\":" + gcTime
+                + ",\"allocatedBytes\":" + allocated
+                + ",\"heapUsedBytes\":" + heap
+                + "}");
+    }
+}
@@ -0,0 +1,155 @@
+package io.xjar;
+
+import io.xjar.zip.XZipAntEntryFilter;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+
+/**
+ * 自适应的记录压缩策略，依次按以下规则决定记录的压缩级别：
+ * <ol>
+ * <li>通过 {@link #add(XEntryFilter, int)} 添加的规则，第一个匹配的规则生效</li>
+ * <li>密文无法被压缩，以 STORED 方式存储，构建时省去压缩，运行时省去解压</li>
+ * <li>长度小于下限的记录压缩后通常反而更大，以 STORED 方式存储</li>
+ * <li>已经压缩过的媒体及压缩包，以 STORED 方式存储</li>
+ * <li>用最快的级别试压缩明文样本，压缩率达不到要求时以 STORED 方式存储</li>
+ * <li>其余的记录使用默认压缩级别</li>
+ * </ol>
+ * 规则需要在加密前添加完毕，之后策略可以被多个线程同时使用。
+ *
+ * @author Payne 646742615@qq.com
+ * 2018/12/26 10:20
+ */
+public class XAdaptiveCompressionPolicy implements XCompressionPolicy {
+    public static final String[] COMPRESSED_SUFFIXES = {
+            ".jar", ".war", ".zip", ".gz", ".tgz", ".bz2", ".xz", ".7z",
+            ".png", ".jpg", ".jpeg", ".gif", ".webp",
+            ".mp3", ".mp4", ".ogg", ".woff", ".woff2"
+    };
+    public static final int DEFAULT_MIN_SIZE = 128;
+    public static final double DEFAULT_RATIO = 0.9;
+
+    private final int level;
+    private final int minSize;
+    private final double ratio;
+    private final List<XEntryFilter<ZipArchiveEntry>> filters = new ArrayList<>();
+    private final List<Integer> levels = new ArrayList<>();
+    private final List<String> rules = new ArrayList<>();
+
+    public XAdaptiveCompressionPolicy() {
+        this(Deflater.DEFAULT_COMPRESSION);
+    }
+
+    public XAdaptiveCompressionPolicy(int level) {
+        this(level, DEFAULT_MIN_SIZE, DEFAULT_RATIO);
+    }
+
+    /**
+     * 构造
+     *
+     * @param level   默认压缩级别
+     * @param minSize 长度下限，小于该长度的记录不压缩
+     * @param ratio   样本压缩后与压缩前的长度之比超过该值时不压缩
+     */
+    public XAdaptiveCompressionPolicy(int level, int minSize, double ratio) {
+        this.level = level;
+        this.minSize = minSize;
+        this.ratio = ratio;
+    }
+
+    /**
+     * 添加一条按 Ant 表达式匹配记录名称的规则
+     *
+     * @param ant   Ant 表达式
+     * @param level 压缩级别，{@link #STORED} 表示不压缩
+     * @return 策略本身
+     */
+    public XAdaptiveCompressionPolicy add(String ant, int level) {
+        return add(new XZipAntEntryFilter(ant), ant, level);
+    }
+
+    /**
+     * 添加一条规则，过滤器的 toString() 作为策略描述的一部分，没有稳定的 toString() 时增量加密不会复用上一次的密文。
+     *
+     * @param filter 过滤器
+     * @param level  压缩级别，{@link #STORED} 表示不压缩
+     * @return 策略本身
+     */
+    public XAdaptiveCompressionPolicy add(XEntryFilter<ZipArchiveEntry> filter, int level) {
+        return add(filter, String.valueOf(filter), level);
+    }
+
+    private XAdaptiveCompressionPolicy add(XEntryFilter<ZipArchiveEntry> filter, String rule, int level) {
+        filters.add(filter);
+        levels.add(level);
+        rules.add(rule + "=" + level);
+        return this;
+    }
+
+    @Override
+    public int level(ZipArchiveEntry entry, boolean encrypted, byte[] sample, int length) {
+        for (int i = 0; i < filters.size(); i++) {
+            if (filters.get(i).filtrate(entry)) {
+                return levels.get(i);
+            }
+        }
+        if (encrypted) {
+            return STORED;
+        }
+        long size = entry.getSize();
+        if (size >= 0 && size < minSize) {
+            return STORED;
+        }
+        String name = entry.getName().toLowerCase();
+        for (String suffix : COMPRESSED_SUFFIXES) {
+            if (name.endsWith(suffix)) {
+                return STORED;
+            }
+        }
+        if (sample != null && length >= minSize && !compressible(sample, length)) {
+            return STORED;
+        }
+        return level;
+    }
+
+    /**
+     * 用最快的级别试压缩样本，判断压缩率是否达到要求。
+     */
+    private boolean compressible(byte[] sample, int length) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+        try {
+            deflater.setInput(sample, 0, length);
+            deflater.finish();
+            byte[] buffer = new byte[length];
+            int compressed = 0;
+            while (!deflater.finished() && compressed < length) {
+                compressed += deflater.deflate(buffer, 0, buffer.length);
+            }
+            return deflater.finished() && compressed < length * ratio;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public int getMinSize() {
+        return minSize;
+    }
+
+    public double getRatio() {
+        return ratio;
+    }
+
+    /**
+     * @return 策略配置的描述，增量加密以此判断两次加密的策略是否相同
+     */
+    @Override
+    public String toString() {
+        return "XAdaptiveCompressionPolicy{level=" + level + ", minSize=" + minSize + ", ratio=" + ratio + ", rules=" + rules + "}";
+    }
+}
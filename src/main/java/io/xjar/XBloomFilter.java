@@ -0,0 +1,77 @@
+package io.xjar;
+
+/**
+ * 以资源名称的哈希值为输入的布隆过滤器，用于在查找加密资源索引前快速排除绝大多数未加密的资源，
+ * 判断为不存在时一定不存在，判断为存在时才需要进一步查找索引。
+ *
+ * @author Payne 646742615@qq.com
+ * 2018/12/15 9:36
+ */
+public class XBloomFilter {
+    // 每个元素占用的位数及哈希函数个数，误判率约为 1%
+    private static final int BITS_PER_ELEMENT = 10;
+    private static final int HASHES = 5;
+
+    private final long[] bits;
+    private final int mask;
+
+    /**
+     * 构造
+     *
+     * @param expected 预期的元素数量
+     */
+    public XBloomFilter(int expected) {
+        int size = 64;
+        while (size < (long) expected * BITS_PER_ELEMENT) {
+            size <<= 1;
+        }
+        this.bits = new long[size >>> 6];
+        this.mask = size - 1;
+    }
+
+    /**
+     * 添加元素
+     *
+     * @param hash 元素的哈希值
+     */
+    public void add(int hash) {
+        int h1 = hash ^ (hash >>> 16);
+        int h2 = mix(hash);
+        for (int i = 0; i < HASHES; i++) {
+            int bit = (h1 + i * h2) & mask;
+            bits[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    /**
+     * 判断元素是否可能存在
+     *
+     * @param hash 元素的哈希值
+     * @return true: 可能存在 false: 一定不存在
+     */
+    public boolean mightContain(int hash) {
+        int h1 = hash ^ (hash >>> 16);
+        int h2 = mix(hash);
+        for (int i = 0; i < HASHES; i++) {
+            int bit = (h1 + i * h2) & mask;
+            if ((bits[bit >>> 6] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return 占用的字节数
+     */
+    public int getFootprint() {
+        return bits.length * 8;
+    }
+
+    private static int mix(int hash) {
+        hash *= 0x9E3779B9;
+        hash ^= (hash >>> 15);
+        // 保证步长为奇数，使各个哈希函数落在不同的位上
+        return hash | 1;
+    }
+}
@@ -0,0 +1,126 @@
+package io.xjar;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 分段的传输缓冲区池，按线程ID选择分段，每个分段保留少量固定大小的缓冲区，借出和归还都只是一次CAS操作，
+ * 避免每次传输都创建新的数组。池中没有空闲缓冲区时直接创建，池已满时归还的缓冲区直接丢弃，所以嵌套的传输也是安全的。
+ *
+ * @author Payne 646742615@qq.com
+ * 2018/12/22 10:20
+ */
+public class XBufferPool {
+    // 每个分段保留的缓冲区数量
+    private static final int SLOTS = 4;
+
+    private final int bufferSize;
+    private final int mask;
+    private final AtomicReferenceArray<byte[]> bytes;
+    private final AtomicReferenceArray<char[]> chars;
+
+    /**
+     * 构造
+     *
+     * @param bufferSize 缓冲区大小
+     */
+    public XBufferPool(int bufferSize) {
+        this(bufferSize, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * 构造
+     *
+     * @param bufferSize 缓冲区大小
+     * @param stripes    分段数量，会向上取整为2的幂
+     */
+    public XBufferPool(int bufferSize, int stripes) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("buffer size must be positive");
+        }
+        int n = 1;
+        while (n < stripes) {
+            n <<= 1;
+        }
+        this.bufferSize = bufferSize;
+        this.mask = n - 1;
+        this.bytes = new AtomicReferenceArray<>(n * SLOTS);
+        this.chars = new AtomicReferenceArray<>(n * SLOTS);
+    }
+
+    /**
+     * 借出一个字节缓冲区，用完后需要通过 {@link #release(byte[])} 归还。
+     *
+     * @return 字节缓冲区
+     */
+    public byte[] acquire() {
+        int offset = stripe();
+        for (int i = 0; i < SLOTS; i++) {
+            byte[] buffer = bytes.getAndSet(offset + i, null);
+            if (buffer != null) {
+                return buffer;
+            }
+        }
+        return new byte[bufferSize];
+    }
+
+    /**
+     * 归还字节缓冲区
+     *
+     * @param buffer 字节缓冲区
+     */
+    public void release(byte[] buffer) {
+        if (buffer == null || buffer.length != bufferSize) {
+            return;
+        }
+        int offset = stripe();
+        for (int i = 0; i < SLOTS; i++) {
+            if (bytes.get(offset + i) == null && bytes.compareAndSet(offset + i, null, buffer)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 借出一个字符缓冲区，用完后需要通过 {@link #release(char[])} 归还。
+     *
+     * @return 字符缓冲区
+     */
+    public char[] acquireChars() {
+        int offset = stripe();
+        for (int i = 0; i < SLOTS; i++) {
+            char[] buffer = chars.getAndSet(offset + i, null);
+            if (buffer != null) {
+                return buffer;
+            }
+        }
+        return new char[bufferSize];
+    }
+
+    /**
+     * 归还字符缓冲区
+     *
+     * @param buffer 字符缓冲区
+     */
+    public void release(char[] buffer) {
+        if (buffer == null || buffer.length != bufferSize) {
+            return;
+        }
+        int offset = stripe();
+        for (int i = 0; i < SLOTS; i++) {
+            if (chars.get(offset + i) == null && chars.compareAndSet(offset + i, null, buffer)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return 缓冲区大小
+     */
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    private int stripe() {
+        return ((int) Thread.currentThread().getId() & mask) * SLOTS;
+    }
+}
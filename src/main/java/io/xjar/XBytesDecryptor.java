@@ -0,0 +1,27 @@
+package io.xjar;
+
+import io.xjar.key.XKey;
+
+import java.io.IOException;
+
+/**
+ * 字节数组解密器，密文整块在内存中时通过一次 doFinal 完成解密，省去解密流的包装及多次 update ，适合长度较小的记录。
+ *
+ * @author Payne 646742615@qq.com
+ * 2018/12/27 10:10
+ */
+public interface XBytesDecryptor {
+
+    /**
+     * 解密，将字节数组中的密文一次性解密。
+     *
+     * @param key    密钥
+     * @param data   密文所在的字节数组
+     * @param offset 密文起始位置
+     * @param length 密文长度
+     * @return 长度恰好为明文长度的字节数组
+     * @throws IOException I/O 异常
+     */
+    byte[] decrypt(XKey key, byte[] data, int offset, int length) throws IOException;
+
+}
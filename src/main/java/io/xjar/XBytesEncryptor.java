@@ -0,0 +1,28 @@
+package io.xjar;
+
+import io.xjar.key.XKey;
+
+import java.io.IOException;
+
+/**
+ * 字节数组加密器，明文整块在内存中时通过一次 doFinal 完成加密，省去加密流的包装及多次 update ，适合长度较小的记录。
+ * 密文格式与同一算法的流式加密相同。
+ *
+ * @author Payne 646742615@qq.com
+ * 2018/12/27 10:10
+ */
+public interface XBytesEncryptor {
+
+    /**
+     * 加密，将字节数组中的明文一次性加密。
+     *
+     * @param key    密钥
+     * @param data   明文所在的字节数组
+     * @param offset 明文起始位置
+     * @param length 明文长度
+     * @return 长度恰好为密文长度的字节数组
+     * @throws IOException I/O 异常
+     */
+    byte[] encrypt(XKey key, byte[] data, int offset, int length) throws IOException;
+
+}
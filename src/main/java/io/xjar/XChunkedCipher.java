@@ -0,0 +1,552 @@
+package io.xjar;
+
+import io.xjar.key.XKey;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import java.io.*;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 分块的认证加密格式，把数据切分成固定大小的块，每块用 AES/GCM 之类的认证加密算法独立加密并带有校验标签，
+ * 因此大数据可以多核并行加解密，解密时可以跳过不需要的块而不必解密，任何一块被篡改或损坏都会在读到该块时报错，而不会解密出错误的内容。
+ * <p>
+ * 格式（大端序）：
+ * <pre>
+ * int     魔数 XCHK
+ * byte    版本号
+ * int     块大小，即每块的明文字节数
+ * byte[8] 随机的随机数前缀
+ * 块：    密文 + 16字节标签，除最后一块外明文均为块大小，最后一块的明文小于块大小，可以为空
+ * </pre>
+ * 每块的随机数为随机数前缀 + int 块序号，附加认证数据为头部 + 是否最后一块的标志，
+ * 所以块的调换、删除、截断以及头部的修改都会导致校验失败。
+ *
+ * @author Payne 646742615@qq.com
+ * 2018/12/19 9:35
+ */
+public class XChunkedCipher {
+    public static final int MAGIC = 0x5843484B;
+    public static final byte VERSION = 1;
+    public static final int NONCE_LENGTH = 8;
+    public static final int HEADER_LENGTH = 4 + 1 + 4 + NONCE_LENGTH;
+    public static final int TAG_LENGTH = 16;
+
+    private final int chunkSize;
+    private final int threads;
+    private final XCipherPool encryptPool;
+    private final XCipherPool decryptPool;
+    private final SecureRandom random = new SecureRandom();
+
+    /**
+     * 构造
+     *
+     * @param algorithm 认证加密算法，例如 AES/GCM/NoPadding
+     * @param chunkSize 加密时每块的明文字节数，解密时以数据头部记录的为准
+     * @param threads   整体加解密时的并行线程数，小于等于 1 时不并行，各实例共用一个不超过处理器数量的线程池
+     */
+    public XChunkedCipher(String algorithm, int chunkSize, int threads) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunk size must be positive");
+        }
+        this.chunkSize = chunkSize;
+        this.threads = threads;
+        this.encryptPool = new XCipherPool(algorithm, Cipher.ENCRYPT_MODE);
+        this.decryptPool = new XCipherPool(algorithm, Cipher.DECRYPT_MODE);
+    }
+
+    /**
+     * 整体加密，多个块并行加密后按顺序输出。
+     *
+     * @param key 密钥
+     * @param in  明文输入流
+     * @param out 密文输出流
+     * @throws IOException I/O 异常
+     */
+    public void encrypt(XKey key, InputStream in, OutputStream out) throws IOException {
+        byte[] header = header();
+        out.write(header);
+        transfer(true, key, header, in, out);
+    }
+
+    /**
+     * 整体解密，多个块并行解密后按顺序输出。
+     *
+     * @param key 密钥
+     * @param in  密文输入流
+     * @param out 明文输出流
+     * @throws IOException I/O 异常
+     */
+    public void decrypt(XKey key, InputStream in, OutputStream out) throws IOException {
+        byte[] header = header(in);
+        transfer(false, key, header, in, out);
+    }
+
+    /**
+     * @param key 密钥
+     * @param in  明文输入流
+     * @return 密文输入流
+     * @throws IOException I/O 异常
+     */
+    public InputStream encrypt(XKey key, InputStream in) throws IOException {
+        return new XChunkedInputStream(true, key, in);
+    }
+
+    /**
+     * @param key 密钥
+     * @param in  密文输入流
+     * @return 明文输入流，skip 时整块跳过的部分不需要解密
+     * @throws IOException I/O 异常
+     */
+    public InputStream decrypt(XKey key, InputStream in) throws IOException {
+        return new XChunkedInputStream(false, key, in);
+    }
+
+    /**
+     * @param key 密钥
+     * @param out 密文输出流
+     * @return 明文输出流，关闭时写出最后一块
+     * @throws IOException I/O 异常
+     */
+    public OutputStream encrypt(XKey key, OutputStream out) throws IOException {
+        return new XChunkedOutputStream(true, key, out);
+    }
+
+    /**
+     * @param key 密钥
+     * @param out 明文输出流
+     * @return 密文输出流，关闭时解密并校验最后一块
+     * @throws IOException I/O 异常
+     */
+    public OutputStream decrypt(XKey key, OutputStream out) throws IOException {
+        return new XChunkedOutputStream(false, key, out);
+    }
+
+    /**
+     * @param header 数据头部
+     * @return 头部记录的块大小
+     */
+    public static int getChunkSize(byte[] header) {
+        return (header[5] & 0xFF) << 24 | (header[6] & 0xFF) << 16 | (header[7] & 0xFF) << 8 | (header[8] & 0xFF);
+    }
+
+    /**
+     * 计算密文长度
+     *
+     * @param plainLength 明文长度
+     * @param chunkSize   块大小
+     * @return 密文长度
+     */
+    public static long getCipherLength(long plainLength, int chunkSize) {
+        return HEADER_LENGTH + plainLength + (plainLength / chunkSize + 1) * TAG_LENGTH;
+    }
+
+    /**
+     * 生成新的数据头部
+     *
+     * @return 数据头部
+     */
+    private byte[] header() {
+        byte[] header = new byte[HEADER_LENGTH];
+        header[0] = (byte) (MAGIC >>> 24);
+        header[1] = (byte) (MAGIC >>> 16);
+        header[2] = (byte) (MAGIC >>> 8);
+        header[3] = (byte) MAGIC;
+        header[4] = VERSION;
+        header[5] = (byte) (chunkSize >>> 24);
+        header[6] = (byte) (chunkSize >>> 16);
+        header[7] = (byte) (chunkSize >>> 8);
+        header[8] = (byte) chunkSize;
+        byte[] nonce = new byte[NONCE_LENGTH];
+        random.nextBytes(nonce);
+        System.arraycopy(nonce, 0, header, 9, NONCE_LENGTH);
+        return header;
+    }
+
+    /**
+     * 读取并校验数据头部
+     *
+     * @param in 密文输入流
+     * @return 数据头部
+     * @throws IOException I/O 异常
+     */
+    private static byte[] header(InputStream in) throws IOException {
+        byte[] header = new byte[HEADER_LENGTH];
+        if (read(in, header, 0, HEADER_LENGTH) < HEADER_LENGTH) {
+            throw new EOFException("truncated chunked header");
+        }
+        check(header);
+        return header;
+    }
+
+    private static void check(byte[] header) throws IOException {
+        int magic = (header[0] & 0xFF) << 24 | (header[1] & 0xFF) << 16 | (header[2] & 0xFF) << 8 | (header[3] & 0xFF);
+        if (magic != MAGIC) {
+            throw new IOException("not a chunked xjar stream");
+        }
+        if (header[4] != VERSION) {
+            throw new IOException("unsupported chunked xjar version: " + header[4]);
+        }
+        if (getChunkSize(header) <= 0) {
+            throw new IOException("illegal chunk size: " + getChunkSize(header));
+        }
+    }
+
+    /**
+     * 加密或解密一块
+     *
+     * @param encrypt 是否加密
+     * @param key     密钥
+     * @param header  数据头部
+     * @param index   块序号
+     * @param last    是否最后一块
+     * @param in      输入
+     * @param length  输入长度
+     * @param out     输出
+     * @return 输出长度
+     * @throws IOException I/O 异常
+     */
+    private int chunk(boolean encrypt, XKey key, byte[] header, long index, boolean last, byte[] in, int length, byte[] out) throws IOException {
+        if (index > 0xFFFFFFFFL) {
+            throw new IOException("too many chunks");
+        }
+        if (!encrypt && length < TAG_LENGTH) {
+            throw new EOFException("truncated chunk " + index);
+        }
+        byte[] iv = new byte[NONCE_LENGTH + 4];
+        System.arraycopy(header, 9, iv, 0, NONCE_LENGTH);
+        iv[8] = (byte) (index >>> 24);
+        iv[9] = (byte) (index >>> 16);
+        iv[10] = (byte) (index >>> 8);
+        iv[11] = (byte) index;
+        XCipherPool pool = encrypt ? encryptPool : decryptPool;
+        Cipher cipher = null;
+        try {
+            cipher = pool.acquire(encrypt ? key.getEncryptKey() : key.getDecryptKey(), new GCMParameterSpec(TAG_LENGTH * 8, iv));
+            cipher.updateAAD(header);
+            cipher.updateAAD(new byte[]{(byte) (last ? 1 : 0)});
+            return cipher.doFinal(in, 0, length, out, 0);
+        } catch (AEADBadTagException e) {
+            throw new IOException("corrupted chunk " + index, e);
+        } catch (GeneralSecurityException e) {
+            throw new IOException(e);
+        } finally {
+            if (cipher != null) {
+                pool.release(cipher);
+            }
+        }
+    }
+
+    /**
+     * 整体加解密，每次读取线程数个块并行处理，除最后一块外每块的输入都是满的，所以读到不满的一块即是最后一块。
+     */
+    private void transfer(final boolean encrypt, final XKey key, final byte[] header, InputStream in, OutputStream out) throws IOException {
+        int size = encrypt ? chunkSize : getChunkSize(header) + TAG_LENGTH;
+        int batch = Math.max(1, threads);
+        final byte[][] inputs = new byte[batch][size];
+        final byte[][] outputs = new byte[batch][size + TAG_LENGTH];
+        final int[] lengths = new int[batch];
+        long index = 0;
+        boolean last = false;
+        while (!last) {
+            int count = 0;
+            while (count < batch && !last) {
+                lengths[count] = read(in, inputs[count], 0, size);
+                last = lengths[count] < size;
+                count++;
+            }
+            if (count == 1) {
+                out.write(outputs[0], 0, chunk(encrypt, key, header, index, last, inputs[0], lengths[0], outputs[0]));
+            } else {
+                List<Future<Integer>> futures = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    final int n = i;
+                    final long chunk = index + i;
+                    final boolean end = last && i == count - 1;
+                    futures.add(XChunkExecutor.EXECUTOR.submit(new Callable<Integer>() {
+                        @Override
+                        public Integer call() throws Exception {
+                            return chunk(encrypt, key, header, chunk, end, inputs[n], lengths[n], outputs[n]);
+                        }
+                    }));
+                }
+                for (int i = 0; i < count; i++) {
+                    out.write(outputs[i], 0, get(futures.get(i)));
+                }
+            }
+            index += count;
+        }
+    }
+
+    private static int get(Future<Integer> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        }
+    }
+
+    /**
+     * 尽量读满缓冲区
+     *
+     * @return 读取的字节数，小于 len 说明已到流的末尾
+     */
+    private static int read(InputStream in, byte[] b, int off, int len) throws IOException {
+        int total = 0;
+        while (total < len) {
+            int n = in.read(b, off + total, len - total);
+            if (n < 0) {
+                break;
+            }
+            total += n;
+        }
+        return total;
+    }
+
+    /**
+     * 尽量跳过指定字节数
+     *
+     * @return 跳过的字节数，小于 n 说明已到流的末尾
+     */
+    private static long skip(InputStream in, long n) throws IOException {
+        long total = 0;
+        while (total < n) {
+            long skipped = in.skip(n - total);
+            if (skipped <= 0) {
+                if (in.read() < 0) {
+                    break;
+                }
+                skipped = 1;
+            }
+            total += skipped;
+        }
+        return total;
+    }
+
+    /**
+     * 逐块加解密的输入流
+     */
+    private class XChunkedInputStream extends InputStream {
+        private final boolean encrypt;
+        private final XKey key;
+        private final InputStream in;
+        private final byte[] header;
+        private final int plain;
+        private final int size;
+        private final byte[] input;
+        private final byte[] output;
+        private int position;
+        private int limit;
+        private long index;
+        private boolean last;
+
+        XChunkedInputStream(boolean encrypt, XKey key, InputStream in) throws IOException {
+            this.encrypt = encrypt;
+            this.key = key;
+            this.in = in;
+            if (encrypt) {
+                this.header = header();
+                this.plain = chunkSize;
+                this.size = chunkSize;
+                this.output = new byte[Math.max(chunkSize + TAG_LENGTH, HEADER_LENGTH)];
+                // 先输出数据头部
+                System.arraycopy(header, 0, output, 0, HEADER_LENGTH);
+                this.limit = HEADER_LENGTH;
+            } else {
+                this.header = header(in);
+                this.plain = getChunkSize(header);
+                this.size = plain + TAG_LENGTH;
+                this.output = new byte[size];
+            }
+            this.input = new byte[size];
+        }
+
+        private boolean fill() throws IOException {
+            while (position == limit) {
+                if (last) {
+                    return false;
+                }
+                int length = XChunkedCipher.read(in, input, 0, size);
+                last = length < size;
+                limit = chunk(encrypt, key, header, index++, last, input, length, output);
+                position = 0;
+            }
+            return true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return fill() ? output[position++] & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!fill()) {
+                return -1;
+            }
+            int n = Math.min(len, limit - position);
+            System.arraycopy(output, position, b, off, n);
+            position += n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            if (encrypt || n <= 0) {
+                return super.skip(n);
+            }
+            long skipped = Math.min(n, limit - position);
+            position += skipped;
+            if (skipped == n || last) {
+                return skipped;
+            }
+            // 完整跨过的块直接跳过密文，不需要解密
+            long chunks = Math.min((n - skipped) / plain, Long.MAX_VALUE / size);
+            if (chunks > 0) {
+                long bytes = chunks * size;
+                long actual = XChunkedCipher.skip(in, bytes);
+                position = limit = 0;
+                if (actual < bytes) {
+                    long remainder = actual % size;
+                    if (remainder < TAG_LENGTH) {
+                        throw new EOFException("truncated chunk " + (index + actual / size));
+                    }
+                    last = true;
+                    return skipped + actual / size * plain + remainder - TAG_LENGTH;
+                }
+                index += chunks;
+                skipped += chunks * plain;
+            }
+            if (skipped < n && fill()) {
+                int m = (int) Math.min(n - skipped, limit - position);
+                position += m;
+                skipped += m;
+            }
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return limit - position;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    /**
+     * 逐块加解密的输出流，写满一块即处理，关闭时处理最后一块。
+     */
+    private class XChunkedOutputStream extends OutputStream {
+        private final boolean encrypt;
+        private final XKey key;
+        private final OutputStream out;
+        private byte[] header;
+        private byte[] input;
+        private byte[] output;
+        private int count;
+        private long index;
+        private boolean closed;
+
+        XChunkedOutputStream(boolean encrypt, XKey key, OutputStream out) throws IOException {
+            this.encrypt = encrypt;
+            this.key = key;
+            this.out = out;
+            if (encrypt) {
+                this.header = header();
+                this.input = new byte[chunkSize];
+                this.output = new byte[chunkSize + TAG_LENGTH];
+                out.write(header);
+            } else {
+                // 解密时先收集数据头部
+                this.input = new byte[HEADER_LENGTH];
+            }
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                int n = Math.min(len, input.length - count);
+                System.arraycopy(b, off, input, count, n);
+                count += n;
+                off += n;
+                len -= n;
+                if (count == input.length) {
+                    if (header == null) {
+                        check(input);
+                        header = input;
+                        input = new byte[getChunkSize(header) + TAG_LENGTH];
+                        output = new byte[input.length];
+                    } else {
+                        // 写满的一块一定不是最后一块
+                        out.write(output, 0, chunk(encrypt, key, header, index++, false, input, count, output));
+                    }
+                    count = 0;
+                }
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                if (header == null) {
+                    throw new EOFException("truncated chunked header");
+                }
+                out.write(output, 0, chunk(encrypt, key, header, index++, true, input, count, output));
+            } finally {
+                out.close();
+            }
+        }
+    }
+
+    /**
+     * 所有实例共享的有界线程池，线程数不超过处理器数量，空闲的线程一段时间后自动退出，所以不需要关闭，也不会因为创建了多个实例而残留线程。
+     * 块的加解密任务不会再提交其他任务，多个实例同时使用时只会排队而不会互相等待。
+     */
+    private static class XChunkExecutor {
+        static final ThreadPoolExecutor EXECUTOR;
+
+        static {
+            final AtomicInteger count = new AtomicInteger();
+            int threads = Runtime.getRuntime().availableProcessors();
+            EXECUTOR = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "xjar-chunk-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            EXECUTOR.allowCoreThreadTimeOut(true);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package io.xjar;
+
+import io.xjar.key.XKey;
+
+import java.io.*;
+
+/**
+ * 分块认证加密的解密器，格式见 {@link XChunkedCipher}，大数据整体解密时多核并行，
+ * 解密输入流在 skip 时整块跳过而不解密，任何一块损坏都会抛出异常。
+ *
+ * @author Payne 646742615@qq.com
+ * 2018/12/19 11:02
+ */
+public class XChunkedDecryptor implements XDecryptor {
+    private final XChunkedCipher cipher;
+
+    public XChunkedDecryptor(String algorithm) {
+        this(algorithm, Runtime.getRuntime().availableProcessors());
+    }
+
+    public XChunkedDecryptor(String algorithm, int threads) {
+        // 解密时块大小以数据头部记录的为准
+        this.cipher = new XChunkedCipher(algorithm, XConstants.DEFAULT_CHUNK_SIZE, threads);
+    }
+
+    @Override
+    public void decrypt(XKey key, File src, File dest) throws IOException {
+        if (!dest.getParentFile().exists() && !dest.getParentFile().mkdirs()) {
+            throw new IOException("could not make directory: " + dest.getParentFile());
+        }
+        try (
+                InputStream in = new FileInputStream(src);
+                OutputStream out = new FileOutputStream(dest)
+        ) {
+            decrypt(key, in, out);
+        }
+    }
+
+    @Override
+    public void decrypt(XKey key, InputStream in, OutputStream out) throws IOException {
+        cipher.decrypt(key, in, out);
+    }
+
+    @Override
+    public InputStream decrypt(XKey key, InputStream in) throws IOException {
+        return cipher.decrypt(key, in);
+    }
+
+    @Override
+    public OutputStream decrypt(XKey key, OutputStream out) throws IOException {
+        return cipher.decrypt(key, out);
+    }
+}
@@ -0,0 +1,56 @@
+package io.xjar;
+
+import io.xjar.key.XKey;
+
+import java.io.*;
+
+/**
+ * 分块认证加密的加密器，格式见 {@link XChunkedCipher}，大数据整体加密时多核并行。
+ *
+ * @author Payne 646742615@qq.com
+ * 2018/12/19 11:02
+ */
+public class XChunkedEncryptor implements XEncryptor {
+    private final XChunkedCipher cipher;
+
+    public XChunkedEncryptor(String algorithm) {
+        this(algorithm, XConstants.DEFAULT_CHUNK_SIZE, Runtime.getRuntime().availableProcessors());
+    }
+
+    public XChunkedEncryptor(String algorithm, int chunkSize, int threads) {
+        this.cipher = new XChunkedCipher(algorithm, chunkSize, threads);
+    }
+
+    @Override
+    public void encrypt(XKey key, File src, File dest) throws IOException {
+        if (!dest.getParentFile().exists() && !dest.getParentFile().mkdirs()) {
+            throw new IOException("could not make directory: " + dest.getParentFile());
+        }
+        try (
+                InputStream in = new FileInputStream(src);
+                OutputStream out = new FileOutputStream(dest)
+        ) {
+            encrypt(key, in, out);
+        }
+    }
+
+    @Override
+    public void encrypt(XKey key, InputStream in, OutputStream out) throws IOException {
+        cipher.encrypt(key, in, out);
+    }
+
+    @Override
+    public void encrypt(XKey key, InputStream in, OutputStream out, String password) throws IOException {
+        encrypt(key, in, out);
+    }
+
+    @Override
+    public InputStream encrypt(XKey key, InputStream in) throws IOException {
+        return cipher.encrypt(key, in);
+    }
+
+    @Override
+    public OutputStream encrypt(XKey key, OutputStream out) throws IOException {
+        return cipher.encrypt(key, out);
+    }
+}
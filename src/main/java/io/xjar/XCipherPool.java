@@ -0,0 +1,214 @@
+package io.xjar;
+
+import javax.crypto.Cipher;
+import javax.crypto.CipherInputStream;
+import javax.crypto.CipherOutputStream;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.GeneralSecurityException;
+import java.security.spec.AlgorithmParameterSpec;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 有界的Cipher对象池，避免每个记录或每次类加载都通过Cipher.getInstance查找算法提供者。
+ * Cipher对象不是线程安全的，所以借出的对象在归还之前只会被一个调用方使用，包装成流的时候在流关闭时归还。
+ *
+ * @author Payne 646742615@qq.com
+ * 2018/12/13 16:40
+ */
+public class XCipherPool {
+    private final String algorithm;
+    private final int mode;
+    private final int capacity;
+    private final Queue<Cipher> ciphers = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private volatile SecretKeySpec keySpec;
+
+    /**
+     * 构造
+     *
+     * @param algorithm 算法名称
+     * @param mode      加密或解密模式，即 Cipher.ENCRYPT_MODE 或 Cipher.DECRYPT_MODE
+     */
+    public XCipherPool(String algorithm, int mode) {
+        this(algorithm, mode, Runtime.getRuntime().availableProcessors() * 2);
+    }
+
+    /**
+     * 构造
+     *
+     * @param algorithm 算法名称
+     * @param mode      加密或解密模式，即 Cipher.ENCRYPT_MODE 或 Cipher.DECRYPT_MODE
+     * @param capacity  池中最多保留的空闲对象数量
+     */
+    public XCipherPool(String algorithm, int mode, int capacity) {
+        this.algorithm = algorithm;
+        this.mode = mode;
+        this.capacity = capacity;
+    }
+
+    /**
+     * 借出一个已用指定密钥初始化的Cipher对象，用完后需要通过release归还。
+     * 每次借出都会重新初始化，保证不会残留上一次使用的状态，JDK的实现对同一个密钥的重复初始化做了缓存，开销很小。
+     *
+     * @param key 密钥
+     * @return 初始化好的Cipher对象
+     * @throws GeneralSecurityException 安全异常
+     */
+    public Cipher acquire(byte[] key) throws GeneralSecurityException {
+        return acquire(key, null);
+    }
+
+    /**
+     * 借出一个已用指定密钥及算法参数初始化的Cipher对象，用完后需要通过release归还。
+     *
+     * @param key    密钥
+     * @param params 算法参数，例如 GCM 模式每次使用不同的 GCMParameterSpec ，为 null 时不指定
+     * @return 初始化好的Cipher对象
+     * @throws GeneralSecurityException 安全异常
+     */
+    public Cipher acquire(byte[] key, AlgorithmParameterSpec params) throws GeneralSecurityException {
+        Cipher cipher = ciphers.poll();
+        if (cipher != null) {
+            size.decrementAndGet();
+        } else {
+            cipher = Cipher.getInstance(algorithm);
+        }
+        if (params != null) {
+            cipher.init(mode, keySpec(key), params);
+        } else {
+            cipher.init(mode, keySpec(key));
+        }
+        return cipher;
+    }
+
+    /**
+     * 归还Cipher对象，池已满时直接丢弃。
+     *
+     * @param cipher Cipher对象
+     */
+    public void release(Cipher cipher) {
+        if (size.incrementAndGet() <= capacity) {
+            ciphers.offer(cipher);
+        } else {
+            size.decrementAndGet();
+        }
+    }
+
+    /**
+     * 包装成加/解密输入流，流关闭时归还Cipher对象。
+     *
+     * @param key 密钥
+     * @param in  输入流
+     * @return 加/解密输入流
+     * @throws GeneralSecurityException 安全异常
+     */
+    public InputStream wrap(byte[] key, InputStream in) throws GeneralSecurityException {
+        return new XPooledCipherInputStream(in, acquire(key));
+    }
+
+    /**
+     * 包装成加/解密输出流，流关闭时归还Cipher对象。
+     *
+     * @param key 密钥
+     * @param out 输出流
+     * @return 加/解密输出流
+     * @throws GeneralSecurityException 安全异常
+     */
+    public OutputStream wrap(byte[] key, OutputStream out) throws GeneralSecurityException {
+        return new XPooledCipherOutputStream(out, acquire(key));
+    }
+
+    /**
+     * 包装成加/解密输入流，流关闭时归还Cipher对象。
+     *
+     * @param key    密钥
+     * @param params 算法参数，例如 CTR 模式的初始计数器
+     * @param in     输入流
+     * @return 加/解密输入流
+     * @throws GeneralSecurityException 安全异常
+     */
+    public InputStream wrap(byte[] key, AlgorithmParameterSpec params, InputStream in) throws GeneralSecurityException {
+        return new XPooledCipherInputStream(in, acquire(key, params));
+    }
+
+    /**
+     * 包装成加/解密输出流，流关闭时归还Cipher对象。
+     *
+     * @param key    密钥
+     * @param params 算法参数，例如 CTR 模式的初始计数器
+     * @param out    输出流
+     * @return 加/解密输出流
+     * @throws GeneralSecurityException 安全异常
+     */
+    public OutputStream wrap(byte[] key, AlgorithmParameterSpec params, OutputStream out) throws GeneralSecurityException {
+        return new XPooledCipherOutputStream(out, acquire(key, params));
+    }
+
+    /**
+     * @return 池中空闲的Cipher对象数量
+     */
+    public int getIdleCount() {
+        return size.get();
+    }
+
+    private SecretKeySpec keySpec(byte[] key) {
+        SecretKeySpec spec = keySpec;
+        if (spec == null || !Arrays.equals(spec.getEncoded(), key)) {
+            // 密钥只需要算法名称，不包含工作模式及填充方式，例如 AES/GCM/NoPadding 的密钥为 AES
+            keySpec = spec = new SecretKeySpec(key, algorithm.split("[/]")[0]);
+        }
+        return spec;
+    }
+
+    private class XPooledCipherInputStream extends CipherInputStream {
+        private final Cipher cipher;
+        private boolean closed;
+
+        XPooledCipherInputStream(InputStream in, Cipher cipher) {
+            super(in, cipher);
+            this.cipher = cipher;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                super.close();
+            } finally {
+                release(cipher);
+            }
+        }
+    }
+
+    private class XPooledCipherOutputStream extends CipherOutputStream {
+        private final Cipher cipher;
+        private boolean closed;
+
+        XPooledCipherOutputStream(OutputStream out, Cipher cipher) {
+            super(out, cipher);
+            this.cipher = cipher;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                super.close();
+            } finally {
+                release(cipher);
+            }
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package io.xjar;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+
+/**
+ * 记录压缩策略，按记录决定加密包中该记录的压缩方式及压缩级别。
+ * 增量加密通过 toString() 判断两次加密的策略是否相同，实现类需要返回描述其配置的稳定文本，否则每次都退化为完整加密。
+ *
+ * @author Payne 646742615@qq.com
+ * 2018/12/26 10:10
+ */
+public interface XCompressionPolicy {
+    /**
+     * 以 STORED 方式存储，不压缩
+     */
+    int STORED = 0;
+
+    /**
+     * 提供给策略的明文样本的最大长度
+     */
+    int SAMPLE_SIZE = 4 * 1024;
+
+    /**
+     * 决定记录的压缩级别
+     *
+     * @param entry     记录，通过流读取时其长度可能未知，为 -1
+     * @param encrypted 记录写出的是否为密文
+     * @param sample    记录开头的明文样本，没有样本时为 null
+     * @param length    样本长度
+     * @return {@link #STORED} 表示不压缩，否则为 Deflater 的压缩级别
+     */
+    int level(ZipArchiveEntry entry, boolean encrypted, byte[] sample, int length);
+
+}
@@ -0,0 +1,99 @@
+package io.xjar;
+
+import java.util.Locale;
+
+/**
+ * 压缩统计报告，按压缩级别汇总记录数量、压缩前后的长度及写出记录的耗时，
+ * 用于对比不同压缩级别花费的CPU时间与节省的空间。可以被多个线程同时记录。
+ *
+ * @author Payne 646742615@qq.com
+ * 2018/12/26 10:40
+ */
+public class XCompressionReport {
+    // 压缩级别 -1 ~ 9 ，其中 0 表示 STORED
+    private static final int MIN_LEVEL = -1;
+    private static final int MAX_LEVEL = 9;
+
+    private final long[] entries = new long[MAX_LEVEL - MIN_LEVEL + 1];
+    private final long[] sizes = new long[entries.length];
+    private final long[] compressedSizes = new long[entries.length];
+    private final long[] nanos = new long[entries.length];
+
+    /**
+     * 记录一个写出的记录
+     *
+     * @param level          压缩级别，{@link XCompressionPolicy#STORED} 表示不压缩
+     * @param size           压缩前的长度
+     * @param compressedSize 压缩后的长度
+     * @param nanos          写出该记录的耗时，单位纳秒
+     */
+    public synchronized void record(int level, long size, long compressedSize, long nanos) {
+        int i = Math.max(MIN_LEVEL, Math.min(MAX_LEVEL, level)) - MIN_LEVEL;
+        this.entries[i]++;
+        this.sizes[i] += size;
+        this.compressedSizes[i] += compressedSize;
+        this.nanos[i] += nanos;
+    }
+
+    /**
+     * @param level 压缩级别
+     * @return 该级别的记录数量
+     */
+    public synchronized long getEntries(int level) {
+        return entries[level - MIN_LEVEL];
+    }
+
+    /**
+     * @param level 压缩级别
+     * @return 该级别的记录压缩前的总长度
+     */
+    public synchronized long getSize(int level) {
+        return sizes[level - MIN_LEVEL];
+    }
+
+    /**
+     * @param level 压缩级别
+     * @return 该级别的记录压缩后的总长度
+     */
+    public synchronized long getCompressedSize(int level) {
+        return compressedSizes[level - MIN_LEVEL];
+    }
+
+    /**
+     * @param level 压缩级别
+     * @return 该级别的记录写出的总耗时，单位纳秒
+     */
+    public synchronized long getNanos(int level) {
+        return nanos[level - MIN_LEVEL];
+    }
+
+    /**
+     * 清空统计
+     */
+    public synchronized void reset() {
+        for (int i = 0; i < entries.length; i++) {
+            entries[i] = sizes[i] = compressedSizes[i] = nanos[i] = 0;
+        }
+    }
+
+    /**
+     * @return 每个压缩级别一行的统计表格，包括节省的空间及每毫秒节省的字节数
+     */
+    @Override
+    public synchronized String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format(Locale.ROOT, "%-8s %8s %14s %14s %14s %10s %12s%n", "level", "entries", "size", "compressed", "saved", "time(ms)", "saved/ms"));
+        for (int i = 0; i < entries.length; i++) {
+            if (entries[i] == 0) {
+                continue;
+            }
+            int level = i + MIN_LEVEL;
+            long saved = sizes[i] - compressedSizes[i];
+            double millis = nanos[i] / 1000000.0;
+            builder.append(String.format(Locale.ROOT, "%-8s %8d %14d %14d %14d %10.1f %12.0f%n",
+                    level == XCompressionPolicy.STORED ? "stored" : String.valueOf(level),
+                    entries[i], sizes[i], compressedSizes[i], saved, millis, millis > 0 ? saved / millis : 0.0));
+        }
+        return builder.toString();
+    }
+}
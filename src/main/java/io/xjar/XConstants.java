@@ -11,16 +11,33 @@ public interface XConstants {
     String XJAR_SRC_DIR = XConstants.class.getPackage().getName().replace('.', '/') + "/";
     String XJAR_INF_DIR = "XJAR-INF/";
     String XJAR_INF_IDX = "INDEXES.IDX";
+    String XJAR_INF_BIN = "INDEXES.BIN";
+    String XJAR_INF_LST = "PRELOAD.LST";
+    String SPRING_BOOT_LOADER = "org/springframework/boot/loader/";
     String CRLF = System.getProperty("line.separator");
 
     String XJAR_ALGORITHM = "--xjar.algorithm=";
     String XJAR_KEYSIZE = "--xjar.keysize=";
     String XJAR_IVSIZE = "--xjar.ivsize=";
     String XJAR_PASSWORD = "--xjar.password=";
+    String XJAR_RECORD = "--xjar.record=";
+    String XJAR_PRELOAD = "--xjar.preload=";
+    String XJAR_CACHE = "--xjar.cache=";
+    String XJAR_CACHE_DIRECT = "--xjar.cache.direct=";
+    String XJAR_BUFFER = "--xjar.buffer=";
+    String XJAR_VERBOSE = "--xjar.verbose=";
 
     String DEFAULT_ALGORITHM = "AES";
     int DEFAULT_KEYSIZE = 128;
     int DEFAULT_IVSIZE = 128;
+    int DEFAULT_SPILL_THRESHOLD = 8 * 1024 * 1024;
+    int DEFAULT_SPILL_BUDGET = 64 * 1024 * 1024;
+    long DEFAULT_PRELOAD_CAPACITY = 64 * 1024 * 1024;
+    int DEFAULT_CHUNK_SIZE = 64 * 1024;
+    int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    int DEFAULT_TRANSFER_SIZE = 8 * 1024;
+    int DEFAULT_SINGLE_PASS_SIZE = 8 * 1024;
+    String CHUNKED_ALGORITHM = "AES/GCM/NoPadding";
 
     String ASSIGN_FILE = "ASSIGN.FILE";
 
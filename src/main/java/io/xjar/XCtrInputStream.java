@@ -0,0 +1,175 @@
+package io.xjar;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+
+/**
+ * 计数器模式的解密输入流，第 n 个分组的计数器为初始计数器 + n ，所以任意位置的密钥流都可以直接算出，
+ * skip 时只跳过底层的密文再按新位置重新初始化Cipher，不需要解密中间的数据，底层流的 skip 为 O(1) 时整体也为 O(1) 。
+ * 密文以分组长度的随机初始计数器开头，之后与明文等长。
+ *
+ * @author Payne 646742615@qq.com
+ * 2018/12/20 9:40
+ */
+public class XCtrInputStream extends InputStream {
+    private final XCipherPool pool;
+    private final byte[] key;
+    private final InputStream in;
+    private final byte[] iv;
+    private final byte[] buffer = new byte[8192];
+    private Cipher cipher;
+    private long position;
+    private boolean closed;
+
+    /**
+     * 构造，从输入流读取初始计数器。
+     *
+     * @param pool      解密模式的Cipher对象池
+     * @param key       密钥
+     * @param blockSize 分组长度，即初始计数器的长度
+     * @param in        密文输入流
+     * @throws IOException I/O 异常
+     */
+    public XCtrInputStream(XCipherPool pool, byte[] key, int blockSize, InputStream in) throws IOException {
+        this.pool = pool;
+        this.key = key;
+        this.in = in;
+        this.iv = new byte[blockSize];
+        try {
+            int length = 0;
+            while (length < iv.length) {
+                int n = in.read(iv, length, iv.length - length);
+                if (n < 0) {
+                    throw new EOFException("truncated counter");
+                }
+                length += n;
+            }
+            this.cipher = pool.acquire(key, new IvParameterSpec(iv));
+        } catch (GeneralSecurityException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * @param algorithm 算法名称
+     * @return 分组长度，即初始计数器的长度
+     * @throws GeneralSecurityException 安全异常
+     */
+    public static int blockSize(String algorithm) throws GeneralSecurityException {
+        return Cipher.getInstance(algorithm).getBlockSize();
+    }
+
+    /**
+     * 计算指定分组的计数器，按大端序的无符号整数相加，溢出时回绕，与 JDK 的 CTR 实现一致。
+     *
+     * @param iv    初始计数器
+     * @param block 分组序号
+     * @return 计数器
+     */
+    public static byte[] counter(byte[] iv, long block) {
+        byte[] counter = iv.clone();
+        long carry = block;
+        for (int i = counter.length - 1; i >= 0 && carry != 0; i--) {
+            long sum = (counter[i] & 0xFF) + (carry & 0xFF);
+            counter[i] = (byte) sum;
+            carry = (carry >>> 8) + (sum >>> 8);
+        }
+        return counter;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        int n = in.read(buffer, 0, Math.min(len, buffer.length));
+        if (n < 0) {
+            return -1;
+        }
+        try {
+            int m = cipher.update(buffer, 0, n, b, off);
+            position += m;
+            return m;
+        } catch (GeneralSecurityException e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        if (n <= 0) {
+            return 0;
+        }
+        long skipped = 0;
+        while (skipped < n) {
+            long s = in.skip(n - skipped);
+            if (s <= 0) {
+                if (in.read() < 0) {
+                    break;
+                }
+                s = 1;
+            }
+            skipped += s;
+        }
+        seek(position + skipped);
+        return skipped;
+    }
+
+    /**
+     * 按新位置重新初始化Cipher，并丢弃分组内已跳过的密钥流。
+     *
+     * @param position 新位置
+     * @throws IOException I/O 异常
+     */
+    private void seek(long position) throws IOException {
+        try {
+            pool.release(cipher);
+            cipher = null;
+            cipher = pool.acquire(key, new IvParameterSpec(counter(iv, position / iv.length)));
+            int remainder = (int) (position % iv.length);
+            if (remainder > 0) {
+                cipher.update(new byte[remainder]);
+            }
+            this.position = position;
+        } catch (GeneralSecurityException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * @return 当前位置，即已读取及跳过的明文字节数
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return in.available();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            in.close();
+        } finally {
+            if (cipher != null) {
+                pool.release(cipher);
+            }
+        }
+    }
+}
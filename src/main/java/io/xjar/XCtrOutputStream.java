@@ -0,0 +1,78 @@
+package io.xjar;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * 计数器模式的解密输出流，先收集密文开头的初始计数器，再由子类据此打开真正的解密输出流。
+ *
+ * @author Payne 646742615@qq.com
+ * 2018/12/21 9:30
+ */
+public abstract class XCtrOutputStream extends OutputStream {
+    private final OutputStream out;
+    private final byte[] iv;
+    private int length;
+    private OutputStream cos;
+
+    /**
+     * 构造
+     *
+     * @param out       明文输出流
+     * @param blockSize 分组长度，即初始计数器的长度
+     */
+    protected XCtrOutputStream(OutputStream out, int blockSize) {
+        this.out = out;
+        this.iv = new byte[blockSize];
+    }
+
+    /**
+     * 打开解密输出流
+     *
+     * @param iv 初始计数器
+     * @return 解密输出流
+     * @throws IOException I/O 异常
+     */
+    protected abstract OutputStream open(byte[] iv) throws IOException;
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (cos == null) {
+            int n = Math.min(len, iv.length - length);
+            System.arraycopy(b, off, iv, length, n);
+            length += n;
+            off += n;
+            len -= n;
+            if (length < iv.length) {
+                return;
+            }
+            cos = open(iv);
+        }
+        if (len > 0) {
+            cos.write(b, off, len);
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        (cos != null ? cos : out).flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (cos != null) {
+            cos.close();
+            return;
+        }
+        out.close();
+        if (length > 0) {
+            throw new EOFException("truncated counter");
+        }
+    }
+}
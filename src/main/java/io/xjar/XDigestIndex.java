@@ -0,0 +1,246 @@
+package io.xjar;
+
+import io.xjar.key.XKey;
+
+import java.io.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 加密包旁边的源文件摘要清单，记录上一次加密时每个被加密记录的原文CRC、长度、原文包中该记录压缩后数据的SHA-256摘要及密文记录的CRC，
+ * 以及加密算法、密钥指纹、压缩级别和压缩策略，增量加密时原文没有变化的记录可以直接原样复制上一次的密文，不需要重新加密及压缩。
+ * 密文记录的CRC保证清单与加密包是对应的，加密包被其他方式重新生成后清单中的记录不会被误用。
+ * 压缩级别或压缩策略变化后复用的密文记录的压缩方式会与本次的设置不一致，因此整个清单都不能复用。
+ * <p>
+ * 格式为 UTF-8 文本，第一行为 XJAR-DIGEST 版本号，随后为 algorithm 、 key 及 compression 三行，每个记录一行：
+ * <pre>
+ * 原文CRC(十六进制) 原文长度 压缩数据SHA-256(十六进制) 密文记录CRC(十六进制) 名称
+ * </pre>
+ *
+ * @author Payne 646742615@qq.com
+ * 2018/12/24 10:30
+ */
+public class XDigestIndex {
+    public static final String SUFFIX = ".digest";
+    public static final String DIGEST_ALGORITHM = "SHA-256";
+
+    private static final String MAGIC = "XJAR-DIGEST";
+    private static final int VERSION = 2;
+
+    private final String algorithm;
+    private final String fingerprint;
+    private final String compression;
+    private final Map<String, Digest> digests = new LinkedHashMap<>();
+
+    /**
+     * 构造
+     *
+     * @param key               密钥
+     * @param level             压缩级别
+     * @param compressionPolicy 记录压缩策略，可以为 null
+     * @throws IOException 不支持SHA-256时抛出
+     */
+    public XDigestIndex(XKey key, int level, XCompressionPolicy compressionPolicy) throws IOException {
+        this(key.getAlgorithm(), fingerprint(key), compression(level, compressionPolicy));
+    }
+
+    private XDigestIndex(String algorithm, String fingerprint, String compression) {
+        this.algorithm = algorithm;
+        this.fingerprint = fingerprint;
+        this.compression = compression;
+    }
+
+    /**
+     * @param file 加密包
+     * @return 加密包对应的摘要清单文件
+     */
+    public static File of(File file) {
+        return new File(file.getPath() + SUFFIX);
+    }
+
+    /**
+     * 读取摘要清单
+     *
+     * @param file 摘要清单文件
+     * @return 摘要清单，文件不存在或者为旧版本的清单时返回 null
+     * @throws IOException I/O 异常或格式错误
+     */
+    public static XDigestIndex load(File file) throws IOException {
+        if (!file.isFile()) {
+            return null;
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"))) {
+            String header = reader.readLine();
+            if (header == null || !header.startsWith(MAGIC + " ")) {
+                throw new IOException("unsupported xjar digest file: " + file);
+            }
+            // 旧版本的清单没有记录压缩设置，不能复用
+            if (!header.equals(MAGIC + " " + VERSION)) {
+                return null;
+            }
+            String algorithm = value(reader.readLine(), "algorithm", file);
+            String fingerprint = value(reader.readLine(), "key", file);
+            String compression = value(reader.readLine(), "compression", file);
+            XDigestIndex index = new XDigestIndex(algorithm, fingerprint, compression);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                String[] fields = line.split(" ", 5);
+                if (fields.length != 5) {
+                    throw new IOException("illegal xjar digest line: " + line);
+                }
+                index.add(new Digest(fields[4], Long.parseLong(fields[0], 16), Long.parseLong(fields[1]), hex(fields[2]), Long.parseLong(fields[3], 16)));
+            }
+            return index;
+        }
+    }
+
+    /**
+     * 写出摘要清单
+     *
+     * @param file 摘要清单文件
+     * @throws IOException I/O 异常
+     */
+    public void write(File file) throws IOException {
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"))) {
+            writer.write(MAGIC + " " + VERSION + "\n");
+            writer.write("algorithm " + algorithm + "\n");
+            writer.write("key " + fingerprint + "\n");
+            writer.write("compression " + compression + "\n");
+            for (Digest digest : digests.values()) {
+                writer.write(Long.toHexString(digest.crc) + " " + digest.size + " " + hex(digest.hash) + " " + Long.toHexString(digest.cipherCrc) + " " + digest.name + "\n");
+            }
+        }
+    }
+
+    /**
+     * @param key               密钥
+     * @param level             压缩级别
+     * @param compressionPolicy 记录压缩策略，可以为 null
+     * @return 是否为同一个算法、密钥及压缩设置生成的清单，不是时其记录的密文不能复用
+     * @throws IOException 不支持SHA-256时抛出
+     */
+    public boolean matches(XKey key, int level, XCompressionPolicy compressionPolicy) throws IOException {
+        return algorithm.equals(key.getAlgorithm())
+                && fingerprint.equals(fingerprint(key))
+                && compression.equals(compression(level, compressionPolicy));
+    }
+
+    public synchronized void add(Digest digest) {
+        digests.put(digest.name, digest);
+    }
+
+    public synchronized Digest get(String name) {
+        return digests.get(name);
+    }
+
+    /**
+     * 计算输入流剩余内容的摘要，不关闭输入流。
+     *
+     * @param in 输入流
+     * @return SHA-256 摘要
+     * @throws IOException I/O 异常
+     */
+    public static byte[] digest(InputStream in) throws IOException {
+        MessageDigest md = messageDigest();
+        XBufferPool pool = XKit.getBufferPool();
+        byte[] buffer = pool.acquire();
+        try {
+            int length;
+            while ((length = in.read(buffer)) != -1) {
+                md.update(buffer, 0, length);
+            }
+            return md.digest();
+        } finally {
+            pool.release(buffer);
+        }
+    }
+
+    static MessageDigest messageDigest() throws IOException {
+        try {
+            return MessageDigest.getInstance(DIGEST_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+    }
+
+    // 密钥的指纹，只用于判断两次加密是否使用同一个密钥
+    static String fingerprint(XKey key) throws IOException {
+        MessageDigest md = messageDigest();
+        md.update(MAGIC.getBytes("UTF-8"));
+        md.update(key.getEncryptKey());
+        return hex(md.digest());
+    }
+
+    // 压缩设置的标识，压缩策略以其 toString() 标识，没有覆盖 toString() 的策略每次都不同，因此不会复用
+    static String compression(int level, XCompressionPolicy compressionPolicy) {
+        String policy = compressionPolicy != null ? compressionPolicy.toString().replace('\n', ' ') : "-";
+        return level + " " + policy;
+    }
+
+    private static String value(String line, String name, File file) throws IOException {
+        if (line == null || !line.startsWith(name + " ")) {
+            throw new IOException("missing " + name + " in xjar digest file: " + file);
+        }
+        return line.substring(name.length() + 1);
+    }
+
+    static String hex(byte[] bytes) {
+        StringBuilder builder = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return builder.toString();
+    }
+
+    private static byte[] hex(String hex) {
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(hex.substring(i * 2, i * 2 + 2), 16);
+        }
+        return bytes;
+    }
+
+    /**
+     * 单个记录的原文摘要
+     */
+    public static class Digest {
+        private final String name;
+        private final long crc;
+        private final long size;
+        private final byte[] hash;
+        private final long cipherCrc;
+
+        public Digest(String name, long crc, long size, byte[] hash, long cipherCrc) {
+            this.name = name;
+            this.crc = crc;
+            this.size = size;
+            this.hash = hash;
+            this.cipherCrc = cipherCrc;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getCrc() {
+            return crc;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public byte[] getHash() {
+            return hash;
+        }
+
+        public long getCipherCrc() {
+            return cipherCrc;
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package io.xjar;
 
+import java.io.File;
+
 /**
  * 记录可过滤的解密器
  *
@@ -9,6 +11,8 @@ package io.xjar;
 public abstract class XEntryDecryptor<E> extends XWrappedDecryptor implements XDecryptor, XEntryFilter<E> {
     protected final XEntryFilter<E> filter;
     protected final XNopDecryptor xNopDecryptor = new XNopDecryptor();
+    // 溢出的临时文件所在的文件夹，为 null 时使用系统的临时文件夹
+    protected File spillDirectory;
 
     protected XEntryDecryptor(XDecryptor xDecryptor) {
         this(xDecryptor, null);
@@ -19,6 +23,22 @@ public abstract class XEntryDecryptor<E> extends XWrappedDecryptor implements XD
         this.filter = filter;
     }
 
+    /**
+     * @return 溢出的临时文件所在的文件夹，为 null 时使用系统的临时文件夹
+     */
+    public File getSpillDirectory() {
+        return spillDirectory;
+    }
+
+    /**
+     * 设置溢出的临时文件所在的文件夹，临时文件中是解密后的原文数据，应当放在其他用户无法访问的位置。
+     *
+     * @param spillDirectory 溢出的临时文件所在的文件夹，为 null 时使用系统的临时文件夹
+     */
+    public void setSpillDirectory(File spillDirectory) {
+        this.spillDirectory = spillDirectory;
+    }
+
     @Override
     public boolean filtrate(E entry) {
         return filter == null || filter.filtrate(entry);
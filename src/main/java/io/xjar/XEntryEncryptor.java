@@ -1,5 +1,16 @@
 package io.xjar;
 
+import io.xjar.dir.XDirLayout;
+import io.xjar.key.XKey;
+import org.apache.commons.compress.archivers.jar.JarArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.*;
+
 /**
  * 记录可过滤的加密器
  *
@@ -9,18 +20,512 @@ package io.xjar;
 public abstract class XEntryEncryptor<E> extends XWrappedEncryptor implements XEncryptor, XEntryFilter<E> {
     protected final XEntryFilter<E> filter;
     protected final XNopEncryptor xNopEncryptor = new XNopEncryptor();
+    // 记录压缩策略，为 null 时所有记录都按统一的压缩级别压缩
+    protected XCompressionPolicy compressionPolicy;
+    protected final XCompressionReport compressionReport = new XCompressionReport();
+    // 缓冲记录数据时使用的内存预算，为 null 时每个缓冲单独使用默认的内存上限
+    protected final XSpillBudget spillBudget;
+    // 溢出的临时文件所在的文件夹，为 null 时使用系统的临时文件夹
+    protected File spillDirectory;
 
     protected XEntryEncryptor(XEncryptor xEncryptor) {
         this(xEncryptor, null);
     }
 
     protected XEntryEncryptor(XEncryptor xEncryptor, XEntryFilter<E> filter) {
+        this(xEncryptor, filter, null);
+    }
+
+    protected XEntryEncryptor(XEncryptor xEncryptor, XEntryFilter<E> filter, XCompressionPolicy compressionPolicy) {
+        this(xEncryptor, filter, compressionPolicy, null);
+    }
+
+    protected XEntryEncryptor(XEncryptor xEncryptor, XEntryFilter<E> filter, XCompressionPolicy compressionPolicy, XSpillBudget spillBudget) {
         super(xEncryptor);
         this.filter = filter;
+        this.compressionPolicy = compressionPolicy;
+        this.spillBudget = spillBudget;
+    }
+
+    /**
+     * @return 记录压缩策略，为 null 时所有记录都按统一的压缩级别压缩
+     */
+    public XCompressionPolicy getCompressionPolicy() {
+        return compressionPolicy;
+    }
+
+    /**
+     * 设置记录压缩策略
+     *
+     * @param compressionPolicy 记录压缩策略，为 null 时所有记录都按统一的压缩级别压缩
+     */
+    public void setCompressionPolicy(XCompressionPolicy compressionPolicy) {
+        this.compressionPolicy = compressionPolicy;
+    }
+
+    /**
+     * @return 溢出的临时文件所在的文件夹，为 null 时使用系统的临时文件夹
+     */
+    public File getSpillDirectory() {
+        return spillDirectory;
+    }
+
+    /**
+     * 设置溢出的临时文件所在的文件夹，临时文件中是原文数据，应当放在其他用户无法访问的位置。
+     * 共享的内存预算自带溢出文件夹，此时以预算的设置为准。
+     *
+     * @param spillDirectory 溢出的临时文件所在的文件夹，为 null 时使用系统的临时文件夹
+     */
+    public void setSpillDirectory(File spillDirectory) {
+        this.spillDirectory = spillDirectory;
+    }
+
+    /**
+     * @return 新的记录数据缓冲
+     */
+    protected XSpillOutputStream buffer() {
+        return spillBudget != null ? new XSpillOutputStream(spillBudget) : new XSpillOutputStream(XConstants.DEFAULT_SPILL_THRESHOLD, spillDirectory);
+    }
+
+    /**
+     * 加密并写出一个记录，同时统计明文长度、明文CRC及密文长度作为该记录的索引。
+     *
+     * @param key   密钥
+     * @param zos   输出流
+     * @param entry 记录
+     * @param in    记录的明文输入流
+     * @return 记录的索引
+     * @throws IOException I/O 异常
+     */
+    protected XIndex.Record encrypt(XKey key, ZipArchiveOutputStream zos, ZipArchiveEntry entry, InputStream in) throws IOException {
+        long length = entry.getSize();
+        CRC32 crc = new CRC32();
+        byte[] bytes = encrypt(key, entry, in, crc);
+        zos.putArchiveEntry(entry);
+        if (bytes != null) {
+            zos.write(bytes);
+        } else {
+            try (OutputStream eos = xEncryptor.encrypt(key, new XUnclosedOutputStream(zos))) {
+                length = XKit.transfer(new CheckedInputStream(in, crc), eos, false);
+            }
+        }
+        zos.closeArchiveEntry();
+        // 压缩的记录在关闭后其长度即为写入的密文长度
+        return new XIndex.Record(entry.getName(), length, entry.getSize(), crc.getValue(), key.getAlgorithm());
+    }
+
+    /**
+     * 按压缩策略加密并写出一个记录，同时统计明文长度、明文CRC及密文长度作为该记录的索引。
+     * 策略决定不压缩时密文先写入缓冲再以 STORED 方式写出。
+     *
+     * @param key   密钥
+     * @param zos   输出流
+     * @param entry 记录
+     * @param in    记录的明文输入流
+     * @param level 输出流的默认压缩级别，写出后恢复为该级别
+     * @return 记录的索引
+     * @throws IOException I/O 异常
+     */
+    protected XIndex.Record encrypt(XKey key, ZipArchiveOutputStream zos, ZipArchiveEntry entry, InputStream in, int level) throws IOException {
+        int compression = compressionPolicy != null ? compressionPolicy.level(entry, true, null, 0) : level;
+        long start = System.nanoTime();
+        long length = entry.getSize();
+        CRC32 crc = new CRC32();
+        byte[] bytes = encrypt(key, entry, in, crc);
+        if (compression == XCompressionPolicy.STORED) {
+            XSpillOutputStream sos = buffer();
+            try {
+                if (bytes != null) {
+                    sos.write(bytes);
+                    sos.close();
+                } else {
+                    try (OutputStream eos = xEncryptor.encrypt(key, sos)) {
+                        length = XKit.transfer(new CheckedInputStream(in, crc), eos, false);
+                    }
+                }
+                write(zos, entry, sos, compression, level);
+            } finally {
+                sos.delete();
+            }
+        } else {
+            zos.setLevel(compression);
+            zos.putArchiveEntry(entry);
+            if (bytes != null) {
+                zos.write(bytes);
+            } else {
+                try (OutputStream eos = xEncryptor.encrypt(key, new XUnclosedOutputStream(zos))) {
+                    length = XKit.transfer(new CheckedInputStream(in, crc), eos, false);
+                }
+            }
+            zos.closeArchiveEntry();
+            zos.setLevel(level);
+        }
+        compressionReport.record(compression, entry.getSize(), entry.getCompressedSize(), System.nanoTime() - start);
+        return new XIndex.Record(entry.getName(), length, entry.getSize(), crc.getValue(), key.getAlgorithm());
+    }
+
+    /**
+     * 明文长度已知且不超过 {@link XConstants#DEFAULT_SINGLE_PASS_SIZE} 并且加密器支持字节数组加密时，
+     * 按明文长度一次性读入后通过一次 doFinal 加密，省去加密流的包装及多次 update ，否则返回 null 由调用方走流式加密。
+     *
+     * @param key   密钥
+     * @param entry 记录
+     * @param in    记录的明文输入流
+     * @param crc   明文的CRC，一次性加密时累加读入的明文
+     * @return 密文，不适用时返回 null
+     * @throws IOException I/O 异常
+     */
+    protected byte[] encrypt(XKey key, ZipArchiveEntry entry, InputStream in, CRC32 crc) throws IOException {
+        long size = entry.getSize();
+        if (!(xEncryptor instanceof XBytesEncryptor) || size < 0 || size > XConstants.DEFAULT_SINGLE_PASS_SIZE) {
+            return null;
+        }
+        byte[] plain = XKit.read(in, (int) size);
+        crc.update(plain, 0, plain.length);
+        return ((XBytesEncryptor) xEncryptor).encrypt(key, plain, 0, plain.length);
+    }
+
+    /**
+     * 按压缩策略写出一个不需要加密的记录，策略根据记录开头的明文样本判断是否值得压缩。
+     *
+     * @param zos   输出流
+     * @param entry 记录
+     * @param in    记录的输入流
+     * @param level 输出流的默认压缩级别，写出后恢复为该级别
+     * @throws IOException I/O 异常
+     */
+    protected void copy(ZipArchiveOutputStream zos, ZipArchiveEntry entry, InputStream in, int level) throws IOException {
+        int compression = level;
+        if (compressionPolicy != null) {
+            byte[] sample = new byte[XCompressionPolicy.SAMPLE_SIZE];
+            int length = 0;
+            int n;
+            while (length < sample.length && (n = in.read(sample, length, sample.length - length)) != -1) {
+                length += n;
+            }
+            compression = compressionPolicy.level(entry, false, sample, length);
+            // SequenceInputStream 读完后会关闭其中的流
+            in = new SequenceInputStream(new ByteArrayInputStream(sample, 0, length), new XUnclosedInputStream(in));
+        }
+        long start = System.nanoTime();
+        if (compression == XCompressionPolicy.STORED) {
+            XSpillOutputStream sos = buffer();
+            try {
+                XKit.transfer(in, sos, false);
+                sos.close();
+                write(zos, entry, sos, compression, level);
+            } finally {
+                sos.delete();
+            }
+        } else {
+            zos.setLevel(compression);
+            zos.putArchiveEntry(entry);
+            XKit.transfer(in, zos, false);
+            zos.closeArchiveEntry();
+            zos.setLevel(level);
+        }
+        compressionReport.record(compression, entry.getSize(), entry.getCompressedSize(), System.nanoTime() - start);
+    }
+
+    /**
+     * 写出已经缓冲好的记录数据，不压缩时以 STORED 方式原样写出，否则按指定的压缩级别压缩后写出。
+     *
+     * @param zos         输出流
+     * @param entry       记录
+     * @param sos         已关闭的记录数据缓冲
+     * @param compression 记录的压缩级别，{@link XCompressionPolicy#STORED} 表示不压缩
+     * @param level       输出流的默认压缩级别，写出后恢复为该级别
+     * @throws IOException I/O 异常
+     */
+    protected static void write(ZipArchiveOutputStream zos, ZipArchiveEntry entry, XSpillOutputStream sos, int compression, int level) throws IOException {
+        if (compression == XCompressionPolicy.STORED) {
+            entry.setMethod(ZipArchiveEntry.STORED);
+            entry.setSize(sos.getSize());
+            entry.setCompressedSize(sos.getSize());
+            entry.setCrc(sos.getCrc());
+            try (InputStream in = sos.getInputStream()) {
+                zos.addRawArchiveEntry(entry, in);
+            }
+        } else {
+            zos.setLevel(compression);
+            zos.putArchiveEntry(entry);
+            sos.writeTo(zos);
+            zos.closeArchiveEntry();
+            zos.setLevel(level);
+        }
+    }
+
+    /**
+     * 出错时停止线程池，还没有开始的任务被丢弃并取消，它们永远不会完成，清理时不能等待其结果；
+     * 已经开始的任务会被中断并很快结束，仍然可以等待其结果以清理占用的临时文件。
+     *
+     * @param executor 线程池
+     */
+    protected static void abort(ExecutorService executor) {
+        for (Runnable runnable : executor.shutdownNow()) {
+            if (runnable instanceof Future<?>) {
+                ((Future<?>) runnable).cancel(false);
+            }
+        }
+    }
+
+    /**
+     * 多线程地把构建目录布局中的文件加密及压缩后写出，文件在线程池中并行读取、加密及压缩，再按记录名称的顺序写出，
+     * 不经过中间的原文包，省去打包时的压缩及加密时的解压。布局中的清单文件由调用方处理，这里会跳过。
+     * 需要加密的嵌套JAR包整体交给 jarEncryptor 处理，与从原文包加密时的结果相同，为 null 时作为普通资源加密。
+     *
+     * @param key          密钥
+     * @param layout       构建目录布局
+     * @param filter       过滤器，决定记录是否需要加密
+     * @param jarEncryptor 需要加密的嵌套JAR包的加密器，为 null 时嵌套JAR包作为普通资源加密
+     * @param zos          加密包输出流
+     * @param level        默认压缩级别
+     * @param budget       所有在途记录共用的内存预算，超过后溢出到临时文件
+     * @param threads      线程数
+     * @return 加密资源索引
+     * @throws IOException I/O 异常
+     */
+    protected List<XIndex.Record> encrypt(final XKey key, XDirLayout layout, XEntryFilter<JarArchiveEntry> filter, final XEncryptor jarEncryptor, ZipArchiveOutputStream zos, final int level, final XSpillBudget budget, int threads) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(threads, 1));
+        Deque<Future<XEncoded>> futures = new ArrayDeque<>();
+        List<XIndex.Record> indexes = new ArrayList<>();
+        try {
+            // 限制同时在途的记录数量，避免已加密但未写出的记录过多占用内存
+            int window = Math.max(threads, 1) * 4;
+            Iterator<Map.Entry<String, File>> iterator = layout.getFiles().entrySet().iterator();
+            while (iterator.hasNext() || !futures.isEmpty()) {
+                while (iterator.hasNext() && futures.size() < window) {
+                    Map.Entry<String, File> next = iterator.next();
+                    if (next.getKey().equals(XConstants.META_INF_MANIFEST)) {
+                        continue;
+                    }
+                    final File file = next.getValue();
+                    final JarArchiveEntry entry = new JarArchiveEntry(next.getKey());
+                    entry.setTime(file.lastModified());
+                    if (!entry.isDirectory()) entry.setSize(file.length());
+                    final boolean filtered = !entry.isDirectory() && filter.filtrate(entry);
+                    futures.add(executor.submit(new Callable<XEncoded>() {
+                        @Override
+                        public XEncoded call() throws Exception {
+                            return encode(key, entry, file, filtered, jarEncryptor, level, budget);
+                        }
+                    }));
+                }
+                Future<XEncoded> future = futures.poll();
+                if (future == null) {
+                    break;
+                }
+                XEncoded encoded = future.get();
+                if (encoded.index != null) {
+                    indexes.add(encoded.index);
+                }
+                encoded.writeTo(zos);
+            }
+            return indexes;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(e.getMessage());
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        } finally {
+            abort(executor);
+            // 出错时清理已经完成但未写出的记录所占用的临时文件，被取消的任务没有开始，也没有临时文件
+            for (Future<XEncoded> future : futures) {
+                if (future.isCancelled()) {
+                    continue;
+                }
+                try {
+                    future.get().delete();
+                } catch (Exception e) {
+                    // ignored
+                }
+            }
+        }
+    }
+
+    /**
+     * 读取文件并加密及压缩成可以原样写出的记录，嵌套JAR包以 STORED 方式存储，其余记录按压缩策略压缩。
+     */
+    private XEncoded encode(XKey key, JarArchiveEntry entry, File file, boolean filtered, XEncryptor jarEncryptor, int level, XSpillBudget budget) throws IOException {
+        if (entry.isDirectory()) {
+            return new XEncoded(entry);
+        }
+        try (InputStream in = new FileInputStream(file)) {
+            if (filtered && jarEncryptor != null && entry.getName().endsWith(".jar")) {
+                return encode(key, entry, in, jarEncryptor, budget);
+            }
+            return encode(key, entry, in, filtered, level, budget);
+        }
+    }
+
+    /**
+     * 把需要加密的嵌套JAR包整体交给 jarEncryptor 加密，结果以 STORED 方式存储，不依赖输出流，因此可以在任意线程中并行执行。
+     *
+     * @param key          密钥
+     * @param entry        记录
+     * @param in           嵌套JAR包的原文输入流，不会被关闭
+     * @param jarEncryptor 嵌套JAR包的加密器
+     * @param budget       缓冲的内存预算，不足时溢出到临时文件
+     * @return 加密完成的记录
+     * @throws IOException I/O 异常
+     */
+    protected XEncoded encode(XKey key, JarArchiveEntry entry, InputStream in, XEncryptor jarEncryptor, XSpillBudget budget) throws IOException {
+        XSpillOutputStream sos = new XSpillOutputStream(budget);
+        try {
+            jarEncryptor.encrypt(key, new XUnclosedInputStream(in), sos);
+            sos.close();
+        } catch (IOException | RuntimeException e) {
+            sos.delete();
+            throw e;
+        }
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(sos.getSize());
+        entry.setCompressedSize(sos.getSize());
+        entry.setCrc(sos.getCrc());
+        // 嵌套JAR包整体加密，明文长度未知
+        return new XEncoded(entry, sos, new XIndex.Record(entry.getName(), -1, sos.getSize(), 0, key.getAlgorithm()));
+    }
+
+    /**
+     * 加密及压缩成可以通过 {@link XEncoded#writeTo(ZipArchiveOutputStream)} 原样写出的记录，
+     * 嵌套JAR包以 STORED 方式存储，其余记录按压缩策略压缩，不依赖输出流，因此可以在任意线程中并行执行。
+     *
+     * @param key       密钥
+     * @param entry     记录，目录记录直接返回
+     * @param in        原文输入流，不会被关闭
+     * @param filtered  是否需要加密
+     * @param level     默认压缩级别
+     * @param budget    缓冲的内存预算，不足时溢出到临时文件
+     * @return 加密及压缩完成的记录
+     * @throws IOException I/O 异常
+     */
+    protected XEncoded encode(XKey key, JarArchiveEntry entry, InputStream in, boolean filtered, int level, XSpillBudget budget) throws IOException {
+        XEncoded encoded = new XEncoded(entry);
+        if (entry.isDirectory()) {
+            return encoded;
+        }
+        long start = System.nanoTime();
+        XSpillOutputStream sos = new XSpillOutputStream(budget);
+        int compression;
+        try {
+            InputStream source = in;
+            if (entry.getName().endsWith(".jar")) {
+                compression = XCompressionPolicy.STORED;
+            } else if (compressionPolicy == null) {
+                compression = level;
+            } else if (filtered) {
+                compression = compressionPolicy.level(entry, true, null, 0);
+            } else {
+                byte[] sample = new byte[XCompressionPolicy.SAMPLE_SIZE];
+                int length = 0;
+                int n;
+                while (length < sample.length && (n = in.read(sample, length, sample.length - length)) != -1) {
+                    length += n;
+                }
+                compression = compressionPolicy.level(entry, false, sample, length);
+                source = new SequenceInputStream(new ByteArrayInputStream(sample, 0, length), new XUnclosedInputStream(in));
+            }
+            Deflater deflater = compression == XCompressionPolicy.STORED ? null : new Deflater(compression, true);
+            try {
+                CheckedOutputStream cos = new CheckedOutputStream(deflater != null ? new DeflaterOutputStream(sos, deflater) : sos, new CRC32());
+                long length = entry.getSize();
+                CRC32 crc = new CRC32();
+                byte[] bytes = filtered ? encrypt(key, entry, source, crc) : null;
+                if (bytes != null) {
+                    cos.write(bytes);
+                } else {
+                    XEncryptor encryptor = filtered ? xEncryptor : xNopEncryptor;
+                    try (OutputStream eos = encryptor.encrypt(key, new XUnclosedOutputStream(cos))) {
+                        length = XKit.transfer(new CheckedInputStream(source, crc), eos, false);
+                    }
+                }
+                cos.close();
+                entry.setMethod(deflater != null ? ZipEntry.DEFLATED : ZipEntry.STORED);
+                entry.setCrc(cos.getChecksum().getValue());
+                entry.setSize(deflater != null ? deflater.getBytesRead() : sos.getSize());
+                entry.setCompressedSize(sos.getSize());
+                if (filtered) encoded.index = new XIndex.Record(entry.getName(), length, entry.getSize(), crc.getValue(), key.getAlgorithm());
+            } finally {
+                if (deflater != null) deflater.end();
+            }
+        } catch (IOException | RuntimeException e) {
+            sos.delete();
+            throw e;
+        }
+        encoded.data = sos;
+        compressionReport.record(compression, entry.getSize(), entry.getCompressedSize(), System.nanoTime() - start);
+        return encoded;
+    }
+
+    /**
+     * @return 本加密器写出的记录的压缩统计，多次加密时累计
+     */
+    public XCompressionReport getCompressionReport() {
+        return compressionReport;
     }
 
     @Override
     public boolean filtrate(E entry) {
         return filter == null || filter.filtrate(entry);
     }
+
+    /**
+     * 加密及压缩完成的记录
+     */
+    protected static class XEncoded {
+        private final JarArchiveEntry entry;
+        private XSpillOutputStream data;
+        private XIndex.Record index;
+
+        XEncoded(JarArchiveEntry entry) {
+            this.entry = entry;
+        }
+
+        /**
+         * 构造
+         *
+         * @param entry 已设置好压缩方式、CRC及长度的记录
+         * @param data  已关闭的记录数据，原样写出
+         * @param index 加密资源索引，不需要加密时为 null
+         */
+        public XEncoded(JarArchiveEntry entry, XSpillOutputStream data, XIndex.Record index) {
+            this.entry = entry;
+            this.data = data;
+            this.index = index;
+        }
+
+        /**
+         * 原样写出记录并删除其数据，目录记录直接写出
+         *
+         * @param zos 加密包输出流
+         * @throws IOException I/O 异常
+         */
+        public void writeTo(ZipArchiveOutputStream zos) throws IOException {
+            if (data == null) {
+                zos.putArchiveEntry(entry);
+                zos.closeArchiveEntry();
+                return;
+            }
+            try (InputStream in = data.getInputStream()) {
+                zos.addRawArchiveEntry(entry, in);
+            } finally {
+                data.delete();
+            }
+        }
+
+        /**
+         * 删除记录的数据
+         */
+        public void delete() {
+            if (data != null) data.delete();
+        }
+
+        /**
+         * @return 加密资源索引，不需要加密时为 null
+         */
+        public XIndex.Record getIndex() {
+            return index;
+        }
+    }
 }
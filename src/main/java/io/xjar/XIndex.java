@@ -0,0 +1,379 @@
+package io.xjar;
+
+import java.io.*;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.*;
+
+/**
+ * 二进制的加密资源索引，运行时整体映射或读入一块缓冲区后直接在缓冲区上用开放寻址的哈希表查找，
+ * 不需要为每个记录创建对象，同时提供每个加密资源的明文长度、密文长度、明文CRC及加密算法。
+ * <p>
+ * 格式（大端序）：
+ * <pre>
+ * int     魔数 XIDX
+ * short   版本号
+ * byte    算法数量，随后每个算法为 short 长度 + UTF-8 名称
+ * int     记录数量
+ * int     槽位数量，为2的幂
+ * int[]   槽位，记录的绝对偏移量，空槽位为 -1
+ * 记录：int 名称哈希, long 明文长度, long 密文长度, int 明文CRC, byte 算法序号, short 名称长度, UTF-8 名称
+ * </pre>
+ * 长度未知时记为 -1 。
+ *
+ * @author Payne 646742615@qq.com
+ * 2018/12/14 10:12
+ */
+public class XIndex {
+    public static final int MAGIC = 0x58494458;
+    public static final short VERSION = 1;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int HASH = 0;
+    private static final int PLAIN_LENGTH = 4;
+    private static final int CIPHER_LENGTH = 12;
+    private static final int CRC = 20;
+    private static final int ALGORITHM = 24;
+    private static final int NAME_LENGTH = 25;
+    private static final int NAME = 27;
+
+    private final ByteBuffer buffer;
+    private final String[] algorithms;
+    private final int size;
+    private final int slots;
+    private final int table;
+
+    public XIndex(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        int position = 0;
+        if (buffer.getInt(position) != MAGIC) {
+            throw new IOException("not a xjar index");
+        }
+        position += 4;
+        short version = buffer.getShort(position);
+        if (version != VERSION) {
+            throw new IOException("unsupported xjar index version: " + version);
+        }
+        position += 2;
+        this.algorithms = new String[buffer.get(position) & 0xFF];
+        position += 1;
+        for (int i = 0; i < algorithms.length; i++) {
+            int length = buffer.getShort(position) & 0xFFFF;
+            position += 2;
+            byte[] bytes = new byte[length];
+            for (int j = 0; j < length; j++) {
+                bytes[j] = buffer.get(position + j);
+            }
+            algorithms[i] = new String(bytes, UTF_8);
+            position += length;
+        }
+        this.size = buffer.getInt(position);
+        position += 4;
+        this.slots = buffer.getInt(position);
+        position += 4;
+        this.table = position;
+    }
+
+    /**
+     * 加载索引，本地文件通过内存映射加载，否则一次性读入堆内缓冲区。
+     *
+     * @param url 索引资源
+     * @return 索引
+     * @throws IOException I/O 异常
+     */
+    public static XIndex load(URL url) throws IOException {
+        if ("file".equals(url.getProtocol())) {
+            File file;
+            try {
+                file = new File(url.toURI());
+            } catch (URISyntaxException e) {
+                throw new IOException(e);
+            }
+            try (FileChannel channel = new RandomAccessFile(file, "r").getChannel()) {
+                return new XIndex(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            }
+        }
+        try (InputStream in = url.openStream()) {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            XKit.transfer(in, bos, false);
+            return new XIndex(ByteBuffer.wrap(bos.toByteArray()));
+        }
+    }
+
+    /**
+     * 查找记录
+     *
+     * @param name 资源名称
+     * @return 记录的偏移量，不存在时返回 -1
+     */
+    public int find(String name) {
+        return find(name, 0, name.hashCode());
+    }
+
+    /**
+     * 以字符串的一个后缀作为资源名称查找记录，避免截取子串。
+     *
+     * @param path   包含资源名称的字符串
+     * @param offset 资源名称在字符串中的起始位置
+     * @return 记录的偏移量，不存在时返回 -1
+     */
+    public int find(String path, int offset) {
+        return find(path, offset, hash(path, offset));
+    }
+
+    /**
+     * 以字符串的一个后缀作为资源名称查找记录
+     *
+     * @param path   包含资源名称的字符串
+     * @param offset 资源名称在字符串中的起始位置
+     * @param hash   资源名称的哈希值，即 {@link #hash(String, int)} 的结果
+     * @return 记录的偏移量，不存在时返回 -1
+     */
+    public int find(String path, int offset, int hash) {
+        int mask = slots - 1;
+        for (int i = mix(hash) & mask, n = 0; n < slots; i = (i + 1) & mask, n++) {
+            int record = buffer.getInt(table + i * 4);
+            if (record < 0) {
+                return -1;
+            }
+            if (buffer.getInt(record + HASH) == hash && matches(record, path, offset)) {
+                return record;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 计算字符串后缀的哈希值，与该后缀的 String.hashCode() 相同。
+     *
+     * @param path   字符串
+     * @param offset 起始位置
+     * @return 哈希值
+     */
+    public static int hash(String path, int offset) {
+        int hash = 0;
+        for (int i = offset, n = path.length(); i < n; i++) {
+            hash = 31 * hash + path.charAt(i);
+        }
+        return hash;
+    }
+
+    /**
+     * @param name 资源名称
+     * @return 是否包含该资源
+     */
+    public boolean contains(String name) {
+        return find(name) >= 0;
+    }
+
+    /**
+     * @param record 记录偏移量
+     * @return 资源名称的哈希值
+     */
+    public int getHash(int record) {
+        return buffer.getInt(record + HASH);
+    }
+
+    /**
+     * @param record 记录偏移量
+     * @return 明文长度，未知时为 -1
+     */
+    public long getPlainLength(int record) {
+        return buffer.getLong(record + PLAIN_LENGTH);
+    }
+
+    /**
+     * @param record 记录偏移量
+     * @return 密文长度，未知时为 -1
+     */
+    public long getCipherLength(int record) {
+        return buffer.getLong(record + CIPHER_LENGTH);
+    }
+
+    /**
+     * @param record 记录偏移量
+     * @return 明文CRC
+     */
+    public long getCrc(int record) {
+        return buffer.getInt(record + CRC) & 0xFFFFFFFFL;
+    }
+
+    /**
+     * @param record 记录偏移量
+     * @return 加密算法
+     */
+    public String getAlgorithm(int record) {
+        return algorithms[buffer.get(record + ALGORITHM) & 0xFF];
+    }
+
+    /**
+     * @param record 记录偏移量
+     * @return 资源名称
+     */
+    public String getName(int record) {
+        int length = buffer.getShort(record + NAME_LENGTH) & 0xFFFF;
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = buffer.get(record + NAME + i);
+        }
+        return new String(bytes, UTF_8);
+    }
+
+    /**
+     * @return 所有记录的偏移量，按写入顺序排列
+     */
+    public int[] records() {
+        int[] records = new int[size];
+        int offset = table + slots * 4;
+        for (int i = 0; i < size; i++) {
+            records[i] = offset;
+            offset += NAME + (buffer.getShort(offset + NAME_LENGTH) & 0xFFFF);
+        }
+        return records;
+    }
+
+    /**
+     * @return 记录数量
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return 索引占用的字节数
+     */
+    public int capacity() {
+        return buffer.capacity();
+    }
+
+    private boolean matches(int record, String path, int offset) {
+        int length = buffer.getShort(record + NAME_LENGTH) & 0xFFFF;
+        int n = path.length() - offset;
+        for (int i = 0; i < n; i++) {
+            char c = path.charAt(offset + i);
+            // 非ASCII字符需要按UTF-8编码后再比较
+            if (c >= 0x80) {
+                return getName(record).equals(path.substring(offset));
+            }
+            if (i >= length || buffer.get(record + NAME + i) != c) {
+                return false;
+            }
+        }
+        return n == length;
+    }
+
+    private static int mix(int hash) {
+        hash ^= (hash >>> 16);
+        hash *= 0x85EBCA6B;
+        hash ^= (hash >>> 13);
+        return hash;
+    }
+
+    /**
+     * 写出二进制索引
+     *
+     * @param out     输出流
+     * @param records 记录
+     * @throws IOException I/O 异常
+     */
+    public static void write(OutputStream out, Collection<Record> records) throws IOException {
+        List<String> algorithms = new ArrayList<>();
+        List<byte[]> names = new ArrayList<>();
+        for (Record record : records) {
+            if (!algorithms.contains(record.algorithm)) {
+                algorithms.add(record.algorithm);
+            }
+            names.add(record.name.getBytes(UTF_8));
+        }
+        int header = 4 + 2 + 1 + 4 + 4;
+        for (String algorithm : algorithms) {
+            header += 2 + algorithm.getBytes(UTF_8).length;
+        }
+        int slots = 2;
+        while (slots < records.size() * 2) {
+            slots <<= 1;
+        }
+        int[] table = new int[slots];
+        Arrays.fill(table, -1);
+        int offset = header + slots * 4;
+        int index = 0;
+        for (Record record : records) {
+            int mask = slots - 1;
+            int i = mix(record.name.hashCode()) & mask;
+            while (table[i] >= 0) {
+                i = (i + 1) & mask;
+            }
+            table[i] = offset;
+            offset += NAME + names.get(index++).length;
+        }
+
+        DataOutputStream dos = new DataOutputStream(out);
+        dos.writeInt(MAGIC);
+        dos.writeShort(VERSION);
+        dos.writeByte(algorithms.size());
+        for (String algorithm : algorithms) {
+            byte[] bytes = algorithm.getBytes(UTF_8);
+            dos.writeShort(bytes.length);
+            dos.write(bytes);
+        }
+        dos.writeInt(records.size());
+        dos.writeInt(slots);
+        for (int slot : table) {
+            dos.writeInt(slot);
+        }
+        index = 0;
+        for (Record record : records) {
+            byte[] name = names.get(index++);
+            dos.writeInt(record.name.hashCode());
+            dos.writeLong(record.plainLength);
+            dos.writeLong(record.cipherLength);
+            dos.writeInt((int) record.crc);
+            dos.writeByte(algorithms.indexOf(record.algorithm));
+            dos.writeShort(name.length);
+            dos.write(name);
+        }
+        dos.flush();
+    }
+
+    /**
+     * 构建索引时使用的记录
+     */
+    public static class Record {
+        private final String name;
+        private final long plainLength;
+        private final long cipherLength;
+        private final long crc;
+        private final String algorithm;
+
+        public Record(String name, long plainLength, long cipherLength, long crc, String algorithm) {
+            this.name = name;
+            this.plainLength = plainLength;
+            this.cipherLength = cipherLength;
+            this.crc = crc;
+            this.algorithm = algorithm;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getPlainLength() {
+            return plainLength;
+        }
+
+        public long getCipherLength() {
+            return cipherLength;
+        }
+
+        public long getCrc() {
+            return crc;
+        }
+
+        public String getAlgorithm() {
+            return algorithm;
+        }
+    }
+}
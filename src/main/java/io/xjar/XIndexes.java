@@ -0,0 +1,155 @@
+package io.xjar;
+
+import java.io.*;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * 各个类路径下的加密资源索引，优先加载二进制索引，没有时兼容旧的文本索引。
+ * 类路径前缀每个只保存一份，资源名称只保存在各自的索引缓冲区中，并由布隆过滤器快速排除未加密的资源，
+ * 查找时直接使用URL中已有的文件部分，不需要拼接或截取字符串。
+ *
+ * @author Payne 646742615@qq.com
+ * 2018/12/14 11:05
+ */
+public class XIndexes implements XConstants {
+    private final String[] classpaths;
+    private final XIndex[] indexes;
+    private final XBloomFilter bloomFilter;
+
+    public XIndexes() {
+        this.classpaths = new String[0];
+        this.indexes = new XIndex[0];
+        this.bloomFilter = new XBloomFilter(0);
+    }
+
+    public XIndexes(ClassLoader classLoader) throws IOException {
+        Map<String, XIndex> map = new LinkedHashMap<>();
+        Enumeration<URL> resources = classLoader.getResources(XJAR_INF_DIR + XJAR_INF_BIN);
+        while (resources.hasMoreElements()) {
+            URL resource = resources.nextElement();
+            String classpath = classpath(resource, XJAR_INF_BIN);
+            map.put(classpath, XIndex.load(resource));
+        }
+        resources = classLoader.getResources(XJAR_INF_DIR + XJAR_INF_IDX);
+        while (resources.hasMoreElements()) {
+            URL resource = resources.nextElement();
+            String classpath = classpath(resource, XJAR_INF_IDX);
+            if (map.containsKey(classpath)) {
+                continue;
+            }
+            List<XIndex.Record> records = new ArrayList<>();
+            try (LineNumberReader lnr = new LineNumberReader(new InputStreamReader(resource.openStream()))) {
+                String name;
+                while ((name = lnr.readLine()) != null) {
+                    records.add(new XIndex.Record(name, -1, -1, 0, ""));
+                }
+            }
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            XIndex.write(bos, records);
+            map.put(classpath, new XIndex(ByteBuffer.wrap(bos.toByteArray())));
+        }
+        this.classpaths = map.keySet().toArray(new String[0]);
+        this.indexes = map.values().toArray(new XIndex[0]);
+        int size = 0;
+        for (XIndex index : indexes) {
+            size += index.size();
+        }
+        this.bloomFilter = new XBloomFilter(size);
+        for (XIndex index : indexes) {
+            for (int record : index.records()) {
+                bloomFilter.add(index.getHash(record));
+            }
+        }
+    }
+
+    /**
+     * 类路径取URL的文件部分，与资源URL的 getFile() 直接比较，jar 协议下形如 file:/app.jar!/BOOT-INF/classes!/
+     */
+    private static String classpath(URL resource, String index) {
+        String file = resource.getFile();
+        return resource.getProtocol().equals("file")
+                ? file.substring(0, file.length() - (XJAR_INF_DIR + index).length())
+                : file.substring(0, file.lastIndexOf("!/") + 2);
+    }
+
+    /**
+     * 是否有任意类路径下的同名资源被加密
+     *
+     * @param name 资源名称
+     * @return true: 已加密 false: 未加密
+     */
+    public boolean contains(String name) {
+        int hash = name.hashCode();
+        if (!bloomFilter.mightContain(hash)) {
+            return false;
+        }
+        for (XIndex index : indexes) {
+            if (index.find(name, 0, hash) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 资源是否已加密
+     *
+     * @param url 资源URL
+     * @return true: 已加密 false: 未加密
+     */
+    public boolean contains(URL url) {
+        return getPlainLength(url) != -2;
+    }
+
+    /**
+     * 获取加密资源的明文长度
+     *
+     * @param url 资源URL
+     * @return 明文长度，长度未知时返回 -1 ，未加密时返回 -2
+     */
+    public long getPlainLength(URL url) {
+        String file = url.getFile();
+        for (int i = 0; i < classpaths.length; i++) {
+            String classpath = classpaths[i];
+            if (!file.startsWith(classpath)) {
+                continue;
+            }
+            int offset = classpath.length();
+            int hash = XIndex.hash(file, offset);
+            if (!bloomFilter.mightContain(hash)) {
+                continue;
+            }
+            XIndex index = indexes[i];
+            int record = index.find(file, offset, hash);
+            if (record >= 0) {
+                return index.getPlainLength(record);
+            }
+        }
+        return -2;
+    }
+
+    /**
+     * @return 索引数量
+     */
+    public int size() {
+        return indexes.length;
+    }
+
+    /**
+     * 估算占用的内存，包括各个索引缓冲区、布隆过滤器以及类路径前缀，内存映射的索引缓冲区也计算在内。
+     *
+     * @return 占用的字节数
+     */
+    public long getFootprint() {
+        long footprint = bloomFilter.getFootprint();
+        for (XIndex index : indexes) {
+            footprint += index.capacity();
+        }
+        for (String classpath : classpaths) {
+            footprint += classpath.length() * 2;
+        }
+        return footprint;
+    }
+}
@@ -26,6 +26,17 @@ public class XInjector {
      * @throws IOException I/O 异常
      */
     public static void inject(JarArchiveOutputStream zos) throws IOException {
+        inject(zos, System.currentTimeMillis());
+    }
+
+    /**
+     * 往JAR包中注入XJar框架的classes
+     *
+     * @param zos  jar包输出流
+     * @param time 注入记录的修改时间
+     * @throws IOException I/O 异常
+     */
+    public static void inject(JarArchiveOutputStream zos, long time) throws IOException {
         Set<String> directories = new HashSet<>();
         Enumeration<Resource> resources = Loaders.ant().load("io/xjar/**");
         while (resources.hasMoreElements()) {
@@ -34,15 +45,15 @@ public class XInjector {
             String directory = name.substring(0, name.lastIndexOf('/') + 1);
             if (directories.add(directory)) {
                 JarArchiveEntry xDirEntry = new JarArchiveEntry(directory);
-                xDirEntry.setTime(System.currentTimeMillis());
+                xDirEntry.setTime(time);
                 zos.putArchiveEntry(xDirEntry);
                 zos.closeArchiveEntry();
             }
             JarArchiveEntry xJarEntry = new JarArchiveEntry(name);
-            xJarEntry.setTime(System.currentTimeMillis());
+            xJarEntry.setTime(time);
             zos.putArchiveEntry(xJarEntry);
             try (InputStream ris = resource.getInputStream()) {
-                XKit.transfer(ris, zos);
+                XKit.transfer(ris, zos, false);
             }
             zos.closeArchiveEntry();
         }
@@ -3,47 +3,43 @@ package io.xjar;
 import io.xjar.key.XKey;
 
 import javax.crypto.Cipher;
-import javax.crypto.CipherInputStream;
-import javax.crypto.CipherOutputStream;
-import javax.crypto.spec.SecretKeySpec;
+import javax.crypto.spec.IvParameterSpec;
 import java.io.*;
+import java.security.GeneralSecurityException;
 
 /**
- * JDK内置解密算法的解密器
+ * JDK内置解密算法的解密器，计数器模式（CTR）时解密输入流的 skip 不需要解密跳过的数据。
+ * 长度较小的密文可以通过 {@link #decrypt(XKey, byte[], int, int)} 一次 doFinal 解密。
  *
  * @author Payne 646742615@qq.com
  * 2018/11/22 14:01
  */
-public class XJdkDecryptor implements XDecryptor {
+public class XJdkDecryptor implements XDecryptor, XBytesDecryptor {
     private final String algorithm;
+    private final XCipherPool decryptPool;
+    private final XNioDecryptor xNioDecryptor;
+    private final boolean counter;
+    private volatile int blockSize;
 
     public XJdkDecryptor(String algorithm) {
         this.algorithm = algorithm;
+        this.decryptPool = new XCipherPool(algorithm, Cipher.DECRYPT_MODE);
+        this.xNioDecryptor = new XNioDecryptor(algorithm);
+        this.counter = XKit.counter(algorithm);
     }
 
     @Override
     public void decrypt(XKey key, File src, File dest) throws IOException {
-        if (!dest.getParentFile().exists() && !dest.getParentFile().mkdirs()) {
-            throw new IOException("could not make directory: " + dest.getParentFile());
-        }
-        try (
-                InputStream in = new FileInputStream(src);
-                OutputStream out = new FileOutputStream(dest)
-        ) {
-            decrypt(key, in, out);
-        }
+        // 文件之间通过 FileChannel 整块处理，密文格式相同
+        xNioDecryptor.decrypt(key, src, dest);
     }
 
     @Override
     public void decrypt(XKey key, InputStream in, OutputStream out) throws IOException {
-        CipherInputStream cis = null;
+        InputStream cis = null;
         try {
-            Cipher cipher = Cipher.getInstance(algorithm);
-            cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(key.getDecryptKey(), algorithm));
-            cis = new CipherInputStream(in, cipher);
+            cis = decrypt(key, in);
             XKit.transfer(cis, out);
-        } catch (Exception e) {
-            throw new IOException(e);
         } finally {
             XKit.close(cis);
         }
@@ -52,22 +48,66 @@ public class XJdkDecryptor implements XDecryptor {
     @Override
     public InputStream decrypt(XKey key, InputStream in) throws IOException {
         try {
-            Cipher cipher = Cipher.getInstance(algorithm);
-            cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(key.getDecryptKey(), algorithm));
-            return new CipherInputStream(in, cipher);
-        } catch (Exception e) {
+            if (counter) {
+                return new XCtrInputStream(decryptPool, key.getDecryptKey(), blockSize(), in);
+            }
+            return decryptPool.wrap(key.getDecryptKey(), in);
+        } catch (GeneralSecurityException e) {
             throw new IOException(e);
         }
     }
 
     @Override
-    public OutputStream decrypt(XKey key, OutputStream out) throws IOException {
+    public OutputStream decrypt(XKey key, final OutputStream out) throws IOException {
         try {
-            Cipher cipher = Cipher.getInstance(algorithm);
-            cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(key.getDecryptKey(), algorithm));
-            return new CipherOutputStream(out, cipher);
-        } catch (Exception e) {
+            if (counter) {
+                final byte[] decryptKey = key.getDecryptKey();
+                return new XCtrOutputStream(out, blockSize()) {
+                    @Override
+                    protected OutputStream open(byte[] iv) throws IOException {
+                        try {
+                            return decryptPool.wrap(decryptKey, new IvParameterSpec(iv), out);
+                        } catch (GeneralSecurityException e) {
+                            throw new IOException(e);
+                        }
+                    }
+                };
+            }
+            return decryptPool.wrap(key.getDecryptKey(), out);
+        } catch (GeneralSecurityException e) {
             throw new IOException(e);
         }
     }
+
+    @Override
+    public byte[] decrypt(XKey key, byte[] data, int offset, int length) throws IOException {
+        Cipher cipher = null;
+        try {
+            int prefix = 0;
+            if (counter) {
+                prefix = blockSize();
+                if (length < prefix) {
+                    throw new EOFException("truncated counter");
+                }
+                cipher = decryptPool.acquire(key.getDecryptKey(), new IvParameterSpec(data, offset, prefix));
+            } else {
+                cipher = decryptPool.acquire(key.getDecryptKey());
+            }
+            // 返回的数组按实际明文长度分配，带填充的模式不包含填充部分
+            return cipher.doFinal(data, offset + prefix, length - prefix);
+        } catch (GeneralSecurityException e) {
+            throw new IOException(e);
+        } finally {
+            if (cipher != null) {
+                decryptPool.release(cipher);
+            }
+        }
+    }
+
+    private int blockSize() throws GeneralSecurityException {
+        if (blockSize == 0) {
+            blockSize = XCtrInputStream.blockSize(algorithm);
+        }
+        return blockSize;
+    }
 }
@@ -3,47 +3,47 @@ package io.xjar;
 import io.xjar.key.XKey;
 
 import javax.crypto.Cipher;
-import javax.crypto.CipherInputStream;
-import javax.crypto.CipherOutputStream;
-import javax.crypto.spec.SecretKeySpec;
+import javax.crypto.spec.IvParameterSpec;
 import java.io.*;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
 
 /**
- * JDK内置加密算法的加密器
+ * JDK内置加密算法的加密器，计数器模式（CTR）时每次加密生成随机的初始计数器并写在密文的开头，
+ * 解密时可以直接跳到任意位置，见 {@link XCtrInputStream}。
+ * 长度较小的明文可以通过 {@link #encrypt(XKey, byte[], int, int)} 一次 doFinal 加密，密文格式与流式加密相同。
  *
  * @author Payne 646742615@qq.com
  * 2018/11/22 14:01
  */
-public class XJdkEncryptor implements XEncryptor {
+public class XJdkEncryptor implements XEncryptor, XBytesEncryptor {
     private final String algorithm;
+    private final XCipherPool encryptPool;
+    private final XNioEncryptor xNioEncryptor;
+    private final boolean counter;
+    private SecureRandom random;
+    private volatile int blockSize;
 
     public XJdkEncryptor(String algorithm) {
         this.algorithm = algorithm;
+        this.encryptPool = new XCipherPool(algorithm, Cipher.ENCRYPT_MODE);
+        this.xNioEncryptor = new XNioEncryptor(algorithm);
+        this.counter = XKit.counter(algorithm);
     }
 
     @Override
     public void encrypt(XKey key, File src, File dest) throws IOException {
-        if (!dest.getParentFile().exists() && !dest.getParentFile().mkdirs()) {
-            throw new IOException("could not make directory: " + dest.getParentFile());
-        }
-        try (
-                InputStream in = new FileInputStream(src);
-                OutputStream out = new FileOutputStream(dest)
-        ) {
-            encrypt(key, in, out);
-        }
+        // 文件之间通过 FileChannel 整块处理，密文格式相同
+        xNioEncryptor.encrypt(key, src, dest);
     }
 
     @Override
     public void encrypt(XKey key, InputStream in, OutputStream out) throws IOException {
-        CipherInputStream cis = null;
+        InputStream cis = null;
         try {
-            Cipher cipher = Cipher.getInstance(algorithm);
-            cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key.getEncryptKey(), algorithm));
-            cis = new CipherInputStream(in, cipher);
+            cis = encrypt(key, in);
             XKit.transfer(cis, out);
-        } catch (Exception e) {
-            throw new IOException(e);
         } finally {
             XKit.close(cis);
         }
@@ -52,10 +52,12 @@ public class XJdkEncryptor implements XEncryptor {
     @Override
     public InputStream encrypt(XKey key, InputStream in) throws IOException {
         try {
-            Cipher cipher = Cipher.getInstance(algorithm);
-            cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key.getEncryptKey(), algorithm));
-            return new CipherInputStream(in, cipher);
-        } catch (Exception e) {
+            if (counter) {
+                byte[] iv = iv();
+                return new SequenceInputStream(new ByteArrayInputStream(iv), encryptPool.wrap(key.getEncryptKey(), new IvParameterSpec(iv), in));
+            }
+            return encryptPool.wrap(key.getEncryptKey(), in);
+        } catch (GeneralSecurityException e) {
             throw new IOException(e);
         }
     }
@@ -63,16 +65,56 @@ public class XJdkEncryptor implements XEncryptor {
     @Override
     public OutputStream encrypt(XKey key, OutputStream out) throws IOException {
         try {
-            Cipher cipher = Cipher.getInstance(algorithm);
-            cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key.getEncryptKey(), algorithm));
-            return new CipherOutputStream(out, cipher);
-        } catch (Exception e) {
+            if (counter) {
+                byte[] iv = iv();
+                out.write(iv);
+                return encryptPool.wrap(key.getEncryptKey(), new IvParameterSpec(iv), out);
+            }
+            return encryptPool.wrap(key.getEncryptKey(), out);
+        } catch (GeneralSecurityException e) {
             throw new IOException(e);
         }
     }
 
+    @Override
+    public byte[] encrypt(XKey key, byte[] data, int offset, int length) throws IOException {
+        Cipher cipher = null;
+        try {
+            // 计数器模式的初始计数器写在密文开头，密文直接写到其后，整个数组按最终长度一次分配
+            byte[] iv = counter ? iv() : null;
+            int prefix = iv != null ? iv.length : 0;
+            cipher = iv != null ? encryptPool.acquire(key.getEncryptKey(), new IvParameterSpec(iv)) : encryptPool.acquire(key.getEncryptKey());
+            byte[] bytes = new byte[prefix + cipher.getOutputSize(length)];
+            if (iv != null) {
+                System.arraycopy(iv, 0, bytes, 0, prefix);
+            }
+            int size = prefix + cipher.doFinal(data, offset, length, bytes, prefix);
+            return size == bytes.length ? bytes : Arrays.copyOf(bytes, size);
+        } catch (GeneralSecurityException e) {
+            throw new IOException(e);
+        } finally {
+            if (cipher != null) {
+                encryptPool.release(cipher);
+            }
+        }
+    }
+
     @Override
     public void encrypt(XKey key, InputStream in, OutputStream out, String password) throws IOException {
 
     }
+
+    /**
+     * @return 随机的初始计数器
+     * @throws GeneralSecurityException 安全异常
+     */
+    private synchronized byte[] iv() throws GeneralSecurityException {
+        if (blockSize == 0) {
+            blockSize = XCtrInputStream.blockSize(algorithm);
+            random = new SecureRandom();
+        }
+        byte[] iv = new byte[blockSize];
+        random.nextBytes(iv);
+        return iv;
+    }
 }
@@ -6,10 +6,19 @@ import io.xjar.filter.XNotEntryFilter;
 import io.xjar.key.XKey;
 import io.xjar.key.XSecureRandom;
 import io.xjar.key.XSymmetricSecureKey;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipFile;
 
 import javax.crypto.KeyGenerator;
 import javax.crypto.SecretKey;
 import java.io.*;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.Collection;
@@ -18,6 +27,7 @@ import java.util.Collection;
  * XJar 工具类，包含I/O，密钥，过滤器的工具方法。
  */
 public abstract class XKit implements XConstants {
+    private static volatile XBufferPool bufferPool = new XBufferPool(DEFAULT_TRANSFER_SIZE);
 
     /**
      * 从输入流中读取一行字节码
@@ -93,7 +103,26 @@ public abstract class XKit implements XConstants {
     }
 
     /**
-     * 输入流传输到输出流
+     * @return 传输使用的缓冲区池
+     */
+    public static XBufferPool getBufferPool() {
+        return bufferPool;
+    }
+
+    /**
+     * 设置传输使用的缓冲区池，例如需要更大的缓冲区时
+     *
+     * @param bufferPool 缓冲区池
+     */
+    public static void setBufferPool(XBufferPool bufferPool) {
+        if (bufferPool == null) {
+            throw new IllegalArgumentException("buffer pool must not be null");
+        }
+        XKit.bufferPool = bufferPool;
+    }
+
+    /**
+     * 输入流传输到输出流，传输完成后刷新输出流，等效于XKit.transfer(in, out, true);
      *
      * @param in  输入流
      * @param out 输出流
@@ -101,19 +130,85 @@ public abstract class XKit implements XConstants {
      * @throws IOException I/O 异常
      */
     public static long transfer(InputStream in, OutputStream out) throws IOException {
+        return transfer(in, out, true);
+    }
+
+    /**
+     * 输入流传输到输出流，使用缓冲区池中的缓冲区，两端都是文件流时直接在文件通道之间传输。
+     * 输出流随后就会被关闭或者结束当前记录时不需要刷新，避免每个记录都把ZIP输出流一路刷新到磁盘。
+     *
+     * @param in    输入流
+     * @param out   输出流
+     * @param flush 传输完成后是否刷新输出流
+     * @return 传输长度
+     * @throws IOException I/O 异常
+     */
+    public static long transfer(InputStream in, OutputStream out, boolean flush) throws IOException {
+        // 只识别文件流本身，子类可能改写了读写行为
+        if (in.getClass() == FileInputStream.class && out.getClass() == FileOutputStream.class) {
+            return transfer(((FileInputStream) in).getChannel(), ((FileOutputStream) out).getChannel());
+        }
+        XBufferPool pool = bufferPool;
+        byte[] buffer = pool.acquire();
+        try {
+            long total = 0;
+            int length;
+            while ((length = in.read(buffer)) != -1) {
+                out.write(buffer, 0, length);
+                total += length;
+            }
+            if (flush) {
+                out.flush();
+            }
+            return total;
+        } finally {
+            pool.release(buffer);
+        }
+    }
+
+    /**
+     * 通道之间传输，输入通道为文件通道时通过 transferTo 传输，由操作系统直接复制，不经过Java堆。
+     *
+     * @param in  输入通道
+     * @param out 输出通道
+     * @return 传输长度
+     * @throws IOException I/O 异常
+     */
+    public static long transfer(ReadableByteChannel in, WritableByteChannel out) throws IOException {
         long total = 0;
-        byte[] buffer = new byte[4096];
-        int length;
-        while ((length = in.read(buffer)) != -1) {
-            out.write(buffer, 0, length);
-            total += length;
+        if (in instanceof FileChannel) {
+            FileChannel channel = (FileChannel) in;
+            long position = channel.position();
+            long size = channel.size();
+            while (position < size) {
+                long count = channel.transferTo(position, size - position, out);
+                if (count <= 0) {
+                    break;
+                }
+                position += count;
+                total += count;
+            }
+            channel.position(position);
+        }
+        XBufferPool pool = bufferPool;
+        byte[] array = pool.acquire();
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(array);
+            while (in.read(buffer) != -1) {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    total += out.write(buffer);
+                }
+                buffer.clear();
+            }
+            return total;
+        } finally {
+            pool.release(array);
         }
-        out.flush();
-        return total;
     }
 
     /**
-     * reader传输到writer
+     * reader传输到writer，传输完成后刷新writer，等效于XKit.transfer(reader, writer, true);
      *
      * @param reader reader
      * @param writer writer
@@ -121,15 +216,52 @@ public abstract class XKit implements XConstants {
      * @throws IOException I/O 异常
      */
     public static long transfer(Reader reader, Writer writer) throws IOException {
-        long total = 0;
-        char[] buffer = new char[4096];
-        int length;
-        while ((length = reader.read(buffer)) != -1) {
-            writer.write(buffer, 0, length);
-            total += length;
+        return transfer(reader, writer, true);
+    }
+
+    /**
+     * reader传输到writer，使用缓冲区池中的缓冲区。
+     *
+     * @param reader reader
+     * @param writer writer
+     * @param flush  传输完成后是否刷新writer
+     * @return 传输长度
+     * @throws IOException I/O 异常
+     */
+    public static long transfer(Reader reader, Writer writer, boolean flush) throws IOException {
+        XBufferPool pool = bufferPool;
+        char[] buffer = pool.acquireChars();
+        try {
+            long total = 0;
+            int length;
+            while ((length = reader.read(buffer)) != -1) {
+                writer.write(buffer, 0, length);
+                total += length;
+            }
+            if (flush) {
+                writer.flush();
+            }
+            return total;
+        } finally {
+            pool.release(buffer);
+        }
+    }
+
+    /**
+     * 文件传输到文件，通过 FileChannel.transferTo 由操作系统直接复制，例如 Linux 上的 sendfile 。
+     *
+     * @param src  源文件
+     * @param dest 目标文件
+     * @return 传输长度
+     * @throws IOException I/O 异常
+     */
+    public static long transfer(File src, File dest) throws IOException {
+        try (
+                FileChannel in = FileChannel.open(src.toPath(), StandardOpenOption.READ);
+                FileChannel out = FileChannel.open(dest.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)
+        ) {
+            return transfer(in, out);
         }
-        writer.flush();
-        return total;
     }
 
     /**
@@ -171,6 +303,85 @@ public abstract class XKit implements XConstants {
         }
     }
 
+    /**
+     * 从输入流中读取指定长度的字节，输入流提前结束时抛出 EOFException
+     *
+     * @param in     输入流
+     * @param length 长度
+     * @return 长度恰好为指定长度的字节数组
+     * @throws IOException I/O 异常
+     */
+    public static byte[] read(InputStream in, int length) throws IOException {
+        byte[] bytes = new byte[length];
+        int size = 0;
+        while (size < length) {
+            int n = in.read(bytes, size, length - size);
+            if (n == -1) {
+                throw new EOFException("expected " + length + " bytes but got " + size);
+            }
+            size += n;
+        }
+        return bytes;
+    }
+
+    /**
+     * 资源的密文长度已知且不超过 {@link XConstants#DEFAULT_SINGLE_PASS_SIZE} 并且解密器支持字节数组解密时，
+     * 按密文长度一次性读入后通过一次 doFinal 解密，否则返回 null 由调用方走流式解密。
+     *
+     * @param xDecryptor 解密器
+     * @param key        密钥
+     * @param connection 资源的原始连接，其内容长度即为密文长度
+     * @return 明文，不适用时返回 null
+     * @throws IOException I/O 异常
+     */
+    public static byte[] decrypt(XDecryptor xDecryptor, XKey key, URLConnection connection) throws IOException {
+        long length = connection.getContentLengthLong();
+        if (!(xDecryptor instanceof XBytesDecryptor) || length < 0 || length > DEFAULT_SINGLE_PASS_SIZE) {
+            return null;
+        }
+        byte[] bytes;
+        try (InputStream in = connection.getInputStream()) {
+            bytes = read(in, (int) length);
+        }
+        return ((XBytesDecryptor) xDecryptor).decrypt(key, bytes, 0, bytes.length);
+    }
+
+    /**
+     * 判断记录是否为XJar加密时生成的记录，包括注入的XJar框架classes、XJAR-INF目录及其中的索引文件、启动加载顺序文件和启动参数文件，
+     * 重新加密或解密时这些记录需要跳过，由加密器重新生成或者直接丢弃。
+     *
+     * @param name 记录名称
+     * @return 是否为XJar生成的记录
+     */
+    public static boolean generated(String name) {
+        return name.startsWith(XConstants.XJAR_SRC_DIR)
+                || name.endsWith(XConstants.XJAR_INF_DIR)
+                || name.endsWith(XConstants.XJAR_INF_DIR + XConstants.XJAR_INF_IDX)
+                || name.endsWith(XConstants.XJAR_INF_DIR + XConstants.XJAR_INF_BIN)
+                || name.endsWith(XConstants.XJAR_INF_DIR + XConstants.XJAR_INF_LST)
+                || name.endsWith(XConstants.XJAR_INF_DIR + XConstants.ASSIGN_FILE);
+    }
+
+    /**
+     * 原样复制ZIP记录压缩后的数据及其CRC和长度，不经过解压、加密及重新压缩的过程，
+     * 记录的扩展字段、注释、文件属性（包括 unix 权限）等元数据一并保留。
+     *
+     * @param zipFile ZIP文件
+     * @param entry   记录
+     * @param zos     ZIP输出流
+     * @throws IOException I/O 异常
+     */
+    public static void copy(ZipFile zipFile, ZipArchiveEntry entry, ZipArchiveOutputStream zos) throws IOException {
+        ZipArchiveEntry raw = new ZipArchiveEntry(entry);
+        raw.setMethod(entry.getMethod());
+        raw.setCrc(entry.getCrc());
+        raw.setSize(entry.getSize());
+        raw.setCompressedSize(entry.getCompressedSize());
+        try (InputStream in = zipFile.getRawInputStream(entry)) {
+            zos.addRawArchiveEntry(raw, in);
+        }
+    }
+
     /**
      * 删除文件，如果是目录将不递归删除子文件或目录，等效于delete(file, false);
      *
@@ -258,6 +469,43 @@ public abstract class XKit implements XConstants {
         return new XSymmetricSecureKey(algorithm, keysize, key.getEncoded(), iv.getEncoded());
     }
 
+    /**
+     * 根据加密算法创建加密器，GCM 等认证加密模式使用分块的认证加密格式 {@link XChunkedEncryptor}，
+     * 其他算法使用JDK内置加密算法整体加密。
+     *
+     * @param algorithm 加密算法
+     * @return 加密器
+     */
+    public static XEncryptor encryptor(String algorithm) {
+        return chunked(algorithm) ? new XChunkedEncryptor(algorithm) : new XJdkEncryptor(algorithm);
+    }
+
+    /**
+     * 根据加密算法创建解密器，与 {@link #encryptor(String)} 对应。
+     *
+     * @param algorithm 加密算法
+     * @return 解密器
+     */
+    public static XDecryptor decryptor(String algorithm) {
+        return chunked(algorithm) ? new XChunkedDecryptor(algorithm) : new XJdkDecryptor(algorithm);
+    }
+
+    /**
+     * @param algorithm 加密算法
+     * @return 是否为分块的认证加密模式
+     */
+    public static boolean chunked(String algorithm) {
+        return algorithm.toUpperCase().contains("/GCM/");
+    }
+
+    /**
+     * @param algorithm 加密算法
+     * @return 是否为计数器模式，该模式下解密时可以直接跳到任意位置
+     */
+    public static boolean counter(String algorithm) {
+        return algorithm.toUpperCase().contains("/CTR/");
+    }
+
     /**
      * 创建多个子过滤器AND连接的混合过滤器
      *
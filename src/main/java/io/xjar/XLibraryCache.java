@@ -0,0 +1,205 @@
+package io.xjar;
+
+import io.xjar.key.XKey;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * 本地磁盘上的加密嵌套JAR包缓存，以原文JAR包内容、加密算法、密钥指纹、压缩级别及压缩策略的SHA-256摘要为键，
+ * 保存加密后的JAR包及其CRC和长度，多个项目依赖相同的类库时后面的构建直接复用已经加密好的JAR包。
+ * 缓存文件先写到临时文件再原子地改名，因此多个构建进程可以共享同一个缓存目录；总大小超过上限时按最近使用时间淘汰。
+ * <p>
+ * 缓存文件格式（大端序）：int 魔数 XLIB, int CRC, long 长度, 加密后的JAR包。
+ *
+ * @author Payne 646742615@qq.com
+ * 2018/12/25 10:40
+ */
+public class XLibraryCache {
+    public static final String SUFFIX = ".lib";
+
+    private static final int MAGIC = 0x584C4942;
+
+    private final File dir;
+    private final long capacity;
+
+    /**
+     * 构造
+     *
+     * @param dir      缓存目录
+     * @param capacity 缓存总大小上限，单位字节
+     */
+    public XLibraryCache(File dir, long capacity) {
+        this.dir = dir;
+        this.capacity = capacity;
+    }
+
+    /**
+     * 计算缓存键，原文JAR包已经读入缓冲，缓存没有命中时同一个缓冲直接用于加密，不需要再次从原文包中解压读取。
+     *
+     * @param key               密钥
+     * @param level             嵌套JAR包的压缩级别
+     * @param compressionPolicy 记录压缩策略，可以为 null ，没有稳定的 toString() 的策略不会命中缓存
+     * @param plain             已关闭的原文JAR包缓冲输出流
+     * @return 缓存键
+     * @throws IOException I/O 异常
+     */
+    public String key(XKey key, int level, XCompressionPolicy compressionPolicy, XSpillOutputStream plain) throws IOException {
+        MessageDigest md = XDigestIndex.messageDigest();
+        md.update((key.getAlgorithm() + "\n" + XDigestIndex.fingerprint(key) + "\n" + XDigestIndex.compression(level, compressionPolicy) + "\n").getBytes("UTF-8"));
+        XBufferPool pool = XKit.getBufferPool();
+        byte[] buffer = pool.acquire();
+        try (InputStream in = plain.getInputStream()) {
+            int length;
+            while ((length = in.read(buffer)) != -1) {
+                md.update(buffer, 0, length);
+            }
+        } finally {
+            pool.release(buffer);
+        }
+        return XDigestIndex.hex(md.digest());
+    }
+
+    /**
+     * 读取缓存的加密JAR包并校验其CRC及长度，校验不通过的缓存文件会被删除。
+     *
+     * @param key       缓存键
+     * @param threshold 内存上限，超过后溢出到临时文件
+     * @return 已关闭的缓冲输出流，不存在或校验不通过时返回 null
+     * @throws IOException I/O 异常
+     */
+    public XSpillOutputStream get(String key, int threshold) throws IOException {
+        return get(key, new XSpillBudget(threshold));
+    }
+
+    /**
+     * 读取缓存的加密JAR包并校验其CRC及长度，校验不通过的缓存文件会被删除。
+     *
+     * @param key    缓存键
+     * @param budget 共享的内存预算，不足时溢出到临时文件
+     * @return 已关闭的缓冲输出流，不存在或校验不通过时返回 null
+     * @throws IOException I/O 异常
+     */
+    public XSpillOutputStream get(String key, XSpillBudget budget) throws IOException {
+        File file = new File(dir, key + SUFFIX);
+        XSpillOutputStream sos = new XSpillOutputStream(budget);
+        boolean valid = false;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() == MAGIC) {
+                long crc = in.readInt() & 0xFFFFFFFFL;
+                long size = in.readLong();
+                XKit.transfer(in, sos, false);
+                sos.close();
+                valid = sos.getCrc() == crc && sos.getSize() == size;
+            }
+        } catch (FileNotFoundException e) {
+            return null;
+        } catch (EOFException e) {
+            valid = false;
+        } finally {
+            if (!valid) {
+                sos.close();
+                sos.delete();
+            }
+        }
+        if (!valid) {
+            file.delete();
+            return null;
+        }
+        // 记录最近使用时间，淘汰时依据
+        file.setLastModified(System.currentTimeMillis());
+        return sos;
+    }
+
+    /**
+     * 写入缓存
+     *
+     * @param key  缓存键
+     * @param data 已关闭的加密JAR包缓冲输出流
+     * @throws IOException 缓存目录无法创建或写入失败
+     */
+    public void put(String key, XSpillOutputStream data) throws IOException {
+        File file = new File(dir, key + SUFFIX);
+        File temp = null;
+        try {
+            if (!dir.exists() && !dir.mkdirs() && !dir.exists()) {
+                throw new IOException("could not create library cache directory: " + dir);
+            }
+            temp = File.createTempFile(key, ".tmp", dir);
+            try (
+                    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+                    InputStream in = data.getInputStream()
+            ) {
+                out.writeInt(MAGIC);
+                out.writeInt((int) data.getCrc());
+                out.writeLong(data.getSize());
+                XKit.transfer(in, out, false);
+            }
+            try {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            temp = null;
+            evict();
+        } finally {
+            if (temp != null) {
+                temp.delete();
+            }
+        }
+    }
+
+    /**
+     * 总大小超过上限时按最近使用时间从旧到新删除缓存文件
+     */
+    private synchronized void evict() {
+        File[] files = dir.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                return file.isFile() && file.getName().endsWith(SUFFIX);
+            }
+        });
+        if (files == null) {
+            return;
+        }
+        long total = 0;
+        final long[] times = new long[files.length];
+        Integer[] order = new Integer[files.length];
+        for (int i = 0; i < files.length; i++) {
+            total += files[i].length();
+            times[i] = files[i].lastModified();
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return Long.compare(times[a], times[b]);
+            }
+        });
+        for (int i = 0; i < order.length && total > capacity; i++) {
+            File file = files[order[i]];
+            long length = file.length();
+            if (file.delete()) {
+                total -= length;
+            }
+        }
+    }
+
+    /**
+     * @return 缓存目录
+     */
+    public File getDir() {
+        return dir;
+    }
+
+    /**
+     * @return 缓存总大小上限
+     */
+    public long getCapacity() {
+        return capacity;
+    }
+}
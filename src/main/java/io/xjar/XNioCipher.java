@@ -0,0 +1,298 @@
+package io.xjar;
+
+import javax.crypto.Cipher;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.security.GeneralSecurityException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * 基于 ByteBuffer 的加解密管道，通过 Cipher.update(ByteBuffer, ByteBuffer) 一次处理一整块缓冲区，
+ * 缓冲区可复用并可选择直接内存，避免 CipherInputStream / CipherOutputStream 每次只处理 512 字节的小块。
+ *
+ * @author Payne 646742615@qq.com
+ * 2018/12/21 10:05
+ */
+public class XNioCipher {
+    // 输出缓冲区比输入缓冲区多出的容量，足够容纳填充及分组
+    private static final int RESERVED = 64;
+
+    private final int bufferSize;
+    private final boolean direct;
+    private final Queue<ByteBuffer> buffers = new ConcurrentLinkedQueue<>();
+
+    /**
+     * 构造
+     *
+     * @param bufferSize 每次处理的字节数
+     * @param direct     是否使用直接内存
+     */
+    public XNioCipher(int bufferSize, boolean direct) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("buffer size must be positive");
+        }
+        this.bufferSize = bufferSize;
+        this.direct = direct;
+    }
+
+    /**
+     * 整体加解密，完成后归还Cipher对象。
+     *
+     * @param pool   Cipher对象池
+     * @param cipher 已初始化的Cipher对象
+     * @param in     输入通道
+     * @param out    输出通道
+     * @return 输出的字节数
+     * @throws IOException I/O 异常
+     */
+    public long transfer(XCipherPool pool, Cipher cipher, ReadableByteChannel in, WritableByteChannel out) throws IOException {
+        ByteBuffer input = acquire();
+        ByteBuffer output = acquire();
+        try {
+            long total = 0;
+            input.limit(bufferSize);
+            while (in.read(input) >= 0) {
+                input.flip();
+                output = update(cipher, input, output, false);
+                total += drain(output, out);
+                input.clear().limit(bufferSize);
+            }
+            input.flip();
+            output = update(cipher, input, output, true);
+            total += drain(output, out);
+            return total;
+        } finally {
+            release(input);
+            release(output);
+            pool.release(cipher);
+        }
+    }
+
+    /**
+     * 包装成加/解密输入流，流关闭时归还Cipher对象及缓冲区。
+     *
+     * @param pool   Cipher对象池
+     * @param cipher 已初始化的Cipher对象
+     * @param in     输入流
+     * @return 加/解密输入流
+     */
+    public InputStream wrap(XCipherPool pool, Cipher cipher, InputStream in) {
+        return new XNioInputStream(pool, cipher, in);
+    }
+
+    /**
+     * 包装成加/解密输出流，流关闭时归还Cipher对象及缓冲区。
+     *
+     * @param pool   Cipher对象池
+     * @param cipher 已初始化的Cipher对象
+     * @param out    输出流
+     * @return 加/解密输出流
+     */
+    public OutputStream wrap(XCipherPool pool, Cipher cipher, OutputStream out) {
+        return new XNioOutputStream(pool, cipher, out);
+    }
+
+    /**
+     * 加解密输入缓冲区的全部数据，输出缓冲区不够时换一个足够大的临时缓冲区。
+     *
+     * @return 处于可读状态的输出缓冲区
+     */
+    private ByteBuffer update(Cipher cipher, ByteBuffer input, ByteBuffer output, boolean last) throws IOException {
+        output.clear();
+        int required = cipher.getOutputSize(input.remaining());
+        if (output.capacity() < required) {
+            release(output);
+            output = direct ? ByteBuffer.allocateDirect(required) : ByteBuffer.allocate(required);
+        }
+        try {
+            if (last) {
+                cipher.doFinal(input, output);
+            } else {
+                cipher.update(input, output);
+            }
+        } catch (GeneralSecurityException e) {
+            throw new IOException(e);
+        }
+        output.flip();
+        return output;
+    }
+
+    private static long drain(ByteBuffer output, WritableByteChannel out) throws IOException {
+        long total = output.remaining();
+        while (output.hasRemaining()) {
+            out.write(output);
+        }
+        return total;
+    }
+
+    private ByteBuffer acquire() {
+        ByteBuffer buffer = buffers.poll();
+        if (buffer == null) {
+            buffer = direct ? ByteBuffer.allocateDirect(bufferSize + RESERVED) : ByteBuffer.allocate(bufferSize + RESERVED);
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    private void release(ByteBuffer buffer) {
+        // 只回收标准大小的缓冲区，临时扩容的直接丢弃
+        if (buffer != null && buffer.capacity() == bufferSize + RESERVED) {
+            buffers.offer(buffer);
+        }
+    }
+
+    /**
+     * 整块读取、整块加解密的输入流
+     */
+    private class XNioInputStream extends InputStream {
+        private final XCipherPool pool;
+        private final Cipher cipher;
+        private final InputStream in;
+        private final ReadableByteChannel channel;
+        private ByteBuffer input;
+        private ByteBuffer output;
+        private boolean eof;
+        private boolean finished;
+        private boolean closed;
+
+        XNioInputStream(XCipherPool pool, Cipher cipher, InputStream in) {
+            this.pool = pool;
+            this.cipher = cipher;
+            this.in = in;
+            this.channel = Channels.newChannel(in);
+            this.input = acquire();
+            this.input.limit(bufferSize);
+            this.output = acquire();
+            this.output.limit(0);
+        }
+
+        private boolean fill() throws IOException {
+            while (!output.hasRemaining()) {
+                if (finished) {
+                    return false;
+                }
+                if (!eof && channel.read(input) < 0) {
+                    eof = true;
+                }
+                input.flip();
+                output = update(cipher, input, output, eof);
+                input.clear().limit(bufferSize);
+                finished = eof;
+            }
+            return true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return fill() ? output.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!fill()) {
+                return -1;
+            }
+            int n = Math.min(len, output.remaining());
+            output.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return output.remaining();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                in.close();
+            } finally {
+                release(input);
+                release(output);
+                pool.release(cipher);
+            }
+        }
+    }
+
+    /**
+     * 写满一块再整块加解密的输出流
+     */
+    private class XNioOutputStream extends OutputStream {
+        private final XCipherPool pool;
+        private final Cipher cipher;
+        private final OutputStream out;
+        private final WritableByteChannel channel;
+        private ByteBuffer input;
+        private ByteBuffer output;
+        private boolean closed;
+
+        XNioOutputStream(XCipherPool pool, Cipher cipher, OutputStream out) {
+            this.pool = pool;
+            this.cipher = cipher;
+            this.out = out;
+            this.channel = Channels.newChannel(out);
+            this.input = acquire();
+            this.input.limit(bufferSize);
+            this.output = acquire();
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                int n = Math.min(len, input.remaining());
+                input.put(b, off, n);
+                off += n;
+                len -= n;
+                if (!input.hasRemaining()) {
+                    process(false);
+                }
+            }
+        }
+
+        private void process(boolean last) throws IOException {
+            input.flip();
+            output = update(cipher, input, output, last);
+            drain(output, channel);
+            input.clear().limit(bufferSize);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                process(true);
+                out.close();
+            } finally {
+                release(input);
+                release(output);
+                pool.release(cipher);
+            }
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package io.xjar;
+
+import io.xjar.key.XKey;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+
+/**
+ * 基于 ByteBuffer 的JDK内置解密算法的解密器，与 {@link XJdkDecryptor} 可以互换使用，
+ * 计数器模式的解密输入流同样支持不解密的 skip 。
+ *
+ * @author Payne 646742615@qq.com
+ * 2018/12/21 11:20
+ */
+public class XNioDecryptor implements XDecryptor {
+    private final String algorithm;
+    private final XCipherPool decryptPool;
+    private final XNioCipher nioCipher;
+    private final boolean counter;
+    private volatile int blockSize;
+
+    public XNioDecryptor(String algorithm) {
+        this(algorithm, XConstants.DEFAULT_BUFFER_SIZE, false);
+    }
+
+    /**
+     * 构造
+     *
+     * @param algorithm  解密算法
+     * @param bufferSize 每次处理的字节数
+     * @param direct     是否使用直接内存
+     */
+    public XNioDecryptor(String algorithm, int bufferSize, boolean direct) {
+        this.algorithm = algorithm;
+        this.decryptPool = new XCipherPool(algorithm, Cipher.DECRYPT_MODE);
+        this.nioCipher = new XNioCipher(bufferSize, direct);
+        this.counter = XKit.counter(algorithm);
+    }
+
+    @Override
+    public void decrypt(XKey key, File src, File dest) throws IOException {
+        if (!dest.getParentFile().exists() && !dest.getParentFile().mkdirs()) {
+            throw new IOException("could not make directory: " + dest.getParentFile());
+        }
+        try (
+                FileChannel in = FileChannel.open(src.toPath(), StandardOpenOption.READ);
+                FileChannel out = FileChannel.open(dest.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)
+        ) {
+            decrypt(key, in, out);
+        }
+    }
+
+    @Override
+    public void decrypt(XKey key, InputStream in, OutputStream out) throws IOException {
+        decrypt(key, Channels.newChannel(in), Channels.newChannel(out));
+    }
+
+    private void decrypt(XKey key, ReadableByteChannel in, WritableByteChannel out) throws IOException {
+        try {
+            IvParameterSpec spec = null;
+            if (counter) {
+                ByteBuffer iv = ByteBuffer.allocate(blockSize());
+                while (iv.hasRemaining()) {
+                    if (in.read(iv) < 0) {
+                        throw new EOFException("truncated counter");
+                    }
+                }
+                spec = new IvParameterSpec(iv.array());
+            }
+            Cipher cipher = decryptPool.acquire(key.getDecryptKey(), spec);
+            nioCipher.transfer(decryptPool, cipher, in, out);
+        } catch (GeneralSecurityException e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public InputStream decrypt(XKey key, InputStream in) throws IOException {
+        try {
+            if (counter) {
+                return new XCtrInputStream(decryptPool, key.getDecryptKey(), blockSize(), in);
+            }
+            return nioCipher.wrap(decryptPool, decryptPool.acquire(key.getDecryptKey()), in);
+        } catch (GeneralSecurityException e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public OutputStream decrypt(XKey key, final OutputStream out) throws IOException {
+        try {
+            if (counter) {
+                final byte[] decryptKey = key.getDecryptKey();
+                return new XCtrOutputStream(out, blockSize()) {
+                    @Override
+                    protected OutputStream open(byte[] iv) throws IOException {
+                        try {
+                            return nioCipher.wrap(decryptPool, decryptPool.acquire(decryptKey, new IvParameterSpec(iv)), out);
+                        } catch (GeneralSecurityException e) {
+                            throw new IOException(e);
+                        }
+                    }
+                };
+            }
+            return nioCipher.wrap(decryptPool, decryptPool.acquire(key.getDecryptKey()), out);
+        } catch (GeneralSecurityException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private int blockSize() throws GeneralSecurityException {
+        if (blockSize == 0) {
+            blockSize = XCtrInputStream.blockSize(algorithm);
+        }
+        return blockSize;
+    }
+}
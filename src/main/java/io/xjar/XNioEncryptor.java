@@ -0,0 +1,130 @@
+package io.xjar;
+
+import io.xjar.key.XKey;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+
+/**
+ * 基于 ByteBuffer 的JDK内置加密算法的加密器，密文格式与 {@link XJdkEncryptor} 相同，可以互换使用，
+ * 文件之间的加密直接通过 FileChannel 读写。
+ *
+ * @author Payne 646742615@qq.com
+ * 2018/12/21 11:20
+ */
+public class XNioEncryptor implements XEncryptor {
+    private final String algorithm;
+    private final XCipherPool encryptPool;
+    private final XNioCipher nioCipher;
+    private final boolean counter;
+    private SecureRandom random;
+    private volatile int blockSize;
+
+    public XNioEncryptor(String algorithm) {
+        this(algorithm, XConstants.DEFAULT_BUFFER_SIZE, false);
+    }
+
+    /**
+     * 构造
+     *
+     * @param algorithm  加密算法
+     * @param bufferSize 每次处理的字节数
+     * @param direct     是否使用直接内存
+     */
+    public XNioEncryptor(String algorithm, int bufferSize, boolean direct) {
+        this.algorithm = algorithm;
+        this.encryptPool = new XCipherPool(algorithm, Cipher.ENCRYPT_MODE);
+        this.nioCipher = new XNioCipher(bufferSize, direct);
+        this.counter = XKit.counter(algorithm);
+    }
+
+    @Override
+    public void encrypt(XKey key, File src, File dest) throws IOException {
+        if (!dest.getParentFile().exists() && !dest.getParentFile().mkdirs()) {
+            throw new IOException("could not make directory: " + dest.getParentFile());
+        }
+        try (
+                FileChannel in = FileChannel.open(src.toPath(), StandardOpenOption.READ);
+                FileChannel out = FileChannel.open(dest.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)
+        ) {
+            encrypt(key, in, out);
+        }
+    }
+
+    @Override
+    public void encrypt(XKey key, InputStream in, OutputStream out) throws IOException {
+        encrypt(key, Channels.newChannel(in), Channels.newChannel(out));
+    }
+
+    @Override
+    public void encrypt(XKey key, InputStream in, OutputStream out, String password) throws IOException {
+        encrypt(key, in, out);
+    }
+
+    private void encrypt(XKey key, ReadableByteChannel in, WritableByteChannel out) throws IOException {
+        try {
+            byte[] iv = counter ? iv() : null;
+            if (iv != null) {
+                ByteBuffer buffer = ByteBuffer.wrap(iv);
+                while (buffer.hasRemaining()) {
+                    out.write(buffer);
+                }
+            }
+            Cipher cipher = encryptPool.acquire(key.getEncryptKey(), iv != null ? new IvParameterSpec(iv) : null);
+            nioCipher.transfer(encryptPool, cipher, in, out);
+        } catch (GeneralSecurityException e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public InputStream encrypt(XKey key, InputStream in) throws IOException {
+        try {
+            if (counter) {
+                byte[] iv = iv();
+                Cipher cipher = encryptPool.acquire(key.getEncryptKey(), new IvParameterSpec(iv));
+                return new SequenceInputStream(new ByteArrayInputStream(iv), nioCipher.wrap(encryptPool, cipher, in));
+            }
+            return nioCipher.wrap(encryptPool, encryptPool.acquire(key.getEncryptKey()), in);
+        } catch (GeneralSecurityException e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public OutputStream encrypt(XKey key, OutputStream out) throws IOException {
+        try {
+            if (counter) {
+                byte[] iv = iv();
+                out.write(iv);
+                return nioCipher.wrap(encryptPool, encryptPool.acquire(key.getEncryptKey(), new IvParameterSpec(iv)), out);
+            }
+            return nioCipher.wrap(encryptPool, encryptPool.acquire(key.getEncryptKey()), out);
+        } catch (GeneralSecurityException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * @return 随机的初始计数器
+     * @throws GeneralSecurityException 安全异常
+     */
+    private synchronized byte[] iv() throws GeneralSecurityException {
+        if (blockSize == 0) {
+            blockSize = XCtrInputStream.blockSize(algorithm);
+            random = new SecureRandom();
+        }
+        byte[] iv = new byte[blockSize];
+        random.nextBytes(iv);
+        return iv;
+    }
+}
@@ -14,12 +14,11 @@ public class XNopEncryptor implements XEncryptor {
 
     @Override
     public void encrypt(XKey key, File src, File dest) throws IOException {
-        try (
-                FileInputStream fis = new FileInputStream(src);
-                FileOutputStream fos = new FileOutputStream(dest)
-        ) {
-            encrypt(key, fis, fos);
+        if (!dest.getParentFile().exists() && !dest.getParentFile().mkdirs()) {
+            throw new IOException("could not make directory: " + dest.getParentFile());
         }
+        // 原样复制，由操作系统直接在文件之间传输，不经过Java堆
+        XKit.transfer(src, dest);
     }
 
     @Override
@@ -0,0 +1,306 @@
+package io.xjar;
+
+import java.io.*;
+import java.net.URL;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 启动预解密器，有两种工作模式：
+ * <ul>
+ * <li>录制模式：按顺序记录启动过程中加载的加密资源名称，JVM退出时写入指定文件，
+ * 重新加密时把该文件交给加密器，加密器将其写入加密包的 XJAR-INF/PRELOAD.LST 。</li>
+ * <li>预解密模式：类加载器创建后立即读取类路径下的 XJAR-INF/PRELOAD.LST ，在后台线程池中按顺序解密其中的资源，
+ * 放入有容量上限的内存缓存，类加载及资源读取时优先从缓存中取出，取出后即从缓存中移除。
+ * 每个资源对应一个 {@link FutureTask} ，使用方取出正在解密的资源时等待其完成，取出尚未开始解密的资源时在当前线程解密，同一个资源不会被解密两次。
+ * 启动完成后由启动器调用 {@link #evict()} 停止预解密并释放缓存中未被使用的资源。</li>
+ * </ul>
+ * 通过命中、未命中及未被使用的数量可以判断清单是否已经过时。
+ *
+ * @author Payne 646742615@qq.com
+ * 2018/12/15 14:20
+ */
+public abstract class XPreloader implements XConstants {
+    private final long capacity;
+    private final File record;
+    private final Set<String> names = Collections.synchronizedSet(new LinkedHashSet<String>());
+    private final ConcurrentMap<String, FutureTask<byte[]>> cache = new ConcurrentHashMap<>();
+    // 预解密清单中尚未开始预解密的资源名称
+    private final Set<String> pending = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    // 尚未开始预解密时已经被使用方取过的资源，之后才开始预解密的同一个资源不再放入缓存，预解密开始时移除
+    private final Set<String> taken = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private final AtomicLong size = new AtomicLong();
+    private final AtomicInteger loaded = new AtomicInteger();
+    private final AtomicInteger dropped = new AtomicInteger();
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger misses = new AtomicInteger();
+    private final AtomicInteger unused = new AtomicInteger();
+    private volatile ExecutorService executor;
+    private volatile boolean evicted;
+
+    /**
+     * 构造
+     *
+     * @param capacity 预解密缓存的容量上限，单位字节，为 0 时不预解密
+     * @param record   录制模式下保存加载顺序的文件，为 null 时不录制
+     */
+    protected XPreloader(long capacity, File record) {
+        this.capacity = capacity;
+        this.record = record;
+    }
+
+    /**
+     * 定位资源
+     *
+     * @param name 资源名称
+     * @return 资源的原始URL，资源不存在或未加密时返回 null
+     */
+    protected abstract URL locate(String name);
+
+    /**
+     * 读取并解密资源
+     *
+     * @param url 资源的原始URL
+     * @return 资源的明文
+     * @throws IOException I/O 异常
+     */
+    protected abstract byte[] read(URL url) throws IOException;
+
+    /**
+     * 启动录制或预解密，录制模式下会先创建录制文件，文件不可写时直接抛出异常使启动失败，而不是等到JVM退出时才发现。
+     *
+     * @param classLoader 用于读取清单的类加载器
+     * @param threads     预解密线程数
+     * @throws IOException I/O 异常
+     */
+    public void start(ClassLoader classLoader, int threads) throws IOException {
+        if (record != null) {
+            new FileOutputStream(record).close();
+            Runtime.getRuntime().addShutdownHook(new Thread("xjar-record") {
+                @Override
+                public void run() {
+                    try {
+                        save();
+                    } catch (IOException e) {
+                        // 交给线程的未捕获异常处理器输出
+                        throw new IllegalStateException("could not save the recorded load order to " + record, e);
+                    }
+                }
+            });
+            return;
+        }
+        if (capacity <= 0) {
+            return;
+        }
+        final List<String> list = new ArrayList<>();
+        Enumeration<URL> resources = classLoader.getResources(XJAR_INF_DIR + XJAR_INF_LST);
+        while (resources.hasMoreElements()) {
+            URL resource = resources.nextElement();
+            try (LineNumberReader lnr = new LineNumberReader(new InputStreamReader(resource.openStream()))) {
+                String name;
+                while ((name = lnr.readLine()) != null) {
+                    if (!name.isEmpty()) list.add(name);
+                }
+            }
+        }
+        if (list.isEmpty()) {
+            return;
+        }
+        pending.addAll(list);
+        executor = Executors.newFixedThreadPool(Math.max(threads, 1), new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "xjar-preload-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        for (final String name : list) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    preload(name);
+                }
+            });
+        }
+        executor.shutdown();
+    }
+
+    private void preload(String name) {
+        // 清单中重复的资源只预解密一次
+        if (evicted || !pending.contains(name)) {
+            return;
+        }
+        // 放入缓存并检查过使用方是否已经错过该资源之后才移出等待列表，在此之前取过该资源的使用方都会留下记录
+        try {
+            if (size.get() >= capacity) {
+                dropped.incrementAndGet();
+                return;
+            }
+            final URL url = locate(name);
+            if (url == null) {
+                return;
+            }
+            String key = url.getFile();
+            FutureTask<byte[]> future = new FutureTask<>(new Callable<byte[]>() {
+                @Override
+                public byte[] call() throws Exception {
+                    return read(url);
+                }
+            });
+            if (taken.remove(key) || cache.putIfAbsent(key, future) != null) {
+                return;
+            }
+            // 放入缓存的同时使用方已经错过了该资源，不再解密
+            if (taken.remove(key) && cache.remove(key, future)) {
+                return;
+            }
+            // 使用方可能已经取出并在其线程中开始解密，这时 run() 什么也不做
+            future.run();
+            byte[] bytes;
+            try {
+                bytes = future.get();
+            } catch (Exception e) {
+                // 预解密失败时由使用方自行解密
+                cache.remove(key, future);
+                dropped.incrementAndGet();
+                return;
+            }
+            if (size.addAndGet(bytes.length) > capacity && cache.remove(key, future)) {
+                size.addAndGet(-bytes.length);
+                dropped.incrementAndGet();
+                return;
+            }
+            loaded.incrementAndGet();
+        } finally {
+            pending.remove(name);
+        }
+    }
+
+    /**
+     * 取出预解密的资源，录制模式下同时记录资源名称。
+     * 资源正在预解密时等待其完成，已在预解密清单中但尚未开始解密时在当前线程解密。
+     *
+     * @param url  资源URL
+     * @param name 资源名称
+     * @return 资源的明文，未预解密或预解密失败时返回 null
+     */
+    public byte[] take(URL url, String name) {
+        if (record != null) {
+            names.add(name);
+            return null;
+        }
+        if (capacity <= 0 || evicted) {
+            return null;
+        }
+        String key = url.getFile();
+        // 只记录还在等待预解密的资源，其余资源不会再被放入缓存，记录下来只会使集合无限增长
+        if (pending.contains(name)) {
+            taken.add(key);
+        }
+        FutureTask<byte[]> future = cache.remove(key);
+        if (future == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        // 已经放入缓存说明预解密已经过了检查，不再需要记录
+        taken.remove(key);
+        future.run();
+        byte[] bytes;
+        try {
+            bytes = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            misses.incrementAndGet();
+            return null;
+        } catch (ExecutionException e) {
+            misses.incrementAndGet();
+            return null;
+        }
+        size.addAndGet(-bytes.length);
+        hits.incrementAndGet();
+        return bytes;
+    }
+
+    /**
+     * 启动完成后停止预解密，丢弃尚未开始的任务并释放缓存中未被使用的资源，之后的读取都直接解密。
+     * 未被使用的资源数量计入 {@link #getUnusedCount()} 。
+     */
+    public void evict() {
+        evicted = true;
+        ExecutorService executor = this.executor;
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        for (String key : cache.keySet()) {
+            FutureTask<byte[]> future = cache.remove(key);
+            if (future != null) {
+                future.cancel(false);
+                unused.incrementAndGet();
+            }
+        }
+        size.set(0);
+        pending.clear();
+        taken.clear();
+    }
+
+    /**
+     * 保存录制的加载顺序
+     *
+     * @throws IOException I/O 异常
+     */
+    private void save() throws IOException {
+        try (OutputStream out = new FileOutputStream(record)) {
+            synchronized (names) {
+                for (String name : names) {
+                    out.write(name.getBytes());
+                    out.write(CRLF.getBytes());
+                }
+            }
+        }
+    }
+
+    /**
+     * @return 已预解密的资源数量
+     */
+    public int getLoadedCount() {
+        return loaded.get();
+    }
+
+    /**
+     * @return 因超出容量或解密失败而放弃预解密的资源数量
+     */
+    public int getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * @return 命中预解密缓存的次数
+     */
+    public int getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * @return 未命中预解密缓存的次数，过多说明清单已经过时或容量不足
+     */
+    public int getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * @return 已预解密但未被使用的资源数量，过多说明清单中包含了启动时不再加载的资源
+     */
+    public int getUnusedCount() {
+        return unused.get() + cache.size();
+    }
+
+    @Override
+    public String toString() {
+        return "XPreloader{loaded=" + loaded + ", dropped=" + dropped + ", hits=" + hits + ", misses=" + misses + ", unused=" + getUnusedCount() + "}";
+    }
+}
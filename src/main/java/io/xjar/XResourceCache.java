@@ -0,0 +1,195 @@
+package io.xjar;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 解密后资源的缓存，按最近最少使用的顺序淘汰，总大小不超过容量上限。
+ * 框架在启动时会反复读取同一个资源，例如 application.yml 、 mapper XML 、 META-INF/spring.factories 等，
+ * 缓存后不需要每次都重新解密。可选择将数据保存在堆外的直接缓冲区中，减少对堆内存的占用，
+ * 被淘汰的直接缓冲区由GC回收。启动完成后可调用 {@link #evict()} 释放全部缓存。
+ *
+ * @author Payne 646742615@qq.com
+ * 2018/12/16 10:05
+ */
+public class XResourceCache {
+    private final long capacity;
+    private final boolean direct;
+    private final LinkedHashMap<String, ByteBuffer> buffers = new LinkedHashMap<>(16, 0.75f, true);
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private long size;
+
+    /**
+     * 构造
+     *
+     * @param capacity 容量上限，单位字节
+     */
+    public XResourceCache(long capacity) {
+        this(capacity, false);
+    }
+
+    /**
+     * 构造
+     *
+     * @param capacity 容量上限，单位字节
+     * @param direct   是否保存在堆外的直接缓冲区中
+     */
+    public XResourceCache(long capacity, boolean direct) {
+        this.capacity = capacity;
+        this.direct = direct;
+    }
+
+    /**
+     * 获取缓存的资源
+     *
+     * @param key 资源的键
+     * @return 资源的输入流，未缓存时返回 null
+     */
+    public InputStream get(String key) {
+        ByteBuffer buffer;
+        synchronized (buffers) {
+            buffer = buffers.get(key);
+        }
+        if (buffer == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return new XByteBufferInputStream(buffer.duplicate());
+    }
+
+    /**
+     * 是否可以缓存指定长度的资源
+     *
+     * @param length 资源长度
+     * @return true: 可以缓存 false: 不能缓存
+     */
+    public boolean accepts(long length) {
+        return length >= 0 && length <= capacity;
+    }
+
+    /**
+     * 缓存资源，超出容量上限时淘汰最近最少使用的资源。
+     *
+     * @param key   资源的键
+     * @param bytes 资源的明文
+     */
+    public void put(String key, byte[] bytes) {
+        if (!accepts(bytes.length)) {
+            return;
+        }
+        ByteBuffer buffer;
+        if (direct) {
+            buffer = ByteBuffer.allocateDirect(bytes.length);
+            buffer.put(bytes);
+            buffer.flip();
+        } else {
+            buffer = ByteBuffer.wrap(bytes);
+        }
+        synchronized (buffers) {
+            ByteBuffer old = buffers.put(key, buffer);
+            if (old != null) {
+                size -= old.capacity();
+            }
+            size += buffer.capacity();
+            Iterator<Map.Entry<String, ByteBuffer>> iterator = buffers.entrySet().iterator();
+            while (size > capacity && iterator.hasNext()) {
+                Map.Entry<String, ByteBuffer> eldest = iterator.next();
+                size -= eldest.getValue().capacity();
+                iterator.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * 淘汰全部缓存，通常在启动完成后调用。
+     */
+    public void evict() {
+        synchronized (buffers) {
+            evictions.addAndGet(buffers.size());
+            buffers.clear();
+            size = 0;
+        }
+    }
+
+    /**
+     * @return 已缓存的字节数
+     */
+    public long getSize() {
+        synchronized (buffers) {
+            return size;
+        }
+    }
+
+    /**
+     * @return 命中次数
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * @return 未命中次数
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * @return 淘汰次数
+     */
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    @Override
+    public String toString() {
+        return "XResourceCache{size=" + getSize() + ", capacity=" + capacity + ", hits=" + hits + ", misses=" + misses + ", evictions=" + evictions + "}";
+    }
+
+    private static class XByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        XByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            int skipped = (int) Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + skipped);
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return buffer.remaining();
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package io.xjar;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+
+/**
+ * 只读的可随机访问通道，建立在可重复打开的解密输入流之上：向后定位时跳过中间的数据，向前定位时重新打开后再跳过。
+ * 计数器模式及分块的认证加密格式的解密输入流跳过时不需要解密，所以任意位置的读取只解密实际读取的部分。
+ *
+ * @author Payne 646742615@qq.com
+ * 2018/12/20 11:15
+ */
+public abstract class XSeekableChannel implements SeekableByteChannel {
+    private final byte[] buffer = new byte[8192];
+    private long size;
+    private long position;
+    private InputStream in;
+    private long offset;
+    private boolean open = true;
+
+    /**
+     * 构造
+     *
+     * @param size 明文长度，未知时为 -1 ，第一次需要时通过跳到末尾计算
+     */
+    protected XSeekableChannel(long size) {
+        this.size = size;
+    }
+
+    /**
+     * 重新打开解密输入流，从明文的开头读起。
+     *
+     * @return 解密输入流
+     * @throws IOException I/O 异常
+     */
+    protected abstract InputStream open() throws IOException;
+
+    @Override
+    public synchronized int read(ByteBuffer dst) throws IOException {
+        if (!open) {
+            throw new ClosedChannelException();
+        }
+        if (!dst.hasRemaining()) {
+            return 0;
+        }
+        if (size >= 0 && position >= size) {
+            return -1;
+        }
+        if (!locate()) {
+            return -1;
+        }
+        int n;
+        if (dst.hasArray()) {
+            n = in.read(dst.array(), dst.arrayOffset() + dst.position(), dst.remaining());
+            if (n > 0) {
+                dst.position(dst.position() + n);
+            }
+        } else {
+            n = in.read(buffer, 0, Math.min(buffer.length, dst.remaining()));
+            if (n > 0) {
+                dst.put(buffer, 0, n);
+            }
+        }
+        if (n < 0) {
+            return -1;
+        }
+        position += n;
+        offset += n;
+        return n;
+    }
+
+    /**
+     * 把解密输入流定位到当前位置
+     *
+     * @return 是否定位成功，当前位置超出末尾时为 false
+     * @throws IOException I/O 异常
+     */
+    private boolean locate() throws IOException {
+        if (in == null || offset > position) {
+            XKit.close(in);
+            in = open();
+            offset = 0;
+        }
+        while (offset < position) {
+            long skipped = in.skip(position - offset);
+            if (skipped <= 0) {
+                if (in.read() < 0) {
+                    return false;
+                }
+                skipped = 1;
+            }
+            offset += skipped;
+        }
+        return true;
+    }
+
+    @Override
+    public int write(ByteBuffer src) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public synchronized long position() throws IOException {
+        if (!open) {
+            throw new ClosedChannelException();
+        }
+        return position;
+    }
+
+    @Override
+    public synchronized SeekableByteChannel position(long position) throws IOException {
+        if (!open) {
+            throw new ClosedChannelException();
+        }
+        if (position < 0) {
+            throw new IllegalArgumentException("negative position: " + position);
+        }
+        this.position = position;
+        return this;
+    }
+
+    @Override
+    public synchronized long size() throws IOException {
+        if (!open) {
+            throw new ClosedChannelException();
+        }
+        if (size < 0) {
+            long length = 0;
+            try (InputStream in = open()) {
+                while (true) {
+                    long skipped = in.skip(Long.MAX_VALUE - length);
+                    if (skipped <= 0) {
+                        if (in.read() < 0) {
+                            break;
+                        }
+                        skipped = 1;
+                    }
+                    length += skipped;
+                }
+            }
+            size = length;
+        }
+        return size;
+    }
+
+    @Override
+    public SeekableByteChannel truncate(long size) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public synchronized boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (!open) {
+            return;
+        }
+        open = false;
+        if (in != null) {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package io.xjar;
+
+import java.io.File;
+
+/**
+ * 溢出缓冲的内存预算，由同一次加密中的所有 {@link XSpillOutputStream} 共享，
+ * 各个缓冲在内存中保存的数据总量不超过预算，预算不足时缓冲溢出到临时文件，
+ * 因此多线程加密时的内存占用与线程数及同时在途的记录数量无关。可以被多个线程同时使用。
+ * 溢出的临时文件写在预算指定的文件夹中，其中是原文数据，只有当前用户可以读写。
+ *
+ * @author Payne 646742615@qq.com
+ * 2018/12/12 10:10
+ */
+public class XSpillBudget {
+    private final long capacity;
+    private final File directory;
+    private long used;
+
+    /**
+     * 构造
+     *
+     * @param capacity 内存预算，单位字节
+     */
+    public XSpillBudget(long capacity) {
+        this(capacity, null);
+    }
+
+    /**
+     * 构造
+     *
+     * @param capacity  内存预算，单位字节
+     * @param directory 溢出的临时文件所在的文件夹，为 null 时使用系统的临时文件夹
+     */
+    public XSpillBudget(long capacity, File directory) {
+        this.capacity = capacity;
+        this.directory = directory;
+    }
+
+    /**
+     * 申请内存
+     *
+     * @param bytes 申请的字节数
+     * @return 预算足够时返回 true ，否则不占用预算并返回 false
+     */
+    public synchronized boolean acquire(long bytes) {
+        if (used + bytes > capacity) {
+            return false;
+        }
+        used += bytes;
+        return true;
+    }
+
+    /**
+     * 归还内存
+     *
+     * @param bytes 归还的字节数
+     */
+    public synchronized void release(long bytes) {
+        used -= bytes;
+    }
+
+    /**
+     * @return 内存预算
+     */
+    public long getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return 溢出的临时文件所在的文件夹，为 null 时使用系统的临时文件夹
+     */
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @return 已占用的内存
+     */
+    public synchronized long getUsed() {
+        return used;
+    }
+}
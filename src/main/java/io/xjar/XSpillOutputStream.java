@@ -0,0 +1,207 @@
+package io.xjar;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * 有内存上限的缓冲输出流，写入的数据未超过内存上限时保存在内存中，超过后溢出到临时文件，
+ * 同时在写入过程中计算数据的长度及CRC，因此内存占用与写入数据的大小无关。
+ * 多个缓冲可以共享同一个 {@link XSpillBudget} ，此时内存上限是所有缓冲的总和。
+ *
+ * @author Payne 646742615@qq.com
+ * 2018/12/12 10:21
+ */
+public class XSpillOutputStream extends OutputStream {
+    private final XSpillBudget budget;
+    private final CRC32 crc = new CRC32();
+    private XBuffer bos = new XBuffer();
+    private OutputStream out = bos;
+    private File file;
+    private long size;
+    // 从预算中占用的内存，即内存缓冲的容量
+    private long reserved;
+
+    /**
+     * 构造
+     *
+     * @param threshold 内存上限，单位字节
+     */
+    public XSpillOutputStream(int threshold) {
+        this(new XSpillBudget(threshold));
+    }
+
+    /**
+     * 构造
+     *
+     * @param threshold 内存上限，单位字节
+     * @param directory 溢出的临时文件所在的文件夹，为 null 时使用系统的临时文件夹
+     */
+    public XSpillOutputStream(int threshold, File directory) {
+        this(new XSpillBudget(threshold, directory));
+    }
+
+    /**
+     * 构造
+     *
+     * @param budget 共享的内存预算
+     */
+    public XSpillOutputStream(XSpillBudget budget) {
+        this.budget = budget;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (file == null && !reserve(size + len)) {
+            spill();
+        }
+        out.write(b, off, len);
+        crc.update(b, off, len);
+        size += len;
+    }
+
+    /**
+     * 按内存缓冲的实际容量从预算中占用内存，优先按两倍扩容，预算不足时按需扩容。
+     *
+     * @param required 需要的容量
+     * @return 预算不足时返回 false
+     */
+    private boolean reserve(long required) {
+        int capacity = bos.capacity();
+        if (required <= capacity) {
+            return true;
+        }
+        long grown = Math.max(required, capacity * 2L);
+        if (grown <= Integer.MAX_VALUE - 8 && budget.acquire(grown - capacity)) {
+            bos.grow((int) grown);
+        } else if (required <= Integer.MAX_VALUE - 8 && budget.acquire(required - capacity)) {
+            grown = required;
+            bos.grow((int) grown);
+        } else {
+            return false;
+        }
+        reserved += grown - capacity;
+        return true;
+    }
+
+    /**
+     * 将内存中的数据溢出到临时文件，之后的写入都直接写到临时文件中。
+     * 临时文件中是原文数据，通过 {@link Files#createTempFile} 创建，在 POSIX 文件系统上只有当前用户可以读写。
+     *
+     * @throws IOException I/O 异常
+     */
+    private void spill() throws IOException {
+        File directory = budget.getDirectory();
+        file = (directory != null ? Files.createTempFile(directory.toPath(), "xjar-", ".tmp") : Files.createTempFile("xjar-", ".tmp")).toFile();
+        out = new BufferedOutputStream(new FileOutputStream(file));
+        bos.writeTo(out);
+        bos = null;
+        release();
+    }
+
+    /**
+     * 把占用的内存归还给预算
+     */
+    private void release() {
+        budget.release(reserved);
+        reserved = 0;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    /**
+     * @return 已写入数据的长度
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return 已写入数据的CRC
+     */
+    public long getCrc() {
+        return crc.getValue();
+    }
+
+    /**
+     * @return 是否已经溢出到临时文件
+     */
+    public boolean isSpilled() {
+        return file != null;
+    }
+
+    /**
+     * 读取已写入的数据，调用前需要先关闭输出流。
+     *
+     * @return 已写入数据的输入流
+     * @throws IOException I/O 异常
+     */
+    public InputStream getInputStream() throws IOException {
+        return file != null ? new BufferedInputStream(new FileInputStream(file)) : bos.getInputStream();
+    }
+
+    /**
+     * 将已写入的数据传输到输出流，调用前需要先关闭输出流。
+     *
+     * @param out 输出流
+     * @return 传输长度
+     * @throws IOException I/O 异常
+     */
+    public long writeTo(OutputStream out) throws IOException {
+        if (file == null) {
+            bos.writeTo(out);
+            return bos.size();
+        }
+        try (InputStream in = new FileInputStream(file)) {
+            return XKit.transfer(in, out);
+        }
+    }
+
+    /**
+     * 删除临时文件并释放内存，未关闭时先关闭，否则临时文件的句柄会泄漏并且在 Windows 上无法删除
+     */
+    public void delete() {
+        XKit.close(out);
+        if (file != null && !file.delete()) {
+            file.deleteOnExit();
+        }
+        bos = null;
+        release();
+    }
+
+    /**
+     * 可以直接读取内部数组的内存缓冲，读取时不需要复制数据
+     */
+    private static class XBuffer extends ByteArrayOutputStream {
+
+        XBuffer() {
+            super(0);
+        }
+
+        int capacity() {
+            return buf.length;
+        }
+
+        void grow(int capacity) {
+            buf = Arrays.copyOf(buf, capacity);
+        }
+
+        InputStream getInputStream() {
+            return new ByteArrayInputStream(buf, 0, count);
+        }
+    }
+}
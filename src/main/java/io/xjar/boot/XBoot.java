@@ -2,6 +2,7 @@ package io.xjar.boot;
 
 import io.xjar.*;
 import io.xjar.key.XKey;
+import org.apache.commons.compress.archivers.ArchiveOutputStream;
 import org.apache.commons.compress.archivers.jar.JarArchiveEntry;
 
 import java.io.*;
@@ -178,7 +179,7 @@ public class XBoot implements XConstants {
      * @throws Exception 加密异常
      */
     public static void encrypt(InputStream in, OutputStream out, String password, String algorithm, int keysize, int ivsize) throws Exception {
-        XBootEncryptor xBootEncryptor = new XBootEncryptor(new XJdkEncryptor(algorithm));
+        XBootEncryptor xBootEncryptor = new XBootEncryptor(XKit.encryptor(algorithm));
         XKey xKey = XKit.key(algorithm, keysize, ivsize, password);
         xBootEncryptor.encrypt(xKey, in, out);
     }
@@ -347,7 +348,7 @@ public class XBoot implements XConstants {
      * @throws Exception 解密异常
      */
     public static void decrypt(InputStream in, OutputStream out, String password, String algorithm, int keysize, int ivsize) throws Exception {
-        XBootDecryptor xBootDecryptor = new XBootDecryptor(new XJdkDecryptor(algorithm));
+        XBootDecryptor xBootDecryptor = new XBootDecryptor(XKit.decryptor(algorithm));
         XKey xKey = XKit.key(algorithm, keysize, ivsize, password);
         xBootDecryptor.decrypt(xKey, in, out);
     }
@@ -465,12 +466,7 @@ public class XBoot implements XConstants {
      * @throws Exception 加密异常
      */
     public static void encrypt(File src, File dest, String password, String algorithm, int keysize, int ivsize, XEntryFilter<JarArchiveEntry> filter) throws Exception {
-        try (
-                InputStream in = new FileInputStream(src);
-                OutputStream out = new FileOutputStream(dest)
-        ) {
-            encrypt(in, out, password, algorithm, keysize, ivsize, filter);
-        }
+        encrypt(src, dest, password, algorithm, keysize, ivsize, filter, 1);
     }
 
     /**
@@ -528,7 +524,7 @@ public class XBoot implements XConstants {
      * @throws Exception 加密异常
      */
     public static void encrypt(InputStream in, OutputStream out, String password, String algorithm, int keysize, int ivsize, XEntryFilter<JarArchiveEntry> filter) throws Exception {
-        XBootEncryptor xBootEncryptor = new XBootEncryptor(new XJdkEncryptor(algorithm), filter);
+        XBootEncryptor xBootEncryptor = new XBootEncryptor(XKit.encryptor(algorithm), filter);
         XKey xKey = XKit.key(algorithm, keysize, ivsize, password);
         xBootEncryptor.encrypt(xKey, in, out, password);
     }
@@ -709,9 +705,284 @@ public class XBoot implements XConstants {
      * @throws Exception 解密异常
      */
     public static void decrypt(InputStream in, OutputStream out, String password, String algorithm, int keysize, int ivsize, XEntryFilter<JarArchiveEntry> filter) throws Exception {
-        XBootDecryptor xBootDecryptor = new XBootDecryptor(new XJdkDecryptor(algorithm), filter);
+        XBootDecryptor xBootDecryptor = new XBootDecryptor(XKit.decryptor(algorithm), filter);
         XKey xKey = XKit.key(algorithm, keysize, ivsize, password);
         xBootDecryptor.decrypt(xKey, in, out);
     }
 
+    /**
+     * 多线程加密 Spring-Boot JAR 包
+     *
+     * @param src      原文包
+     * @param dest     加密包
+     * @param password 密码
+     * @param threads  线程数
+     * @throws Exception 加密异常
+     */
+    public static void encrypt(String src, String dest, String password, int threads) throws Exception {
+        encrypt(new File(src), new File(dest), password, threads);
+    }
+
+    /**
+     * 多线程加密 Spring-Boot JAR 包
+     *
+     * @param src      原文包
+     * @param dest     加密包
+     * @param password 密码
+     * @param filter   过滤器
+     * @param threads  线程数
+     * @throws Exception 加密异常
+     */
+    public static void encrypt(String src, String dest, String password, XEntryFilter<JarArchiveEntry> filter, int threads) throws Exception {
+        encrypt(new File(src), new File(dest), password, filter, threads);
+    }
+
+    /**
+     * 多线程加密 Spring-Boot JAR 包
+     *
+     * @param src      原文包
+     * @param dest     加密包
+     * @param password 密码
+     * @param threads  线程数
+     * @throws Exception 加密异常
+     */
+    public static void encrypt(File src, File dest, String password, int threads) throws Exception {
+        encrypt(src, dest, password, DEFAULT_ALGORITHM, DEFAULT_KEYSIZE, DEFAULT_IVSIZE, null, threads);
+    }
+
+    /**
+     * 多线程加密 Spring-Boot JAR 包
+     *
+     * @param src      原文包
+     * @param dest     加密包
+     * @param password 密码
+     * @param filter   过滤器
+     * @param threads  线程数
+     * @throws Exception 加密异常
+     */
+    public static void encrypt(File src, File dest, String password, XEntryFilter<JarArchiveEntry> filter, int threads) throws Exception {
+        encrypt(src, dest, password, DEFAULT_ALGORITHM, DEFAULT_KEYSIZE, DEFAULT_IVSIZE, filter, threads);
+    }
+
+    /**
+     * 多线程加密 Spring-Boot JAR 包，原文包通过随机访问读取，各个记录在线程池中并行加密，加密包与单线程加密的结果逐字节相同。
+     * 不写出摘要清单，以后需要增量加密时改用带上一次加密包参数的方法，第一次传入 null 完整加密并写出清单。
+     *
+     * @param src       原文包
+     * @param dest      加密包
+     * @param password  密码
+     * @param algorithm 加密算法
+     * @param keysize   密钥长度
+     * @param ivsize    向量长度
+     * @param filter    过滤器
+     * @param threads   线程数
+     * @throws Exception 加密异常
+     */
+    public static void encrypt(File src, File dest, String password, String algorithm, int keysize, int ivsize, XEntryFilter<JarArchiveEntry> filter, int threads) throws Exception {
+        encrypt(src, dest, password, algorithm, keysize, ivsize, filter, threads, DEFAULT_SPILL_BUDGET);
+    }
+
+    /**
+     * 多线程加密 Spring-Boot JAR 包，所有线程缓冲的记录共享同一个内存上限，超过后溢出到临时文件，内存占用与线程数无关。
+     *
+     * @param src       原文包
+     * @param dest      加密包
+     * @param password  密码
+     * @param algorithm 加密算法
+     * @param keysize   密钥长度
+     * @param ivsize    向量长度
+     * @param filter    过滤器
+     * @param threads   线程数
+     * @param threshold 所有缓冲在内存中的总上限，单位字节
+     * @throws Exception 加密异常
+     */
+    public static void encrypt(File src, File dest, String password, String algorithm, int keysize, int ivsize, XEntryFilter<JarArchiveEntry> filter, int threads, int threshold) throws Exception {
+        XBootEncryptor xBootEncryptor = new XBootEncryptor(XKit.encryptor(algorithm), filter);
+        xBootEncryptor.setThreshold(threshold);
+        XKey xKey = XKit.key(algorithm, keysize, ivsize, password);
+        xBootEncryptor.encrypt(xKey, src, dest, password, threads);
+    }
+
+    /**
+     * 流水线加密 Spring-Boot JAR 包
+     *
+     * @param in       输入流
+     * @param out      输出流
+     * @param password 密码
+     * @param threads  加密及压缩的线程数
+     * @throws Exception 加密异常
+     */
+    public static void encrypt(InputStream in, OutputStream out, String password, int threads) throws Exception {
+        XBootEncryptor xBootEncryptor = new XBootEncryptor(XKit.encryptor(DEFAULT_ALGORITHM));
+        XKey xKey = XKit.key(DEFAULT_ALGORITHM, DEFAULT_KEYSIZE, DEFAULT_IVSIZE, password);
+        xBootEncryptor.encrypt(xKey, in, out, password, threads);
+    }
+
+    /**
+     * 流水线加密 Spring-Boot JAR 包，适合管道等不能随机访问的输入流，读取、加密压缩及写出在不同的线程中同时进行
+     *
+     * @param in       输入流
+     * @param out      输出流
+     * @param password 密码
+     * @param filter   过滤器
+     * @param threads  加密及压缩的线程数
+     * @throws Exception 加密异常
+     */
+    public static void encrypt(InputStream in, OutputStream out, String password, XEntryFilter<JarArchiveEntry> filter, int threads) throws Exception {
+        XBootEncryptor xBootEncryptor = new XBootEncryptor(XKit.encryptor(DEFAULT_ALGORITHM), filter);
+        XKey xKey = XKit.key(DEFAULT_ALGORITHM, DEFAULT_KEYSIZE, DEFAULT_IVSIZE, password);
+        xBootEncryptor.encrypt(xKey, in, out, password, threads);
+    }
+
+    /**
+     * 增量的多线程加密 Spring-Boot JAR 包，原文没有变化的记录直接复用上一次加密包中的密文
+     *
+     * @param src      原文包
+     * @param dest     加密包
+     * @param password 密码
+     * @param filter   过滤器
+     * @param threads  线程数
+     * @param previous 上一次的加密包，可以与加密包相同
+     * @throws Exception 加密异常
+     */
+    public static void encrypt(File src, File dest, String password, XEntryFilter<JarArchiveEntry> filter, int threads, File previous) throws Exception {
+        encrypt(src, dest, password, DEFAULT_ALGORITHM, DEFAULT_KEYSIZE, DEFAULT_IVSIZE, filter, threads, previous);
+    }
+
+    /**
+     * 增量的多线程加密 Spring-Boot JAR 包，原文没有变化的记录直接原样复制上一次加密包中的密文，不需要重新加密及压缩。
+     * 上一次加密包旁边的摘要清单（加密包路径 + .digest）不存在或者算法、密钥、压缩级别及压缩策略不同时退化为完整加密，
+     * 加密完成后在加密包旁边写出本次的摘要清单。
+     *
+     * @param src       原文包
+     * @param dest      加密包
+     * @param password  密码
+     * @param algorithm 加密算法
+     * @param keysize   密钥长度
+     * @param ivsize    向量长度
+     * @param filter    过滤器
+     * @param threads   线程数
+     * @param previous  上一次的加密包，可以与加密包相同
+     * @throws Exception 加密异常
+     */
+    public static void encrypt(File src, File dest, String password, String algorithm, int keysize, int ivsize, XEntryFilter<JarArchiveEntry> filter, int threads, File previous) throws Exception {
+        XBootEncryptor xBootEncryptor = new XBootEncryptor(XKit.encryptor(algorithm), filter);
+        XKey xKey = XKit.key(algorithm, keysize, ivsize, password);
+        xBootEncryptor.encrypt(xKey, src, dest, password, threads, previous);
+    }
+
+    /**
+     * 增量的多线程加密 Spring-Boot JAR 包，需要加密的嵌套JAR包通过缓存在多次构建及多个项目之间复用
+     *
+     * @param src          原文包
+     * @param dest         加密包
+     * @param password     密码
+     * @param filter       过滤器
+     * @param threads      线程数
+     * @param previous     上一次的加密包，可以与加密包相同，为 null 时完整加密
+     * @param libraryCache 加密嵌套JAR包的缓存
+     * @throws Exception 加密异常
+     */
+    public static void encrypt(File src, File dest, String password, XEntryFilter<JarArchiveEntry> filter, int threads, File previous, XLibraryCache libraryCache) throws Exception {
+        encrypt(src, dest, password, DEFAULT_ALGORITHM, DEFAULT_KEYSIZE, DEFAULT_IVSIZE, filter, threads, previous, libraryCache);
+    }
+
+    /**
+     * 增量的多线程加密 Spring-Boot JAR 包，需要加密的嵌套JAR包先以原文内容、加密算法、密钥及压缩级别在缓存中查找，
+     * 找到时直接使用缓存中的密文，否则加密后放入缓存。
+     *
+     * @param src          原文包
+     * @param dest         加密包
+     * @param password     密码
+     * @param algorithm    加密算法
+     * @param keysize      密钥长度
+     * @param ivsize       向量长度
+     * @param filter       过滤器
+     * @param threads      线程数
+     * @param previous     上一次的加密包，可以与加密包相同，为 null 时完整加密
+     * @param libraryCache 加密嵌套JAR包的缓存
+     * @throws Exception 加密异常
+     */
+    public static void encrypt(File src, File dest, String password, String algorithm, int keysize, int ivsize, XEntryFilter<JarArchiveEntry> filter, int threads, File previous, XLibraryCache libraryCache) throws Exception {
+        encrypt(src, dest, password, algorithm, keysize, ivsize, filter, threads, previous, libraryCache, null);
+    }
+
+    /**
+     * 增量的多线程加密 Spring-Boot JAR 包，并写入通过 --xjar.record 录制的启动加载顺序，启动时按该顺序在后台预解密
+     *
+     * @param src          原文包
+     * @param dest         加密包
+     * @param password     密码
+     * @param algorithm    加密算法
+     * @param keysize      密钥长度
+     * @param ivsize       向量长度
+     * @param filter       过滤器
+     * @param threads      线程数
+     * @param previous     上一次的加密包，可以与加密包相同，为 null 时完整加密
+     * @param libraryCache 加密嵌套JAR包的缓存，为 null 时不缓存
+     * @param preload      录制的启动加载顺序文件，为 null 时不写入
+     * @throws Exception 加密异常
+     */
+    public static void encrypt(File src, File dest, String password, String algorithm, int keysize, int ivsize, XEntryFilter<JarArchiveEntry> filter, int threads, File previous, XLibraryCache libraryCache, File preload) throws Exception {
+        XBootEncryptor xBootEncryptor = new XBootEncryptor(XKit.encryptor(algorithm), filter);
+        xBootEncryptor.setLibraryCache(libraryCache);
+        xBootEncryptor.setPreload(preload);
+        XKey xKey = XKit.key(algorithm, keysize, ivsize, password);
+        if (previous != null) {
+            xBootEncryptor.encrypt(xKey, src, dest, password, threads, previous);
+        } else {
+            xBootEncryptor.encrypt(xKey, src, dest, password, threads);
+        }
+    }
+
+    /**
+     * 边写边加密 Spring-Boot JAR 包，向返回的输出流写入原文包的记录，关闭后即得到加密包，不需要在磁盘上写出原文包。
+     *
+     * @param out      加密包输出流
+     * @param password 密码
+     * @return 原文包的记录输出流
+     * @throws Exception 加密异常
+     */
+    public static ArchiveOutputStream encrypt(OutputStream out, String password) throws Exception {
+        return encrypt(out, password, DEFAULT_ALGORITHM, DEFAULT_KEYSIZE, DEFAULT_IVSIZE, null);
+    }
+
+    /**
+     * 边写边加密 Spring-Boot JAR 包，向返回的输出流写入原文包的记录，关闭后即得到加密包，不需要在磁盘上写出原文包。
+     *
+     * @param out       加密包输出流
+     * @param password  密码
+     * @param algorithm 加密算法
+     * @param keysize   密钥长度
+     * @param ivsize    向量长度
+     * @param filter    过滤器
+     * @return 原文包的记录输出流
+     * @throws Exception 加密异常
+     */
+    public static ArchiveOutputStream encrypt(OutputStream out, String password, String algorithm, int keysize, int ivsize, XEntryFilter<JarArchiveEntry> filter) throws Exception {
+        XBootEncryptor xBootEncryptor = new XBootEncryptor(XKit.encryptor(algorithm), filter);
+        XKey xKey = XKit.key(algorithm, keysize, ivsize, password);
+        return xBootEncryptor.encrypt(xKey, out, password);
+    }
+
+
+    /**
+     * 直接从构建目录多线程加密生成 Spring-Boot JAR 包，不需要先打包成原文包
+     *
+     * @param classes  classes 文件夹
+     * @param libs     依赖JAR包所在的文件夹
+     * @param loader   spring-boot-loader 的JAR包或其解压后的文件夹
+     * @param manifest 清单文件
+     * @param dest     加密包
+     * @param password 密码
+     * @param filter   过滤器
+     * @param threads  线程数
+     * @throws Exception 加密异常
+     */
+    public static void encrypt(File classes, File libs, File loader, File manifest, File dest, String password, XEntryFilter<JarArchiveEntry> filter, int threads) throws Exception {
+        XBootEncryptor xBootEncryptor = new XBootEncryptor(XKit.encryptor(DEFAULT_ALGORITHM), filter);
+        XKey xKey = XKit.key(DEFAULT_ALGORITHM, DEFAULT_KEYSIZE, DEFAULT_IVSIZE, password);
+        xBootEncryptor.encrypt(xKey, classes, libs, loader, manifest, dest, password, threads);
+    }
+
 }
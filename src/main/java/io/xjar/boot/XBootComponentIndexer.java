@@ -0,0 +1,451 @@
+package io.xjar.boot;
+
+import org.apache.commons.compress.archivers.jar.JarArchiveEntry;
+import org.apache.commons.compress.archivers.jar.JarArchiveInputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Spring 组件索引生成器，加密时直接解析原文包中 BOOT-INF/classes 及 BOOT-INF/lib 下所有JAR包的字节码，
+ * 按照 spring-context-indexer 相同的规则生成 META-INF/spring.components ，
+ * 运行时 Spring 的组件扫描直接从索引中得到候选类，只需要解密真正的候选类，不需要解密整个 BOOT-INF/classes 来读取注解。
+ * <p>
+ * 类或接口的构造型包括：直接或间接（通过元注解）标注的带有 @Indexed 的注解、自身或父类及接口上标注了 @Indexed 的类型、
+ * 以及 javax. 开头的注解；带有 javax. 注解的 package-info 的构造型为 package-info 。
+ * 由于索引存在时 Spring 只从索引中查找候选类，任何一个类解析失败时都不生成索引，运行时退回到扫描。
+ *
+ * @author Payne 646742615@qq.com
+ * 2018/12/27 10:30
+ */
+public class XBootComponentIndexer {
+    public static final String COMPONENTS = "META-INF/spring.components";
+    public static final String INDEXED = "org.springframework.stereotype.Indexed";
+    public static final String PACKAGE_INFO = "package-info";
+
+    private static final String CLASSES = "BOOT-INF/classes/";
+    private static final String LIB = "BOOT-INF/lib/";
+
+    private static final int ACC_ANNOTATION = 0x2000;
+    private static final int ACC_ENUM = 0x4000;
+    private static final int ACC_STATIC = 0x0008;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    // 每个线程复用的字节码缓冲区
+    private static final ThreadLocal<byte[]> BUFFER = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[64 * 1024];
+        }
+    };
+
+    private final Map<String, XClassInfo> classes = new ConcurrentHashMap<>();
+    private volatile IOException failure;
+
+    /**
+     * 解析原文包中所有的类，应用自身的类及每个依赖的JAR包分别作为一个任务在线程池中执行。
+     *
+     * @param zipFile  原文包
+     * @param executor 线程池
+     * @throws IOException 有类解析失败时抛出
+     */
+    public void index(final ZipFile zipFile, ExecutorService executor) throws IOException {
+        List<Future<?>> futures = new ArrayList<>();
+        Enumeration<ZipArchiveEntry> entries = zipFile.getEntriesInPhysicalOrder();
+        while (entries.hasMoreElements()) {
+            final ZipArchiveEntry entry = entries.nextElement();
+            final String name = entry.getName();
+            if (entry.isDirectory()) {
+                continue;
+            }
+            if (name.startsWith(CLASSES) && isClass(name.substring(CLASSES.length()))) {
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        try (InputStream in = zipFile.getInputStream(entry)) {
+                            add(name, in);
+                        }
+                        return null;
+                    }
+                }));
+            } else if (name.startsWith(LIB) && name.endsWith(".jar")) {
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        try (JarArchiveInputStream jis = new JarArchiveInputStream(zipFile.getInputStream(entry))) {
+                            JarArchiveEntry jarArchiveEntry;
+                            while ((jarArchiveEntry = jis.getNextJarEntry()) != null) {
+                                if (!jarArchiveEntry.isDirectory() && isClass(jarArchiveEntry.getName())) {
+                                    add(name + "!/" + jarArchiveEntry.getName(), jis);
+                                }
+                            }
+                        }
+                        return null;
+                    }
+                }));
+            }
+        }
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(e.getMessage());
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * 解析一个类，失败时记录下来而不是抛出，以便 {@link #write(OutputStream)} 拒绝生成不完整的索引。
+     *
+     * @param name 类所在的位置，用于错误信息
+     * @param in   字节码输入流，不会被关闭
+     */
+    public void add(String name, InputStream in) {
+        try {
+            byte[] buffer = BUFFER.get();
+            int length = 0;
+            int n;
+            while ((n = in.read(buffer, length, buffer.length - length)) != -1) {
+                length += n;
+                if (length == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                    BUFFER.set(buffer);
+                }
+            }
+            XClassInfo info = XClassInfo.parse(buffer, length);
+            classes.put(info.name, info);
+        } catch (IOException | RuntimeException e) {
+            if (failure == null) {
+                failure = new IOException("could not parse class: " + name, e);
+            }
+        }
+    }
+
+    /**
+     * @return 是否所有的类都解析成功
+     */
+    public boolean isComplete() {
+        return failure == null;
+    }
+
+    /**
+     * 计算每个类的构造型并按类名排序写出索引，格式与 spring-context-indexer 生成的相同。
+     *
+     * @param out 输出流，不会被关闭
+     * @return 写出的类的数量
+     * @throws IOException 有类解析失败或I/O异常
+     */
+    public int write(OutputStream out) throws IOException {
+        if (failure != null) {
+            throw failure;
+        }
+        Map<String, Set<String>> components = new TreeMap<>();
+        for (XClassInfo info : classes.values()) {
+            Set<String> stereotypes = stereotypes(info);
+            if (!stereotypes.isEmpty()) {
+                components.put(info.isPackageInfo() ? info.name.substring(0, Math.max(info.name.lastIndexOf('.'), 0)) : info.name, stereotypes);
+            }
+        }
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, "ISO-8859-1"));
+        for (Map.Entry<String, Set<String>> entry : components.entrySet()) {
+            StringBuilder line = new StringBuilder(entry.getKey()).append('=');
+            boolean first = true;
+            for (String stereotype : entry.getValue()) {
+                if (!first) line.append(',');
+                line.append(stereotype);
+                first = false;
+            }
+            writer.write(line.append('\n').toString());
+        }
+        writer.flush();
+        return components.size();
+    }
+
+    private Set<String> stereotypes(XClassInfo info) {
+        Set<String> stereotypes = new LinkedHashSet<>();
+        if (info.isPackageInfo()) {
+            for (String annotation : info.annotations) {
+                if (annotation.startsWith("javax.")) {
+                    stereotypes.add(PACKAGE_INFO);
+                    break;
+                }
+            }
+            return stereotypes;
+        }
+        if (!info.isCandidate()) {
+            return stereotypes;
+        }
+        collectOnAnnotations(new HashSet<String>(), stereotypes, info.annotations);
+        collectOnTypes(new HashSet<String>(), stereotypes, info);
+        for (String annotation : info.annotations) {
+            if (annotation.startsWith("javax.")) {
+                stereotypes.add(annotation);
+            }
+        }
+        return stereotypes;
+    }
+
+    /**
+     * 带有 @Indexed 的注解本身就是构造型，并且递归查找注解的元注解。
+     */
+    private void collectOnAnnotations(Set<String> seen, Set<String> stereotypes, String[] annotations) {
+        for (String annotation : annotations) {
+            if (!seen.add(annotation)) {
+                continue;
+            }
+            XClassInfo type = classes.get(annotation);
+            if (type != null && type.isAnnotatedWith(INDEXED)) {
+                stereotypes.add(annotation);
+            }
+            if (type != null && !annotation.startsWith("java.lang")) {
+                collectOnAnnotations(seen, stereotypes, type.annotations);
+            }
+        }
+    }
+
+    /**
+     * 自身、父类及接口上直接标注了 @Indexed 的类型也是构造型。
+     */
+    private void collectOnTypes(Set<String> seen, Set<String> stereotypes, XClassInfo type) {
+        if (type == null || !seen.add(type.name)) {
+            return;
+        }
+        if (type.isAnnotatedWith(INDEXED)) {
+            stereotypes.add(type.name);
+        }
+        if (type.superName != null) {
+            collectOnTypes(seen, stereotypes, classes.get(type.superName));
+        }
+        for (String name : type.interfaces) {
+            collectOnTypes(seen, stereotypes, classes.get(name));
+        }
+    }
+
+    private static boolean isClass(String name) {
+        return name.endsWith(".class") && !name.startsWith("META-INF/") && !name.equals("module-info.class");
+    }
+
+    /**
+     * 从字节码中解析出的类名、父类、接口、注解及类型信息
+     */
+    private static class XClassInfo {
+        private final String name;
+        private final String superName;
+        private final String[] interfaces;
+        private final String[] annotations;
+        private final int access;
+        // 是否为非静态的成员类或者局部类、匿名类，这些类不会出现在索引中
+        private final boolean inner;
+
+        XClassInfo(String name, String superName, String[] interfaces, String[] annotations, int access, boolean inner) {
+            this.name = name;
+            this.superName = superName;
+            this.interfaces = interfaces;
+            this.annotations = annotations;
+            this.access = access;
+            this.inner = inner;
+        }
+
+        /**
+         * 只解析常量池、类的继承关系以及类的 RuntimeVisibleAnnotations 、RuntimeInvisibleAnnotations 及 InnerClasses 属性，
+         * 常量池中只记录偏移量，用到的字符串才解码。
+         *
+         * @param b      字节码
+         * @param length 字节码长度
+         */
+        static XClassInfo parse(byte[] b, int length) throws IOException {
+            if (length < 10 || u4(b, 0) != 0xCAFEBABE) {
+                throw new IOException("not a class file");
+            }
+            int count = u2(b, 8);
+            int[] offsets = new int[count];
+            int position = 10;
+            for (int i = 1; i < count; i++) {
+                offsets[i] = position + 1;
+                int tag = b[position] & 0xFF;
+                switch (tag) {
+                    case 1:
+                        position += 3 + u2(b, position + 1);
+                        break;
+                    case 7:
+                    case 8:
+                    case 16:
+                    case 19:
+                    case 20:
+                        position += 3;
+                        break;
+                    case 15:
+                        position += 4;
+                        break;
+                    case 3:
+                    case 4:
+                    case 9:
+                    case 10:
+                    case 11:
+                    case 12:
+                    case 17:
+                    case 18:
+                        position += 5;
+                        break;
+                    case 5:
+                    case 6:
+                        position += 9;
+                        i++;
+                        break;
+                    default:
+                        throw new IOException("unknown constant pool tag: " + tag);
+                }
+            }
+            int access = u2(b, position);
+            int thisClass = u2(b, position + 2);
+            int superClass = u2(b, position + 4);
+            String name = className(b, offsets, thisClass);
+            String superName = superClass != 0 ? className(b, offsets, superClass) : null;
+            String[] interfaces = new String[u2(b, position + 6)];
+            position += 8;
+            for (int i = 0; i < interfaces.length; i++, position += 2) {
+                interfaces[i] = className(b, offsets, u2(b, position));
+            }
+            position = skipMembers(b, position);
+            position = skipMembers(b, position);
+            List<String> annotations = new ArrayList<>();
+            boolean inner = false;
+            int attributes = u2(b, position);
+            position += 2;
+            for (int i = 0; i < attributes; i++) {
+                int attribute = offsets[u2(b, position)];
+                int end = position + 6 + u4(b, position + 2);
+                position += 6;
+                if (equals(b, attribute, "RuntimeVisibleAnnotations") || equals(b, attribute, "RuntimeInvisibleAnnotations")) {
+                    int n = u2(b, position);
+                    position += 2;
+                    for (int j = 0; j < n; j++) {
+                        int descriptor = offsets[u2(b, position)];
+                        annotations.add(binaryName(utf8(b, descriptor + 3, u2(b, descriptor) - 2)));
+                        position = skipElementValuePairs(b, position + 2);
+                    }
+                } else if (equals(b, attribute, "InnerClasses")) {
+                    int n = u2(b, position);
+                    position += 2;
+                    for (int j = 0; j < n; j++, position += 8) {
+                        if (u2(b, position) == thisClass) {
+                            inner = u2(b, position + 2) == 0 || (u2(b, position + 6) & ACC_STATIC) == 0;
+                        }
+                    }
+                }
+                position = end;
+            }
+            if (position > length) {
+                throw new EOFException();
+            }
+            return new XClassInfo(name, superName, interfaces, annotations.toArray(new String[0]), access, inner);
+        }
+
+        private static int skipMembers(byte[] b, int position) {
+            int count = u2(b, position);
+            position += 2;
+            for (int i = 0; i < count; i++) {
+                int attributes = u2(b, position + 6);
+                position += 8;
+                for (int j = 0; j < attributes; j++) {
+                    position += 6 + u4(b, position + 2);
+                }
+            }
+            return position;
+        }
+
+        private static int skipElementValuePairs(byte[] b, int position) {
+            int pairs = u2(b, position);
+            position += 2;
+            for (int i = 0; i < pairs; i++) {
+                position = skipElementValue(b, position + 2);
+            }
+            return position;
+        }
+
+        private static int skipElementValue(byte[] b, int position) {
+            int tag = b[position] & 0xFF;
+            switch (tag) {
+                case 'e':
+                    return position + 5;
+                case '@':
+                    return skipElementValuePairs(b, position + 3);
+                case '[': {
+                    int count = u2(b, position + 1);
+                    position += 3;
+                    for (int i = 0; i < count; i++) {
+                        position = skipElementValue(b, position);
+                    }
+                    return position;
+                }
+                default:
+                    return position + 3;
+            }
+        }
+
+        private static int u2(byte[] b, int position) {
+            return (b[position] & 0xFF) << 8 | (b[position + 1] & 0xFF);
+        }
+
+        private static int u4(byte[] b, int position) {
+            return u2(b, position) << 16 | u2(b, position + 2);
+        }
+
+        private static String className(byte[] b, int[] offsets, int index) {
+            int utf8 = offsets[u2(b, offsets[index])];
+            return binaryName(utf8(b, utf8 + 2, u2(b, utf8)));
+        }
+
+        // 类名及属性名不会包含需要修正 UTF-8 特殊处理的字符
+        private static String utf8(byte[] b, int position, int length) {
+            return new String(b, position, length, UTF_8);
+        }
+
+        private static boolean equals(byte[] b, int utf8, String ascii) {
+            if (u2(b, utf8) != ascii.length()) {
+                return false;
+            }
+            for (int i = 0; i < ascii.length(); i++) {
+                if (b[utf8 + 2 + i] != ascii.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static String binaryName(String internalName) {
+            return internalName.replace('/', '.');
+        }
+
+        boolean isAnnotatedWith(String annotation) {
+            for (String a : annotations) {
+                if (a.equals(annotation)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        boolean isPackageInfo() {
+            return name.endsWith("." + PACKAGE_INFO) || name.equals(PACKAGE_INFO);
+        }
+
+        /**
+         * 与 spring-context-indexer 相同，只有类及接口（不包括注解及枚举）并且是顶层类或静态成员类时才可能成为组件
+         */
+        boolean isCandidate() {
+            return (access & (ACC_ANNOTATION | ACC_ENUM)) == 0 && !inner;
+        }
+    }
+}
@@ -10,8 +10,6 @@ import org.apache.commons.compress.archivers.jar.JarArchiveOutputStream;
 import java.io.*;
 import java.util.jar.Attributes;
 import java.util.jar.Manifest;
-import java.util.zip.CRC32;
-import java.util.zip.CheckedOutputStream;
 import java.util.zip.Deflater;
 
 /**
@@ -24,6 +22,8 @@ public class XBootDecryptor extends XEntryDecryptor<JarArchiveEntry> implements
     // 安全过滤器，避免由于用户自定义过滤器时把其他无关资源加密了造成无法运行
     private final XEntryFilter<JarArchiveEntry> safeFilter = new XBootClassesFilter();
     private final int level;
+    // 嵌套JAR包在内存中缓冲的上限，超过后溢出到临时文件
+    private final int threshold;
 
     public XBootDecryptor(XDecryptor xEncryptor) {
         this(xEncryptor, null);
@@ -38,8 +38,13 @@ public class XBootDecryptor extends XEntryDecryptor<JarArchiveEntry> implements
     }
 
     public XBootDecryptor(XDecryptor xDecryptor, int level, XEntryFilter<JarArchiveEntry> filter) {
+        this(xDecryptor, level, filter, DEFAULT_SPILL_THRESHOLD);
+    }
+
+    public XBootDecryptor(XDecryptor xDecryptor, int level, XEntryFilter<JarArchiveEntry> filter, int threshold) {
         super(xDecryptor, filter);
         this.level = level;
+        this.threshold = threshold;
     }
 
     @Override
@@ -65,10 +70,7 @@ public class XBootDecryptor extends XEntryDecryptor<JarArchiveEntry> implements
             XJarDecryptor xJarDecryptor = new XJarDecryptor(xDecryptor, level);
             JarArchiveEntry entry;
             while ((entry = zis.getNextJarEntry()) != null) {
-                if (entry.getName().startsWith(XJAR_SRC_DIR)
-                        || entry.getName().endsWith(XJAR_INF_DIR)
-                        || entry.getName().endsWith(XJAR_INF_DIR + XJAR_INF_IDX)
-                ) {
+                if (XKit.generated(entry.getName())) {
                     continue;
                 }
                 if (entry.isDirectory()) {
@@ -76,19 +78,22 @@ public class XBootDecryptor extends XEntryDecryptor<JarArchiveEntry> implements
                     jarArchiveEntry.setTime(entry.getTime());
                     zos.putArchiveEntry(jarArchiveEntry);
                 } else if (entry.getName().endsWith(".jar")) {
-                    ByteArrayOutputStream bos = new ByteArrayOutputStream();
-                    CheckedOutputStream cos = new CheckedOutputStream(bos, new CRC32());
-                    boolean filtered = filtrate(entry);
-                    XDecryptor decryptor = filtered ? xJarDecryptor : xNopDecryptor;
-                    decryptor.decrypt(key, nis, cos);
-                    JarArchiveEntry jar = new JarArchiveEntry(entry.getName());
-                    jar.setMethod(JarArchiveEntry.STORED);
-                    jar.setSize(bos.size());
-                    jar.setTime(entry.getTime());
-                    jar.setCrc(cos.getChecksum().getValue());
-                    zos.putArchiveEntry(jar);
-                    ByteArrayInputStream bis = new ByteArrayInputStream(bos.toByteArray());
-                    XKit.transfer(bis, nos);
+                    XSpillOutputStream sos = new XSpillOutputStream(threshold, spillDirectory);
+                    try {
+                        boolean filtered = filtrate(entry);
+                        XDecryptor decryptor = filtered ? xJarDecryptor : xNopDecryptor;
+                        decryptor.decrypt(key, nis, sos);
+                        sos.close();
+                        JarArchiveEntry jar = new JarArchiveEntry(entry.getName());
+                        jar.setMethod(JarArchiveEntry.STORED);
+                        jar.setSize(sos.getSize());
+                        jar.setTime(entry.getTime());
+                        jar.setCrc(sos.getCrc());
+                        zos.putArchiveEntry(jar);
+                        sos.writeTo(nos);
+                    } finally {
+                        sos.delete();
+                    }
                 } else if (entry.getName().equals(META_INF_MANIFEST)) {
                     Manifest manifest = new Manifest(nis);
                     Attributes attributes = manifest.getMainAttributes();
@@ -108,7 +113,7 @@ public class XBootDecryptor extends XEntryDecryptor<JarArchiveEntry> implements
                     boolean filtered = filtrate(entry);
                     XDecryptor decryptor = filtered ? this : xNopDecryptor;
                     try (OutputStream eos = decryptor.decrypt(key, nos)) {
-                        XKit.transfer(nis, eos);
+                        XKit.transfer(nis, eos, false);
                     }
                 }
                 zos.closeArchiveEntry();
@@ -1,20 +1,28 @@
 package io.xjar.boot;
 
 import io.xjar.*;
+import io.xjar.dir.XDirLayout;
 import io.xjar.jar.XJarEncryptor;
 import io.xjar.key.XKey;
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.ArchiveOutputStream;
 import org.apache.commons.compress.archivers.jar.JarArchiveEntry;
 import org.apache.commons.compress.archivers.jar.JarArchiveInputStream;
 import org.apache.commons.compress.archivers.jar.JarArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
 
 import java.io.*;
-import java.util.LinkedHashSet;
-import java.util.Set;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.*;
 import java.util.jar.Attributes;
 import java.util.jar.Manifest;
 import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
 import java.util.zip.CheckedOutputStream;
 import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
 
 /**
  * Spring-Boot JAR包加密器
@@ -26,6 +34,14 @@ public class XBootEncryptor extends XEntryEncryptor<JarArchiveEntry> implements
     // 安全过滤器，避免由于用户自定义过滤器时把其他无关资源加密了造成无法运行
     private final XEntryFilter<JarArchiveEntry> safeFilter = new XBootClassesFilter();
     private final int level;
+    // 一次加密中所有缓冲在内存中的总上限，由所有线程共享，超过后溢出到临时文件
+    private int threshold = DEFAULT_SPILL_BUDGET;
+    // 跨构建共享的加密嵌套JAR包缓存
+    private XLibraryCache libraryCache;
+    // 是否生成 Spring 组件索引
+    private boolean componentIndex;
+    // 录制的启动加载顺序
+    private File preload;
 
     public XBootEncryptor(XEncryptor xEncryptor) {
         this(xEncryptor, null);
@@ -44,6 +60,70 @@ public class XBootEncryptor extends XEntryEncryptor<JarArchiveEntry> implements
         this.level = level;
     }
 
+    /**
+     * @return 一次加密中所有缓冲在内存中的总上限
+     */
+    public int getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * 设置一次加密中所有缓冲在内存中的总上限，由所有线程共享，超过后溢出到临时文件，默认为 {@link XConstants#DEFAULT_SPILL_BUDGET}
+     *
+     * @param threshold 总上限，单位字节
+     */
+    public void setThreshold(int threshold) {
+        this.threshold = threshold;
+    }
+
+    /**
+     * @return 加密嵌套JAR包的缓存，为 null 时不缓存
+     */
+    public XLibraryCache getLibraryCache() {
+        return libraryCache;
+    }
+
+    /**
+     * 设置加密嵌套JAR包的缓存，只用于多线程加密
+     *
+     * @param libraryCache 加密嵌套JAR包的缓存，为 null 时不缓存
+     */
+    public void setLibraryCache(XLibraryCache libraryCache) {
+        this.libraryCache = libraryCache;
+    }
+
+    /**
+     * @return 是否生成 Spring 组件索引
+     */
+    public boolean isComponentIndex() {
+        return componentIndex;
+    }
+
+    /**
+     * 设置是否生成 Spring 组件索引，见 {@link XBootComponentIndexer} ，只用于文件的多线程及增量加密和单线程的流式加密，原文包中已有索引时不生成
+     *
+     * @param componentIndex 是否生成 Spring 组件索引
+     */
+    public void setComponentIndex(boolean componentIndex) {
+        this.componentIndex = componentIndex;
+    }
+
+    /**
+     * @return 录制的启动加载顺序文件，为 null 时不写入
+     */
+    public File getPreload() {
+        return preload;
+    }
+
+    /**
+     * 设置通过 --xjar.record 录制的启动加载顺序文件，写入加密包的 XJAR-INF/PRELOAD.LST 供启动时预解密
+     *
+     * @param preload 录制的启动加载顺序文件，为 null 时不写入
+     */
+    public void setPreload(File preload) {
+        this.preload = preload;
+    }
+
     @Override
     public void encrypt(XKey key, File src, File dest) throws IOException {
         try (
@@ -55,117 +135,1096 @@ public class XBootEncryptor extends XEntryEncryptor<JarArchiveEntry> implements
     }
 
   /**
+   * 输入流不能随机访问，先写到临时文件再与多线程加密走同一条路径，因此与任意线程数的多线程加密结果逐字节相同，
+   * 不需要加密的记录同样原样复制其压缩后的数据。
+   * 临时文件中是完整的原文，只有当前用户可读写，放在 {@link #setSpillDirectory(File)} 指定的文件夹中，未指定时放在系统临时文件夹中；
+   * 不希望落盘时使用 {@link #encrypt(XKey, InputStream, OutputStream, String, int)} 的流水线加密。
+   *
    * @param key      密钥
-   * @param in       输入流
-   * @param out      输出流
+   * @param in       输入流，加密完成后关闭
+   * @param out      输出流，加密完成后关闭
    * @param password 密码
    * @throws IOException
    */
     @Override
     public void encrypt(XKey key, InputStream in, OutputStream out, String password) throws IOException {
+        File src = null;
+        try {
+            try {
+                src = (spillDirectory != null
+                        ? Files.createTempFile(spillDirectory.toPath(), "xjar-", ".jar")
+                        : Files.createTempFile("xjar-", ".jar")).toFile();
+                XKit.transfer(in, src);
+            } finally {
+                XKit.close(in);
+            }
+            encrypt(key, src, out, password, 1, null, null, null);
+        } finally {
+            if (src != null) src.delete();
+        }
+    }
+
+    /**
+     * 流水线加密，适合管道等不能随机访问的输入流：当前线程顺序读取并解压原文包的记录，线程池中并行加密及压缩，
+     * 单独的写出线程严格按照原文包中的记录顺序写出，各阶段之间通过队列衔接，使读写的等待与加密压缩的计算互相重叠。
+     * 在途的数据量按字节数限制：每个记录读入后按原文长度的两倍（原文缓冲及加密结果缓冲）占用额度，原文缓冲删除后归还一半，
+     * 写出后归还另一半，额度不足时读取线程等待，额度与溢出预算相同且不低于 {@link XConstants#DEFAULT_SPILL_THRESHOLD} ，
+     * 单个记录最多占用全部额度，因此超大的记录也能通过，只是不再与其他记录重叠。
+     *
+     * @param key      密钥
+     * @param in       输入流
+     * @param out      输出流
+     * @param password 密码
+     * @param threads  加密及压缩的线程数
+     * @throws IOException I/O 异常
+     */
+    public void encrypt(final XKey key, InputStream in, OutputStream out, String password, int threads) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(threads, 1));
+        ExecutorService writer = Executors.newSingleThreadExecutor();
+        final BlockingQueue<XPending> queue = new LinkedBlockingQueue<>();
+        final int capacity = Math.max(threshold, DEFAULT_SPILL_THRESHOLD);
+        final Semaphore inflight = new Semaphore(capacity);
+        // 队列结束标记
+        final XPending end = new XPending(null, 0);
         JarArchiveInputStream zis = null;
         JarArchiveOutputStream zos = null;
-        Set<String> indexes = new LinkedHashSet<>();
         try {
             zis = new JarArchiveInputStream(in);
             zos = new JarArchiveOutputStream(out);
             zos.setLevel(level);
-            XUnclosedInputStream nis = new XUnclosedInputStream(zis);
-            XUnclosedOutputStream nos = new XUnclosedOutputStream(zos);
-            XJarEncryptor xJarEncryptor = new XJarEncryptor(xEncryptor, level);
+            final JarArchiveOutputStream output = zos;
+            Future<List<XIndex.Record>> written = writer.submit(new Callable<List<XIndex.Record>>() {
+                @Override
+                public List<XIndex.Record> call() throws Exception {
+                    List<XIndex.Record> indexes = new ArrayList<>();
+                    XPending pending;
+                    while ((pending = queue.take()) != end) {
+                        XEncoded encoded = pending.future.get();
+                        if (encoded.getIndex() != null) {
+                            indexes.add(encoded.getIndex());
+                        }
+                        encoded.writeTo(output);
+                        inflight.release(pending.permits);
+                    }
+                    return indexes;
+                }
+            });
+            final XSpillBudget budget = new XSpillBudget(threshold, spillDirectory);
+            final XJarEncryptor xJarEncryptor = new XJarEncryptor(xEncryptor, level, null, compressionPolicy, budget);
             JarArchiveEntry entry;
             Manifest manifest = null;
+            long time = 0;
             while ((entry = zis.getNextJarEntry()) != null) {
-                if (entry.getName().startsWith(XJAR_SRC_DIR)
-                        || entry.getName().endsWith(XJAR_INF_DIR)
-                        || entry.getName().endsWith(XJAR_INF_DIR + XJAR_INF_IDX)
-                ) {
+                if (XKit.generated(entry.getName())) {
                     continue;
                 }
-                if (entry.isDirectory()) {
-                    JarArchiveEntry jarArchiveEntry = new JarArchiveEntry(entry.getName());
-                    jarArchiveEntry.setTime(entry.getTime());
-                    zos.putArchiveEntry(jarArchiveEntry);
-                } else if (entry.getName().endsWith(".jar")) {
-                    ByteArrayOutputStream bos = new ByteArrayOutputStream();
-                    CheckedOutputStream cos = new CheckedOutputStream(bos, new CRC32());
-                    boolean filtered = filtrate(entry);
-                    if (filtered) { indexes.add(entry.getName()); };
-                    XEncryptor encryptor = filtered ? xJarEncryptor : xNopEncryptor;
-                    encryptor.encrypt(key, nis, cos);
-                    JarArchiveEntry jar = new JarArchiveEntry(entry.getName());
-                    jar.setMethod(JarArchiveEntry.STORED);
-                    jar.setSize(bos.size());
-                    jar.setTime(entry.getTime());
-                    jar.setCrc(cos.getChecksum().getValue());
-                    zos.putArchiveEntry(jar);
-                    ByteArrayInputStream bis = new ByteArrayInputStream(bos.toByteArray());
-                    XKit.transfer(bis, nos);
-                } else if (entry.getName().equals(META_INF_MANIFEST)) {
-                    manifest = new Manifest(nis);
-                    Attributes attributes = manifest.getMainAttributes();
-                    String mainClass = attributes.getValue("Main-Class");
-                    if (mainClass != null) {
-                        attributes.putValue("Boot-Main-Class", mainClass);
-                        attributes.putValue("Main-Class", "io.xjar.boot.XBootLauncher");
+                time = Math.max(time, entry.getTime());
+                final JarArchiveEntry jarArchiveEntry = new JarArchiveEntry(entry.getName());
+                jarArchiveEntry.setTime(entry.getTime());
+                final boolean filtered = !entry.isDirectory() && filtrate(entry);
+                final XSpillOutputStream plain = entry.isDirectory() ? null : new XSpillOutputStream(budget);
+                final int permits;
+                Future<XEncoded> future;
+                try {
+                    // 目录记录没有数据
+                    if (plain != null) {
+                        if (entry.getName().equals(META_INF_MANIFEST)) {
+                            manifest = new Manifest(new XUnclosedInputStream(zis));
+                            Attributes attributes = manifest.getMainAttributes();
+                            String mainClass = attributes.getValue("Main-Class");
+                            if (mainClass != null) {
+                                attributes.putValue("Boot-Main-Class", mainClass);
+                                attributes.putValue("Main-Class", "io.xjar.boot.XBootLauncher");
+                            }
+                            manifest.write(plain);
+                        } else {
+                            XKit.transfer(zis, plain, false);
+                        }
+                        plain.close();
+                        // 明文长度已知时小记录可以一次性加密
+                        jarArchiveEntry.setSize(plain.getSize());
+                    }
+                    // 原文缓冲及加密结果缓冲各占一半，目录记录也占用额度，避免大量空记录无限制地堆积
+                    permits = (int) Math.min(capacity, plain != null ? plain.getSize() * 2 + 2 : 2);
+                    acquire(inflight, permits, written);
+                } catch (Exception e) {
+                    if (plain != null) plain.delete();
+                    throw e;
+                }
+                future = executor.submit(new Callable<XEncoded>() {
+                    @Override
+                    public XEncoded call() throws Exception {
+                        try {
+                            return encode(key, jarArchiveEntry, plain, filtered, xJarEncryptor, budget);
+                        } finally {
+                            inflight.release(permits / 2);
+                        }
                     }
-                    JarArchiveEntry jarArchiveEntry = new JarArchiveEntry(entry.getName());
-                    jarArchiveEntry.setTime(entry.getTime());
+                });
+                queue.put(new XPending(future, permits - permits / 2));
+            }
+            queue.put(end);
+
+            List<XIndex.Record> indexes = written.get();
+            writeIndexes(zos, indexes, manifest, password, time);
+
+            zos.finish();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(e.getMessage());
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        } finally {
+            abort(executor);
+            writer.shutdownNow();
+            // 出错时清理已经完成但未写出的记录所占用的临时文件，被取消的任务没有开始，也没有临时文件
+            for (XPending pending : queue) {
+                if (pending == end || pending.future.isCancelled()) {
+                    continue;
+                }
+                try {
+                    XEncoded encoded = pending.future.get();
+                    if (encoded != null) encoded.delete();
+                } catch (Exception e) {
+                    // ignored
+                }
+            }
+            XKit.close(zis);
+            XKit.close(zos);
+        }
+    }
+
+    /**
+     * 流水线中加密及压缩一个已经缓冲好的原文记录，完成后删除原文缓冲。嵌套JAR包整体处理后以 STORED 方式存储，
+     * 不需要加密的嵌套JAR包直接使用原文缓冲。
+     */
+    private XEncoded encode(XKey key, JarArchiveEntry entry, XSpillOutputStream plain, boolean filtered, XJarEncryptor xJarEncryptor, XSpillBudget budget) throws IOException {
+        if (entry.isDirectory()) {
+            return new XEncoded(entry, null, null);
+        }
+        if (entry.getName().endsWith(".jar") && !filtered) {
+            entry.setMethod(JarArchiveEntry.STORED);
+            entry.setCrc(plain.getCrc());
+            entry.setCompressedSize(plain.getSize());
+            return new XEncoded(entry, plain, null);
+        }
+        try (InputStream in = plain.getInputStream()) {
+            if (!entry.getName().endsWith(".jar")) {
+                return encode(key, entry, in, filtered, level, budget);
+            }
+            return encode(key, entry, in, xJarEncryptor, budget);
+        } finally {
+            plain.delete();
+        }
+    }
+
+    /**
+     * 申请在途数据的额度，额度不足时等待；写出线程出错退出后不再归还额度，此时抛出其异常而不是一直等待。
+     */
+    private static void acquire(Semaphore inflight, int permits, Future<?> consumer) throws InterruptedException, ExecutionException {
+        while (!inflight.tryAcquire(permits, 100, TimeUnit.MILLISECONDS)) {
+            if (consumer.isDone()) {
+                consumer.get();
+                throw new IllegalStateException("pipeline writer exited");
+            }
+        }
+    }
+
+    /**
+     * 流水线中等待写出的记录及其写出后归还的在途额度
+     */
+    private static class XPending {
+        private final Future<XEncoded> future;
+        private final int permits;
+
+        XPending(Future<XEncoded> future, int permits) {
+            this.future = future;
+            this.permits = permits;
+        }
+    }
+
+    /**
+     * 边写边加密，返回的输出流接收原文包的记录，直接写出加密包，并在结束时写出加密资源索引及注入XJar框架的classes，
+     * 适合在打包工具中直接生成加密包，不需要先在磁盘上写出原文包再读回来加密。
+     * 需要加密的记录一边写入一边加密及压缩，不需要加密并且写入时已知长度及CRC的 STORED 嵌套JAR包直接写出，
+     * 其余的嵌套JAR包及清单文件先缓冲再处理，超过内存上限的部分溢出到临时文件。
+     *
+     * @param key      密钥
+     * @param out      加密包输出流，输出流关闭时关闭
+     * @param password 密码
+     * @return 原文包的记录输出流
+     */
+    public ArchiveOutputStream encrypt(XKey key, OutputStream out, String password) {
+        return new XBootArchiveOutputStream(key, out, password);
+    }
+
+    /**
+     * 流式加密一个记录：嵌套JAR包整体处理后以 STORED 方式写出，清单文件改写启动类，需要加密的记录加密后写出并记录其索引，
+     * 其余记录按压缩策略原样写出。
+     *
+     * @param key           密钥
+     * @param entry         原文记录
+     * @param in            原文记录的输入流，不会被关闭
+     * @param zos           加密包输出流
+     * @param xJarEncryptor 嵌套JAR包加密器
+     * @param indexes       加密资源索引
+     * @param budget        缓冲的内存预算
+     * @return 记录为清单文件时返回改写后的清单，否则返回 null
+     * @throws IOException I/O 异常
+     */
+    private Manifest encrypt(XKey key, JarArchiveEntry entry, InputStream in, JarArchiveOutputStream zos, XJarEncryptor xJarEncryptor, List<XIndex.Record> indexes, XSpillBudget budget) throws IOException {
+        XUnclosedInputStream nis = new XUnclosedInputStream(in);
+        XUnclosedOutputStream nos = new XUnclosedOutputStream(zos);
+        if (entry.isDirectory()) {
+            JarArchiveEntry jarArchiveEntry = new JarArchiveEntry(entry.getName());
+            jarArchiveEntry.setTime(entry.getTime());
+            zos.putArchiveEntry(jarArchiveEntry);
+        } else if (entry.getName().endsWith(".jar")) {
+            XSpillOutputStream sos = new XSpillOutputStream(budget);
+            try {
+                boolean filtered = filtrate(entry);
+                XEncryptor encryptor = filtered ? xJarEncryptor : xNopEncryptor;
+                encryptor.encrypt(key, nis, sos);
+                sos.close();
+                // 嵌套JAR包整体加密，明文长度未知
+                if (filtered) indexes.add(new XIndex.Record(entry.getName(), -1, sos.getSize(), 0, key.getAlgorithm()));
+                JarArchiveEntry jar = new JarArchiveEntry(entry.getName());
+                jar.setMethod(JarArchiveEntry.STORED);
+                jar.setSize(sos.getSize());
+                jar.setTime(entry.getTime());
+                jar.setCrc(sos.getCrc());
+                zos.putArchiveEntry(jar);
+                sos.writeTo(nos);
+            } finally {
+                sos.delete();
+            }
+        } else if (entry.getName().equals(META_INF_MANIFEST)) {
+            Manifest manifest = new Manifest(nis);
+            Attributes attributes = manifest.getMainAttributes();
+            String mainClass = attributes.getValue("Main-Class");
+            if (mainClass != null) {
+                attributes.putValue("Boot-Main-Class", mainClass);
+                attributes.putValue("Main-Class", "io.xjar.boot.XBootLauncher");
+            }
+            JarArchiveEntry jarArchiveEntry = new JarArchiveEntry(entry.getName());
+            jarArchiveEntry.setTime(entry.getTime());
+            zos.putArchiveEntry(jarArchiveEntry);
+            manifest.write(nos);
+            zos.closeArchiveEntry();
+            return manifest;
+        } else if (filtrate(entry)) {
+            JarArchiveEntry jarArchiveEntry = new JarArchiveEntry(entry.getName());
+            jarArchiveEntry.setTime(entry.getTime());
+            // 明文长度已知时小记录可以一次性加密
+            if (entry.getSize() >= 0) jarArchiveEntry.setSize(entry.getSize());
+            indexes.add(encrypt(key, zos, jarArchiveEntry, nis, level));
+            return null;
+        } else {
+            JarArchiveEntry jarArchiveEntry = new JarArchiveEntry(entry.getName());
+            jarArchiveEntry.setTime(entry.getTime());
+            copy(zos, jarArchiveEntry, nis, level);
+            return null;
+        }
+        zos.closeArchiveEntry();
+        return null;
+    }
+
+
+    /**
+     * 多线程加密，通过随机访问读取原文包，在线程池中并行完成各个记录的加密及压缩，再严格按照原文包中的记录顺序写出，
+     * 因此同一个原文包在任意线程数下得到的加密包都是逐字节相同的，也与流式加密 {@link #encrypt(XKey, InputStream, OutputStream, String)} 的结果相同。
+     * 不需要加密的记录直接原样复制其压缩后的数据。
+     * 这个方法不写出摘要清单，以后需要增量加密时改用 {@link #encrypt(XKey, File, File, String, int, File)} ，上一次的加密包为 null 时完整加密并写出清单。
+     *
+     * @param key      密钥
+     * @param src      原文包
+     * @param dest     加密包
+     * @param password 密码
+     * @param threads  线程数
+     * @throws IOException I/O 异常
+     */
+    public void encrypt(XKey key, File src, File dest, String password, int threads) throws IOException {
+        encrypt(key, src, new FileOutputStream(dest), password, threads, null, null, null);
+    }
+
+    /**
+     * 增量的多线程加密，原文没有变化的记录直接原样复制上一次加密包中的密文，不需要重新加密及压缩，耗时与变化的记录数量成正比。
+     * 上一次的加密包旁边需要有其摘要清单，见 {@link XDigestIndex} ，清单不存在或者算法、密钥、压缩级别及压缩策略有任何不同时退化为完整加密。
+     * 加密完成后在加密包旁边写出本次的摘要清单供下一次增量加密使用，上一次的加密包可以就是本次的加密包。
+     *
+     * @param key      密钥
+     * @param src      原文包
+     * @param dest     加密包
+     * @param password 密码
+     * @param threads  线程数
+     * @param previous 上一次的加密包，为 null 时完整加密
+     * @throws IOException I/O 异常
+     */
+    public void encrypt(XKey key, File src, File dest, String password, int threads, File previous) throws IOException {
+        XDigestIndex base = previous != null && previous.isFile() ? XDigestIndex.load(XDigestIndex.of(previous)) : null;
+        if (base != null && !base.matches(key, level, compressionPolicy)) {
+            base = null;
+        }
+        // 覆盖上一次的加密包时先把它移开，加密失败时再移回去
+        File moved = null;
+        if (base != null && previous.getCanonicalFile().equals(dest.getCanonicalFile())) {
+            moved = new File(dest.getPath() + ".previous");
+            if (moved.exists() && !moved.delete() || !previous.renameTo(moved)) {
+                throw new IOException("could not move " + previous + " to " + moved);
+            }
+            previous = moved;
+        }
+        XDigestIndex digests = new XDigestIndex(key, level, compressionPolicy);
+        boolean success = false;
+        try {
+            encrypt(key, src, new FileOutputStream(dest), password, threads, base != null ? previous : null, base, digests);
+            digests.write(XDigestIndex.of(dest));
+            success = true;
+        } finally {
+            if (moved != null) {
+                if (success) {
+                    if (!moved.delete()) moved.deleteOnExit();
+                } else if (dest.delete() || !dest.exists()) {
+                    moved.renameTo(dest);
+                }
+            }
+        }
+    }
+
+    /**
+     * 多线程加密的实现，输出流在结束时关闭。生成的记录使用原文包中最新的记录的修改时间，不依赖文件系统的时间，保证加密结果可复现。
+     */
+    private void encrypt(XKey key, File src, OutputStream out, String password, int threads, File previous, XDigestIndex base, XDigestIndex digests) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(threads, 1));
+        ZipFile zipFile = null;
+        ZipFile previousFile = null;
+        JarArchiveOutputStream zos = null;
+        List<XIndex.Record> indexes = new ArrayList<>();
+        Deque<Future<XBootEncoded>> futures = new ArrayDeque<>();
+        try {
+            zos = new JarArchiveOutputStream(out);
+            zos.setLevel(level);
+            zipFile = new ZipFile(src);
+            XBootComponentIndexer indexer = null;
+            if (componentIndex && zipFile.getEntry("BOOT-INF/classes/" + XBootComponentIndexer.COMPONENTS) == null) {
+                indexer = new XBootComponentIndexer();
+                try {
+                    indexer.index(zipFile, executor);
+                } catch (IOException e) {
+                    // 有类无法解析时不生成索引，运行时退回到扫描
+                    indexer = null;
+                }
+            }
+            previousFile = previous != null ? new ZipFile(previous) : null;
+            // 所有在途记录及嵌套JAR包中的记录共享同一个内存预算，内存占用与线程数无关
+            XSpillBudget budget = new XSpillBudget(threshold, spillDirectory);
+            XJarEncryptor xJarEncryptor = new XJarEncryptor(xEncryptor, level, null, compressionPolicy, budget);
+            // 限制同时在途的记录数量，避免已加密但未写出的记录过多占用内存
+            int window = Math.max(threads, 1) * 4;
+            Enumeration<ZipArchiveEntry> entries = zipFile.getEntriesInPhysicalOrder();
+            Manifest manifest = null;
+            while (entries.hasMoreElements() || !futures.isEmpty()) {
+                while (entries.hasMoreElements() && futures.size() < window) {
+                    ZipArchiveEntry zipArchiveEntry = entries.nextElement();
+                    JarArchiveEntry entry = new JarArchiveEntry(zipArchiveEntry);
+                    if (XKit.generated(entry.getName())) {
+                        continue;
+                    }
+                    boolean filtered = !entry.isDirectory() && !entry.getName().equals(META_INF_MANIFEST) && filtrate(entry);
+                    futures.add(executor.submit(new XBootEncoding(key, zipFile, zipArchiveEntry, filtered, xJarEncryptor, previousFile, base, digests != null, budget)));
+                }
+                Future<XBootEncoded> future = futures.poll();
+                if (future == null) {
+                    break;
+                }
+                XBootEncoded encoded = future.get();
+                if (encoded.manifest != null) {
+                    manifest = encoded.manifest;
+                }
+                if (encoded.index != null) {
+                    indexes.add(encoded.index);
+                }
+                if (encoded.digest != null && digests != null) {
+                    digests.add(encoded.digest);
+                }
+                if (encoded.raw != null) {
+                    XKit.copy(zipFile, encoded.raw, zos);
+                } else if (encoded.reused != null) {
+                    JarArchiveEntry jarArchiveEntry = new JarArchiveEntry(encoded.name);
+                    jarArchiveEntry.setTime(encoded.time);
+                    jarArchiveEntry.setMethod(encoded.reused.getMethod());
+                    jarArchiveEntry.setCrc(encoded.reused.getCrc());
+                    jarArchiveEntry.setSize(encoded.reused.getSize());
+                    jarArchiveEntry.setCompressedSize(encoded.reused.getCompressedSize());
+                    try (InputStream in = previousFile.getRawInputStream(encoded.reused)) {
+                        zos.addRawArchiveEntry(jarArchiveEntry, in);
+                    }
+                } else if (encoded.data == null) {
+                    JarArchiveEntry jarArchiveEntry = new JarArchiveEntry(encoded.name);
+                    jarArchiveEntry.setTime(encoded.time);
                     zos.putArchiveEntry(jarArchiveEntry);
-                    manifest.write(nos);
+                    zos.closeArchiveEntry();
                 } else {
-                    JarArchiveEntry jarArchiveEntry = new JarArchiveEntry(entry.getName());
-                    jarArchiveEntry.setTime(entry.getTime());
-                    zos.putArchiveEntry(jarArchiveEntry);
-                    boolean filtered = filtrate(entry);
-                    if (filtered) indexes.add(entry.getName());
-                    XEncryptor encryptor = filtered ? this : xNopEncryptor;
-                    try (OutputStream eos = encryptor.encrypt(key, nos)) {
-                        XKit.transfer(nis, eos);
+                    JarArchiveEntry jarArchiveEntry = new JarArchiveEntry(encoded.name);
+                    jarArchiveEntry.setTime(encoded.time);
+                    jarArchiveEntry.setMethod(encoded.method);
+                    jarArchiveEntry.setCrc(encoded.crc);
+                    jarArchiveEntry.setSize(encoded.size);
+                    jarArchiveEntry.setCompressedSize(encoded.data.getSize());
+                    try (InputStream in = encoded.data.getInputStream()) {
+                        zos.addRawArchiveEntry(jarArchiveEntry, in);
+                    } finally {
+                        encoded.data.delete();
                     }
                 }
-                zos.closeArchiveEntry();
             }
 
-            if (!indexes.isEmpty()) {
-                String classpath = "BOOT-INF/classes/";
-                JarArchiveEntry XJAR_INF = new JarArchiveEntry(classpath + XJAR_INF_DIR);
-                XJAR_INF.setTime(System.currentTimeMillis());
-                zos.putArchiveEntry(XJAR_INF);
+            long time = time(zipFile);
+            if (indexer != null) {
+                JarArchiveEntry COMPONENTS = new JarArchiveEntry("BOOT-INF/classes/" + XBootComponentIndexer.COMPONENTS);
+                COMPONENTS.setTime(time);
+                zos.putArchiveEntry(COMPONENTS);
+                indexer.write(zos);
                 zos.closeArchiveEntry();
+            }
+
+            writeIndexes(zos, indexes, manifest, password, time);
 
-                JarArchiveEntry IDX = new JarArchiveEntry(classpath + XJAR_INF_DIR + XJAR_INF_IDX);
-                IDX.setTime(System.currentTimeMillis());
-                zos.putArchiveEntry(IDX);
-                int idx = classpath.length();
-                for (String index : indexes) {
-                    nos.write(index.substring(idx).getBytes());
-                    nos.write(CRLF.getBytes());
+            zos.finish();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(e.getMessage());
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        } finally {
+            abort(executor);
+            // 出错时清理已经完成但未写出的记录所占用的临时文件，被取消的任务没有开始，也没有临时文件
+            for (Future<XBootEncoded> future : futures) {
+                if (future.isCancelled()) {
+                    continue;
                 }
-                zos.closeArchiveEntry();
+                try {
+                    XBootEncoded encoded = future.get();
+                    if (encoded.data != null) encoded.data.delete();
+                } catch (Exception e) {
+                    // ignored
+                }
+            }
+            XKit.close(zipFile);
+            XKit.close(previousFile);
+            XKit.close(zos);
+        }
+    }
 
-                JarArchiveEntry ASSIGN_FILE = new JarArchiveEntry(classpath + XJAR_INF_DIR + XConstants.ASSIGN_FILE);
-                ASSIGN_FILE.setTime(System.currentTimeMillis());
-                zos.putArchiveEntry(ASSIGN_FILE);
-                nos.write(password.getBytes());
-                nos.write(CRLF.getBytes());
-                zos.closeArchiveEntry();
+    /**
+     * @param zipFile 原文包
+     * @return 原文包中最新的记录的修改时间，作为生成记录的修改时间
+     */
+    private static long time(ZipFile zipFile) {
+        long time = 0;
+        Enumeration<ZipArchiveEntry> entries = zipFile.getEntries();
+        while (entries.hasMoreElements()) {
+            time = Math.max(time, entries.nextElement().getTime());
+        }
+        return time;
+    }
 
-                String mainClass = manifest != null && manifest.getMainAttributes() != null ? manifest.getMainAttributes().getValue("Main-Class") : null;
-                if (mainClass != null) {
-                    XInjector.inject(zos);
+    /**
+     * 直接从构建目录多线程加密生成 Spring-Boot JAR 包，classes 文件夹对应 BOOT-INF/classes/ ，依赖文件夹对应 BOOT-INF/lib/ ，
+     * Spring-Boot 的启动器原样放在加密包的根目录，不需要先打包成原文包再读回来加密。
+     *
+     * @param key      密钥
+     * @param classes  classes 文件夹，例如 target/classes
+     * @param libs     依赖JAR包所在的文件夹，为 null 时没有依赖
+     * @param loader   spring-boot-loader 的JAR包或其解压后的文件夹，其中的 META-INF/ 不会被添加
+     * @param manifest 清单文件
+     * @param dest     加密包
+     * @param password 密码
+     * @param threads  线程数
+     * @throws IOException I/O 异常
+     */
+    public void encrypt(XKey key, File classes, File libs, File loader, File manifest, File dest, String password, int threads) throws IOException {
+        XDirLayout layout = new XDirLayout();
+        layout.add("BOOT-INF/classes/", classes);
+        if (libs != null) {
+            layout.add("BOOT-INF/lib/", libs);
+        }
+        if (loader.isDirectory()) {
+            File[] children = loader.listFiles();
+            for (int i = 0; children != null && i < children.length; i++) {
+                File child = children[i];
+                if (!child.getName().equals("META-INF")) {
+                    layout.add(child.getName() + (child.isDirectory() ? "/" : ""), child);
                 }
             }
+            encrypt(key, layout, null, manifest, dest, password, threads);
+        } else {
+            try (ZipFile zipFile = new ZipFile(loader)) {
+                encrypt(key, layout, zipFile, manifest, dest, password, threads);
+            }
+        }
+    }
+
+    /**
+     * 直接从构建目录布局多线程加密生成 Spring-Boot JAR 包，文件在线程池中并行读取、加密及压缩，再按记录名称的顺序写出。
+     * 布局需要包含 Spring-Boot 的启动器，例如解压后的 spring-boot-loader 以空字符串为前缀添加，否则加密包无法启动。
+     *
+     * @param key      密钥
+     * @param layout   构建目录布局
+     * @param manifest 清单文件，其中的 Main-Class 改为 XJar 的启动器
+     * @param dest     加密包
+     * @param password 密码
+     * @param threads  线程数
+     * @throws IOException              I/O 异常
+     * @throws IllegalArgumentException 布局中没有 Spring-Boot 的启动器
+     */
+    public void encrypt(XKey key, XDirLayout layout, File manifest, File dest, String password, int threads) throws IOException {
+        encrypt(key, layout, null, manifest, dest, password, threads);
+    }
+
+    /**
+     * 直接从构建目录布局及启动器JAR包多线程加密生成 Spring-Boot JAR 包，启动器JAR包中的记录不加密原样拷贝。
+     * 生成记录的修改时间取清单文件、布局中的文件及启动器记录中最新的修改时间，同样的输入总是得到相同的加密包。
+     *
+     * @param key      密钥
+     * @param layout   构建目录布局
+     * @param loader   spring-boot-loader 的JAR包，为 null 时启动器需要包含在布局中
+     * @param manifest 清单文件，其中的 Main-Class 改为 XJar 的启动器
+     * @param dest     加密包
+     * @param password 密码
+     * @param threads  线程数
+     * @throws IOException              I/O 异常
+     * @throws IllegalArgumentException 布局及启动器JAR包中都没有 Spring-Boot 的启动器
+     */
+    private void encrypt(XKey key, XDirLayout layout, ZipFile loader, File manifest, File dest, String password, int threads) throws IOException {
+        SortedMap<String, File> files = layout.getFiles();
+        List<ZipArchiveEntry> loaders = new ArrayList<>();
+        boolean launchable = !files.subMap(SPRING_BOOT_LOADER, SPRING_BOOT_LOADER + Character.MAX_VALUE).isEmpty();
+        long time = manifest.lastModified();
+        for (File file : files.values()) {
+            time = Math.max(time, file.lastModified());
+        }
+        if (loader != null) {
+            Enumeration<ZipArchiveEntry> entries = loader.getEntries();
+            while (entries.hasMoreElements()) {
+                ZipArchiveEntry entry = entries.nextElement();
+                String name = entry.getName();
+                if (name.startsWith("META-INF/") || files.containsKey(name)) {
+                    continue;
+                }
+                launchable = launchable || name.startsWith(SPRING_BOOT_LOADER);
+                time = Math.max(time, entry.getTime());
+                loaders.add(entry);
+            }
+        }
+        if (!launchable) {
+            throw new IllegalArgumentException("no spring-boot-loader classes under " + SPRING_BOOT_LOADER + " in the layout");
+        }
+
+        JarArchiveOutputStream zos = null;
+        try {
+            zos = new JarArchiveOutputStream(new FileOutputStream(dest));
+            zos.setLevel(level);
+            Manifest mf;
+            try (InputStream in = new FileInputStream(manifest)) {
+                mf = new Manifest(in);
+            }
+            Attributes attributes = mf.getMainAttributes();
+            String mainClass = attributes.getValue("Main-Class");
+            if (mainClass != null) {
+                attributes.putValue("Boot-Main-Class", mainClass);
+                attributes.putValue("Main-Class", "io.xjar.boot.XBootLauncher");
+            }
+            JarArchiveEntry MANIFEST = new JarArchiveEntry(META_INF_MANIFEST);
+            MANIFEST.setTime(manifest.lastModified());
+            zos.putArchiveEntry(MANIFEST);
+            mf.write(new XUnclosedOutputStream(zos));
+            zos.closeArchiveEntry();
+
+            for (ZipArchiveEntry entry : loaders) {
+                XKit.copy(loader, entry, zos);
+            }
+
+            XSpillBudget budget = new XSpillBudget(threshold, spillDirectory);
+            XJarEncryptor xJarEncryptor = new XJarEncryptor(xEncryptor, level, null, compressionPolicy, budget);
+            List<XIndex.Record> indexes = encrypt(key, layout, this, xJarEncryptor, zos, level, budget, threads);
+
+            writeIndexes(zos, indexes, mf, password, time);
 
             zos.finish();
         } finally {
-            XKit.close(zis);
             XKit.close(zos);
         }
     }
 
+    /**
+     * 写出加密资源索引、启动加载顺序及密码文件，并在可执行的JAR包中注入XJar框架的classes
+     *
+     * @param zos      jar包输出流
+     * @param indexes  加密资源索引
+     * @param manifest 清单文件
+     * @param password 密码
+     * @param time     生成记录的修改时间
+     * @throws IOException I/O 异常
+     */
+    private void writeIndexes(JarArchiveOutputStream zos, List<XIndex.Record> indexes, Manifest manifest, String password, long time) throws IOException {
+        if (!indexes.isEmpty()) {
+            String classpath = "BOOT-INF/classes/";
+            JarArchiveEntry XJAR_INF = new JarArchiveEntry(classpath + XJAR_INF_DIR);
+            XJAR_INF.setTime(time);
+            zos.putArchiveEntry(XJAR_INF);
+            zos.closeArchiveEntry();
+
+            JarArchiveEntry IDX = new JarArchiveEntry(classpath + XJAR_INF_DIR + XJAR_INF_IDX);
+            IDX.setTime(time);
+            zos.putArchiveEntry(IDX);
+            int idx = classpath.length();
+            List<XIndex.Record> records = new ArrayList<>(indexes.size());
+            for (XIndex.Record index : indexes) {
+                String name = index.getName().substring(idx);
+                zos.write(name.getBytes());
+                zos.write(CRLF.getBytes());
+                records.add(new XIndex.Record(name, index.getPlainLength(), index.getCipherLength(), index.getCrc(), index.getAlgorithm()));
+            }
+            zos.closeArchiveEntry();
+
+            JarArchiveEntry BIN = new JarArchiveEntry(classpath + XJAR_INF_DIR + XJAR_INF_BIN);
+            BIN.setTime(time);
+            zos.putArchiveEntry(BIN);
+            XIndex.write(zos, records);
+            zos.closeArchiveEntry();
+
+            if (preload != null) {
+                JarArchiveEntry LST = new JarArchiveEntry(classpath + XJAR_INF_DIR + XJAR_INF_LST);
+                LST.setTime(time);
+                zos.putArchiveEntry(LST);
+                try (InputStream in = new FileInputStream(preload)) {
+                    XKit.transfer(in, zos, false);
+                }
+                zos.closeArchiveEntry();
+            }
+
+            JarArchiveEntry ASSIGN_FILE = new JarArchiveEntry(classpath + XJAR_INF_DIR + XConstants.ASSIGN_FILE);
+            ASSIGN_FILE.setTime(time);
+            zos.putArchiveEntry(ASSIGN_FILE);
+            zos.write(password.getBytes());
+            zos.write(CRLF.getBytes());
+            zos.closeArchiveEntry();
+
+            String mainClass = manifest != null && manifest.getMainAttributes() != null ? manifest.getMainAttributes().getValue("Main-Class") : null;
+            if (mainClass != null) {
+                XInjector.inject(zos, time);
+            }
+        }
+    }
+
     @Override
     public boolean filtrate(JarArchiveEntry entry) {
         return super.filtrate(entry) && safeFilter.filtrate(entry);
     }
+
+    /**
+     * 单个记录的加密及压缩任务
+     */
+    private class XBootEncoding implements Callable<XBootEncoded> {
+        private final XKey key;
+        private final ZipFile zipFile;
+        private final ZipArchiveEntry entry;
+        private final boolean filtered;
+        private final XJarEncryptor xJarEncryptor;
+        private final ZipFile previous;
+        private final XDigestIndex base;
+        private final boolean digest;
+        private final XSpillBudget budget;
+
+        XBootEncoding(XKey key, ZipFile zipFile, ZipArchiveEntry entry, boolean filtered, XJarEncryptor xJarEncryptor, ZipFile previous, XDigestIndex base, boolean digest, XSpillBudget budget) {
+            this.key = key;
+            this.zipFile = zipFile;
+            this.entry = entry;
+            this.filtered = filtered;
+            this.xJarEncryptor = xJarEncryptor;
+            this.previous = previous;
+            this.base = base;
+            this.digest = digest;
+            this.budget = budget;
+        }
+
+        @Override
+        public XBootEncoded call() throws Exception {
+            XBootEncoded encoded = new XBootEncoded(entry.getName(), entry.getTime());
+            if (entry.isDirectory()) {
+                return encoded;
+            }
+            // 不需要加密的记录直接原样复制其压缩后的数据
+            if (!filtered && !entry.getName().equals(META_INF_MANIFEST)) {
+                encoded.raw = entry;
+                return encoded;
+            }
+            byte[] hash = null;
+            if (filtered && digest) {
+                // 摘要按原文包中压缩后的原始数据计算，不需要解压，压缩方式不同时只会导致重新加密
+                try (InputStream in = zipFile.getRawInputStream(entry)) {
+                    hash = XDigestIndex.digest(in);
+                }
+                if (base != null && reuse(encoded, hash)) {
+                    return encoded;
+                }
+            }
+            long start = System.nanoTime();
+            try {
+                encode(encoded);
+            } catch (Exception e) {
+                if (encoded.data != null) encoded.data.delete();
+                throw e;
+            }
+            int compression = encoded.method == JarArchiveEntry.STORED ? XCompressionPolicy.STORED : encoded.level;
+            compressionReport.record(compression, encoded.size, encoded.data.getSize(), System.nanoTime() - start);
+            if (hash != null) {
+                encoded.digest = new XDigestIndex.Digest(encoded.name, entry.getCrc(), entry.getSize(), hash, encoded.crc);
+            }
+            return encoded;
+        }
+
+        /**
+         * 原文的CRC、长度及摘要都与上一次相同，并且上一次加密包中的密文记录与摘要清单对应时，复用上一次的密文记录。
+         */
+        private boolean reuse(XBootEncoded encoded, byte[] hash) {
+            XDigestIndex.Digest digest = base.get(entry.getName());
+            ZipArchiveEntry reused = digest != null ? previous.getEntry(entry.getName()) : null;
+            if (reused == null
+                    || digest.getCrc() != entry.getCrc()
+                    || digest.getSize() != entry.getSize()
+                    || digest.getCipherCrc() != reused.getCrc()
+                    || !Arrays.equals(hash, digest.getHash())) {
+                return false;
+            }
+            encoded.reused = reused;
+            encoded.digest = digest;
+            encoded.index = entry.getName().endsWith(".jar")
+                    ? new XIndex.Record(encoded.name, -1, reused.getSize(), 0, key.getAlgorithm())
+                    : new XIndex.Record(encoded.name, entry.getSize(), reused.getSize(), entry.getCrc(), key.getAlgorithm());
+            return true;
+        }
+
+        private XBootEncoded encode(XBootEncoded encoded) throws IOException {
+            // 需要加密的嵌套JAR包先查找跨构建共享的缓存，原文只解压读取一次，缓存没有命中时直接从缓冲加密
+            if (filtered && libraryCache != null && entry.getName().endsWith(".jar")) {
+                XSpillOutputStream plain = new XSpillOutputStream(budget);
+                try {
+                    try (InputStream in = zipFile.getInputStream(entry)) {
+                        XKit.transfer(in, plain, false);
+                    }
+                    plain.close();
+                    String cacheKey = libraryCache.key(key, level, compressionPolicy, plain);
+                    XSpillOutputStream cached = libraryCache.get(cacheKey, budget);
+                    if (cached != null) {
+                        return stored(encoded, cached);
+                    }
+                    XSpillOutputStream sos = new XSpillOutputStream(budget);
+                    encoded.data = sos;
+                    try (InputStream in = plain.getInputStream()) {
+                        xJarEncryptor.encrypt(key, in, sos);
+                    }
+                    sos.close();
+                    libraryCache.put(cacheKey, sos);
+                    return stored(encoded, sos);
+                } finally {
+                    plain.delete();
+                }
+            }
+            try (InputStream in = zipFile.getInputStream(entry)) {
+                if (entry.getName().endsWith(".jar")) {
+                    XSpillOutputStream sos = new XSpillOutputStream(budget);
+                    encoded.data = sos;
+                    XEncryptor encryptor = filtered ? xJarEncryptor : xNopEncryptor;
+                    encryptor.encrypt(key, in, sos);
+                    sos.close();
+                    return stored(encoded, sos);
+                }
+                int compression = filtered && compressionPolicy != null ? compressionPolicy.level(entry, true, null, 0) : level;
+                XSpillOutputStream sos = new XSpillOutputStream(budget);
+                encoded.data = sos;
+                // 压缩级别为 NO_COMPRESSION 时与 STORED 相同，清单也会走到这里，但清单不能加密
+                if (filtered && compression == XCompressionPolicy.STORED) {
+                    // 密文无法被压缩，直接缓冲密文以 STORED 方式写出
+                    long length = entry.getSize();
+                    CRC32 crc = new CRC32();
+                    byte[] bytes = encrypt(key, entry, in, crc);
+                    if (bytes != null) {
+                        sos.write(bytes);
+                        sos.close();
+                    } else {
+                        try (OutputStream eos = xEncryptor.encrypt(key, sos)) {
+                            length = XKit.transfer(new CheckedInputStream(in, crc), eos, false);
+                        }
+                    }
+                    encoded.method = JarArchiveEntry.STORED;
+                    encoded.crc = sos.getCrc();
+                    encoded.size = sos.getSize();
+                    encoded.index = new XIndex.Record(encoded.name, length, sos.getSize(), crc.getValue(), key.getAlgorithm());
+                    return encoded;
+                }
+                encoded.level = compression;
+                Deflater deflater = new Deflater(compression, true);
+                try {
+                    CheckedOutputStream cos = new CheckedOutputStream(new DeflaterOutputStream(sos, deflater), new CRC32());
+                    XUnclosedOutputStream nos = new XUnclosedOutputStream(cos);
+                    if (entry.getName().equals(META_INF_MANIFEST)) {
+                        Manifest manifest = new Manifest(in);
+                        Attributes attributes = manifest.getMainAttributes();
+                        String mainClass = attributes.getValue("Main-Class");
+                        if (mainClass != null) {
+                            attributes.putValue("Boot-Main-Class", mainClass);
+                            attributes.putValue("Main-Class", "io.xjar.boot.XBootLauncher");
+                        }
+                        manifest.write(nos);
+                        encoded.manifest = manifest;
+                    } else {
+                        XEncryptor encryptor = filtered ? xEncryptor : xNopEncryptor;
+                        long length = entry.getSize();
+                        CRC32 crc = new CRC32();
+                        byte[] bytes = filtered ? encrypt(key, entry, in, crc) : null;
+                        if (bytes != null) {
+                            nos.write(bytes);
+                        } else {
+                            try (OutputStream eos = encryptor.encrypt(key, nos)) {
+                                length = XKit.transfer(new CheckedInputStream(in, crc), eos, false);
+                            }
+                        }
+                        // 写入压缩器的数据即为密文
+                        if (filtered) encoded.index = new XIndex.Record(encoded.name, length, deflater.getBytesRead(), crc.getValue(), key.getAlgorithm());
+                    }
+                    cos.close();
+                    encoded.method = JarArchiveEntry.DEFLATED;
+                    encoded.crc = cos.getChecksum().getValue();
+                    encoded.size = deflater.getBytesRead();
+                    return encoded;
+                } finally {
+                    deflater.end();
+                }
+            }
+        }
+
+        /**
+         * 嵌套JAR包以不压缩的方式存储
+         */
+        private XBootEncoded stored(XBootEncoded encoded, XSpillOutputStream sos) {
+            encoded.data = sos;
+            encoded.method = JarArchiveEntry.STORED;
+            encoded.crc = sos.getCrc();
+            encoded.size = sos.getSize();
+            if (filtered) encoded.index = new XIndex.Record(encoded.name, -1, sos.getSize(), 0, key.getAlgorithm());
+            return encoded;
+        }
+    }
+
+    /**
+     * 边写边加密的原文包记录输出流
+     */
+    private class XBootArchiveOutputStream extends ArchiveOutputStream {
+        private final XKey key;
+        private final String password;
+        private final JarArchiveOutputStream zos;
+        private final XJarEncryptor xJarEncryptor;
+        private final List<XIndex.Record> indexes = new ArrayList<>();
+        private final XSpillBudget budget = new XSpillBudget(threshold, spillDirectory);
+        private Manifest manifest;
+        // 当前写入的原文记录
+        private JarArchiveEntry entry;
+        // 当前直接写出到加密包中的记录
+        private JarArchiveEntry output;
+        // 当前记录的数据写入的目标，为 null 时丢弃
+        private OutputStream target;
+        // 需要整体处理的记录的原文缓冲，或者以 STORED 方式写出的记录的密文缓冲
+        private XSpillOutputStream buffer;
+        // 边写边加密的记录的明文CRC
+        private CheckedOutputStream checked;
+        private int compression;
+        private long length;
+        private long start;
+        // 已写入的原文记录中最新的修改时间，作为生成记录的修改时间
+        private long time;
+        private boolean finished;
+
+        XBootArchiveOutputStream(XKey key, OutputStream out, String password) {
+            this.key = key;
+            this.password = password;
+            this.zos = new JarArchiveOutputStream(out);
+            this.zos.setLevel(level);
+            this.xJarEncryptor = new XJarEncryptor(xEncryptor, level, null, compressionPolicy, budget);
+        }
+
+        @Override
+        public void putArchiveEntry(ArchiveEntry archiveEntry) throws IOException {
+            if (finished) {
+                throw new IOException("Stream has already been finished");
+            }
+            if (entry != null) {
+                closeArchiveEntry();
+            }
+            if (!(archiveEntry instanceof ZipArchiveEntry)) {
+                throw new IllegalArgumentException("unsupported archive entry type: " + (archiveEntry != null ? archiveEntry.getClass().getName() : null));
+            }
+            entry = archiveEntry instanceof JarArchiveEntry ? (JarArchiveEntry) archiveEntry : new JarArchiveEntry((ZipArchiveEntry) archiveEntry);
+            time = Math.max(time, entry.getTime());
+            length = 0;
+            start = System.nanoTime();
+            String name = entry.getName();
+            if (XKit.generated(name)) {
+                return;
+            }
+            boolean filtered = filtrate(entry);
+            output = new JarArchiveEntry(name);
+            output.setTime(entry.getTime());
+            if (entry.isDirectory()) {
+                zos.putArchiveEntry(output);
+            } else if (name.endsWith(".jar") && !filtered && entry.getMethod() == JarArchiveEntry.STORED && entry.getSize() >= 0 && entry.getCrc() >= 0) {
+                // 例如 Spring-Boot 重新打包时写入的依赖，直接原样写出，不需要缓冲
+                output.setMethod(JarArchiveEntry.STORED);
+                output.setSize(entry.getSize());
+                output.setCrc(entry.getCrc());
+                zos.putArchiveEntry(output);
+                target = new XUnclosedOutputStream(zos);
+            } else if (name.endsWith(".jar") || name.equals(META_INF_MANIFEST) || !filtered && compressionPolicy != null) {
+                output = null;
+                target = buffer = new XSpillOutputStream(budget);
+            } else if (!filtered) {
+                zos.putArchiveEntry(output);
+                target = new XUnclosedOutputStream(zos);
+            } else {
+                compression = compressionPolicy != null ? compressionPolicy.level(entry, true, null, 0) : level;
+                OutputStream eos;
+                if (compression == XCompressionPolicy.STORED) {
+                    buffer = new XSpillOutputStream(budget);
+                    eos = xEncryptor.encrypt(key, buffer);
+                } else {
+                    zos.setLevel(compression);
+                    zos.putArchiveEntry(output);
+                    eos = xEncryptor.encrypt(key, new XUnclosedOutputStream(zos));
+                }
+                target = checked = new CheckedOutputStream(eos, new CRC32());
+            }
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (entry == null) {
+                throw new IllegalStateException("No current entry");
+            }
+            if (target != null) {
+                target.write(b, off, len);
+            }
+            length += len;
+            count(len);
+        }
+
+        @Override
+        public void closeArchiveEntry() throws IOException {
+            if (entry == null) {
+                throw new IOException("No current entry to close");
+            }
+            try {
+                if (checked != null) {
+                    checked.close();
+                    if (buffer != null) {
+                        XEntryEncryptor.write(zos, output, buffer, compression, level);
+                    } else {
+                        zos.closeArchiveEntry();
+                        zos.setLevel(level);
+                    }
+                    compressionReport.record(compression, output.getSize(), output.getCompressedSize(), System.nanoTime() - start);
+                    indexes.add(new XIndex.Record(entry.getName(), length, output.getSize(), checked.getChecksum().getValue(), key.getAlgorithm()));
+                } else if (buffer != null) {
+                    buffer.close();
+                    JarArchiveEntry plain = new JarArchiveEntry(entry.getName());
+                    plain.setTime(entry.getTime());
+                    plain.setSize(buffer.getSize());
+                    try (InputStream in = buffer.getInputStream()) {
+                        Manifest encrypted = encrypt(key, plain, in, zos, xJarEncryptor, indexes, budget);
+                        if (encrypted != null) {
+                            manifest = encrypted;
+                        }
+                    }
+                } else if (output != null) {
+                    zos.closeArchiveEntry();
+                }
+            } finally {
+                if (buffer != null) {
+                    buffer.delete();
+                }
+                entry = null;
+                output = null;
+                target = null;
+                buffer = null;
+                checked = null;
+            }
+        }
+
+        @Override
+        public ArchiveEntry createArchiveEntry(File inputFile, String entryName) throws IOException {
+            return new JarArchiveEntry(new ZipArchiveEntry(inputFile, entryName));
+        }
+
+        @Override
+        public void finish() throws IOException {
+            if (finished) {
+                throw new IOException("This archive has already been finished");
+            }
+            if (entry != null) {
+                throw new IOException("This archive contains unclosed entries.");
+            }
+            writeIndexes(zos, indexes, manifest, password, time);
+            zos.finish();
+            finished = true;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            zos.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                if (!finished) {
+                    finish();
+                }
+            } finally {
+                if (buffer != null) {
+                    buffer.delete();
+                }
+                zos.close();
+            }
+        }
+    }
+
+    /**
+     * 加密及压缩完成的记录
+     */
+    private static class XBootEncoded {
+        private final String name;
+        private final long time;
+        private int method;
+        private int level;
+        private long crc;
+        private long size;
+        private XSpillOutputStream data;
+        private ZipArchiveEntry raw;
+        private ZipArchiveEntry reused;
+        private Manifest manifest;
+        private XIndex.Record index;
+        private XDigestIndex.Digest digest;
+
+        XBootEncoded(String name, long time) {
+            this.name = name;
+            this.time = time;
+        }
+    }
 }
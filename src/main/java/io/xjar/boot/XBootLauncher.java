@@ -24,6 +24,10 @@ public class XBootLauncher extends JarLauncher implements XConstants {
     private final XDecryptor xDecryptor;
     private final XEncryptor xEncryptor;
     private final XKey xKey;
+    private final long preload;
+    private final File record;
+    private final XResourceCache cache;
+    private final boolean verbose;
 
     public XBootLauncher(String... args) throws Exception {
         this.args = args;
@@ -31,6 +35,11 @@ public class XBootLauncher extends JarLauncher implements XConstants {
         int keysize = DEFAULT_KEYSIZE;
         int ivsize = DEFAULT_IVSIZE;
         String password = null;
+        long preload = DEFAULT_PRELOAD_CAPACITY;
+        String record = null;
+        long cache = 0;
+        boolean direct = false;
+        boolean verbose = false;
 
         String jarPath = this.getClass().getProtectionDomain().getCodeSource().getLocation().getPath();
         JarFile jarFile = new JarFile(jarPath);
@@ -54,15 +63,37 @@ public class XBootLauncher extends JarLauncher implements XConstants {
             if (arg.toLowerCase().startsWith(XJAR_PASSWORD)) {
                 password = arg.substring(XJAR_PASSWORD.length());
             }
+            if (arg.toLowerCase().startsWith(XJAR_PRELOAD)) {
+                preload = Long.valueOf(arg.substring(XJAR_PRELOAD.length()));
+            }
+            if (arg.toLowerCase().startsWith(XJAR_RECORD)) {
+                record = arg.substring(XJAR_RECORD.length());
+            }
+            if (arg.toLowerCase().startsWith(XJAR_CACHE)) {
+                cache = Long.valueOf(arg.substring(XJAR_CACHE.length()));
+            }
+            if (arg.toLowerCase().startsWith(XJAR_CACHE_DIRECT)) {
+                direct = Boolean.valueOf(arg.substring(XJAR_CACHE_DIRECT.length()));
+            }
+            if (arg.toLowerCase().startsWith(XJAR_BUFFER)) {
+                XKit.setBufferPool(new XBufferPool(Integer.valueOf(arg.substring(XJAR_BUFFER.length()))));
+            }
+            if (arg.toLowerCase().startsWith(XJAR_VERBOSE)) {
+                verbose = Boolean.valueOf(arg.substring(XJAR_VERBOSE.length()));
+            }
         }
         if (password == null) {
             Console console = System.console();
             char[] chars = console.readPassword("password:");
             password = new String(chars);
         }
-        this.xDecryptor = new XJdkDecryptor(algorithm);
-        this.xEncryptor = new XJdkEncryptor(algorithm);
+        this.xDecryptor = XKit.decryptor(algorithm);
+        this.xEncryptor = XKit.encryptor(algorithm);
         this.xKey = XKit.key(algorithm, keysize, ivsize, password);
+        this.preload = preload;
+        this.record = record != null ? new File(record) : null;
+        this.cache = cache > 0 ? new XResourceCache(cache, direct) : null;
+        this.verbose = verbose;
     }
 
     public static void main(String[] args) throws Exception {
@@ -73,9 +104,27 @@ public class XBootLauncher extends JarLauncher implements XConstants {
         launch(args);
     }
 
+    /**
+     * Spring-Boot 应用的 main 方法在启动完成后返回，这时停止预解密并释放未被使用的资源，开启 --xjar.verbose=true 时输出预解密的命中情况。
+     */
+    @Override
+    protected void launch(String[] args, String mainClass, ClassLoader classLoader) throws Exception {
+        try {
+            super.launch(args, mainClass, classLoader);
+        } finally {
+            if (classLoader instanceof XBootClassLoader) {
+                XPreloader xPreloader = ((XBootClassLoader) classLoader).getPreloader();
+                xPreloader.evict();
+                if (verbose) {
+                    System.err.println("xjar: " + xPreloader);
+                }
+            }
+        }
+    }
+
     @Override
     protected ClassLoader createClassLoader(URL[] urls) throws Exception {
-        return new XBootClassLoader(urls, this.getClass().getClassLoader(), xDecryptor, xEncryptor, xKey);
+        return new XBootClassLoader(urls, this.getClass().getClassLoader(), xDecryptor, xEncryptor, xKey, preload, record, cache);
     }
 
     private static String process(InputStream input) throws IOException  {
@@ -36,4 +36,24 @@ public class XDirDecryptor extends XEntryDecryptor<File> implements XDecryptor {
             }
         }
     }
+
+    /**
+     * 多线程解密，遍历时一次性建好目标文件夹结构，文件在线程池中并行解密，并保留文件及文件夹的修改时间及POSIX权限。
+     * 单个文件解密失败不会中断其余文件，最后汇总抛出，失败的文件见异常的 suppressed 异常。
+     *
+     * @param key     密钥
+     * @param src     源文件夹
+     * @param dest    目标文件夹
+     * @param threads 线程数
+     * @throws IOException I/O 异常
+     */
+    public void decrypt(final XKey key, File src, File dest, int threads) throws IOException {
+        new XDirWalker(threads) {
+            @Override
+            protected void process(File src, File dest) throws IOException {
+                XDecryptor decryptor = filtrate(src) ? xDecryptor : xNopDecryptor;
+                decryptor.decrypt(key, src, dest);
+            }
+        }.walk(src, dest);
+    }
 }
@@ -38,6 +38,27 @@ public class XDirEncryptor extends XEntryEncryptor<File> implements XEncryptor {
             }
         }
     }
+
+    /**
+     * 多线程加密，遍历时一次性建好目标文件夹结构，文件在线程池中并行加密，并保留文件及文件夹的修改时间及POSIX权限。
+     * 单个文件加密失败不会中断其余文件，最后汇总抛出，失败的文件见异常的 suppressed 异常。
+     *
+     * @param key     密钥
+     * @param src     源文件夹
+     * @param dest    目标文件夹
+     * @param threads 线程数
+     * @throws IOException I/O 异常
+     */
+    public void encrypt(final XKey key, File src, File dest, int threads) throws IOException {
+        new XDirWalker(threads) {
+            @Override
+            protected void process(File src, File dest) throws IOException {
+                XEncryptor encryptor = filtrate(src) ? xEncryptor : xNopEncryptor;
+                encryptor.encrypt(key, src, dest);
+            }
+        }.walk(src, dest);
+    }
+
     @Override
     public void encrypt(XKey key, InputStream in, OutputStream out, String password) throws IOException {
 
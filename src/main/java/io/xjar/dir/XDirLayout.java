@@ -0,0 +1,48 @@
+package io.xjar.dir;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * 构建目录布局，描述加密包中的记录来自构建输出的哪些文件夹及文件，例如 target/classes 对应 BOOT-INF/classes/ ，
+ * 依赖文件夹对应 BOOT-INF/lib/ ，用于不经过中间的原文包直接从构建目录生成加密包。
+ * 记录按名称排序，同一个布局总是得到相同顺序的记录。
+ *
+ * @author Payne 646742615@qq.com
+ * 2018/12/28 10:20
+ */
+public class XDirLayout {
+    private final SortedMap<String, File> files = new TreeMap<>();
+
+    /**
+     * 添加文件夹或文件，文件夹递归添加其中所有的子文件夹及文件，记录名称为前缀加上相对路径。
+     *
+     * @param prefix 文件夹时为记录名称的前缀，以 / 结尾或为空字符串，文件时为记录名称
+     * @param file   文件夹或文件
+     * @return 布局本身
+     */
+    public XDirLayout add(String prefix, File file) {
+        if (file.isDirectory()) {
+            if (!prefix.isEmpty()) {
+                files.put(prefix, file);
+            }
+            File[] children = file.listFiles();
+            for (int i = 0; children != null && i < children.length; i++) {
+                File child = children[i];
+                add(prefix + child.getName() + (child.isDirectory() ? "/" : ""), child);
+            }
+        } else if (file.isFile()) {
+            files.put(prefix, file);
+        }
+        return this;
+    }
+
+    /**
+     * @return 按名称排序的记录及其对应的文件夹或文件，文件夹的记录名称以 / 结尾
+     */
+    public SortedMap<String, File> getFiles() {
+        return Collections.unmodifiableSortedMap(files);
+    }
+}
@@ -0,0 +1,176 @@
+package io.xjar.dir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * 并行的文件夹遍历器，在调用线程中通过 Files.walkFileTree 遍历源文件夹并一次性建好目标文件夹结构，
+ * 再把每个文件交给有界的线程池处理，处理完成后保留文件及文件夹的修改时间及POSIX权限。
+ * 单个文件处理失败不会中断整个遍历，所有失败在最后汇总成一个I/O异常抛出，每个失败的文件作为其 suppressed 异常。
+ *
+ * @author Payne 646742615@qq.com
+ * 2018/12/23 10:15
+ */
+public abstract class XDirWalker {
+    private final int threads;
+
+    /**
+     * 构造
+     *
+     * @param threads 线程数，小于等于1时在调用线程中依次处理
+     */
+    protected XDirWalker(int threads) {
+        this.threads = Math.max(threads, 1);
+    }
+
+    /**
+     * 处理一个文件，目标文件所在的文件夹已经存在。
+     *
+     * @param src  源文件
+     * @param dest 目标文件
+     * @throws IOException I/O 异常
+     */
+    protected abstract void process(File src, File dest) throws IOException;
+
+    /**
+     * 遍历源文件夹并处理其中的每个文件
+     *
+     * @param src  源文件夹或文件
+     * @param dest 目标文件夹或文件
+     * @throws IOException 有文件处理失败时抛出，失败的文件见 {@link IOException#getSuppressed()}
+     */
+    public void walk(File src, File dest) throws IOException {
+        final Path source = src.toPath();
+        final Path target = dest.toPath();
+        final List<IOException> failures = new ArrayList<>();
+        final List<Path> directories = new ArrayList<>();
+        final ExecutorService executor = threads > 1 ? Executors.newFixedThreadPool(threads) : null;
+        // 限制同时在途的文件数量，避免遍历远快于处理时堆积过多的任务
+        final int window = threads * 4;
+        final Deque<Future<?>> futures = new ArrayDeque<>();
+        try {
+            Files.walkFileTree(source, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    try {
+                        Files.createDirectories(resolve(source, target, dir));
+                        directories.add(dir);
+                        return FileVisitResult.CONTINUE;
+                    } catch (IOException e) {
+                        failures.add(new IOException("could not make directory: " + resolve(source, target, dir), e));
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+                }
+
+                @Override
+                public FileVisitResult visitFile(final Path file, BasicFileAttributes attrs) throws IOException {
+                    if (!attrs.isRegularFile()) {
+                        return FileVisitResult.CONTINUE;
+                    }
+                    final Path path = resolve(source, target, file);
+                    if (executor == null) {
+                        run(file, path, failures);
+                        return FileVisitResult.CONTINUE;
+                    }
+                    while (futures.size() >= window) {
+                        await(futures.poll());
+                    }
+                    futures.add(executor.submit(new Callable<Void>() {
+                        @Override
+                        public Void call() throws Exception {
+                            List<IOException> errors = new ArrayList<>(1);
+                            run(file, path, errors);
+                            if (!errors.isEmpty()) {
+                                throw errors.get(0);
+                            }
+                            return null;
+                        }
+                    }));
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    failures.add(new IOException("could not read: " + file, e));
+                    return FileVisitResult.CONTINUE;
+                }
+
+                private void await(Future<?> future) throws IOException {
+                    try {
+                        future.get();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException(e.getMessage());
+                    } catch (ExecutionException e) {
+                        Throwable cause = e.getCause();
+                        failures.add(cause instanceof IOException ? (IOException) cause : new IOException(cause));
+                    }
+                }
+            });
+            while (!futures.isEmpty()) {
+                try {
+                    futures.poll().get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException(e.getMessage());
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    failures.add(cause instanceof IOException ? (IOException) cause : new IOException(cause));
+                }
+            }
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+
+        // 文件夹中的文件写完后才能恢复文件夹的修改时间，权限也放到最后避免只读文件夹无法写入
+        for (int i = directories.size() - 1; i >= 0; i--) {
+            Path dir = directories.get(i);
+            try {
+                copyAttributes(dir, resolve(source, target, dir));
+            } catch (IOException e) {
+                failures.add(new IOException("could not copy attributes: " + dir, e));
+            }
+        }
+
+        if (!failures.isEmpty()) {
+            IOException exception = new IOException(failures.size() + " file(s) failed under " + src);
+            for (IOException failure : failures) {
+                exception.addSuppressed(failure);
+            }
+            throw exception;
+        }
+    }
+
+    private void run(Path file, Path path, List<IOException> failures) {
+        try {
+            process(file.toFile(), path.toFile());
+            copyAttributes(file, path);
+        } catch (IOException e) {
+            failures.add(new IOException("could not process: " + file, e));
+        } catch (RuntimeException e) {
+            failures.add(new IOException("could not process: " + file, e));
+        }
+    }
+
+    private static Path resolve(Path source, Path target, Path path) {
+        Path relative = source.relativize(path);
+        return relative.toString().isEmpty() ? target : target.resolve(relative.toString());
+    }
+
+    private static void copyAttributes(Path src, Path dest) throws IOException {
+        PosixFileAttributeView srcView = Files.getFileAttributeView(src, PosixFileAttributeView.class);
+        PosixFileAttributeView destView = Files.getFileAttributeView(dest, PosixFileAttributeView.class);
+        if (srcView != null && destView != null) {
+            destView.setPermissions(srcView.readAttributes().permissions());
+        }
+        Files.setLastModifiedTime(dest, Files.getLastModifiedTime(src));
+    }
+}
@@ -119,12 +119,9 @@ public class XJar implements XConstants {
      * @throws Exception 加密异常
      */
     public static void encrypt(File src, File dest, String password, String algorithm, int keysize, int ivsize) throws Exception {
-        try (
-                InputStream in = new FileInputStream(src);
-                OutputStream out = new FileOutputStream(dest)
-        ) {
-            encrypt(in, out, password, algorithm, keysize, ivsize);
-        }
+        XJarEncryptor xJarEncryptor = new XJarEncryptor(XKit.encryptor(algorithm));
+        XKey xKey = XKit.key(algorithm, keysize, ivsize, password);
+        xJarEncryptor.encrypt(xKey, src, dest);
     }
 
     /**
@@ -178,7 +175,7 @@ public class XJar implements XConstants {
      * @throws Exception 加密异常
      */
     public static void encrypt(InputStream in, OutputStream out, String password, String algorithm, int keysize, int ivsize) throws Exception {
-        XJarEncryptor xJarEncryptor = new XJarEncryptor(new XJdkEncryptor(algorithm));
+        XJarEncryptor xJarEncryptor = new XJarEncryptor(XKit.encryptor(algorithm));
         XKey xKey = XKit.key(algorithm, keysize, ivsize, password);
         xJarEncryptor.encrypt(xKey, in, out);
     }
@@ -347,7 +344,7 @@ public class XJar implements XConstants {
      * @throws Exception 解密异常
      */
     public static void decrypt(InputStream in, OutputStream out, String password, String algorithm, int keysize, int ivsize) throws Exception {
-        XJarDecryptor xJarDecryptor = new XJarDecryptor(new XJdkDecryptor(algorithm));
+        XJarDecryptor xJarDecryptor = new XJarDecryptor(XKit.decryptor(algorithm));
         XKey xKey = XKit.key(algorithm, keysize, ivsize, password);
         xJarDecryptor.decrypt(xKey, in, out);
     }
@@ -465,12 +462,29 @@ public class XJar implements XConstants {
      * @throws Exception 加密异常
      */
     public static void encrypt(File src, File dest, String password, String algorithm, int keysize, int ivsize, XEntryFilter<JarArchiveEntry> filter) throws Exception {
-        try (
-                InputStream in = new FileInputStream(src);
-                OutputStream out = new FileOutputStream(dest)
-        ) {
-            encrypt(in, out, password, algorithm, keysize, ivsize, filter);
-        }
+        XJarEncryptor xJarEncryptor = new XJarEncryptor(XKit.encryptor(algorithm), filter);
+        XKey xKey = XKit.key(algorithm, keysize, ivsize, password);
+        xJarEncryptor.encrypt(xKey, src, dest);
+    }
+
+    /**
+     * 加密普通JAR 包，并写入通过 --xjar.record 录制的启动加载顺序，启动时按该顺序在后台预解密
+     *
+     * @param src       原文包
+     * @param dest      加密包
+     * @param password  密码
+     * @param algorithm 加密算法
+     * @param keysize   密钥长度
+     * @param ivsize    向量长度
+     * @param filter    过滤器
+     * @param preload   录制的启动加载顺序文件
+     * @throws Exception 加密异常
+     */
+    public static void encrypt(File src, File dest, String password, String algorithm, int keysize, int ivsize, XEntryFilter<JarArchiveEntry> filter, File preload) throws Exception {
+        XJarEncryptor xJarEncryptor = new XJarEncryptor(XKit.encryptor(algorithm), filter);
+        xJarEncryptor.setPreload(preload);
+        XKey xKey = XKit.key(algorithm, keysize, ivsize, password);
+        xJarEncryptor.encrypt(xKey, src, dest);
     }
 
     /**
@@ -528,7 +542,7 @@ public class XJar implements XConstants {
      * @throws Exception 加密异常
      */
     public static void encrypt(InputStream in, OutputStream out, String password, String algorithm, int keysize, int ivsize, XEntryFilter<JarArchiveEntry> filter) throws Exception {
-        XJarEncryptor xJarEncryptor = new XJarEncryptor(new XJdkEncryptor(algorithm), filter);
+        XJarEncryptor xJarEncryptor = new XJarEncryptor(XKit.encryptor(algorithm), filter);
         XKey xKey = XKit.key(algorithm, keysize, ivsize, password);
         xJarEncryptor.encrypt(xKey, in, out);
     }
@@ -709,9 +723,27 @@ public class XJar implements XConstants {
      * @throws Exception 解密异常
      */
     public static void decrypt(InputStream in, OutputStream out, String password, String algorithm, int keysize, int ivsize, XEntryFilter<JarArchiveEntry> filter) throws Exception {
-        XJarDecryptor xJarDecryptor = new XJarDecryptor(new XJdkDecryptor(algorithm), filter);
+        XJarDecryptor xJarDecryptor = new XJarDecryptor(XKit.decryptor(algorithm), filter);
         XKey xKey = XKit.key(algorithm, keysize, ivsize, password);
         xJarDecryptor.decrypt(xKey, in, out);
     }
 
+
+    /**
+     * 直接从构建目录多线程加密生成普通JAR 包，不需要先打包成原文包
+     *
+     * @param classes  classes 文件夹
+     * @param manifest 清单文件
+     * @param dest     加密包
+     * @param password 密码
+     * @param filter   过滤器
+     * @param threads  线程数
+     * @throws Exception 加密异常
+     */
+    public static void encrypt(File classes, File manifest, File dest, String password, XEntryFilter<JarArchiveEntry> filter, int threads) throws Exception {
+        XJarEncryptor xJarEncryptor = new XJarEncryptor(XKit.encryptor(DEFAULT_ALGORITHM), filter);
+        XKey xKey = XKit.key(DEFAULT_ALGORITHM, DEFAULT_KEYSIZE, DEFAULT_IVSIZE, password);
+        xJarEncryptor.encrypt(xKey, classes, manifest, dest, threads);
+    }
+
 }
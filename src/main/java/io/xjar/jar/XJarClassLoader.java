@@ -1,17 +1,23 @@
 package io.xjar.jar;
 
 import io.xjar.XDecryptor;
+import io.xjar.XConstants;
 import io.xjar.XEncryptor;
 import io.xjar.XKit;
+import io.xjar.XPreloader;
+import io.xjar.XResourceCache;
 import io.xjar.key.XKey;
 
-import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.JarURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.util.Arrays;
 import java.util.Enumeration;
+import java.util.jar.Manifest;
 
 /**
  * JAR包类加载器
@@ -21,14 +27,51 @@ import java.util.Enumeration;
  */
 public class XJarClassLoader extends URLClassLoader {
     private final XJarURLHandler xJarURLHandler;
+    private final XDecryptor xDecryptor;
+    private final XKey xKey;
+    private final XPreloader xPreloader;
+    private final XResourceCache xResourceCache;
 
     static {
         ClassLoader.registerAsParallelCapable();
     }
 
     public XJarClassLoader(URL[] urls, ClassLoader parent, XDecryptor xDecryptor, XEncryptor xEncryptor, XKey xKey) throws Exception {
+        this(urls, parent, xDecryptor, xEncryptor, xKey, XConstants.DEFAULT_PRELOAD_CAPACITY, null, null);
+    }
+
+    /**
+     * 构造
+     *
+     * @param urls       类路径
+     * @param parent     父类加载器
+     * @param xDecryptor 解密器
+     * @param xEncryptor 加密器
+     * @param xKey       密钥
+     * @param preload    预解密缓存的容量上限，为 0 时不预解密
+     * @param record     录制启动时资源加载顺序的文件，为 null 时不录制
+     * @param cache      解密后资源的缓存，为 null 时不缓存
+     * @throws Exception 异常
+     */
+    public XJarClassLoader(URL[] urls, ClassLoader parent, XDecryptor xDecryptor, XEncryptor xEncryptor, XKey xKey, long preload, File record, XResourceCache cache) throws Exception {
         super(urls, parent);
-        this.xJarURLHandler = new XJarURLHandler(xDecryptor, xEncryptor, xKey, this);
+        this.xResourceCache = cache;
+        this.xPreloader = new XPreloader(preload, record) {
+            @Override
+            protected URL locate(String name) {
+                URL resource = XJarClassLoader.super.findResource(name);
+                return resource != null && xJarURLHandler.isEncrypted(resource) ? resource : null;
+            }
+
+            @Override
+            protected byte[] read(URL url) throws IOException {
+                return decrypt(url, (JarURLConnection) url.openConnection());
+            }
+        };
+        this.xJarURLHandler = new XJarURLHandler(xDecryptor, xEncryptor, xKey, this, xPreloader, xResourceCache);
+        this.xDecryptor = xDecryptor;
+        this.xKey = xKey;
+        this.xPreloader.start(this, Runtime.getRuntime().availableProcessors());
     }
 
     @Override
@@ -55,20 +98,98 @@ public class XJarClassLoader extends URLClassLoader {
 
     @Override
     protected Class<?> findClass(String name) throws ClassNotFoundException {
-        try {
+        // 只有索引中记录的加密类才走解密的流程，普通类直接交给父类处理
+        String path = name.replace('.', '/') + ".class";
+        if (!xJarURLHandler.isEncrypted(path)) {
             return super.findClass(name);
-        } catch (ClassFormatError e) {
-            URL resource = findResource(name.replace('.', '/') + ".class");
-            if (resource == null) {
-                throw new ClassNotFoundException(name, e);
+        }
+        URL resource = super.findResource(path);
+        if (resource == null || !xJarURLHandler.isEncrypted(resource)) {
+            return super.findClass(name);
+        }
+        try {
+            JarURLConnection connection = (JarURLConnection) resource.openConnection();
+            byte[] bytes = xPreloader.take(resource, path);
+            if (bytes == null) {
+                bytes = decrypt(resource, connection);
+            }
+            definePackageIfNecessary(name, connection);
+            return defineClass(name, bytes, 0, bytes.length);
+        } catch (Throwable t) {
+            throw new ClassNotFoundException(name, t);
+        }
+    }
+
+    /**
+     * 读取并解密加密的资源
+     *
+     * @param resource   资源的原始URL
+     * @param connection 资源的连接
+     * @return 资源的明文
+     * @throws IOException I/O 异常
+     */
+    private byte[] decrypt(URL resource, JarURLConnection connection) throws IOException {
+        // 大多数类都很小，整块读入密文后一次解密，省去解密流的包装及多次 update
+        byte[] small = XKit.decrypt(xDecryptor, xKey, connection);
+        if (small != null) {
+            return small;
+        }
+        // 索引中记录了明文长度时按明文长度一次性分配，否则以密文长度作为初始容量
+        long plain = xJarURLHandler.getPlainLength(resource);
+        int length = plain > 0 ? (int) plain : connection.getContentLength();
+        byte[] bytes = new byte[length > 0 ? length : 4096];
+        int size = 0;
+        try (InputStream in = xDecryptor.decrypt(xKey, connection.getInputStream())) {
+            int n;
+            while ((n = in.read(bytes, size, bytes.length - size)) != -1) {
+                size += n;
+                if (size == bytes.length) {
+                    int b = in.read();
+                    if (b == -1) {
+                        break;
+                    }
+                    bytes = Arrays.copyOf(bytes, bytes.length * 2);
+                    bytes[size++] = (byte) b;
+                }
+            }
+        }
+        return size == bytes.length ? bytes : Arrays.copyOf(bytes, size);
+    }
+
+    /**
+     * @return 启动预解密器，可用于查看预解密缓存的命中情况
+     */
+    public XPreloader getPreloader() {
+        return xPreloader;
+    }
+
+    /**
+     * @return 解密后资源的缓存，未启用时返回 null ，启动完成后可通过 {@link XResourceCache#evict()} 释放
+     */
+    public XResourceCache getResourceCache() {
+        return xResourceCache;
+    }
+
+    private void definePackageIfNecessary(String className, JarURLConnection connection) throws IOException {
+        int index = className.lastIndexOf('.');
+        if (index < 0) {
+            return;
+        }
+        String packageName = className.substring(0, index);
+        if (getPackage(packageName) != null) {
+            return;
+        }
+        try {
+            Manifest manifest = connection.getManifest();
+            if (manifest != null) {
+                definePackage(packageName, manifest, connection.getJarFileURL());
+            } else {
+                definePackage(packageName, null, null, null, null, null, null, null);
             }
-            try (InputStream in = resource.openStream()) {
-                ByteArrayOutputStream bos = new ByteArrayOutputStream();
-                XKit.transfer(in, bos);
-                byte[] bytes = bos.toByteArray();
-                return defineClass(name, bytes, 0, bytes.length);
-            } catch (Throwable t) {
-                throw new ClassNotFoundException(name, t);
+        } catch (IllegalArgumentException e) {
+            // 并发加载时可能已经被其他线程定义
+            if (getPackage(packageName) == null) {
+                throw e;
             }
         }
     }
@@ -59,10 +59,7 @@ public class XJarDecryptor extends XEntryDecryptor<JarArchiveEntry> implements X
             XUnclosedOutputStream nos = new XUnclosedOutputStream(zos);
             JarArchiveEntry entry;
             while ((entry = zis.getNextJarEntry()) != null) {
-                if (entry.getName().startsWith(XJAR_SRC_DIR)
-                        || entry.getName().endsWith(XJAR_INF_DIR)
-                        || entry.getName().endsWith(XJAR_INF_DIR + XJAR_INF_IDX)
-                ) {
+                if (XKit.generated(entry.getName())) {
                     continue;
                 }
                 if (entry.isDirectory()) {
@@ -88,7 +85,7 @@ public class XJarDecryptor extends XEntryDecryptor<JarArchiveEntry> implements X
                     boolean filtered = filtrate(entry);
                     XDecryptor decryptor = filtered ? xDecryptor : xNopDecryptor;
                     try (OutputStream eos = decryptor.decrypt(key, nos)) {
-                        XKit.transfer(nis, eos);
+                        XKit.transfer(nis, eos, false);
                     }
                 }
                 zos.closeArchiveEntry();
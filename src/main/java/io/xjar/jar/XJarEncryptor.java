@@ -1,14 +1,16 @@
 package io.xjar.jar;
 
 import io.xjar.*;
+import io.xjar.dir.XDirLayout;
 import io.xjar.key.XKey;
 import org.apache.commons.compress.archivers.jar.JarArchiveEntry;
 import org.apache.commons.compress.archivers.jar.JarArchiveInputStream;
 import org.apache.commons.compress.archivers.jar.JarArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
 
 import java.io.*;
-import java.util.LinkedHashSet;
-import java.util.Set;
+import java.util.*;
 import java.util.jar.Attributes;
 import java.util.jar.Manifest;
 import java.util.zip.Deflater;
@@ -21,6 +23,8 @@ import java.util.zip.Deflater;
  */
 public class XJarEncryptor extends XEntryEncryptor<JarArchiveEntry> implements XEncryptor, XConstants {
     private final int level;
+    // 录制的启动加载顺序
+    private File preload;
 
     public XJarEncryptor(XEncryptor xEncryptor) {
         this(xEncryptor, null);
@@ -35,17 +39,82 @@ public class XJarEncryptor extends XEntryEncryptor<JarArchiveEntry> implements X
     }
 
     public XJarEncryptor(XEncryptor xEncryptor, int level, XEntryFilter<JarArchiveEntry> filter) {
-        super(xEncryptor, filter);
+        this(xEncryptor, level, filter, null);
+    }
+
+    /**
+     * 构造
+     *
+     * @param xEncryptor        加密器
+     * @param level             默认压缩级别
+     * @param filter            过滤器
+     * @param compressionPolicy 记录压缩策略，为 null 时所有记录都使用默认压缩级别
+     */
+    public XJarEncryptor(XEncryptor xEncryptor, int level, XEntryFilter<JarArchiveEntry> filter, XCompressionPolicy compressionPolicy) {
+        this(xEncryptor, level, filter, compressionPolicy, null);
+    }
+
+    /**
+     * 构造
+     *
+     * @param xEncryptor        加密器
+     * @param level             默认压缩级别
+     * @param filter            过滤器
+     * @param compressionPolicy 记录压缩策略，为 null 时所有记录都使用默认压缩级别
+     * @param spillBudget       缓冲记录数据时共享的内存预算，例如作为嵌套JAR包加密器时使用外层加密的预算，为 null 时每个缓冲单独计算
+     */
+    public XJarEncryptor(XEncryptor xEncryptor, int level, XEntryFilter<JarArchiveEntry> filter, XCompressionPolicy compressionPolicy, XSpillBudget spillBudget) {
+        super(xEncryptor, filter, compressionPolicy, spillBudget);
         this.level = level;
     }
 
+    /**
+     * @return 录制的启动加载顺序文件，为 null 时不写入
+     */
+    public File getPreload() {
+        return preload;
+    }
+
+    /**
+     * 设置通过 --xjar.record 录制的启动加载顺序文件，写入加密包的 XJAR-INF/PRELOAD.LST 供启动时预解密
+     *
+     * @param preload 录制的启动加载顺序文件，为 null 时不写入
+     */
+    public void setPreload(File preload) {
+        this.preload = preload;
+    }
+
+    /**
+     * 通过随机访问读取原文包，不需要加密的记录直接原样复制其压缩后的数据，不经过解压及重新压缩。
+     *
+     * @param key  密钥
+     * @param src  原文包
+     * @param dest 加密包
+     * @throws IOException I/O 异常
+     */
     @Override
     public void encrypt(XKey key, File src, File dest) throws IOException {
-        try (
-                FileInputStream fis = new FileInputStream(src);
-                FileOutputStream fos = new FileOutputStream(dest)
-        ) {
-            encrypt(key, fis, fos);
+        ZipFile zipFile = null;
+        JarArchiveOutputStream zos = null;
+        List<XIndex.Record> indexes = new ArrayList<>();
+        try {
+            zipFile = new ZipFile(src);
+            zos = new JarArchiveOutputStream(new FileOutputStream(dest));
+            zos.setLevel(level);
+            Enumeration<ZipArchiveEntry> entries = zipFile.getEntriesInPhysicalOrder();
+            Manifest manifest = null;
+            while (entries.hasMoreElements()) {
+                ZipArchiveEntry entry = entries.nextElement();
+                Manifest mf = encrypt(key, zipFile, entry, null, zos, indexes);
+                if (mf != null) manifest = mf;
+            }
+
+            writeIndexes(zos, indexes, manifest);
+
+            zos.finish();
+        } finally {
+            XKit.close(zipFile);
+            XKit.close(zos);
         }
     }
 
@@ -53,80 +122,189 @@ public class XJarEncryptor extends XEntryEncryptor<JarArchiveEntry> implements X
     public void encrypt(XKey key, InputStream in, OutputStream out) throws IOException {
         JarArchiveInputStream zis = null;
         JarArchiveOutputStream zos = null;
-        Set<String> indexes = new LinkedHashSet<>();
+        List<XIndex.Record> indexes = new ArrayList<>();
         try {
             zis = new JarArchiveInputStream(in);
             zos = new JarArchiveOutputStream(out);
             zos.setLevel(level);
-            XUnclosedInputStream nis = new XUnclosedInputStream(zis);
-            XUnclosedOutputStream nos = new XUnclosedOutputStream(zos);
             JarArchiveEntry entry;
             Manifest manifest = null;
             while ((entry = zis.getNextJarEntry()) != null) {
-                if (entry.getName().startsWith(XJAR_SRC_DIR)
-                        || entry.getName().endsWith(XJAR_INF_DIR)
-                        || entry.getName().endsWith(XJAR_INF_DIR + XJAR_INF_IDX)
-                ) {
-                    continue;
-                }
-                if (entry.isDirectory()) {
-                    JarArchiveEntry jarArchiveEntry = new JarArchiveEntry(entry.getName());
-                    jarArchiveEntry.setTime(entry.getTime());
-                    zos.putArchiveEntry(jarArchiveEntry);
-                } else if (entry.getName().equals(META_INF_MANIFEST)) {
-                    manifest = new Manifest(nis);
-                    Attributes attributes = manifest.getMainAttributes();
-                    String mainClass = attributes.getValue("Main-Class");
-                    if (mainClass != null) {
-                        attributes.putValue("Jar-Main-Class", mainClass);
-                        attributes.putValue("Main-Class", "io.xjar.jar.XJarLauncher");
-                    }
-                    JarArchiveEntry jarArchiveEntry = new JarArchiveEntry(entry.getName());
-                    jarArchiveEntry.setTime(entry.getTime());
-                    zos.putArchiveEntry(jarArchiveEntry);
-                    manifest.write(nos);
-                } else {
-                    JarArchiveEntry jarArchiveEntry = new JarArchiveEntry(entry.getName());
-                    jarArchiveEntry.setTime(entry.getTime());
-                    zos.putArchiveEntry(jarArchiveEntry);
-                    boolean filtered = filtrate(entry);
-                    if (filtered) indexes.add(entry.getName());
-                    XEncryptor encryptor = filtered ? xEncryptor : xNopEncryptor;
-                    try (OutputStream eos = encryptor.encrypt(key, nos)) {
-                        XKit.transfer(nis, eos);
-                    }
-                }
-                zos.closeArchiveEntry();
+                Manifest mf = encrypt(key, null, entry, zis, zos, indexes);
+                if (mf != null) manifest = mf;
             }
 
-            if (!indexes.isEmpty()) {
-                JarArchiveEntry XJAR_INF = new JarArchiveEntry(XJAR_INF_DIR);
-                XJAR_INF.setTime(System.currentTimeMillis());
-                zos.putArchiveEntry(XJAR_INF);
-                zos.closeArchiveEntry();
+            writeIndexes(zos, indexes, manifest);
 
-                JarArchiveEntry IDX = new JarArchiveEntry(XJAR_INF_DIR + XJAR_INF_IDX);
-                IDX.setTime(System.currentTimeMillis());
-                zos.putArchiveEntry(IDX);
-                for (String index : indexes) {
-                    zos.write(index.getBytes());
-                    zos.write(CRLF.getBytes());
-                }
-                zos.closeArchiveEntry();
+            zos.finish();
+        } finally {
+            XKit.close(zis);
+            XKit.close(zos);
+        }
+    }
 
-                String mainClass = manifest != null && manifest.getMainAttributes() != null ? manifest.getMainAttributes().getValue("Main-Class") : null;
+    /**
+     * 加密一个记录：目录及清单文件原样写出，清单文件中的 Main-Class 改为 XJar 的启动器，需要加密的记录加密后写出并记录其索引，其余记录原样复制。
+     * 随机访问时 zipFile 不为 null，记录数据按需从中读取，不需要加密的记录直接复制其压缩后的数据；
+     * 流式读取时 zipFile 为 null，记录数据从 in 中读取，不需要加密的记录按压缩策略重新压缩。
+     *
+     * @param key     密钥
+     * @param zipFile 随机访问的原文包，流式读取时为 null
+     * @param source  原文包中的记录
+     * @param in      流式读取时记录的数据，不会被关闭，随机访问时为 null
+     * @param zos     加密包输出流
+     * @param indexes 加密资源索引
+     * @return 记录为清单文件时返回改写后的清单，否则返回 null
+     * @throws IOException I/O 异常
+     */
+    private Manifest encrypt(XKey key, ZipFile zipFile, ZipArchiveEntry source, InputStream in, JarArchiveOutputStream zos, List<XIndex.Record> indexes) throws IOException {
+        JarArchiveEntry entry = source instanceof JarArchiveEntry ? (JarArchiveEntry) source : new JarArchiveEntry(source);
+        if (XKit.generated(entry.getName())) {
+            return null;
+        }
+        if (entry.isDirectory()) {
+            JarArchiveEntry jarArchiveEntry = new JarArchiveEntry(entry.getName());
+            jarArchiveEntry.setTime(entry.getTime());
+            zos.putArchiveEntry(jarArchiveEntry);
+            zos.closeArchiveEntry();
+            return null;
+        }
+        boolean manifest = entry.getName().equals(META_INF_MANIFEST);
+        boolean filtered = !manifest && filtrate(entry);
+        if (zipFile != null && !manifest && !filtered) {
+            XKit.copy(zipFile, source, zos);
+            return null;
+        }
+        try (InputStream data = zipFile != null ? zipFile.getInputStream(source) : new XUnclosedInputStream(in)) {
+            JarArchiveEntry jarArchiveEntry = new JarArchiveEntry(entry.getName());
+            jarArchiveEntry.setTime(entry.getTime());
+            if (manifest) {
+                Manifest mf = new Manifest(data);
+                Attributes attributes = mf.getMainAttributes();
+                String mainClass = attributes.getValue("Main-Class");
                 if (mainClass != null) {
-                    XInjector.inject(zos);
+                    attributes.putValue("Jar-Main-Class", mainClass);
+                    attributes.putValue("Main-Class", "io.xjar.jar.XJarLauncher");
                 }
+                zos.putArchiveEntry(jarArchiveEntry);
+                mf.write(new XUnclosedOutputStream(zos));
+                zos.closeArchiveEntry();
+                return mf;
+            }
+            if (filtered) {
+                // 明文长度已知时小记录可以一次性加密
+                if (entry.getSize() >= 0) jarArchiveEntry.setSize(entry.getSize());
+                indexes.add(encrypt(key, zos, jarArchiveEntry, data, level));
+            } else {
+                copy(zos, jarArchiveEntry, data, level);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * 直接从构建目录多线程加密生成JAR包，不需要先打包成原文包再读回来加密。
+     *
+     * @param key      密钥
+     * @param classes  classes 文件夹，例如 target/classes
+     * @param manifest 清单文件
+     * @param dest     加密包
+     * @param threads  线程数
+     * @throws IOException I/O 异常
+     */
+    public void encrypt(XKey key, File classes, File manifest, File dest, int threads) throws IOException {
+        encrypt(key, new XDirLayout().add("", classes), manifest, dest, threads);
+    }
+
+    /**
+     * 直接从构建目录布局多线程加密生成JAR包，文件在线程池中并行读取、加密及压缩，再按记录名称的顺序写出。
+     *
+     * @param key      密钥
+     * @param layout   构建目录布局
+     * @param manifest 清单文件，其中的 Main-Class 改为 XJar 的启动器
+     * @param dest     加密包
+     * @param threads  线程数
+     * @throws IOException I/O 异常
+     */
+    public void encrypt(XKey key, XDirLayout layout, File manifest, File dest, int threads) throws IOException {
+        JarArchiveOutputStream zos = null;
+        try {
+            zos = new JarArchiveOutputStream(new FileOutputStream(dest));
+            zos.setLevel(level);
+            Manifest mf;
+            try (InputStream in = new FileInputStream(manifest)) {
+                mf = new Manifest(in);
+            }
+            Attributes attributes = mf.getMainAttributes();
+            String mainClass = attributes.getValue("Main-Class");
+            if (mainClass != null) {
+                attributes.putValue("Jar-Main-Class", mainClass);
+                attributes.putValue("Main-Class", "io.xjar.jar.XJarLauncher");
             }
+            JarArchiveEntry MANIFEST = new JarArchiveEntry(META_INF_MANIFEST);
+            MANIFEST.setTime(manifest.lastModified());
+            zos.putArchiveEntry(MANIFEST);
+            mf.write(new XUnclosedOutputStream(zos));
+            zos.closeArchiveEntry();
+
+            // 与从原文包加密时相同，嵌套JAR包作为普通资源整体加密
+            List<XIndex.Record> indexes = encrypt(key, layout, this, null, zos, level, new XSpillBudget(DEFAULT_SPILL_THRESHOLD, spillDirectory), threads);
+
+            writeIndexes(zos, indexes, mf);
 
             zos.finish();
         } finally {
-            XKit.close(zis);
             XKit.close(zos);
         }
     }
 
+    /**
+     * 写出加密资源索引及启动加载顺序，并在可执行的JAR包中注入XJar框架的classes
+     *
+     * @param zos      jar包输出流
+     * @param indexes  加密资源索引
+     * @param manifest 清单文件
+     * @throws IOException I/O 异常
+     */
+    private void writeIndexes(JarArchiveOutputStream zos, List<XIndex.Record> indexes, Manifest manifest) throws IOException {
+        if (!indexes.isEmpty()) {
+            JarArchiveEntry XJAR_INF = new JarArchiveEntry(XJAR_INF_DIR);
+            XJAR_INF.setTime(System.currentTimeMillis());
+            zos.putArchiveEntry(XJAR_INF);
+            zos.closeArchiveEntry();
+
+            JarArchiveEntry IDX = new JarArchiveEntry(XJAR_INF_DIR + XJAR_INF_IDX);
+            IDX.setTime(System.currentTimeMillis());
+            zos.putArchiveEntry(IDX);
+            for (XIndex.Record index : indexes) {
+                zos.write(index.getName().getBytes());
+                zos.write(CRLF.getBytes());
+            }
+            zos.closeArchiveEntry();
+
+            JarArchiveEntry BIN = new JarArchiveEntry(XJAR_INF_DIR + XJAR_INF_BIN);
+            BIN.setTime(System.currentTimeMillis());
+            zos.putArchiveEntry(BIN);
+            XIndex.write(zos, indexes);
+            zos.closeArchiveEntry();
+
+            if (preload != null) {
+                JarArchiveEntry LST = new JarArchiveEntry(XJAR_INF_DIR + XJAR_INF_LST);
+                LST.setTime(System.currentTimeMillis());
+                zos.putArchiveEntry(LST);
+                try (InputStream in = new FileInputStream(preload)) {
+                    XKit.transfer(in, zos, false);
+                }
+                zos.closeArchiveEntry();
+            }
+
+            String mainClass = manifest != null && manifest.getMainAttributes() != null ? manifest.getMainAttributes().getValue("Main-Class") : null;
+            if (mainClass != null) {
+                XInjector.inject(zos);
+            }
+        }
+    }
+
     @Override
     public void encrypt(XKey key, InputStream in, OutputStream out, String password) throws IOException {
 
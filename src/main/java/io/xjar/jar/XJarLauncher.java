@@ -25,6 +25,10 @@ public class XJarLauncher implements XConstants {
     private final XDecryptor xDecryptor;
     private final XEncryptor xEncryptor;
     private final XKey xKey;
+    private final long preload;
+    private final File record;
+    private final XResourceCache cache;
+    private final boolean verbose;
 
     public XJarLauncher(String... args) throws Exception {
         this.args = args;
@@ -32,6 +36,11 @@ public class XJarLauncher implements XConstants {
         int keysize = DEFAULT_KEYSIZE;
         int ivsize = DEFAULT_IVSIZE;
         String password = null;
+        long preload = DEFAULT_PRELOAD_CAPACITY;
+        String record = null;
+        long cache = 0;
+        boolean direct = false;
+        boolean verbose = false;
         for (String arg : args) {
             if (arg.toLowerCase().startsWith(XJAR_ALGORITHM)) {
                 algorithm = arg.substring(XJAR_ALGORITHM.length());
@@ -45,15 +54,37 @@ public class XJarLauncher implements XConstants {
             if (arg.toLowerCase().startsWith(XJAR_PASSWORD)) {
                 password = arg.substring(XJAR_PASSWORD.length());
             }
+            if (arg.toLowerCase().startsWith(XJAR_PRELOAD)) {
+                preload = Long.valueOf(arg.substring(XJAR_PRELOAD.length()));
+            }
+            if (arg.toLowerCase().startsWith(XJAR_RECORD)) {
+                record = arg.substring(XJAR_RECORD.length());
+            }
+            if (arg.toLowerCase().startsWith(XJAR_CACHE)) {
+                cache = Long.valueOf(arg.substring(XJAR_CACHE.length()));
+            }
+            if (arg.toLowerCase().startsWith(XJAR_CACHE_DIRECT)) {
+                direct = Boolean.valueOf(arg.substring(XJAR_CACHE_DIRECT.length()));
+            }
+            if (arg.toLowerCase().startsWith(XJAR_BUFFER)) {
+                XKit.setBufferPool(new XBufferPool(Integer.valueOf(arg.substring(XJAR_BUFFER.length()))));
+            }
+            if (arg.toLowerCase().startsWith(XJAR_VERBOSE)) {
+                verbose = Boolean.valueOf(arg.substring(XJAR_VERBOSE.length()));
+            }
         }
         if (password == null) {
             Console console = System.console();
             char[] chars = console.readPassword("password:");
             password = new String(chars);
         }
-        this.xDecryptor = new XJdkDecryptor(algorithm);
-        this.xEncryptor = new XJdkEncryptor(algorithm);
+        this.xDecryptor = XKit.decryptor(algorithm);
+        this.xEncryptor = XKit.encryptor(algorithm);
         this.xKey = XKit.key(algorithm, keysize, ivsize, password);
+        this.preload = preload;
+        this.record = record != null ? new File(record) : null;
+        this.cache = cache > 0 ? new XResourceCache(cache, direct) : null;
+        this.verbose = verbose;
     }
 
     public static void main(String... args) throws Exception {
@@ -71,7 +102,7 @@ public class XJarLauncher implements XConstants {
         File jar = new File(path);
         URL url = new URL("jar:" + jar.toURI().toURL() + "!/");
         ClassLoader parent = this.getClass().getClassLoader().getParent();
-        XJarClassLoader xJarClassLoader = new XJarClassLoader(new URL[]{url}, parent, xDecryptor, xEncryptor, xKey);
+        XJarClassLoader xJarClassLoader = new XJarClassLoader(new URL[]{url}, parent, xDecryptor, xEncryptor, xKey, preload, record, cache);
         Thread.currentThread().setContextClassLoader(xJarClassLoader);
         URL resource = xJarClassLoader.findResource(META_INF_MANIFEST);
         try (InputStream in = resource.openStream()) {
@@ -81,6 +112,13 @@ public class XJarLauncher implements XConstants {
             Class<?> mainClass = xJarClassLoader.loadClass(jarMainClass);
             Method mainMethod = mainClass.getMethod("main", String[].class);
             mainMethod.invoke(null, new Object[]{args});
+        } finally {
+            // main 方法返回即启动完成，停止预解密并释放未被使用的资源
+            XPreloader xPreloader = xJarClassLoader.getPreloader();
+            xPreloader.evict();
+            if (verbose) {
+                System.err.println("xjar: " + xPreloader);
+            }
         }
     }
 
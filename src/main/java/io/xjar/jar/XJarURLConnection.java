@@ -2,14 +2,21 @@ package io.xjar.jar;
 
 import io.xjar.XDecryptor;
 import io.xjar.XEncryptor;
+import io.xjar.XKit;
+import io.xjar.XPreloader;
+import io.xjar.XResourceCache;
+import io.xjar.XSeekableChannel;
 import io.xjar.key.XKey;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.JarURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.channels.SeekableByteChannel;
 import java.security.Permission;
 import java.security.cert.Certificate;
 import java.util.List;
@@ -30,9 +37,23 @@ public class XJarURLConnection extends JarURLConnection {
     private final XDecryptor xDecryptor;
     private final XEncryptor xEncryptor;
     private final XKey xKey;
+    private final XPreloader xPreloader;
+    private final XResourceCache xResourceCache;
+    private final XJarURLHandler xJarURLHandler;
 
     public XJarURLConnection(JarURLConnection jarURLConnection, XDecryptor xDecryptor, XEncryptor xEncryptor, XKey xKey) throws MalformedURLException {
+        this(jarURLConnection, xDecryptor, xEncryptor, xKey, null, null);
+    }
+
+    public XJarURLConnection(JarURLConnection jarURLConnection, XDecryptor xDecryptor, XEncryptor xEncryptor, XKey xKey, XPreloader xPreloader, XResourceCache xResourceCache) throws MalformedURLException {
+        this(jarURLConnection, xDecryptor, xEncryptor, xKey, xPreloader, xResourceCache, null);
+    }
+
+    XJarURLConnection(JarURLConnection jarURLConnection, XDecryptor xDecryptor, XEncryptor xEncryptor, XKey xKey, XPreloader xPreloader, XResourceCache xResourceCache, XJarURLHandler xJarURLHandler) throws MalformedURLException {
         super(jarURLConnection.getURL());
+        this.xPreloader = xPreloader;
+        this.xResourceCache = xResourceCache;
+        this.xJarURLHandler = xJarURLHandler;
         this.jarURLConnection = jarURLConnection;
         this.xDecryptor = xDecryptor;
         this.xEncryptor = xEncryptor;
@@ -156,10 +177,54 @@ public class XJarURLConnection extends JarURLConnection {
 
     @Override
     public InputStream getInputStream() throws IOException {
+        String key = getURL().getFile();
+        InputStream cached = xResourceCache != null ? xResourceCache.get(key) : null;
+        if (cached != null) {
+            return cached;
+        }
+        byte[] bytes = xPreloader != null ? xPreloader.take(getURL(), getEntryName()) : null;
+        if (bytes == null && xResourceCache != null && xResourceCache.accepts(jarURLConnection.getContentLengthLong())) {
+            bytes = XKit.decrypt(xDecryptor, xKey, jarURLConnection);
+            if (bytes == null) {
+                ByteArrayOutputStream bos = new ByteArrayOutputStream();
+                try (InputStream in = xDecryptor.decrypt(xKey, jarURLConnection.getInputStream())) {
+                    XKit.transfer(in, bos, false);
+                }
+                bytes = bos.toByteArray();
+            }
+        }
+        if (bytes != null) {
+            if (xResourceCache != null) xResourceCache.put(key, bytes);
+            return new ByteArrayInputStream(bytes);
+        }
+        // 小资源整块读入密文后一次解密，省去解密流的包装
+        byte[] small = XKit.decrypt(xDecryptor, xKey, jarURLConnection);
+        if (small != null) {
+            return new ByteArrayInputStream(small);
+        }
         InputStream in = jarURLConnection.getInputStream();
         return xDecryptor.decrypt(xKey, in);
     }
 
+    /**
+     * 以只读的可随机访问通道读取解密后的资源，计数器模式及分块的认证加密格式下定位不需要解密跳过的数据，
+     * 适合按偏移量读取的大资源，不经过资源缓存及预加载。
+     * 这不是 URLConnection 的方法，调用方需要先判断 url.openConnection() 的结果是否为 XJarURLConnection 再转型调用，
+     * 未加密的资源得到的是普通的连接。通道的大小取自加密资源索引中记录的明文长度，索引中没有记录时第一次需要时才计算。
+     *
+     * @return 可随机访问通道
+     * @throws IOException I/O 异常
+     */
+    public SeekableByteChannel getChannel() throws IOException {
+        long length = xJarURLHandler != null ? xJarURLHandler.getPlainLength(getURL()) : -1;
+        return new XSeekableChannel(length >= 0 ? length : -1) {
+            @Override
+            protected InputStream open() throws IOException {
+                return xDecryptor.decrypt(xKey, jarURLConnection.getInputStream());
+            }
+        };
+    }
+
     @Override
     public OutputStream getOutputStream() throws IOException {
         OutputStream out = jarURLConnection.getOutputStream();
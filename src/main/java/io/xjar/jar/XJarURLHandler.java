@@ -3,19 +3,16 @@ package io.xjar.jar;
 import io.xjar.XConstants;
 import io.xjar.XDecryptor;
 import io.xjar.XEncryptor;
+import io.xjar.XIndexes;
+import io.xjar.XPreloader;
+import io.xjar.XResourceCache;
 import io.xjar.key.XKey;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.LineNumberReader;
 import java.net.JarURLConnection;
 import java.net.URL;
 import java.net.URLConnection;
 import java.net.URLStreamHandler;
-import java.util.Enumeration;
-import java.util.LinkedHashSet;
-import java.util.Set;
 
 /**
  * 加密的URL处理器
@@ -27,32 +24,66 @@ public class XJarURLHandler extends URLStreamHandler implements XConstants {
     private final XDecryptor xDecryptor;
     private final XEncryptor xEncryptor;
     private final XKey xKey;
-    private final Set<String> indexes;
+    private final XIndexes indexes;
+    private final XPreloader xPreloader;
+    private final XResourceCache xResourceCache;
 
     public XJarURLHandler(XDecryptor xDecryptor, XEncryptor xEncryptor, XKey xKey, ClassLoader classLoader) throws Exception {
+        this(xDecryptor, xEncryptor, xKey, classLoader, null, null);
+    }
+
+    public XJarURLHandler(XDecryptor xDecryptor, XEncryptor xEncryptor, XKey xKey, ClassLoader classLoader, XPreloader xPreloader, XResourceCache xResourceCache) throws Exception {
+        this.xPreloader = xPreloader;
+        this.xResourceCache = xResourceCache;
         this.xDecryptor = xDecryptor;
         this.xEncryptor = xEncryptor;
         this.xKey = xKey;
-        this.indexes = new LinkedHashSet<>();
-        Enumeration<URL> resources = classLoader.getResources(XJAR_INF_DIR + XJAR_INF_IDX);
-        while (resources.hasMoreElements()) {
-            URL resource = resources.nextElement();
-            String url = resource.toString();
-            String classpath = url.substring(0, url.lastIndexOf("!/") + 2);
-            InputStream in = resource.openStream();
-            InputStreamReader isr = new InputStreamReader(in);
-            LineNumberReader lnr = new LineNumberReader(isr);
-            String name;
-            while ((name = lnr.readLine()) != null) indexes.add(classpath + name);
-        }
+        this.indexes = new XIndexes(classLoader);
+    }
+
+    /**
+     * 是否有任意类路径下的同名资源被加密，用于在定位资源之前快速排除未加密的资源
+     *
+     * @param name 资源名称
+     * @return true: 可能已加密 false: 一定未加密
+     */
+    boolean isEncrypted(String name) {
+        return indexes.contains(name);
+    }
+
+    /**
+     * 资源是否已加密
+     *
+     * @param url 资源URL
+     * @return true: 已加密 false: 未加密
+     */
+    boolean isEncrypted(URL url) {
+        return indexes.contains(url);
+    }
+
+    /**
+     * 加密资源的明文长度
+     *
+     * @param url 资源URL
+     * @return 明文长度，长度未知时返回 -1
+     */
+    long getPlainLength(URL url) {
+        return indexes.getPlainLength(url);
+    }
+
+    /**
+     * @return 加密资源索引占用的内存字节数
+     */
+    public long getFootprint() {
+        return indexes.getFootprint();
     }
 
     @Override
     protected URLConnection openConnection(URL url) throws IOException {
         URLConnection urlConnection = new URL(url.toString()).openConnection();
-        return indexes.contains(url.toString())
+        return indexes.contains(url)
                 && urlConnection instanceof JarURLConnection
-                ? new XJarURLConnection((JarURLConnection) urlConnection, xDecryptor, xEncryptor, xKey)
+                ? new XJarURLConnection((JarURLConnection) urlConnection, xDecryptor, xEncryptor, xKey, xPreloader, xResourceCache, this)
                 : urlConnection;
     }
 
@@ -5,6 +5,7 @@ import io.xjar.key.XKey;
 import org.apache.commons.compress.archivers.jar.JarArchiveEntry;
 
 import java.io.*;
+import java.util.zip.Deflater;
 
 /**
  * Java Web WAR包加解密工具类，目前WAR包加密还不能正常运行！
@@ -119,12 +120,9 @@ public class XWar implements XConstants {
      * @throws Exception 加密异常
      */
     public static void encrypt(File src, File dest, String password, String algorithm, int keysize, int ivsize) throws Exception {
-        try (
-                InputStream in = new FileInputStream(src);
-                OutputStream out = new FileOutputStream(dest)
-        ) {
-            encrypt(in, out, password, algorithm, keysize, ivsize);
-        }
+        XWarEncryptor xJarEncryptor = new XWarEncryptor(XKit.encryptor(algorithm));
+        XKey xKey = XKit.key(algorithm, keysize, ivsize, password);
+        xJarEncryptor.encrypt(xKey, src, dest);
     }
 
     /**
@@ -178,7 +176,7 @@ public class XWar implements XConstants {
      * @throws Exception 加密异常
      */
     public static void encrypt(InputStream in, OutputStream out, String password, String algorithm, int keysize, int ivsize) throws Exception {
-        XWarEncryptor xJarEncryptor = new XWarEncryptor(new XJdkEncryptor(algorithm));
+        XWarEncryptor xJarEncryptor = new XWarEncryptor(XKit.encryptor(algorithm));
         XKey xKey = XKit.key(algorithm, keysize, ivsize, password);
         xJarEncryptor.encrypt(xKey, in, out);
     }
@@ -347,7 +345,7 @@ public class XWar implements XConstants {
      * @throws Exception 解密异常
      */
     public static void decrypt(InputStream in, OutputStream out, String password, String algorithm, int keysize, int ivsize) throws Exception {
-        XWarDecryptor xJarDecryptor = new XWarDecryptor(new XJdkDecryptor(algorithm));
+        XWarDecryptor xJarDecryptor = new XWarDecryptor(XKit.decryptor(algorithm));
         XKey xKey = XKit.key(algorithm, keysize, ivsize, password);
         xJarDecryptor.decrypt(xKey, in, out);
     }
@@ -465,12 +463,43 @@ public class XWar implements XConstants {
      * @throws Exception 加密异常
      */
     public static void encrypt(File src, File dest, String password, String algorithm, int keysize, int ivsize, XEntryFilter<JarArchiveEntry> filter) throws Exception {
-        try (
-                InputStream in = new FileInputStream(src);
-                OutputStream out = new FileOutputStream(dest)
-        ) {
-            encrypt(in, out, password, algorithm, keysize, ivsize, filter);
-        }
+        XWarEncryptor xJarEncryptor = new XWarEncryptor(XKit.encryptor(algorithm), filter);
+        XKey xKey = XKit.key(algorithm, keysize, ivsize, password);
+        xJarEncryptor.encrypt(xKey, src, dest);
+    }
+
+    /**
+     * 加密Java Web WAR 包，需要加密的嵌套JAR包通过缓存在多次构建及多个项目之间复用
+     *
+     * @param src          原文包
+     * @param dest         加密包
+     * @param password     密码
+     * @param filter       过滤器
+     * @param libraryCache 加密嵌套JAR包的缓存
+     * @throws Exception 加密异常
+     */
+    public static void encrypt(File src, File dest, String password, XEntryFilter<JarArchiveEntry> filter, XLibraryCache libraryCache) throws Exception {
+        encrypt(src, dest, password, DEFAULT_ALGORITHM, DEFAULT_KEYSIZE, DEFAULT_IVSIZE, filter, libraryCache);
+    }
+
+    /**
+     * 加密Java Web WAR 包，需要加密的嵌套JAR包先以原文内容、加密算法、密钥及压缩级别在缓存中查找，
+     * 找到时直接使用缓存中的密文，否则加密后放入缓存。
+     *
+     * @param src          原文包
+     * @param dest         加密包
+     * @param password     密码
+     * @param algorithm    加密算法
+     * @param keysize      密钥长度
+     * @param ivsize       向量长度
+     * @param filter       过滤器
+     * @param libraryCache 加密嵌套JAR包的缓存
+     * @throws Exception 加密异常
+     */
+    public static void encrypt(File src, File dest, String password, String algorithm, int keysize, int ivsize, XEntryFilter<JarArchiveEntry> filter, XLibraryCache libraryCache) throws Exception {
+        XWarEncryptor xWarEncryptor = new XWarEncryptor(XKit.encryptor(algorithm), Deflater.DEFLATED, filter, libraryCache);
+        XKey xKey = XKit.key(algorithm, keysize, ivsize, password);
+        xWarEncryptor.encrypt(xKey, src, dest);
     }
 
     /**
@@ -528,7 +557,7 @@ public class XWar implements XConstants {
      * @throws Exception 加密异常
      */
     public static void encrypt(InputStream in, OutputStream out, String password, String algorithm, int keysize, int ivsize, XEntryFilter<JarArchiveEntry> filter) throws Exception {
-        XWarEncryptor xJarEncryptor = new XWarEncryptor(new XJdkEncryptor(algorithm), filter);
+        XWarEncryptor xJarEncryptor = new XWarEncryptor(XKit.encryptor(algorithm), filter);
         XKey xKey = XKit.key(algorithm, keysize, ivsize, password);
         xJarEncryptor.encrypt(xKey, in, out);
     }
@@ -709,7 +738,7 @@ public class XWar implements XConstants {
      * @throws Exception 解密异常
      */
     public static void decrypt(InputStream in, OutputStream out, String password, String algorithm, int keysize, int ivsize, XEntryFilter<JarArchiveEntry> filter) throws Exception {
-        XWarDecryptor xJarDecryptor = new XWarDecryptor(new XJdkDecryptor(algorithm), filter);
+        XWarDecryptor xJarDecryptor = new XWarDecryptor(XKit.decryptor(algorithm), filter);
         XKey xKey = XKit.key(algorithm, keysize, ivsize, password);
         xJarDecryptor.decrypt(xKey, in, out);
     }
@@ -61,10 +61,7 @@ public class XWarDecryptor extends XEntryDecryptor<JarArchiveEntry> implements X
             XJarDecryptor xJarDecryptor = new XJarDecryptor(xDecryptor, level);
             JarArchiveEntry entry;
             while ((entry = zis.getNextJarEntry()) != null) {
-                if (entry.getName().startsWith(XJAR_SRC_DIR)
-                        || entry.getName().endsWith(XJAR_INF_DIR)
-                        || entry.getName().endsWith(XJAR_INF_DIR + XJAR_INF_IDX)
-                ) {
+                if (XKit.generated(entry.getName())) {
                     continue;
                 }
                 if (entry.isDirectory()) {
@@ -85,7 +82,7 @@ public class XWarDecryptor extends XEntryDecryptor<JarArchiveEntry> implements X
                     boolean filtered = filtrate(entry);
                     XDecryptor decryptor = filtered ? this : xNopDecryptor;
                     try (InputStream eis = decryptor.decrypt(key, nis)) {
-                        XKit.transfer(eis, nos);
+                        XKit.transfer(eis, nos, false);
                     }
                 }
                 zos.closeArchiveEntry();
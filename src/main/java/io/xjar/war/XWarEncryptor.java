@@ -6,10 +6,11 @@ import io.xjar.key.XKey;
 import org.apache.commons.compress.archivers.jar.JarArchiveEntry;
 import org.apache.commons.compress.archivers.jar.JarArchiveInputStream;
 import org.apache.commons.compress.archivers.jar.JarArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
 
 import java.io.*;
-import java.util.LinkedHashSet;
-import java.util.Set;
+import java.util.*;
 import java.util.zip.Deflater;
 
 /**
@@ -22,6 +23,8 @@ public class XWarEncryptor extends XEntryEncryptor<JarArchiveEntry> implements X
     // 安全过滤器，避免由于用户自定义过滤器时把其他无关资源加密了造成无法运行
     private final XEntryFilter<JarArchiveEntry> safeFilter = new XWarAllFilter();
     private final int level;
+    // 跨构建共享的加密嵌套JAR包缓存
+    private final XLibraryCache libraryCache;
 
     public XWarEncryptor(XEncryptor xEncryptor) {
         this(xEncryptor, null);
@@ -36,17 +39,66 @@ public class XWarEncryptor extends XEntryEncryptor<JarArchiveEntry> implements X
     }
 
     public XWarEncryptor(XEncryptor xEncryptor, int level, XEntryFilter<JarArchiveEntry> filter) {
-        super(xEncryptor, filter);
+        this(xEncryptor, level, filter, null);
+    }
+
+    /**
+     * 构造
+     *
+     * @param xEncryptor   加密器
+     * @param level        压缩级别
+     * @param filter       过滤器
+     * @param libraryCache 加密嵌套JAR包的缓存，只用于文件加密，为 null 时不缓存
+     */
+    public XWarEncryptor(XEncryptor xEncryptor, int level, XEntryFilter<JarArchiveEntry> filter, XLibraryCache libraryCache) {
+        this(xEncryptor, level, filter, libraryCache, null);
+    }
+
+    /**
+     * 构造
+     *
+     * @param xEncryptor        加密器
+     * @param level             默认压缩级别
+     * @param filter            过滤器
+     * @param libraryCache      加密嵌套JAR包的缓存，只用于文件加密，为 null 时不缓存
+     * @param compressionPolicy 记录压缩策略，为 null 时所有记录都使用默认压缩级别
+     */
+    public XWarEncryptor(XEncryptor xEncryptor, int level, XEntryFilter<JarArchiveEntry> filter, XLibraryCache libraryCache, XCompressionPolicy compressionPolicy) {
+        super(xEncryptor, filter, compressionPolicy);
         this.level = level;
+        this.libraryCache = libraryCache;
     }
 
+    /**
+     * 通过随机访问读取原文包，不需要加密的记录直接原样复制其压缩后的数据，不经过解压及重新压缩。
+     *
+     * @param key  密钥
+     * @param src  原文包
+     * @param dest 加密包
+     * @throws IOException I/O 异常
+     */
     @Override
     public void encrypt(XKey key, File src, File dest) throws IOException {
-        try (
-                FileInputStream fis = new FileInputStream(src);
-                FileOutputStream fos = new FileOutputStream(dest)
-        ) {
-            encrypt(key, fis, fos);
+        ZipFile zipFile = null;
+        JarArchiveOutputStream zos = null;
+        List<XIndex.Record> indexes = new ArrayList<>();
+        try {
+            zipFile = new ZipFile(src);
+            zos = new JarArchiveOutputStream(new FileOutputStream(dest));
+            zos.setLevel(level);
+            XJarEncryptor xJarEncryptor = new XJarEncryptor(xEncryptor, level, null, compressionPolicy);
+            Enumeration<ZipArchiveEntry> entries = zipFile.getEntriesInPhysicalOrder();
+            while (entries.hasMoreElements()) {
+                ZipArchiveEntry entry = entries.nextElement();
+                encrypt(key, zipFile, entry, null, xJarEncryptor, zos, indexes);
+            }
+
+            writeIndexes(zos, indexes);
+
+            zos.finish();
+        } finally {
+            XKit.close(zipFile);
+            XKit.close(zos);
         }
     }
 
@@ -54,65 +106,18 @@ public class XWarEncryptor extends XEntryEncryptor<JarArchiveEntry> implements X
     public void encrypt(XKey key, InputStream in, OutputStream out) throws IOException {
         JarArchiveInputStream zis = null;
         JarArchiveOutputStream zos = null;
-        Set<String> indexes = new LinkedHashSet<>();
+        List<XIndex.Record> indexes = new ArrayList<>();
         try {
             zis = new JarArchiveInputStream(in);
             zos = new JarArchiveOutputStream(out);
             zos.setLevel(level);
-            XUnclosedInputStream nis = new XUnclosedInputStream(zis);
-            XUnclosedOutputStream nos = new XUnclosedOutputStream(zos);
-            XJarEncryptor xJarEncryptor = new XJarEncryptor(xEncryptor, level);
+            XJarEncryptor xJarEncryptor = new XJarEncryptor(xEncryptor, level, null, compressionPolicy);
             JarArchiveEntry entry;
             while ((entry = zis.getNextJarEntry()) != null) {
-                if (entry.getName().startsWith(XJAR_SRC_DIR)
-                        || entry.getName().endsWith(XJAR_INF_DIR)
-                        || entry.getName().endsWith(XJAR_INF_DIR + XJAR_INF_IDX)
-                ) {
-                    continue;
-                }
-                if (entry.isDirectory()) {
-                    JarArchiveEntry jarArchiveEntry = new JarArchiveEntry(entry.getName());
-                    jarArchiveEntry.setTime(entry.getTime());
-                    zos.putArchiveEntry(jarArchiveEntry);
-                } else if (entry.getName().endsWith(".jar")) {
-                    JarArchiveEntry jar = new JarArchiveEntry(entry.getName());
-                    jar.setTime(entry.getTime());
-                    zos.putArchiveEntry(jar);
-                    boolean filtered = filtrate(entry);
-                    if (filtered) indexes.add(entry.getName());
-                    XEncryptor encryptor = filtered ? xJarEncryptor : xNopEncryptor;
-                    encryptor.encrypt(key, nis, nos);
-                } else {
-                    JarArchiveEntry jarArchiveEntry = new JarArchiveEntry(entry.getName());
-                    jarArchiveEntry.setTime(entry.getTime());
-                    zos.putArchiveEntry(jarArchiveEntry);
-                    boolean filtered = filtrate(entry);
-                    if (filtered) indexes.add(entry.getName());
-                    XEncryptor encryptor = filtered ? this : xNopEncryptor;
-                    try (InputStream eis = encryptor.encrypt(key, nis)) {
-                        XKit.transfer(eis, nos);
-                    }
-                }
-                zos.closeArchiveEntry();
+                encrypt(key, null, entry, zis, xJarEncryptor, zos, indexes);
             }
 
-            if (!indexes.isEmpty()) {
-                String classpath = "WEB-INF/classes/";
-                JarArchiveEntry XJAR_INF = new JarArchiveEntry(classpath + XJAR_INF_DIR);
-                XJAR_INF.setTime(System.currentTimeMillis());
-                zos.putArchiveEntry(XJAR_INF);
-                zos.closeArchiveEntry();
-
-                JarArchiveEntry IDX = new JarArchiveEntry(classpath + XJAR_INF_DIR + XJAR_INF_IDX);
-                IDX.setTime(System.currentTimeMillis());
-                zos.putArchiveEntry(IDX);
-                int idx = classpath.length();
-                for (String index : indexes) {
-                    nos.write(index.substring(idx).getBytes());
-                    nos.write(CRLF.getBytes());
-                }
-                zos.closeArchiveEntry();
-            }
+            writeIndexes(zos, indexes);
 
             zos.finish();
         } finally {
@@ -121,6 +126,169 @@ public class XWarEncryptor extends XEntryEncryptor<JarArchiveEntry> implements X
         }
     }
 
+    /**
+     * 加密一个记录：目录原样写出，需要加密的嵌套JAR包整体加密，其他需要加密的记录加密后写出并记录其索引，其余记录原样复制。
+     * 随机访问时 zipFile 不为 null，记录数据按需从中读取，不需要加密的记录直接复制其压缩后的数据；
+     * 流式读取时 zipFile 为 null，记录数据从 in 中读取，不需要加密的记录按压缩策略重新压缩。
+     *
+     * @param key           密钥
+     * @param zipFile       随机访问的原文包，流式读取时为 null
+     * @param source        原文包中的记录
+     * @param in            流式读取时记录的数据，不会被关闭，随机访问时为 null
+     * @param xJarEncryptor 嵌套JAR包加密器
+     * @param zos           加密包输出流
+     * @param indexes       加密资源索引
+     * @throws IOException I/O 异常
+     */
+    private void encrypt(XKey key, ZipFile zipFile, ZipArchiveEntry source, InputStream in, XJarEncryptor xJarEncryptor, JarArchiveOutputStream zos, List<XIndex.Record> indexes) throws IOException {
+        JarArchiveEntry entry = source instanceof JarArchiveEntry ? (JarArchiveEntry) source : new JarArchiveEntry(source);
+        if (XKit.generated(entry.getName())) {
+            return;
+        }
+        if (entry.isDirectory()) {
+            JarArchiveEntry jarArchiveEntry = new JarArchiveEntry(entry.getName());
+            jarArchiveEntry.setTime(entry.getTime());
+            zos.putArchiveEntry(jarArchiveEntry);
+            zos.closeArchiveEntry();
+            return;
+        }
+        boolean filtered = filtrate(entry);
+        if (zipFile != null && !filtered) {
+            XKit.copy(zipFile, source, zos);
+            return;
+        }
+        if (entry.getName().endsWith(".jar") && zipFile != null && (libraryCache != null || compressionPolicy != null)) {
+            JarArchiveEntry jar = new JarArchiveEntry(entry.getName());
+            jar.setTime(entry.getTime());
+            encrypt(key, zipFile, source, xJarEncryptor, zos, jar);
+            // 嵌套JAR包整体加密，明文长度未知
+            indexes.add(new XIndex.Record(jar.getName(), -1, jar.getSize(), 0, key.getAlgorithm()));
+            return;
+        }
+        try (InputStream data = zipFile != null ? zipFile.getInputStream(source) : new XUnclosedInputStream(in)) {
+            if (entry.getName().endsWith(".jar")) {
+                JarArchiveEntry jar = new JarArchiveEntry(entry.getName());
+                jar.setTime(entry.getTime());
+                XEncryptor encryptor = filtered ? xJarEncryptor : xNopEncryptor;
+                if (compressionPolicy != null) {
+                    long start = System.nanoTime();
+                    XSpillOutputStream sos = buffer();
+                    try {
+                        encryptor.encrypt(key, data, sos);
+                        sos.close();
+                        int compression = compressionPolicy.level(jar, filtered, null, 0);
+                        write(zos, jar, sos, compression, level);
+                        compressionReport.record(compression, sos.getSize(), jar.getCompressedSize(), System.nanoTime() - start);
+                    } finally {
+                        sos.delete();
+                    }
+                } else {
+                    zos.putArchiveEntry(jar);
+                    encryptor.encrypt(key, data, new XUnclosedOutputStream(zos));
+                    zos.closeArchiveEntry();
+                }
+                // 嵌套JAR包整体加密，明文长度未知
+                if (filtered) indexes.add(new XIndex.Record(jar.getName(), -1, jar.getSize(), 0, key.getAlgorithm()));
+            } else if (filtered) {
+                JarArchiveEntry jarArchiveEntry = new JarArchiveEntry(entry.getName());
+                jarArchiveEntry.setTime(entry.getTime());
+                // 明文长度已知时小记录可以一次性加密
+                if (entry.getSize() >= 0) jarArchiveEntry.setSize(entry.getSize());
+                indexes.add(encrypt(key, zos, jarArchiveEntry, data, level));
+            } else {
+                JarArchiveEntry jarArchiveEntry = new JarArchiveEntry(entry.getName());
+                jarArchiveEntry.setTime(entry.getTime());
+                copy(zos, jarArchiveEntry, data, level);
+            }
+        }
+    }
+
+    /**
+     * 加密嵌套JAR包后按压缩策略写出，有缓存时先在缓存中查找，缓存中没有时加密后放入缓存。
+     *
+     * @param key           密钥
+     * @param zipFile       原文包
+     * @param entry         嵌套JAR包记录
+     * @param xJarEncryptor JAR包加密器
+     * @param zos           输出流
+     * @param jar           写出的嵌套JAR包记录
+     * @throws IOException I/O 异常
+     */
+    private void encrypt(XKey key, ZipFile zipFile, ZipArchiveEntry entry, XJarEncryptor xJarEncryptor, JarArchiveOutputStream zos, JarArchiveEntry jar) throws IOException {
+        long start = System.nanoTime();
+        String cacheKey = null;
+        XSpillOutputStream plain = null;
+        XSpillOutputStream sos = null;
+        try {
+            // 原文只解压读取一次，缓存没有命中时直接从缓冲加密
+            if (libraryCache != null) {
+                plain = new XSpillOutputStream(DEFAULT_SPILL_THRESHOLD, spillDirectory);
+                try (InputStream in = zipFile.getInputStream(entry)) {
+                    XKit.transfer(in, plain, false);
+                }
+                plain.close();
+                cacheKey = libraryCache.key(key, level, compressionPolicy, plain);
+                sos = libraryCache.get(cacheKey, new XSpillBudget(DEFAULT_SPILL_THRESHOLD, spillDirectory));
+            }
+            if (sos == null) {
+                sos = new XSpillOutputStream(DEFAULT_SPILL_THRESHOLD, spillDirectory);
+                try (InputStream in = plain != null ? plain.getInputStream() : zipFile.getInputStream(entry)) {
+                    xJarEncryptor.encrypt(key, in, sos);
+                }
+                sos.close();
+                if (cacheKey != null) {
+                    libraryCache.put(cacheKey, sos);
+                }
+            }
+            int compression = compressionPolicy != null ? compressionPolicy.level(jar, true, null, 0) : level;
+            write(zos, jar, sos, compression, level);
+            compressionReport.record(compression, sos.getSize(), jar.getCompressedSize(), System.nanoTime() - start);
+        } finally {
+            if (plain != null) {
+                plain.delete();
+            }
+            if (sos != null) {
+                sos.delete();
+            }
+        }
+    }
+
+    /**
+     * 写出加密资源索引
+     *
+     * @param zos     war包输出流
+     * @param indexes 加密资源索引
+     * @throws IOException I/O 异常
+     */
+    private void writeIndexes(JarArchiveOutputStream zos, List<XIndex.Record> indexes) throws IOException {
+        if (!indexes.isEmpty()) {
+            String classpath = "WEB-INF/classes/";
+            JarArchiveEntry XJAR_INF = new JarArchiveEntry(classpath + XJAR_INF_DIR);
+            XJAR_INF.setTime(System.currentTimeMillis());
+            zos.putArchiveEntry(XJAR_INF);
+            zos.closeArchiveEntry();
+
+            JarArchiveEntry IDX = new JarArchiveEntry(classpath + XJAR_INF_DIR + XJAR_INF_IDX);
+            IDX.setTime(System.currentTimeMillis());
+            zos.putArchiveEntry(IDX);
+            int idx = classpath.length();
+            List<XIndex.Record> records = new ArrayList<>(indexes.size());
+            for (XIndex.Record index : indexes) {
+                String name = index.getName().substring(idx);
+                zos.write(name.getBytes());
+                zos.write(CRLF.getBytes());
+                records.add(new XIndex.Record(name, index.getPlainLength(), index.getCipherLength(), index.getCrc(), index.getAlgorithm()));
+            }
+            zos.closeArchiveEntry();
+
+            JarArchiveEntry BIN = new JarArchiveEntry(classpath + XJAR_INF_DIR + XJAR_INF_BIN);
+            BIN.setTime(System.currentTimeMillis());
+            zos.putArchiveEntry(BIN);
+            XIndex.write(zos, records);
+            zos.closeArchiveEntry();
+        }
+    }
+
     @Override
     public void encrypt(XKey key, InputStream in, OutputStream out, String password) throws IOException {
 
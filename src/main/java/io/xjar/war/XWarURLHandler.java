@@ -3,19 +3,15 @@ package io.xjar.war;
 import io.xjar.XConstants;
 import io.xjar.XDecryptor;
 import io.xjar.XEncryptor;
+import io.xjar.XIndexes;
+import io.xjar.XResourceCache;
 import io.xjar.key.XKey;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.LineNumberReader;
 import java.net.JarURLConnection;
 import java.net.URL;
 import java.net.URLConnection;
 import java.net.URLStreamHandler;
-import java.util.Enumeration;
-import java.util.LinkedHashSet;
-import java.util.Set;
 
 /**
  * 加密的URL处理器
@@ -28,36 +24,49 @@ public class XWarURLHandler extends URLStreamHandler implements XConstants {
     private final XEncryptor xEncryptor;
     private final XKey xKey;
     private final ClassLoader classLoader;
-    private final Set<String> indexes;
+    private final XResourceCache xResourceCache;
+    private XIndexes indexes;
 
     public XWarURLHandler(XDecryptor xDecryptor, XEncryptor xEncryptor, XKey xKey, ClassLoader classLoader) {
+        this(xDecryptor, xEncryptor, xKey, classLoader, null);
+    }
+
+    public XWarURLHandler(XDecryptor xDecryptor, XEncryptor xEncryptor, XKey xKey, ClassLoader classLoader, XResourceCache xResourceCache) {
+        this.xResourceCache = xResourceCache;
         this.xDecryptor = xDecryptor;
         this.xEncryptor = xEncryptor;
         this.xKey = xKey;
         this.classLoader = classLoader;
-        this.indexes = new LinkedHashSet<>();
+        this.indexes = new XIndexes();
     }
 
     void init() throws IOException {
-        Enumeration<URL> resources = classLoader.getResources(XJAR_INF_DIR + XJAR_INF_IDX);
-        while (resources.hasMoreElements()) {
-            URL resource = resources.nextElement();
-            String url = resource.toString();
-            String classpath = resource.getProtocol().equals("file") ? url.substring(0, url.length() - (XJAR_INF_DIR + XJAR_INF_IDX).length()) : url.substring(0, url.lastIndexOf("!/") + 2);
-            InputStream in = resource.openStream();
-            InputStreamReader isr = new InputStreamReader(in);
-            LineNumberReader lnr = new LineNumberReader(isr);
-            String name;
-            while ((name = lnr.readLine()) != null) indexes.add(classpath + name);
-        }
+        this.indexes = new XIndexes(classLoader);
+    }
+
+    /**
+     * 加密资源的明文长度
+     *
+     * @param url 资源URL
+     * @return 明文长度，长度未知时返回 -1
+     */
+    long getPlainLength(URL url) {
+        return indexes.getPlainLength(url);
+    }
+
+    /**
+     * @return 加密资源索引占用的内存字节数
+     */
+    public long getFootprint() {
+        return indexes.getFootprint();
     }
 
     @Override
     protected URLConnection openConnection(URL url) throws IOException {
         URLConnection urlConnection = new URL(url.toString()).openConnection();
-        return indexes.contains(url.toString())
+        return indexes.contains(url)
                 && urlConnection instanceof JarURLConnection
-                ? new XWarURLConnection((JarURLConnection) urlConnection, xDecryptor, xEncryptor, xKey)
+                ? new XWarURLConnection((JarURLConnection) urlConnection, xDecryptor, xEncryptor, xKey, xResourceCache, this)
                 : urlConnection;
     }
 
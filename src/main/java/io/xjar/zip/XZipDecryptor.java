@@ -62,7 +62,7 @@ public class XZipDecryptor extends XEntryDecryptor<ZipArchiveEntry> implements X
                 zos.putArchiveEntry(new ZipArchiveEntry(entry.getName()));
                 XDecryptor decryptor = filtrate(entry) ? this : xNopDecryptor;
                 try (OutputStream eos = decryptor.decrypt(key, nos)) {
-                    XKit.transfer(zis, eos);
+                    XKit.transfer(zis, eos, false);
                 }
                 zos.closeArchiveEntry();
             }
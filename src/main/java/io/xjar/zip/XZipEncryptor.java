@@ -5,8 +5,10 @@ import io.xjar.key.XKey;
 import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
 import org.apache.commons.compress.archivers.zip.ZipArchiveInputStream;
 import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipFile;
 
 import java.io.*;
+import java.util.Enumeration;
 import java.util.zip.Deflater;
 
 /**
@@ -31,17 +33,47 @@ public class XZipEncryptor extends XEntryEncryptor<ZipArchiveEntry> implements X
     }
 
     public XZipEncryptor(XEncryptor xEncryptor, int level, XEntryFilter<ZipArchiveEntry> filter) {
-        super(xEncryptor, filter);
+        this(xEncryptor, level, filter, null);
+    }
+
+    /**
+     * 构造
+     *
+     * @param xEncryptor        加密器
+     * @param level             默认压缩级别
+     * @param filter            过滤器
+     * @param compressionPolicy 记录压缩策略，为 null 时所有记录都使用默认压缩级别
+     */
+    public XZipEncryptor(XEncryptor xEncryptor, int level, XEntryFilter<ZipArchiveEntry> filter, XCompressionPolicy compressionPolicy) {
+        super(xEncryptor, filter, compressionPolicy);
         this.level = level;
     }
 
+    /**
+     * 通过随机访问读取原文包，不需要加密的记录直接原样复制其压缩后的数据，不经过解压及重新压缩。
+     *
+     * @param key  密钥
+     * @param src  原文包
+     * @param dest 加密包
+     * @throws IOException I/O 异常
+     */
     @Override
     public void encrypt(XKey key, File src, File dest) throws IOException {
-        try (
-                FileInputStream fis = new FileInputStream(src);
-                FileOutputStream fos = new FileOutputStream(dest)
-        ) {
-            encrypt(key, fis, fos);
+        ZipFile zipFile = null;
+        ZipArchiveOutputStream zos = null;
+        try {
+            zipFile = new ZipFile(src);
+            zos = new ZipArchiveOutputStream(new FileOutputStream(dest));
+            zos.setLevel(level);
+            Enumeration<ZipArchiveEntry> entries = zipFile.getEntriesInPhysicalOrder();
+            while (entries.hasMoreElements()) {
+                ZipArchiveEntry entry = entries.nextElement();
+                encrypt(key, zipFile, entry, null, zos);
+            }
+            zos.finish();
+        } finally {
+            XKit.close(zipFile);
+            XKit.close(zos);
         }
     }
 
@@ -53,18 +85,9 @@ public class XZipEncryptor extends XEntryEncryptor<ZipArchiveEntry> implements X
             zis = new ZipArchiveInputStream(in);
             zos = new ZipArchiveOutputStream(out);
             zos.setLevel(level);
-            XUnclosedOutputStream nos = new XUnclosedOutputStream(zos);
             ZipArchiveEntry entry;
             while ((entry = zis.getNextZipEntry()) != null) {
-                if (entry.isDirectory()) {
-                    continue;
-                }
-                zos.putArchiveEntry(new ZipArchiveEntry(entry.getName()));
-                XEncryptor encryptor = filtrate(entry) ? this : xNopEncryptor;
-                try (OutputStream eos = encryptor.encrypt(key, nos)) {
-                    XKit.transfer(zis, eos);
-                }
-                zos.closeArchiveEntry();
+                encrypt(key, null, entry, zis, zos);
             }
             zos.finish();
         } finally {
@@ -72,6 +95,40 @@ public class XZipEncryptor extends XEntryEncryptor<ZipArchiveEntry> implements X
             XKit.close(zos);
         }
     }
+
+    /**
+     * 加密一个记录：目录忽略，需要加密的记录加密后写出，其余记录原样复制。
+     * 随机访问时 zipFile 不为 null，记录数据按需从中读取，不需要加密的记录直接复制其压缩后的数据；
+     * 流式读取时 zipFile 为 null，记录数据从 in 中读取，不需要加密的记录按压缩策略重新压缩。
+     *
+     * @param key     密钥
+     * @param zipFile 随机访问的原文包，流式读取时为 null
+     * @param entry   原文包中的记录
+     * @param in      流式读取时记录的数据，不会被关闭，随机访问时为 null
+     * @param zos     加密包输出流
+     * @throws IOException I/O 异常
+     */
+    private void encrypt(XKey key, ZipFile zipFile, ZipArchiveEntry entry, InputStream in, ZipArchiveOutputStream zos) throws IOException {
+        if (entry.isDirectory()) {
+            return;
+        }
+        boolean filtered = filtrate(entry);
+        if (zipFile != null && !filtered) {
+            XKit.copy(zipFile, entry, zos);
+            return;
+        }
+        try (InputStream data = zipFile != null ? zipFile.getInputStream(entry) : new XUnclosedInputStream(in)) {
+            ZipArchiveEntry zipArchiveEntry = new ZipArchiveEntry(entry.getName());
+            if (filtered) {
+                // 明文长度已知时小记录可以一次性加密
+                if (entry.getSize() >= 0) zipArchiveEntry.setSize(entry.getSize());
+                encrypt(key, zos, zipArchiveEntry, data, level);
+            } else {
+                copy(zos, zipArchiveEntry, data, level);
+            }
+        }
+    }
+
     @Override
     public void encrypt(XKey key, InputStream in, OutputStream out, String password) throws IOException {
 
@@ -9,7 +9,7 @@ import java.util.UUID;
 public class Main {
 
   /**
-   * @param args
+   * @param args 可选的线程数，缺省为单线程，加密结果与线程数无关
    * @throws Exception
    */
   public static void main(String[] args) throws Exception {
@@ -25,7 +25,7 @@ public class Main {
         uuid, (entry) -> {
           String name = entry.getName();
           return name.startsWith("BOOT-INF/classes/com");
-        });
+        }, args.length > 0 ? Integer.parseInt(args[0]) : 1);
 
     System.out.println("加密完成！密码是："+ uuid);
   }
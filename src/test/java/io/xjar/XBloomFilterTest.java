@@ -0,0 +1,55 @@
+package io.xjar;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * 布隆过滤器的不漏判及误判率测试
+ *
+ * @author Payne 646742615@qq.com
+ * 2018/12/29 14:30
+ */
+public class XBloomFilterTest {
+
+    @Test
+    public void addedAreAlwaysFound() {
+        XBloomFilter filter = new XBloomFilter(10000);
+        for (int i = 0; i < 10000; i++) {
+            filter.add(("io/xjar/test/Class" + i + ".class").hashCode());
+        }
+        for (int i = 0; i < 10000; i++) {
+            assertTrue(filter.mightContain(("io/xjar/test/Class" + i + ".class").hashCode()));
+        }
+    }
+
+    @Test
+    public void negatives() {
+        int expected = 10000;
+        XBloomFilter filter = new XBloomFilter(expected);
+        Random random = new Random(expected);
+        for (int i = 0; i < expected; i++) {
+            filter.add(random.nextInt());
+        }
+        int positives = 0;
+        int trials = 100000;
+        for (int i = 0; i < trials; i++) {
+            if (filter.mightContain(("org/springframework/Missing" + i + ".class").hashCode())) {
+                positives++;
+            }
+        }
+        // 设计误判率约为 1% ，留出余量
+        assertTrue("false positives " + positives, positives < trials * 3 / 100);
+    }
+
+    @Test
+    public void empty() {
+        XBloomFilter filter = new XBloomFilter(0);
+        assertEquals(8, filter.getFootprint());
+        for (int i = 0; i < 1000; i++) {
+            assertFalse(filter.mightContain(("io/xjar/test/Class" + i + ".class").hashCode()));
+        }
+    }
+}
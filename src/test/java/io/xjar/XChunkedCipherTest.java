@@ -0,0 +1,169 @@
+package io.xjar;
+
+import io.xjar.key.XKey;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * 分块的认证加密格式的往返及篡改测试
+ *
+ * @author Payne 646742615@qq.com
+ * 2018/12/28 10:20
+ */
+public class XChunkedCipherTest {
+    private static final String ALGORITHM = "AES/GCM/NoPadding";
+    private static final int CHUNK = 1024;
+    private static final int[] SIZES = {0, 1, CHUNK - 1, CHUNK, CHUNK + 1, 5 * CHUNK + 7};
+
+    private XKey key;
+
+    @Before
+    public void setup() throws Exception {
+        key = XKit.key(ALGORITHM, "io.xjar");
+    }
+
+    @Test
+    public void roundTrip() throws Exception {
+        for (int threads : new int[]{1, 4}) {
+            XChunkedCipher cipher = new XChunkedCipher(ALGORITHM, CHUNK, threads);
+            for (int size : SIZES) {
+                byte[] plain = random(size);
+                byte[] encrypted = encrypt(cipher, plain);
+                assertEquals("cipher length of " + size, XChunkedCipher.getCipherLength(size, CHUNK), encrypted.length);
+                ByteArrayOutputStream bos = new ByteArrayOutputStream();
+                cipher.decrypt(key, new ByteArrayInputStream(encrypted), bos);
+                assertArrayEquals("decrypt " + size + " with " + threads + " threads", plain, bos.toByteArray());
+                assertArrayEquals("decrypt stream " + size, plain, read(cipher.decrypt(key, new ByteArrayInputStream(encrypted))));
+            }
+        }
+    }
+
+    @Test
+    public void streamsMatchWholeTransfer() throws Exception {
+        XChunkedCipher cipher = new XChunkedCipher(ALGORITHM, CHUNK, 1);
+        for (int size : SIZES) {
+            byte[] plain = random(size);
+            byte[] encrypted = read(cipher.encrypt(key, new ByteArrayInputStream(plain)));
+            assertArrayEquals(plain, decrypt(cipher, encrypted));
+
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            try (OutputStream out = cipher.encrypt(key, bos)) {
+                out.write(plain);
+            }
+            assertArrayEquals(plain, decrypt(cipher, bos.toByteArray()));
+
+            ByteArrayOutputStream dos = new ByteArrayOutputStream();
+            try (OutputStream out = cipher.decrypt(key, dos)) {
+                out.write(bos.toByteArray());
+            }
+            assertArrayEquals(plain, dos.toByteArray());
+        }
+    }
+
+    @Test
+    public void skipDoesNotChangeContent() throws Exception {
+        XChunkedCipher cipher = new XChunkedCipher(ALGORITHM, CHUNK, 1);
+        byte[] plain = random(7 * CHUNK + 11);
+        byte[] encrypted = encrypt(cipher, plain);
+        for (int offset : new int[]{0, 1, CHUNK - 1, CHUNK, 3 * CHUNK + 5, plain.length - 1, plain.length}) {
+            try (InputStream in = cipher.decrypt(key, new ByteArrayInputStream(encrypted))) {
+                long skipped = 0;
+                while (skipped < offset) {
+                    long n = in.skip(offset - skipped);
+                    assertTrue("skip made no progress at " + skipped, n > 0);
+                    skipped += n;
+                }
+                assertArrayEquals("content after skipping " + offset, Arrays.copyOfRange(plain, offset, plain.length), read(in));
+            }
+        }
+    }
+
+    @Test
+    public void parallelAndSerialDecryptEachOther() throws Exception {
+        byte[] plain = random(9 * CHUNK + 3);
+        byte[] encrypted = encrypt(new XChunkedCipher(ALGORITHM, CHUNK, 4), plain);
+        assertArrayEquals(plain, decrypt(new XChunkedCipher(ALGORITHM, CHUNK, 1), encrypted));
+    }
+
+    @Test(expected = IOException.class)
+    public void tamperedChunkFails() throws Exception {
+        XChunkedCipher cipher = new XChunkedCipher(ALGORITHM, CHUNK, 1);
+        byte[] encrypted = encrypt(cipher, random(3 * CHUNK));
+        encrypted[XChunkedCipher.HEADER_LENGTH + CHUNK + XChunkedCipher.TAG_LENGTH + 10] ^= 1;
+        decrypt(cipher, encrypted);
+    }
+
+    @Test(expected = IOException.class)
+    public void tamperedHeaderFails() throws Exception {
+        XChunkedCipher cipher = new XChunkedCipher(ALGORITHM, CHUNK, 1);
+        byte[] encrypted = encrypt(cipher, random(CHUNK / 2));
+        // 随机数前缀
+        encrypted[10] ^= 1;
+        decrypt(cipher, encrypted);
+    }
+
+    @Test(expected = IOException.class)
+    public void truncatedStreamFails() throws Exception {
+        XChunkedCipher cipher = new XChunkedCipher(ALGORITHM, CHUNK, 1);
+        byte[] plain = random(3 * CHUNK + 100);
+        byte[] encrypted = encrypt(cipher, plain);
+        // 去掉最后一块后剩下的都是完整的块，但没有最后一块的标志
+        decrypt(cipher, Arrays.copyOf(encrypted, XChunkedCipher.HEADER_LENGTH + 3 * (CHUNK + XChunkedCipher.TAG_LENGTH)));
+    }
+
+    @Test(expected = IOException.class)
+    public void swappedChunksFail() throws Exception {
+        XChunkedCipher cipher = new XChunkedCipher(ALGORITHM, CHUNK, 1);
+        byte[] encrypted = encrypt(cipher, random(3 * CHUNK + 1));
+        int size = CHUNK + XChunkedCipher.TAG_LENGTH;
+        int first = XChunkedCipher.HEADER_LENGTH;
+        byte[] chunk = Arrays.copyOfRange(encrypted, first, first + size);
+        System.arraycopy(encrypted, first + size, encrypted, first, size);
+        System.arraycopy(chunk, 0, encrypted, first + size, size);
+        decrypt(cipher, encrypted);
+    }
+
+    @Test(expected = IOException.class)
+    public void wrongKeyFails() throws Exception {
+        XChunkedCipher cipher = new XChunkedCipher(ALGORITHM, CHUNK, 1);
+        byte[] encrypted = encrypt(cipher, random(100));
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        cipher.decrypt(XKit.key(ALGORITHM, "other"), new ByteArrayInputStream(encrypted), bos);
+    }
+
+    private byte[] encrypt(XChunkedCipher cipher, byte[] plain) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        cipher.encrypt(key, new ByteArrayInputStream(plain), bos);
+        return bos.toByteArray();
+    }
+
+    private byte[] decrypt(XChunkedCipher cipher, byte[] encrypted) throws IOException {
+        return read(cipher.decrypt(key, new ByteArrayInputStream(encrypted)));
+    }
+
+    static byte[] read(InputStream in) throws IOException {
+        try {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            XKit.transfer(in, bos);
+            return bos.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    static byte[] random(int size) {
+        byte[] bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+        return bytes;
+    }
+}
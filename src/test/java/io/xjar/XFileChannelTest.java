@@ -0,0 +1,86 @@
+package io.xjar;
+
+import io.xjar.key.XKey;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.*;
+
+import static io.xjar.XChunkedCipherTest.random;
+import static io.xjar.XChunkedCipherTest.read;
+import static io.xjar.XNioCipherTest.ALGORITHMS;
+import static io.xjar.XNioCipherTest.counter;
+import static org.junit.Assert.*;
+
+/**
+ * 文件到文件的加解密及不加密时通过文件通道直接复制的测试
+ *
+ * @author Payne 646742615@qq.com
+ * 2018/12/28 10:45
+ */
+public class XFileChannelTest {
+    private File dir;
+
+    @Before
+    public void setup() throws IOException {
+        dir = File.createTempFile("xjar", ".test");
+        assertTrue(dir.delete() && dir.mkdirs());
+    }
+
+    @After
+    public void cleanup() {
+        File[] files = dir.listFiles();
+        for (int i = 0; files != null && i < files.length; i++) {
+            assertTrue(files[i].delete());
+        }
+        assertTrue(dir.delete());
+    }
+
+    @Test
+    public void jdkAndNioFiles() throws Exception {
+        for (String algorithm : ALGORITHMS) {
+            XKey key = XKit.key(algorithm, "io.xjar");
+            byte[] plain = random(100003);
+            File src = write(new File(dir, "plain"), plain);
+            File jdk = new File(dir, "jdk");
+            File nio = new File(dir, "nio");
+            new XJdkEncryptor(algorithm).encrypt(key, src, jdk);
+            new XNioEncryptor(algorithm, 4096, true).encrypt(key, src, nio);
+            assertEquals(algorithm, jdk.length(), nio.length());
+            if (!counter(algorithm)) {
+                assertArrayEquals(algorithm, read(new FileInputStream(jdk)), read(new FileInputStream(nio)));
+            }
+
+            File out = new File(dir, "out");
+            new XNioDecryptor(algorithm, 4096, false).decrypt(key, jdk, out);
+            assertArrayEquals(algorithm, plain, read(new FileInputStream(out)));
+            new XJdkDecryptor(algorithm).decrypt(key, nio, out);
+            assertArrayEquals(algorithm, plain, read(new FileInputStream(out)));
+        }
+    }
+
+    @Test
+    public void nopFiles() throws Exception {
+        XKey key = XKit.key("AES", "io.xjar");
+        for (int size : new int[]{0, 1, 100003}) {
+            byte[] plain = random(size);
+            File src = write(new File(dir, "plain"), plain);
+            File encrypted = new File(dir, "encrypted");
+            // 目标文件已存在且更长时要被截断
+            write(encrypted, random(size + 1000));
+            new XNopEncryptor().encrypt(key, src, encrypted);
+            assertArrayEquals("encrypt " + size, plain, read(new FileInputStream(encrypted)));
+            File decrypted = new File(dir, "decrypted");
+            new XNopDecryptor().decrypt(key, encrypted, decrypted);
+            assertArrayEquals("decrypt " + size, plain, read(new FileInputStream(decrypted)));
+        }
+    }
+
+    private static File write(File file, byte[] data) throws IOException {
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(data);
+        }
+        return file;
+    }
+}
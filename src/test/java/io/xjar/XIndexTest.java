@@ -0,0 +1,112 @@
+package io.xjar;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 二进制加密资源索引的写出、加载及查找测试
+ *
+ * @author Payne 646742615@qq.com
+ * 2018/12/29 14:00
+ */
+public class XIndexTest {
+
+    @Test
+    public void roundTrip() throws Exception {
+        List<XIndex.Record> records = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            String algorithm = i % 3 == 0 ? "AES/CTR/NoPadding" : "AES";
+            records.add(new XIndex.Record("io/xjar/test/Class" + i + ".class", i * 10, i * 10 + 16, 0xFFFFFFF0L + i % 16, algorithm));
+        }
+        records.add(new XIndex.Record("lib/nested.jar", -1, 1000, 0, "AES"));
+        byte[] bytes = write(records);
+
+        File file = File.createTempFile("xjar", ".bin");
+        try {
+            try (OutputStream out = new FileOutputStream(file)) {
+                out.write(bytes);
+            }
+            // 本地文件通过内存映射加载
+            XIndex index = XIndex.load(file.toURI().toURL());
+            assertRecords(records, index);
+            assertEquals(-1, index.getPlainLength(index.find("lib/nested.jar")));
+        } finally {
+            assertTrue(file.delete());
+        }
+        assertRecords(records, new XIndex(ByteBuffer.wrap(bytes)));
+    }
+
+    @Test
+    public void empty() throws Exception {
+        XIndex index = new XIndex(ByteBuffer.wrap(write(Collections.<XIndex.Record>emptyList())));
+        assertEquals(0, index.size());
+        assertEquals(0, index.records().length);
+        assertEquals(-1, index.find(""));
+        assertEquals(-1, index.find("io/xjar/test/Main.class"));
+    }
+
+    @Test
+    public void collidingHashes() throws Exception {
+        // "Aa" 与 "BB" 的哈希值相同，同一前缀及后缀下的名称也都相同
+        assertEquals("io/Aa.class".hashCode(), "io/BB.class".hashCode());
+        List<XIndex.Record> records = Arrays.asList(
+                new XIndex.Record("io/Aa.class", 1, 1, 0, "AES"),
+                new XIndex.Record("io/BB.class", 2, 2, 0, "AES"));
+        XIndex index = new XIndex(ByteBuffer.wrap(write(records)));
+        assertEquals(1, index.getPlainLength(index.find("io/Aa.class")));
+        assertEquals(2, index.getPlainLength(index.find("io/BB.class")));
+        assertEquals("io/AaAa.class".hashCode(), "io/BBBB.class".hashCode());
+        assertEquals(-1, index.find("io/AaBB.class"));
+    }
+
+    @Test
+    public void nonAscii() throws Exception {
+        List<XIndex.Record> records = Arrays.asList(
+                new XIndex.Record("资源/中文.properties", 1, 1, 0, "AES"),
+                new XIndex.Record("io/é.class", 2, 2, 0, "AES"));
+        XIndex index = new XIndex(ByteBuffer.wrap(write(records)));
+        assertEquals("资源/中文.properties", index.getName(index.find("资源/中文.properties")));
+        assertEquals(2, index.getPlainLength(index.find("io/é.class")));
+        assertEquals(-1, index.find("资源/英文.properties"));
+        assertEquals(-1, index.find("io/e.class"));
+        // ASCII 前缀之后出现非ASCII字符时按解码后的名称比较
+        assertEquals(-1, index.find("io/é.clas"));
+        assertEquals(-1, index.find("资源/中文.properties.bak"));
+    }
+
+    private static void assertRecords(List<XIndex.Record> expected, XIndex index) {
+        assertEquals(expected.size(), index.size());
+        int[] offsets = index.records();
+        for (int i = 0; i < expected.size(); i++) {
+            XIndex.Record record = expected.get(i);
+            int offset = index.find(record.getName());
+            assertEquals(record.getName(), offsets[i], offset);
+            assertEquals(record.getName(), index.getName(offset));
+            assertEquals(record.getName().hashCode(), index.getHash(offset));
+            assertEquals(record.getPlainLength(), index.getPlainLength(offset));
+            assertEquals(record.getCipherLength(), index.getCipherLength(offset));
+            assertEquals(record.getCrc(), index.getCrc(offset));
+            assertEquals(record.getAlgorithm(), index.getAlgorithm(offset));
+            assertTrue(index.contains(record.getName()));
+        }
+        assertFalse(index.contains("io/xjar/test/Class100.class"));
+    }
+
+    static byte[] write(List<XIndex.Record> records) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        XIndex.write(bos, records);
+        return bos.toByteArray();
+    }
+}
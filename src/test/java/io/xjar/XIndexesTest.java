@@ -0,0 +1,113 @@
+package io.xjar;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static io.xjar.XIndexTest.write;
+import static org.junit.Assert.*;
+
+/**
+ * 各个类路径下的加密资源索引按URL查找的测试
+ *
+ * @author Payne 646742615@qq.com
+ * 2018/12/29 14:30
+ */
+public class XIndexesTest {
+    private File dir;
+    private File binary;
+    private File text;
+
+    @Before
+    public void setup() throws Exception {
+        dir = Files.createTempDirectory("xjar").toFile();
+        binary = new File(dir, "binary");
+        save(new File(binary, XConstants.XJAR_INF_DIR + XConstants.XJAR_INF_BIN), write(Arrays.asList(
+                new XIndex.Record("io/Aa.class", 1, 16, 0, "AES"),
+                new XIndex.Record("io/BB.class", 2, 16, 0, "AES"))));
+        // 旧版的文本索引每行一个资源名称，没有长度信息
+        text = new File(dir, "text");
+        save(new File(text, XConstants.XJAR_INF_DIR + XConstants.XJAR_INF_IDX), "io/Text.class\r\nio/Other.class\r\n".getBytes("UTF-8"));
+    }
+
+    @After
+    public void cleanup() {
+        assertTrue(XKit.delete(dir, true));
+    }
+
+    @Test
+    public void suffixFindWithCollidingHashes() throws Exception {
+        XIndex index = new XIndex(ByteBuffer.wrap(write(Arrays.asList(
+                new XIndex.Record("io/Aa.class", 1, 16, 0, "AES"),
+                new XIndex.Record("io/BB.class", 2, 16, 0, "AES")))));
+        String path = "file:/app.jar!/BOOT-INF/classes!/io/BB.class";
+        int offset = path.indexOf("io/");
+        assertEquals(XIndex.hash(path, offset), "io/BB.class".hashCode());
+        assertEquals(2, index.getPlainLength(index.find(path, offset)));
+        assertEquals(1, index.getPlainLength(index.find("/io/Aa.class", 1)));
+        assertEquals(-1, index.find("/io/AaBB.class", 1));
+        assertEquals(-1, index.find(path, offset - 1));
+    }
+
+    @Test
+    public void binaryAndTextIndexes() throws Exception {
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[]{binary.toURI().toURL(), text.toURI().toURL()}, null)) {
+            XIndexes indexes = new XIndexes(classLoader);
+            assertEquals(2, indexes.size());
+            assertEquals(1, indexes.getPlainLength(url(binary, "io/Aa.class")));
+            assertEquals(2, indexes.getPlainLength(url(binary, "io/BB.class")));
+            // 文本索引中的资源长度未知
+            assertEquals(-1, indexes.getPlainLength(url(text, "io/Text.class")));
+            assertTrue(indexes.contains(url(text, "io/Other.class")));
+            // 资源只属于自己的类路径
+            assertFalse(indexes.contains(url(text, "io/Aa.class")));
+            assertFalse(indexes.contains(url(binary, "io/Text.class")));
+            assertFalse(indexes.contains(url(binary, "io/Missing.class")));
+            assertTrue(indexes.contains("io/Aa.class"));
+            assertTrue(indexes.contains("io/Text.class"));
+            assertFalse(indexes.contains("io/Missing.class"));
+        }
+    }
+
+    @Test
+    public void binaryIndexIsPreferred() throws Exception {
+        save(new File(binary, XConstants.XJAR_INF_DIR + XConstants.XJAR_INF_IDX), "io/Stale.class\r\n".getBytes("UTF-8"));
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[]{binary.toURI().toURL()}, null)) {
+            XIndexes indexes = new XIndexes(classLoader);
+            assertEquals(1, indexes.size());
+            assertTrue(indexes.contains(url(binary, "io/Aa.class")));
+            assertFalse(indexes.contains(url(binary, "io/Stale.class")));
+        }
+    }
+
+    @Test
+    public void noIndexes() throws Exception {
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[]{dir.toURI().toURL()}, null)) {
+            XIndexes indexes = new XIndexes(classLoader);
+            assertEquals(0, indexes.size());
+            assertFalse(indexes.contains(url(dir, "io/Aa.class")));
+            assertFalse(indexes.contains("io/Aa.class"));
+        }
+    }
+
+    private static URL url(File classpath, String name) throws IOException {
+        return new URL(classpath.toURI().toURL(), name);
+    }
+
+    private static void save(File file, byte[] data) throws IOException {
+        assertTrue(file.getParentFile().isDirectory() || file.getParentFile().mkdirs());
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(data);
+        }
+    }
+}
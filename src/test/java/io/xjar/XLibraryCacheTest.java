@@ -0,0 +1,88 @@
+package io.xjar;
+
+import io.xjar.key.XKey;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.zip.Deflater;
+
+import static io.xjar.XChunkedCipherTest.random;
+import static io.xjar.XChunkedCipherTest.read;
+import static org.junit.Assert.*;
+
+/**
+ * 加密嵌套JAR包缓存的缓存键及读写测试
+ *
+ * @author Payne 646742615@qq.com
+ * 2018/12/28 15:30
+ */
+public class XLibraryCacheTest {
+    private XKey key;
+    private File dir;
+
+    @Before
+    public void setup() throws Exception {
+        key = XKit.key("AES", "io.xjar");
+        dir = File.createTempFile("xjar", ".test");
+        assertTrue(dir.delete());
+    }
+
+    @After
+    public void cleanup() {
+        // 缓存目录在第一次写入时才创建
+        File[] files = dir.listFiles();
+        for (int i = 0; files != null && i < files.length; i++) {
+            assertTrue(files[i].delete());
+        }
+        assertTrue(!dir.exists() || dir.delete());
+    }
+
+    @Test
+    public void keyCoversContentKeyLevelAndPolicy() throws Exception {
+        XLibraryCache cache = new XLibraryCache(dir, Long.MAX_VALUE);
+        XSpillOutputStream plain = buffer(random(1000));
+        XSpillOutputStream other = buffer(random(1001));
+        String base = cache.key(key, Deflater.DEFAULT_COMPRESSION, null, plain);
+        assertEquals(base, cache.key(key, Deflater.DEFAULT_COMPRESSION, null, plain));
+        assertEquals(cache.key(key, 5, new XAdaptiveCompressionPolicy(), plain), cache.key(key, 5, new XAdaptiveCompressionPolicy(), plain));
+        assertNotEquals(base, cache.key(key, Deflater.DEFAULT_COMPRESSION, null, other));
+        assertNotEquals(base, cache.key(key, Deflater.BEST_SPEED, null, plain));
+        assertNotEquals(base, cache.key(key, Deflater.DEFAULT_COMPRESSION, new XAdaptiveCompressionPolicy(), plain));
+        assertNotEquals(cache.key(key, 5, new XAdaptiveCompressionPolicy(), plain), cache.key(key, 5, new XAdaptiveCompressionPolicy().add("**/*.class", 9), plain));
+        assertNotEquals(base, cache.key(XKit.key("AES", "other"), Deflater.DEFAULT_COMPRESSION, null, plain));
+    }
+
+    @Test
+    public void putThenGet() throws Exception {
+        XLibraryCache cache = new XLibraryCache(dir, Long.MAX_VALUE);
+        byte[] data = random(5000);
+        XSpillOutputStream plain = buffer(data);
+        String name = cache.key(key, Deflater.DEFAULT_COMPRESSION, null, plain);
+        assertNull(cache.get(name, 1024));
+        cache.put(name, plain);
+        XSpillOutputStream cached = cache.get(name, 1024);
+        assertNotNull(cached);
+        try {
+            assertArrayEquals(data, read(cached.getInputStream()));
+        } finally {
+            cached.delete();
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void putFailureIsReported() throws Exception {
+        // 缓存目录的位置被普通文件占用
+        assertTrue(dir.createNewFile());
+        new XLibraryCache(new File(dir, "cache"), Long.MAX_VALUE).put("key", buffer(random(10)));
+    }
+
+    private static XSpillOutputStream buffer(byte[] data) throws IOException {
+        XSpillOutputStream sos = new XSpillOutputStream(1 << 20);
+        sos.write(data);
+        sos.close();
+        return sos;
+    }
+}
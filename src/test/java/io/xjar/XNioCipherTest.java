@@ -0,0 +1,62 @@
+package io.xjar;
+
+import io.xjar.key.XKey;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import static io.xjar.XChunkedCipherTest.random;
+import static io.xjar.XChunkedCipherTest.read;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * JDK 与 NIO 加解密器的流式加解密互通性测试
+ *
+ * @author Payne 646742615@qq.com
+ * 2018/12/28 10:45
+ */
+public class XNioCipherTest {
+    static final String[] ALGORITHMS = {"AES", "AES/CTR/NoPadding"};
+    private static final int[] SIZES = {0, 1, 15, 16, 17, 8191, 8192, 70001};
+
+    @Test
+    public void jdkAndNioStreams() throws Exception {
+        for (String algorithm : ALGORITHMS) {
+            XKey key = XKit.key(algorithm, "io.xjar");
+            for (boolean direct : new boolean[]{false, true}) {
+                XEncryptor[] encryptors = {new XJdkEncryptor(algorithm), new XNioEncryptor(algorithm, 4096, direct)};
+                XDecryptor[] decryptors = {new XJdkDecryptor(algorithm), new XNioDecryptor(algorithm, 4096, direct)};
+                for (int size : SIZES) {
+                    byte[] plain = random(size);
+                    for (XEncryptor encryptor : encryptors) {
+                        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+                        encryptor.encrypt(key, new ByteArrayInputStream(plain), bos);
+                        byte[] encrypted = bos.toByteArray();
+                        byte[] wrapped = read(encryptor.encrypt(key, new ByteArrayInputStream(plain)));
+                        assertEquals(encrypted.length, wrapped.length);
+                        if (!counter(algorithm)) {
+                            assertArrayEquals("wrapped stream of " + encryptor.getClass().getSimpleName(), encrypted, wrapped);
+                        }
+                        for (XDecryptor decryptor : decryptors) {
+                            String message = algorithm + " " + size + " " + encryptor.getClass().getSimpleName() + " -> " + decryptor.getClass().getSimpleName() + (direct ? " direct" : "");
+                            ByteArrayOutputStream dos = new ByteArrayOutputStream();
+                            decryptor.decrypt(key, new ByteArrayInputStream(encrypted), dos);
+                            assertArrayEquals(message, plain, dos.toByteArray());
+                            assertArrayEquals(message, plain, read(decryptor.decrypt(key, new ByteArrayInputStream(encrypted))));
+                            assertArrayEquals(message, plain, read(decryptor.decrypt(key, new ByteArrayInputStream(wrapped))));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 计数器模式每次加密生成随机的初始计数器，密文不可逐字节比较
+     */
+    static boolean counter(String algorithm) {
+        return algorithm.contains("/CTR/");
+    }
+}
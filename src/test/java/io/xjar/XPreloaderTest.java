@@ -0,0 +1,121 @@
+package io.xjar;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.*;
+
+/**
+ * 启动预解密器取出资源及记录已取资源的测试
+ *
+ * @author Payne 646742615@qq.com
+ * 2018/12/29 12:00
+ */
+public class XPreloaderTest {
+    private final CountDownLatch latch = new CountDownLatch(1);
+    private final XPreloader preloader = new XPreloader(1024 * 1024, null) {
+        @Override
+        protected URL locate(String name) {
+            // 第一个资源开始预解密后停住，使后面的资源都还在等待
+            if (name.equals("a")) {
+                try {
+                    latch.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return url(name);
+        }
+
+        @Override
+        protected byte[] read(URL url) throws IOException {
+            return url.getFile().getBytes("UTF-8");
+        }
+    };
+    private File dir;
+    private URLClassLoader classLoader;
+
+    @Before
+    public void setup() throws Exception {
+        dir = Files.createTempDirectory("xjar").toFile();
+        File list = new File(dir, XConstants.XJAR_INF_DIR + XConstants.XJAR_INF_LST);
+        assertTrue(list.getParentFile().mkdirs());
+        try (OutputStream out = new FileOutputStream(list)) {
+            out.write("a\r\nb\r\nc\r\n".getBytes("UTF-8"));
+        }
+        classLoader = new URLClassLoader(new URL[]{dir.toURI().toURL()}, null);
+    }
+
+    @After
+    public void cleanup() throws Exception {
+        latch.countDown();
+        preloader.evict();
+        classLoader.close();
+        assertTrue(XKit.delete(dir, true));
+    }
+
+    @Test
+    public void takenOnlyRecordsPendingResources() throws Exception {
+        preloader.start(classLoader, 1);
+        // 不在清单中的资源不会被记录
+        for (int i = 0; i < 1000; i++) {
+            assertNull(preloader.take(url("x" + i), "x" + i));
+        }
+        assertEquals(0, set("taken").size());
+        // 正在预解密的资源及还在等待的资源被记录，之后不再放入缓存
+        assertNull(preloader.take(url("a"), "a"));
+        assertNull(preloader.take(url("b"), "b"));
+        assertEquals(2, set("taken").size());
+
+        latch.countDown();
+        while (!set("pending").isEmpty()) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, set("taken").size());
+        assertEquals(1, preloader.getLoadedCount());
+        assertArrayEquals("/c".getBytes("UTF-8"), preloader.take(url("c"), "c"));
+        assertEquals(1, preloader.getHitCount());
+        assertEquals(1002, preloader.getMissCount());
+        assertEquals(0, preloader.getUnusedCount());
+    }
+
+    @Test
+    public void evictClearsRecords() throws Exception {
+        preloader.start(classLoader, 1);
+        assertNull(preloader.take(url("b"), "b"));
+        assertEquals(1, set("taken").size());
+        preloader.evict();
+        assertEquals(0, set("taken").size());
+        assertEquals(0, set("pending").size());
+        // 停止预解密后不再记录
+        assertNull(preloader.take(url("c"), "c"));
+        assertEquals(0, set("taken").size());
+    }
+
+    private static URL url(String name) {
+        try {
+            return new URL("file:/" + name);
+        } catch (MalformedURLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Set<?> set(String name) throws Exception {
+        Field field = XPreloader.class.getDeclaredField(name);
+        field.setAccessible(true);
+        return (Set<?>) field.get(preloader);
+    }
+}
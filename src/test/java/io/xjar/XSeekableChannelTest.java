@@ -0,0 +1,79 @@
+package io.xjar;
+
+import io.xjar.key.XKey;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.util.Arrays;
+
+import static io.xjar.XChunkedCipherTest.random;
+import static io.xjar.XChunkedCipherTest.read;
+import static org.junit.Assert.*;
+
+/**
+ * 计数器模式下解密流的跳过及可随机访问通道的测试
+ *
+ * @author Payne 646742615@qq.com
+ * 2018/12/28 10:45
+ */
+public class XSeekableChannelTest {
+    private static final String ALGORITHM = "AES/CTR/NoPadding";
+
+    @Test
+    public void counterModeSkip() throws Exception {
+        XKey key = XKit.key(ALGORITHM, "io.xjar");
+        byte[] plain = random(10007);
+        byte[] encrypted = read(new XJdkEncryptor(ALGORITHM).encrypt(key, new ByteArrayInputStream(plain)));
+        XDecryptor[] decryptors = {new XJdkDecryptor(ALGORITHM), new XNioDecryptor(ALGORITHM)};
+        for (XDecryptor decryptor : decryptors) {
+            for (int offset : new int[]{0, 1, 15, 16, 17, 4099, plain.length - 1, plain.length}) {
+                try (InputStream in = decryptor.decrypt(key, new ByteArrayInputStream(encrypted))) {
+                    long skipped = 0;
+                    while (skipped < offset) {
+                        long n = in.skip(offset - skipped);
+                        assertTrue("skip made no progress at " + skipped, n > 0);
+                        skipped += n;
+                    }
+                    assertArrayEquals(decryptor.getClass().getSimpleName() + " after skipping " + offset,
+                            Arrays.copyOfRange(plain, offset, plain.length), read(in));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void counterModeSeekableChannel() throws Exception {
+        final XKey key = XKit.key(ALGORITHM, "io.xjar");
+        final byte[] plain = random(50021);
+        final byte[] encrypted = read(new XJdkEncryptor(ALGORITHM).encrypt(key, new ByteArrayInputStream(plain)));
+        for (final long size : new long[]{-1, plain.length}) {
+            try (SeekableByteChannel channel = new XSeekableChannel(size) {
+                @Override
+                protected InputStream open() throws IOException {
+                    return new XJdkDecryptor(ALGORITHM).decrypt(key, new ByteArrayInputStream(encrypted));
+                }
+            }) {
+                assertEquals(plain.length, channel.size());
+                // 先向后再向前定位，最后越过末尾
+                int[] positions = {30000, 17, 49999, 0, 16, 30001, plain.length};
+                for (int position : positions) {
+                    channel.position(position);
+                    ByteBuffer buffer = ByteBuffer.allocate(100);
+                    int n = channel.read(buffer);
+                    if (position >= plain.length) {
+                        assertEquals(-1, n);
+                        continue;
+                    }
+                    int expected = Math.min(100, plain.length - position);
+                    assertEquals("read at " + position, expected, n);
+                    assertArrayEquals("content at " + position, Arrays.copyOfRange(plain, position, position + expected), Arrays.copyOf(buffer.array(), n));
+                    assertEquals(position + n, channel.position());
+                }
+            }
+        }
+    }
+}
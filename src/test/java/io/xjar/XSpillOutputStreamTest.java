@@ -0,0 +1,68 @@
+package io.xjar;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.EnumSet;
+
+import static io.xjar.XChunkedCipherTest.random;
+import static io.xjar.XChunkedCipherTest.read;
+import static org.junit.Assert.*;
+
+/**
+ * 有内存上限的缓冲输出流溢出到临时文件的测试
+ *
+ * @author Payne 646742615@qq.com
+ * 2018/12/29 11:00
+ */
+public class XSpillOutputStreamTest {
+    private File dir;
+
+    @Before
+    public void setup() throws Exception {
+        dir = Files.createTempDirectory("xjar").toFile();
+    }
+
+    @After
+    public void cleanup() {
+        assertTrue(XKit.delete(dir, true));
+    }
+
+    @Test
+    public void staysInMemoryWithinBudget() throws Exception {
+        XSpillOutputStream sos = new XSpillOutputStream(1024, dir);
+        byte[] data = random(1000);
+        sos.write(data);
+        sos.close();
+        assertFalse(sos.isSpilled());
+        assertArrayEquals(data, read(sos.getInputStream()));
+        assertEquals(0, dir.list().length);
+        sos.delete();
+    }
+
+    @Test
+    public void spillsToOwnerOnlyFileInDirectory() throws Exception {
+        XSpillOutputStream sos = new XSpillOutputStream(new XSpillBudget(16, dir));
+        byte[] data = random(1000);
+        sos.write(data, 0, 10);
+        sos.write(data, 10, data.length - 10);
+        sos.close();
+        assertTrue(sos.isSpilled());
+        assertArrayEquals(data, read(sos.getInputStream()));
+
+        File[] files = dir.listFiles();
+        assertEquals(1, files.length);
+        // 临时文件中是原文数据，其他用户不能读取
+        if (Files.getFileAttributeView(files[0].toPath(), PosixFileAttributeView.class) != null) {
+            assertEquals(EnumSet.of(PosixFilePermission.OWNER_READ, PosixFilePermission.OWNER_WRITE), Files.getPosixFilePermissions(files[0].toPath()));
+        }
+
+        sos.delete();
+        assertEquals(0, dir.list().length);
+    }
+}
@@ -0,0 +1,76 @@
+package io.xjar.boot;
+
+import io.xjar.XJdkEncryptor;
+import io.xjar.XKit;
+import io.xjar.key.XKey;
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.ArchiveOutputStream;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Date;
+
+import static io.xjar.boot.XBootFixtures.*;
+import static org.junit.Assert.*;
+
+/**
+ * 边写边加密的原文包记录输出流的测试
+ *
+ * @author Payne 646742615@qq.com
+ * 2018/12/28 17:00
+ */
+public class XBootArchiveOutputStreamTest {
+    private XBootEncryptor encryptor;
+    private XKey key;
+
+    @Before
+    public void setup() throws Exception {
+        encryptor = new XBootEncryptor(new XJdkEncryptor("AES"), new XBootClassesFilter());
+        key = XKit.key("AES", PASSWORD);
+    }
+
+    @Test
+    public void reproducible() throws Exception {
+        byte[] first = write();
+        Thread.sleep(2100);
+        assertArrayEquals(first, write());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsForeignEntries() throws Exception {
+        try (ArchiveOutputStream out = encryptor.encrypt(key, new ByteArrayOutputStream(), PASSWORD)) {
+            out.putArchiveEntry(new ArchiveEntry() {
+                @Override
+                public String getName() {
+                    return "BOOT-INF/classes/A.class";
+                }
+
+                @Override
+                public long getSize() {
+                    return 0;
+                }
+
+                @Override
+                public boolean isDirectory() {
+                    return false;
+                }
+
+                @Override
+                public Date getLastModifiedDate() {
+                    return new Date();
+                }
+            });
+        }
+    }
+
+    private byte[] write() throws Exception {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (ArchiveOutputStream out = encryptor.encrypt(key, bos, PASSWORD)) {
+            put(out, "META-INF/MANIFEST.MF", MANIFEST);
+            put(out, "BOOT-INF/classes/io/xjar/test/A.class", "class A");
+            put(out, "BOOT-INF/classes/application.properties", "a=b");
+        }
+        return bos.toByteArray();
+    }
+}
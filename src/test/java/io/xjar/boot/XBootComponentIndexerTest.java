@@ -0,0 +1,263 @@
+package io.xjar.boot;
+
+import io.xjar.XJdkEncryptor;
+import io.xjar.XKit;
+import io.xjar.key.XKey;
+import org.apache.commons.compress.archivers.jar.JarArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.*;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.Deflater;
+
+import static io.xjar.boot.XBootFixtures.*;
+import static org.junit.Assert.*;
+
+/**
+ * Spring 组件索引生成器的测试，测试用的类在运行时由 JDK 编译器编译，与 spring-context-indexer 的结果对照。
+ *
+ * @author Payne 646742615@qq.com
+ * 2018/12/28 16:00
+ */
+public class XBootComponentIndexerTest {
+    private static final String COMPONENT = "org.springframework.stereotype.Component";
+
+    private static final String[][] SOURCES = {
+            {"org/springframework/stereotype/Indexed.java", "package org.springframework.stereotype;\n"
+                    + "import java.lang.annotation.*;\n"
+                    + "@Target(ElementType.TYPE) @Retention(RetentionPolicy.RUNTIME) @Documented\n"
+                    + "public @interface Indexed {}\n"},
+            {"org/springframework/stereotype/Component.java", "package org.springframework.stereotype;\n"
+                    + "import java.lang.annotation.*;\n"
+                    + "@Target(ElementType.TYPE) @Retention(RetentionPolicy.RUNTIME) @Documented @Indexed\n"
+                    + "public @interface Component { String value() default \"\"; }\n"},
+            {"org/springframework/stereotype/Service.java", "package org.springframework.stereotype;\n"
+                    + "import java.lang.annotation.*;\n"
+                    + "@Target(ElementType.TYPE) @Retention(RetentionPolicy.RUNTIME) @Documented @Component\n"
+                    + "public @interface Service { String value() default \"\"; }\n"},
+            {"javax/inject/Named.java", "package javax.inject;\n"
+                    + "import java.lang.annotation.*;\n"
+                    + "@Retention(RetentionPolicy.RUNTIME)\n"
+                    + "public @interface Named { String value() default \"\"; }\n"},
+            {"com/example/Tagged.java", "package com.example;\n"
+                    + "import java.lang.annotation.*;\n"
+                    + "@Retention(RetentionPolicy.RUNTIME)\n"
+                    + "public @interface Tagged { String[] names(); RetentionPolicy policy(); javax.inject.Named named(); Class<?> type(); int order() default 0; }\n"},
+            // 通过两层元注解得到 @Indexed
+            {"com/example/MyStereotype.java", "package com.example;\n"
+                    + "import java.lang.annotation.*;\n"
+                    + "@Target(ElementType.TYPE) @Retention(RetentionPolicy.RUNTIME) @org.springframework.stereotype.Service\n"
+                    + "public @interface MyStereotype {}\n"},
+            {"com/example/MyStereotypeBean.java", "package com.example;\n"
+                    + "@MyStereotype public class MyStereotypeBean {}\n"},
+            {"com/example/ServiceBean.java", "package com.example;\n"
+                    + "@org.springframework.stereotype.Service(\"service\") public class ServiceBean {}\n"},
+            {"com/example/NamedBean.java", "package com.example;\n"
+                    + "@javax.inject.Named public class NamedBean {}\n"},
+            {"com/example/Repo.java", "package com.example;\n"
+                    + "@org.springframework.stereotype.Indexed public interface Repo {}\n"},
+            {"com/example/RepoImpl.java", "package com.example;\n"
+                    + "public class RepoImpl extends AbstractRepo {}\n"},
+            {"com/example/AbstractRepo.java", "package com.example;\n"
+                    + "public abstract class AbstractRepo implements Repo, java.io.Serializable {}\n"},
+            // 带有各种类型注解参数的组件，以及静态、非静态成员类和匿名类
+            {"com/example/Outer.java", "package com.example;\n"
+                    + "import java.lang.annotation.RetentionPolicy;\n"
+                    + "@org.springframework.stereotype.Component(\"outer\")\n"
+                    + "@Tagged(names = {\"a\", \"b\"}, policy = RetentionPolicy.RUNTIME, named = @javax.inject.Named(\"n\"), type = String.class, order = 7)\n"
+                    + "public class Outer {\n"
+                    + "  public static final long BIG = 1L << 40; public static final double PI = 3.14;\n"
+                    + "  @org.springframework.stereotype.Component public static class Nested {}\n"
+                    + "  @org.springframework.stereotype.Component public class Inner {}\n"
+                    + "  Object anonymous() { return new Runnable() { public void run() {} }; }\n"
+                    + "}\n"},
+            {"com/example/Color.java", "package com.example;\n"
+                    + "@org.springframework.stereotype.Component public enum Color { RED }\n"},
+            {"com/example/Plain.java", "package com.example;\n"
+                    + "public class Plain { String s = \"plain\"; }\n"},
+            {"com/example/package-info.java", "@javax.inject.Named\n"
+                    + "package com.example;\n"},
+            {"com/lib/LibService.java", "package com.lib;\n"
+                    + "@org.springframework.stereotype.Service public class LibService {}\n"},
+    };
+
+    private File dir;
+    private File classes;
+    private ExecutorService executor;
+
+    @Before
+    public void setup() throws Exception {
+        dir = mkdtemp();
+        File sources = new File(dir, "src");
+        classes = new File(dir, "classes");
+        assertTrue(classes.mkdirs());
+        List<String> args = new ArrayList<>(Arrays.asList("-nowarn", "-d", classes.getPath()));
+        for (String[] source : SOURCES) {
+            File file = new File(sources, source[0]);
+            assertTrue(file.getParentFile().isDirectory() || file.getParentFile().mkdirs());
+            try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8")) {
+                writer.write(source[1]);
+            }
+            args.add(file.getPath());
+        }
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        assertNotNull("tests need a JDK", compiler);
+        assertEquals(0, compiler.run(null, null, null, args.toArray(new String[0])));
+        executor = Executors.newFixedThreadPool(2);
+    }
+
+    @After
+    public void cleanup() {
+        executor.shutdownNow();
+        delete(dir);
+    }
+
+    @Test
+    public void stereotypes() throws Exception {
+        Map<String, String> index = index(boot(null));
+        Map<String, String> expected = new TreeMap<>();
+        expected.put("com.example", "package-info");
+        expected.put("com.example.MyStereotypeBean", COMPONENT);
+        expected.put("com.example.NamedBean", "javax.inject.Named");
+        expected.put("com.example.Outer", COMPONENT);
+        expected.put("com.example.Outer$Nested", COMPONENT);
+        expected.put("com.example.Repo", "com.example.Repo");
+        expected.put("com.example.AbstractRepo", "com.example.Repo");
+        expected.put("com.example.RepoImpl", "com.example.Repo");
+        expected.put("com.example.ServiceBean", COMPONENT);
+        expected.put("com.lib.LibService", COMPONENT);
+        assertEquals(expected, index);
+    }
+
+    @Test(expected = IOException.class)
+    public void malformedClassFails() throws Exception {
+        index(boot(new byte[]{(byte) 0xCA, (byte) 0xFE, (byte) 0xBA, (byte) 0xBE, 0, 0, 0, 52, 0, 5, 99, 1, 2}));
+    }
+
+    @Test(expected = IOException.class)
+    public void truncatedClassFails() throws Exception {
+        byte[] bytes = Files.readAllBytes(new File(classes, "com/example/Outer.class").toPath());
+        index(boot(Arrays.copyOf(bytes, bytes.length / 2)));
+    }
+
+    @Test
+    public void encryptorWritesIndex() throws Exception {
+        File dest = new File(dir, "dest.jar");
+        encryptor().encrypt(key(), boot(null), dest, PASSWORD, 2);
+        try (ZipFile zipFile = new ZipFile(dest)) {
+            ZipArchiveEntry entry = zipFile.getEntry("BOOT-INF/classes/" + XBootComponentIndexer.COMPONENTS);
+            assertNotNull(entry);
+            String text = read(zipFile.getInputStream(entry));
+            assertTrue(text, text.contains("com.example.Outer$Nested=" + COMPONENT + "\n"));
+            assertFalse(text, text.contains("Outer$Inner"));
+        }
+    }
+
+    @Test
+    public void encryptorFallsBackToScanning() throws Exception {
+        File dest = new File(dir, "dest.jar");
+        encryptor().encrypt(key(), boot(new byte[]{1, 2, 3}), dest, PASSWORD, 2);
+        try (ZipFile zipFile = new ZipFile(dest)) {
+            assertNull(zipFile.getEntry("BOOT-INF/classes/" + XBootComponentIndexer.COMPONENTS));
+            assertNotNull(zipFile.getEntry("BOOT-INF/classes/com/example/Outer.class"));
+        }
+    }
+
+    private XBootEncryptor encryptor() {
+        XBootEncryptor encryptor = new XBootEncryptor(new XJdkEncryptor("AES"), Deflater.DEFAULT_COMPRESSION, new XBootClassesFilter());
+        encryptor.setComponentIndex(true);
+        return encryptor;
+    }
+
+    private static XKey key() throws Exception {
+        return XKit.key("AES", PASSWORD);
+    }
+
+    private Map<String, String> index(File boot) throws IOException {
+        XBootComponentIndexer indexer = new XBootComponentIndexer();
+        try (ZipFile zipFile = new ZipFile(boot)) {
+            indexer.index(zipFile, executor);
+        }
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        int count = indexer.write(bos);
+        Map<String, String> index = new TreeMap<>();
+        for (String line : bos.toString("ISO-8859-1").split("\n")) {
+            if (!line.isEmpty()) {
+                int eq = line.indexOf('=');
+                index.put(line.substring(0, eq), line.substring(eq + 1));
+            }
+        }
+        assertEquals(count, index.size());
+        return index;
+    }
+
+    /**
+     * 应用自身的类放在 BOOT-INF/classes 下，Spring 的注解及 com.lib 下的类分别打成 BOOT-INF/lib 下的JAR包
+     *
+     * @param broken 不为 null 时作为一个无法解析的类加入应用自身的类中
+     */
+    private File boot(byte[] broken) throws IOException {
+        File file = new File(dir, "boot.jar");
+        try (JarArchiveOutputStream zos = new JarArchiveOutputStream(new FileOutputStream(file))) {
+            put(zos, "META-INF/MANIFEST.MF", MANIFEST);
+            for (String name : list(classes, "")) {
+                if (name.startsWith("com/example/")) {
+                    put(zos, "BOOT-INF/classes/" + name, Files.readAllBytes(new File(classes, name).toPath()));
+                }
+            }
+            if (broken != null) {
+                put(zos, "BOOT-INF/classes/com/example/Broken.class", broken);
+            }
+            put(zos, "BOOT-INF/lib/spring.jar", jar("org/", "javax/"));
+            put(zos, "BOOT-INF/lib/lib.jar", jar("com/lib/"));
+        }
+        return file;
+    }
+
+    private byte[] jar(String... prefixes) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (JarArchiveOutputStream zos = new JarArchiveOutputStream(bos)) {
+            for (String name : list(classes, "")) {
+                for (String prefix : prefixes) {
+                    if (name.startsWith(prefix)) {
+                        put(zos, name, Files.readAllBytes(new File(classes, name).toPath()));
+                    }
+                }
+            }
+        }
+        return bos.toByteArray();
+    }
+
+    private static List<String> list(File dir, String prefix) {
+        List<String> names = new ArrayList<>();
+        File[] files = dir.listFiles();
+        Arrays.sort(files);
+        for (File file : files) {
+            if (file.isDirectory()) {
+                names.addAll(list(file, prefix + file.getName() + "/"));
+            } else {
+                names.add(prefix + file.getName());
+            }
+        }
+        return names;
+    }
+
+    private static String read(InputStream in) throws IOException {
+        try {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            XKit.transfer(in, bos);
+            return bos.toString("ISO-8859-1");
+        } finally {
+            in.close();
+        }
+    }
+}
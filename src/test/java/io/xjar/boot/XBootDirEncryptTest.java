@@ -0,0 +1,164 @@
+package io.xjar.boot;
+
+import io.xjar.*;
+import io.xjar.dir.XDirLayout;
+import io.xjar.key.XKey;
+import org.apache.commons.compress.archivers.jar.JarArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.*;
+import java.util.Map;
+import java.util.jar.Manifest;
+
+import static io.xjar.boot.XBootFixtures.*;
+import static org.junit.Assert.*;
+
+/**
+ * 直接从构建目录加密生成 Spring-Boot JAR 包的测试
+ *
+ * @author Payne 646742615@qq.com
+ * 2018/12/28 18:10
+ */
+public class XBootDirEncryptTest {
+    private static final String LAUNCHER = XConstants.SPRING_BOOT_LOADER + "JarLauncher.class";
+
+    private XBootEncryptor encryptor;
+    private XKey key;
+    private File dir;
+    private File classes;
+    private File manifest;
+
+    @Before
+    public void setup() throws Exception {
+        encryptor = new XBootEncryptor(new XJdkEncryptor("AES"), new XBootClassesFilter());
+        key = XKit.key("AES", PASSWORD);
+        dir = mkdtemp();
+        classes = new File(dir, "classes");
+        write(new File(classes, "io/xjar/test/Main.class"), "class Main");
+        write(new File(classes, "application.properties"), "a=b");
+        manifest = new File(dir, "MANIFEST.MF");
+        write(manifest, MANIFEST);
+    }
+
+    @After
+    public void cleanup() {
+        delete(dir);
+    }
+
+    @Test
+    public void loaderJarIsCopied() throws Exception {
+        File loader = new File(dir, "spring-boot-loader.jar");
+        try (JarArchiveOutputStream zos = new JarArchiveOutputStream(new FileOutputStream(loader))) {
+            put(zos, "META-INF/MANIFEST.MF", "Manifest-Version: 1.0\r\n\r\n");
+            put(zos, LAUNCHER, "class JarLauncher");
+        }
+        File dest = new File(dir, "dest.jar");
+        encryptor.encrypt(key, classes, null, loader, manifest, dest, PASSWORD, 2);
+        assertLaunchable(dest);
+    }
+
+    @Test
+    public void loaderDirIsCopied() throws Exception {
+        File loader = new File(dir, "loader");
+        write(new File(loader, "META-INF/MANIFEST.MF"), "Manifest-Version: 1.0\r\n\r\n");
+        write(new File(loader, LAUNCHER), "class JarLauncher");
+        File dest = new File(dir, "dest.jar");
+        encryptor.encrypt(key, classes, null, loader, manifest, dest, PASSWORD, 2);
+        assertLaunchable(dest);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void layoutWithoutLoaderFails() throws Exception {
+        File dest = new File(dir, "dest.jar");
+        try {
+            encryptor.encrypt(key, new XDirLayout().add("BOOT-INF/classes/", classes), manifest, dest, PASSWORD, 2);
+        } finally {
+            assertFalse(dest.exists());
+        }
+    }
+
+    @Test
+    public void reproducible() throws Exception {
+        File loader = new File(dir, "loader");
+        write(new File(loader, LAUNCHER), "class JarLauncher");
+        XDirLayout layout = new XDirLayout().add("BOOT-INF/classes/", classes).add("", loader);
+        File first = new File(dir, "first.jar");
+        encryptor.encrypt(key, layout, manifest, first, PASSWORD, 2);
+        Thread.sleep(2100);
+        File second = new File(dir, "second.jar");
+        encryptor.encrypt(key, layout, manifest, second, PASSWORD, 2);
+        assertArrayEquals(read(first), read(second));
+    }
+
+    @Test
+    public void nestedJarMatchesThreaded() throws Exception {
+        Map<String, byte[]> nested = entries();
+        nested.put("io/xjar/nested/Nested.class", random(2000));
+        byte[] jar = jar(nested);
+        write(new File(classes, "lib/nested.jar"), jar);
+        File loader = new File(dir, "loader");
+        write(new File(loader, LAUNCHER), "class JarLauncher");
+        File first = new File(dir, "first.jar");
+        encryptor.encrypt(key, new XDirLayout().add("BOOT-INF/classes/", classes).add("", loader), manifest, first, PASSWORD, 2);
+
+        Map<String, byte[]> entries = entries();
+        entries.put("BOOT-INF/classes/lib/nested.jar", jar);
+        File src = jar(new File(dir, "src.jar"), entries);
+        File second = new File(dir, "second.jar");
+        encryptor.encrypt(key, src, second, PASSWORD, 2);
+
+        // 需要加密的嵌套JAR包与从原文包加密时一样整体交给JAR包加密器处理
+        assertArrayEquals(entry(second, "BOOT-INF/classes/lib/nested.jar"), entry(first, "BOOT-INF/classes/lib/nested.jar"));
+    }
+
+    private static byte[] entry(File file, String name) throws IOException {
+        try (ZipFile zipFile = new ZipFile(file)) {
+            ZipArchiveEntry entry = zipFile.getEntry(name);
+            assertNotNull(name, entry);
+            assertEquals(ZipArchiveEntry.STORED, entry.getMethod());
+            try (InputStream in = zipFile.getInputStream(entry)) {
+                ByteArrayOutputStream bos = new ByteArrayOutputStream();
+                XKit.transfer(in, bos, false);
+                return bos.toByteArray();
+            }
+        }
+    }
+
+    private void assertLaunchable(File dest) throws IOException {
+        try (ZipFile zipFile = new ZipFile(dest)) {
+            assertNotNull(zipFile.getEntry(LAUNCHER));
+            // 启动器中的清单文件不会被添加
+            assertEquals(1, count(zipFile, "META-INF/MANIFEST.MF"));
+            assertNotNull(zipFile.getEntry("BOOT-INF/classes/" + XConstants.XJAR_INF_DIR + XConstants.XJAR_INF_BIN));
+            try (InputStream in = zipFile.getInputStream(zipFile.getEntry("META-INF/MANIFEST.MF"))) {
+                Manifest mf = new Manifest(in);
+                assertEquals("io.xjar.boot.XBootLauncher", mf.getMainAttributes().getValue("Main-Class"));
+                assertEquals("org.springframework.boot.loader.JarLauncher", mf.getMainAttributes().getValue("Boot-Main-Class"));
+            }
+        }
+    }
+
+    private static int count(ZipFile zipFile, String name) {
+        int count = 0;
+        for (ZipArchiveEntry ignored : zipFile.getEntries(name)) {
+            count++;
+        }
+        return count;
+    }
+
+    private static void write(File file, String data) throws IOException {
+        write(file, data.getBytes("UTF-8"));
+    }
+
+    private static void write(File file, byte[] data) throws IOException {
+        assertTrue(file.getParentFile().isDirectory() || file.getParentFile().mkdirs());
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(data);
+        }
+        assertTrue(file.setLastModified(TIME));
+    }
+}
@@ -0,0 +1,127 @@
+package io.xjar.boot;
+
+import io.xjar.XConstants;
+import io.xjar.XEncryptor;
+import io.xjar.XKit;
+import io.xjar.dir.XDirLayout;
+import io.xjar.key.XKey;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.*;
+import java.util.Map;
+
+import static io.xjar.boot.XBootFixtures.*;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 记录加密失败时各条加密路径抛出异常而不是一直等待
+ *
+ * @author Payne 646742615@qq.com
+ * 2018/12/29 10:00
+ */
+public class XBootFailureTest {
+    // 远多于在途的记录数量，失败时还有排队未开始的任务
+    private static final int CLASSES = 100;
+
+    private final XEncryptor failing = new XEncryptor() {
+        @Override
+        public void encrypt(XKey key, File src, File dest) throws IOException {
+            throw fail();
+        }
+
+        @Override
+        public void encrypt(XKey key, InputStream in, OutputStream out) throws IOException {
+            throw fail();
+        }
+
+        @Override
+        public void encrypt(XKey key, InputStream in, OutputStream out, String password) throws IOException {
+            throw fail();
+        }
+
+        @Override
+        public InputStream encrypt(XKey key, InputStream in) throws IOException {
+            throw fail();
+        }
+
+        @Override
+        public OutputStream encrypt(XKey key, OutputStream out) throws IOException {
+            throw fail();
+        }
+    };
+
+    /**
+     * 失败前稍作等待，使第一个失败被发现时还有排队未开始的任务
+     */
+    private static IOException fail() throws IOException {
+        try {
+            Thread.sleep(100);
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException();
+        }
+        return new IOException("failing encryptor");
+    }
+
+    private XBootEncryptor encryptor;
+    private XKey key;
+    private File dir;
+    private File src;
+
+    @Before
+    public void setup() throws Exception {
+        encryptor = new XBootEncryptor(failing, new XBootClassesFilter());
+        key = XKit.key("AES", PASSWORD);
+        dir = mkdtemp();
+        Map<String, byte[]> entries = entries();
+        for (int i = 0; i < CLASSES; i++) {
+            entries.put("BOOT-INF/classes/io/xjar/test/Class" + i + ".class", random(1000 + i));
+        }
+        src = jar(new File(dir, "src.jar"), entries);
+    }
+
+    @After
+    public void cleanup() {
+        delete(dir);
+    }
+
+    @Test(expected = IOException.class, timeout = 30000)
+    public void threaded() throws Exception {
+        encryptor.encrypt(key, src, new File(dir, "dest.jar"), PASSWORD, 1);
+    }
+
+    @Test(expected = IOException.class, timeout = 30000)
+    public void serialStream() throws Exception {
+        encryptor.encrypt(key, new FileInputStream(src), new ByteArrayOutputStream(), PASSWORD);
+    }
+
+    @Test(expected = IOException.class, timeout = 30000)
+    public void incremental() throws Exception {
+        encryptor.encrypt(key, src, new File(dir, "dest.jar"), PASSWORD, 2, null);
+    }
+
+    @Test(expected = IOException.class, timeout = 30000)
+    public void pipeline() throws Exception {
+        encryptor.encrypt(key, new FileInputStream(src), new ByteArrayOutputStream(), PASSWORD, 1);
+    }
+
+    @Test(expected = IOException.class, timeout = 30000)
+    public void layout() throws Exception {
+        File classes = new File(dir, "classes");
+        for (int i = 0; i < CLASSES; i++) {
+            File file = new File(classes, "io/xjar/test/Class" + i + ".class");
+            assertTrue(file.getParentFile().isDirectory() || file.getParentFile().mkdirs());
+            try (OutputStream out = new FileOutputStream(file)) {
+                out.write(random(1000 + i));
+            }
+        }
+        File manifest = new File(dir, "MANIFEST.MF");
+        try (OutputStream out = new FileOutputStream(manifest)) {
+            out.write(MANIFEST.getBytes("UTF-8"));
+        }
+        // 启动器的内容无关紧要，只需要通过布局的检查
+        XDirLayout layout = new XDirLayout().add("BOOT-INF/classes/", classes).add(XConstants.SPRING_BOOT_LOADER + "JarLauncher.class", manifest);
+        encryptor.encrypt(key, layout, manifest, new File(dir, "dest.jar"), PASSWORD, 1);
+    }
+}
@@ -0,0 +1,140 @@
+package io.xjar.boot;
+
+import io.xjar.XJdkDecryptor;
+import io.xjar.XKit;
+import io.xjar.key.XKey;
+import org.apache.commons.compress.archivers.ArchiveOutputStream;
+import org.apache.commons.compress.archivers.jar.JarArchiveEntry;
+import org.apache.commons.compress.archivers.jar.JarArchiveInputStream;
+import org.apache.commons.compress.archivers.jar.JarArchiveOutputStream;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Spring-Boot JAR 包加密测试共用的原文包构造、临时文件夹及解密校验
+ *
+ * @author Payne 646742615@qq.com
+ * 2018/12/29 9:30
+ */
+final class XBootFixtures {
+    static final String PASSWORD = "io.xjar";
+    static final long TIME = 1545000000000L;
+    static final String MANIFEST = "Manifest-Version: 1.0\r\nMain-Class: org.springframework.boot.loader.JarLauncher\r\nStart-Class: io.xjar.test.Main\r\n\r\n";
+
+    private XBootFixtures() {
+    }
+
+    /**
+     * @return 只包含清单文件的原文包记录，按加入的顺序写出
+     */
+    static Map<String, byte[]> entries() throws IOException {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        entries.put("META-INF/MANIFEST.MF", MANIFEST.getBytes("UTF-8"));
+        return entries;
+    }
+
+    /**
+     * 写出一个记录，修改时间固定，同样的记录总是得到同样的字节
+     */
+    static void put(ArchiveOutputStream zos, String name, byte[] data) throws IOException {
+        JarArchiveEntry entry = new JarArchiveEntry(name);
+        entry.setTime(TIME);
+        zos.putArchiveEntry(entry);
+        zos.write(data);
+        zos.closeArchiveEntry();
+    }
+
+    static void put(ArchiveOutputStream zos, String name, String data) throws IOException {
+        put(zos, name, data.getBytes("UTF-8"));
+    }
+
+    static byte[] jar(Map<String, byte[]> entries) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (JarArchiveOutputStream zos = new JarArchiveOutputStream(bos)) {
+            for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                put(zos, entry.getKey(), entry.getValue());
+            }
+        }
+        return bos.toByteArray();
+    }
+
+    static File jar(File file, Map<String, byte[]> entries) throws IOException {
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(jar(entries));
+        }
+        return file;
+    }
+
+    static byte[] random(int size) {
+        byte[] bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+        return bytes;
+    }
+
+    static byte[] read(File file) throws IOException {
+        return Files.readAllBytes(file.toPath());
+    }
+
+    static File mkdtemp() throws IOException {
+        return Files.createTempDirectory("xjar").toFile();
+    }
+
+    /**
+     * 递归删除文件夹
+     */
+    static void delete(File file) {
+        File[] files = file.listFiles();
+        for (int i = 0; files != null && i < files.length; i++) {
+            delete(files[i]);
+        }
+        assertTrue(file.getPath(), file.delete());
+    }
+
+    /**
+     * 解密加密包，返回除文件夹及生成记录以外的所有记录
+     */
+    static Map<String, byte[]> decrypt(XKey key, byte[] encrypted) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        new XBootDecryptor(new XJdkDecryptor(key.getAlgorithm()), new XBootClassesFilter()).decrypt(key, new ByteArrayInputStream(encrypted), bos);
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        try (JarArchiveInputStream zis = new JarArchiveInputStream(new ByteArrayInputStream(bos.toByteArray()))) {
+            JarArchiveEntry entry;
+            while ((entry = zis.getNextJarEntry()) != null) {
+                if (entry.isDirectory() || XKit.generated(entry.getName())) {
+                    continue;
+                }
+                ByteArrayOutputStream data = new ByteArrayOutputStream();
+                XKit.transfer(zis, data, false);
+                entries.put(entry.getName(), data.toByteArray());
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * 校验加密包解密后 BOOT-INF/classes/ 下的记录与原文完全相同，既不缺少也不多出
+     */
+    static void assertDecrypts(XKey key, Map<String, byte[]> expected, byte[] encrypted) throws IOException {
+        Map<String, byte[]> actual = decrypt(key, encrypted);
+        Set<String> names = new TreeSet<>();
+        for (Map.Entry<String, byte[]> entry : expected.entrySet()) {
+            if (entry.getKey().startsWith("BOOT-INF/classes/")) {
+                assertArrayEquals(entry.getKey(), entry.getValue(), actual.get(entry.getKey()));
+                names.add(entry.getKey());
+            }
+        }
+        for (String name : actual.keySet()) {
+            if (name.startsWith("BOOT-INF/classes/")) {
+                assertTrue("unexpected entry: " + name, names.contains(name));
+            }
+        }
+    }
+
+    static void assertDecrypts(XKey key, Map<String, byte[]> expected, File encrypted) throws IOException {
+        assertDecrypts(key, expected, read(encrypted));
+    }
+}
@@ -0,0 +1,170 @@
+package io.xjar.boot;
+
+import io.xjar.*;
+import io.xjar.key.XKey;
+import org.apache.commons.compress.archivers.jar.JarArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.Deflater;
+
+import static io.xjar.boot.XBootFixtures.*;
+import static org.junit.Assert.*;
+
+/**
+ * 增量加密复用上一次密文的测试
+ *
+ * @author Payne 646742615@qq.com
+ * 2018/12/28 14:10
+ */
+public class XBootIncrementalTest {
+    private static final String ALGORITHM = "AES/CTR/NoPadding";
+    private static final int CLASSES = 20;
+
+    private final XEntryFilter<JarArchiveEntry> filter = new XBootClassesFilter();
+    private XKey key;
+    private File dir;
+
+    @Before
+    public void setup() throws Exception {
+        key = XKit.key(ALGORITHM, PASSWORD);
+        dir = mkdtemp();
+    }
+
+    @After
+    public void cleanup() {
+        delete(dir);
+    }
+
+    @Test
+    public void unchangedEntriesAreReused() throws Exception {
+        Map<String, byte[]> entries = entries();
+        File src = jar(new File(dir, "src.jar"), entries);
+        File dest = new File(dir, "dest.jar");
+        XBootEncryptor encryptor = encryptor(Deflater.DEFAULT_COMPRESSION, null);
+        encryptor.encrypt(key, src, dest, PASSWORD, 2, null);
+        assertTrue(XDigestIndex.of(dest).isFile());
+        Map<String, Long> before = crcs(dest);
+
+        String changed = "BOOT-INF/classes/io/xjar/test/Class3.class";
+        entries.put(changed, "changed".getBytes("UTF-8"));
+        src = jar(new File(dir, "src.jar"), entries);
+        // 上一次的加密包就是本次的加密包
+        encryptor.encrypt(key, src, dest, PASSWORD, 2, dest);
+        Map<String, Long> after = crcs(dest);
+
+        int reused = 0;
+        for (String name : entries.keySet()) {
+            if (!filter.filtrate(new JarArchiveEntry(name))) {
+                continue;
+            }
+            if (name.equals(changed)) {
+                assertNotEquals("changed entry must be re-encrypted", before.get(name), after.get(name));
+            } else {
+                assertEquals("unchanged entry must be reused: " + name, before.get(name), after.get(name));
+                reused++;
+            }
+        }
+        assertEquals(CLASSES - 1, reused);
+        assertFalse(new File(dest.getPath() + ".previous").exists());
+        assertDecrypts(key, entries, dest);
+    }
+
+    @Test
+    public void levelChangeFallsBackToFullEncryption() throws Exception {
+        Map<String, byte[]> entries = entries();
+        File src = jar(new File(dir, "src.jar"), entries);
+        File previous = new File(dir, "previous.jar");
+        encryptor(Deflater.BEST_COMPRESSION, null).encrypt(key, src, previous, PASSWORD, 2, null);
+        File dest = new File(dir, "dest.jar");
+        encryptor(Deflater.NO_COMPRESSION, null).encrypt(key, src, dest, PASSWORD, 2, previous);
+        assertNothingReused(previous, dest);
+        assertDecrypts(key, entries, dest);
+    }
+
+    @Test
+    public void policyChangeFallsBackToFullEncryption() throws Exception {
+        Map<String, byte[]> entries = entries();
+        File src = jar(new File(dir, "src.jar"), entries);
+        File previous = new File(dir, "previous.jar");
+        encryptor(Deflater.DEFAULT_COMPRESSION, null).encrypt(key, src, previous, PASSWORD, 2, null);
+        File dest = new File(dir, "dest.jar");
+        encryptor(Deflater.DEFAULT_COMPRESSION, new XAdaptiveCompressionPolicy()).encrypt(key, src, dest, PASSWORD, 2, previous);
+        assertNothingReused(previous, dest);
+
+        // 配置相同的策略可以复用
+        File next = new File(dir, "next.jar");
+        encryptor(Deflater.DEFAULT_COMPRESSION, new XAdaptiveCompressionPolicy()).encrypt(key, src, next, PASSWORD, 2, dest);
+        assertEquals(crcs(dest), crcs(next));
+        assertDecrypts(key, entries, next);
+    }
+
+    @Test
+    public void keyChangeFallsBackToFullEncryption() throws Exception {
+        Map<String, byte[]> entries = entries();
+        File src = jar(new File(dir, "src.jar"), entries);
+        File previous = new File(dir, "previous.jar");
+        encryptor(Deflater.DEFAULT_COMPRESSION, null).encrypt(key, src, previous, PASSWORD, 2, null);
+        File dest = new File(dir, "dest.jar");
+        key = XKit.key(ALGORITHM, "other");
+        encryptor(Deflater.DEFAULT_COMPRESSION, null).encrypt(key, src, dest, "other", 2, previous);
+        assertNothingReused(previous, dest);
+        assertDecrypts(key, entries, dest);
+    }
+
+    @Test
+    public void plainThreadedEncryptionWritesNoDigest() throws Exception {
+        File src = jar(new File(dir, "src.jar"), entries());
+        File dest = new File(dir, "dest.jar");
+        encryptor(Deflater.DEFAULT_COMPRESSION, null).encrypt(key, src, dest, PASSWORD, 2);
+        assertFalse(XDigestIndex.of(dest).exists());
+    }
+
+    private XBootEncryptor encryptor(int level, XCompressionPolicy compressionPolicy) {
+        XBootEncryptor encryptor = new XBootEncryptor(new XJdkEncryptor(ALGORITHM), level, filter);
+        encryptor.setCompressionPolicy(compressionPolicy);
+        return encryptor;
+    }
+
+    private void assertNothingReused(File previous, File dest) throws IOException {
+        Map<String, Long> before = crcs(previous);
+        Map<String, Long> after = crcs(dest);
+        for (Map.Entry<String, Long> entry : after.entrySet()) {
+            if (filter.filtrate(new JarArchiveEntry(entry.getKey()))) {
+                assertNotEquals("entry must be re-encrypted: " + entry.getKey(), before.get(entry.getKey()), entry.getValue());
+            }
+        }
+    }
+
+    private static Map<String, Long> crcs(File jar) throws IOException {
+        Map<String, Long> crcs = new TreeMap<>();
+        try (ZipFile zipFile = new ZipFile(jar)) {
+            Enumeration<ZipArchiveEntry> entries = zipFile.getEntries();
+            while (entries.hasMoreElements()) {
+                ZipArchiveEntry entry = entries.nextElement();
+                // 只比较原文包中的记录，不包括生成的索引
+                if (!entry.isDirectory() && entry.getName().startsWith("BOOT-INF/classes/io/")) {
+                    crcs.put(entry.getName(), entry.getCrc());
+                }
+            }
+        }
+        return crcs;
+    }
+
+    private static Map<String, byte[]> entries() throws IOException {
+        Map<String, byte[]> entries = XBootFixtures.entries();
+        Random random = new Random(CLASSES);
+        for (int i = 0; i < CLASSES; i++) {
+            byte[] bytes = new byte[200 + i * 50];
+            random.nextBytes(bytes);
+            entries.put("BOOT-INF/classes/io/xjar/test/Class" + i + ".class", bytes);
+        }
+        entries.put("BOOT-INF/classpath.idx", "- \"BOOT-INF/lib/none.jar\"\n".getBytes("UTF-8"));
+        return entries;
+    }
+}
@@ -0,0 +1,117 @@
+package io.xjar.boot;
+
+import io.xjar.*;
+import io.xjar.key.XKey;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.Deflater;
+
+import static io.xjar.boot.XBootFixtures.*;
+import static org.junit.Assert.*;
+
+/**
+ * 流水线加密的在途数据限制、结果及可重现性的测试
+ *
+ * @author Payne 646742615@qq.com
+ * 2018/12/28 18:40
+ */
+public class XBootPipelineTest {
+    private static final int ENTRY_SIZE = 1024 * 1024;
+    private static final int ENTRIES = 20;
+
+    private XBootEncryptor encryptor;
+    private XKey key;
+    private Map<String, byte[]> entries;
+    private byte[] jar;
+
+    @Before
+    public void setup() throws Exception {
+        encryptor = new XBootEncryptor(new XJdkEncryptor("AES"), Deflater.DEFAULT_COMPRESSION, new XBootClassesFilter());
+        encryptor.setThreshold(XConstants.DEFAULT_SPILL_THRESHOLD);
+        key = XKit.key("AES", PASSWORD);
+        entries = entries();
+        for (int i = 0; i < ENTRIES; i++) {
+            entries.put("BOOT-INF/classes/io/xjar/test/Class" + i + ".class", random(ENTRY_SIZE));
+        }
+        // 超过在途额度的记录单独通过
+        entries.put("BOOT-INF/classes/large.bin", random(XConstants.DEFAULT_SPILL_THRESHOLD + ENTRY_SIZE));
+        jar = jar(entries);
+    }
+
+    @Test
+    public void inflightBytesAreBounded() throws Exception {
+        final AtomicLong consumed = new AtomicLong();
+        final InputStream in = new FilterInputStream(new ByteArrayInputStream(jar)) {
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b >= 0) consumed.incrementAndGet();
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int n = super.read(b, off, len);
+                if (n > 0) consumed.addAndGet(n);
+                return n;
+            }
+        };
+        final CountDownLatch latch = new CountDownLatch(1);
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        // 写出被阻塞时额度不会归还
+        final OutputStream out = new FilterOutputStream(bos) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                try {
+                    latch.await();
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException();
+                }
+                bos.write(b, off, len);
+            }
+        };
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    encryptor.encrypt(key, in, out, PASSWORD, 8);
+                } catch (Throwable e) {
+                    error.set(e);
+                }
+            }
+        };
+        thread.start();
+        long last = -1;
+        while (consumed.get() != last) {
+            last = consumed.get();
+            Thread.sleep(500);
+        }
+        // 缓冲的原文及加密结果不超过额度，另外只有正在读取的一个记录，与线程数无关
+        assertTrue("consumed " + last, last <= XConstants.DEFAULT_SPILL_THRESHOLD + 2 * ENTRY_SIZE);
+        latch.countDown();
+        thread.join();
+        assertNull(error.get());
+        assertDecrypts(key, entries, bos.toByteArray());
+    }
+
+    @Test
+    public void reproducible() throws Exception {
+        byte[] first = encrypt();
+        Thread.sleep(2100);
+        assertArrayEquals(first, encrypt());
+        assertDecrypts(key, entries, first);
+    }
+
+    private byte[] encrypt() throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        encryptor.encrypt(key, new ByteArrayInputStream(jar), bos, PASSWORD, 4);
+        return bos.toByteArray();
+    }
+}
@@ -0,0 +1,88 @@
+package io.xjar.boot;
+
+import io.xjar.XJdkEncryptor;
+import io.xjar.XKit;
+import io.xjar.key.XKey;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Map;
+
+import static io.xjar.boot.XBootFixtures.*;
+import static org.junit.Assert.*;
+
+/**
+ * 单线程流式加密与不同线程数的多线程加密结果逐字节相同的测试
+ *
+ * @author Payne 646742615@qq.com
+ * 2018/12/29 11:30
+ */
+public class XBootSerialEquivalenceTest {
+    private XBootEncryptor encryptor;
+    private XKey key;
+    private File dir;
+    private File src;
+    private Map<String, byte[]> entries;
+
+    @Before
+    public void setup() throws Exception {
+        encryptor = new XBootEncryptor(new XJdkEncryptor("AES"), new XBootClassesFilter());
+        key = XKit.key("AES", PASSWORD);
+        dir = mkdtemp();
+        entries = entries();
+        for (int i = 0; i < 50; i++) {
+            entries.put("BOOT-INF/classes/io/xjar/test/Class" + i + ".class", random(1000 + i * 100));
+        }
+        entries.put("BOOT-INF/classes/application.properties", "a=b".getBytes("UTF-8"));
+        Map<String, byte[]> lib = entries();
+        lib.put("io/xjar/lib/Lib.class", random(2000));
+        entries.put("BOOT-INF/lib/lib.jar", jar(lib));
+        entries.put("org/springframework/boot/loader/JarLauncher.class", random(500));
+        src = jar(new File(dir, "src.jar"), entries);
+    }
+
+    @After
+    public void cleanup() {
+        delete(dir);
+    }
+
+    @Test
+    public void serialMatchesThreaded() throws Exception {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        encryptor.encrypt(key, new FileInputStream(src), bos, PASSWORD);
+        byte[] serial = bos.toByteArray();
+
+        File single = new File(dir, "single.jar");
+        encryptor.encrypt(key, src, single, PASSWORD, 1);
+        File multiple = new File(dir, "multiple.jar");
+        encryptor.encrypt(key, src, multiple, PASSWORD, 4);
+
+        assertArrayEquals(serial, read(single));
+        assertArrayEquals(serial, read(multiple));
+        assertDecrypts(key, entries, serial);
+    }
+
+    @Test
+    public void serialSpoolsToSpillDirectory() throws Exception {
+        File spill = new File(dir, "spill");
+        encryptor.setSpillDirectory(spill);
+        // 临时文件只会放在指定的文件夹中，文件夹不存在时失败
+        try {
+            encryptor.encrypt(key, new FileInputStream(src), new ByteArrayOutputStream(), PASSWORD);
+            fail();
+        } catch (IOException expected) {
+            assertFalse(spill.exists());
+        }
+        assertTrue(spill.mkdir());
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        encryptor.encrypt(key, new FileInputStream(src), bos, PASSWORD);
+        // 加密完成后临时文件被删除
+        assertEquals(0, spill.list().length);
+        assertDecrypts(key, entries, bos.toByteArray());
+    }
+}
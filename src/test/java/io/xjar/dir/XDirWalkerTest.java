@@ -0,0 +1,171 @@
+package io.xjar.dir;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.FileSystemLoopException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * 并行文件夹遍历器的失败汇总、属性保留及符号链接循环的测试
+ *
+ * @author Payne 646742615@qq.com
+ * 2018/12/29 15:00
+ */
+public class XDirWalkerTest {
+    private static final long TIME = 1545000000000L;
+
+    private File dir;
+    private File src;
+    private File dest;
+
+    @Before
+    public void setup() throws Exception {
+        dir = Files.createTempDirectory("xjar").toFile();
+        src = new File(dir, "src");
+        dest = new File(dir, "dest");
+    }
+
+    @After
+    public void cleanup() throws Exception {
+        delete(dir);
+    }
+
+    @Test
+    public void failuresAreSuppressed() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            write(new File(src, "a/good" + i), "good");
+            write(new File(src, "b/bad" + i), "bad");
+        }
+        for (int threads : new int[]{1, 4}) {
+            try {
+                new XCopyWalker(threads).walk(src, new File(dest, String.valueOf(threads)));
+                fail();
+            } catch (IOException e) {
+                assertEquals(20, e.getSuppressed().length);
+                Set<String> names = new HashSet<>();
+                for (Throwable suppressed : e.getSuppressed()) {
+                    assertEquals("bad", suppressed.getCause().getMessage());
+                    names.add(suppressed.getMessage());
+                }
+                assertEquals(20, names.size());
+            }
+            // 失败不会中断遍历，其余文件都已处理
+            for (int i = 0; i < 20; i++) {
+                assertTrue(new File(dest, threads + "/a/good" + i).isFile());
+            }
+        }
+    }
+
+    @Test
+    public void attributesAreRestored() throws Exception {
+        File file = write(new File(src, "readonly/file"), "file");
+        File executable = write(new File(src, "executable"), "executable");
+        File readonly = file.getParentFile();
+        boolean posix = Files.getFileAttributeView(src.toPath(), PosixFileAttributeView.class) != null;
+        if (posix) {
+            Files.setPosixFilePermissions(executable.toPath(), PosixFilePermissions.fromString("rwx------"));
+            Files.setPosixFilePermissions(file.toPath(), PosixFilePermissions.fromString("r--r-----"));
+            Files.setPosixFilePermissions(readonly.toPath(), PosixFilePermissions.fromString("r-xr-xr-x"));
+        }
+        assertTrue(executable.setLastModified(TIME));
+        assertTrue(file.setLastModified(TIME + 2000));
+        assertTrue(readonly.setLastModified(TIME + 4000));
+        assertTrue(src.setLastModified(TIME + 6000));
+
+        new XCopyWalker(4).walk(src, dest);
+
+        assertEquals(TIME, new File(dest, "executable").lastModified());
+        assertEquals(TIME + 2000, new File(dest, "readonly/file").lastModified());
+        // 文件夹中的文件写完后才恢复文件夹的修改时间
+        assertEquals(TIME + 4000, new File(dest, "readonly").lastModified());
+        assertEquals(TIME + 6000, dest.lastModified());
+        if (posix) {
+            assertEquals(PosixFilePermissions.fromString("rwx------"), permissions(new File(dest, "executable")));
+            assertEquals(PosixFilePermissions.fromString("r--r-----"), permissions(new File(dest, "readonly/file")));
+            assertEquals(PosixFilePermissions.fromString("r-xr-xr-x"), permissions(new File(dest, "readonly")));
+        }
+    }
+
+    @Test
+    public void symlinkCycleIsReported() throws Exception {
+        write(new File(src, "a/file"), "file");
+        try {
+            Files.createSymbolicLink(new File(src, "a/loop").toPath(), src.toPath());
+        } catch (UnsupportedOperationException | IOException e) {
+            // 不支持符号链接的文件系统
+            return;
+        }
+        try {
+            new XCopyWalker(2).walk(src, dest);
+            fail();
+        } catch (IOException e) {
+            assertEquals(1, e.getSuppressed().length);
+            assertTrue(e.getSuppressed()[0].getCause() instanceof FileSystemLoopException);
+        }
+        assertTrue(new File(dest, "a/file").isFile());
+    }
+
+    private static Set<PosixFilePermission> permissions(File file) throws IOException {
+        return Files.getPosixFilePermissions(file.toPath());
+    }
+
+    private static File write(File file, String data) throws IOException {
+        assertTrue(file.getParentFile().isDirectory() || file.getParentFile().mkdirs());
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(data.getBytes("UTF-8"));
+        }
+        return file;
+    }
+
+    /**
+     * 删除前恢复写权限，符号链接只删除链接本身
+     */
+    private static void delete(File file) throws IOException {
+        Path path = file.toPath();
+        if (Files.isDirectory(path) && !Files.isSymbolicLink(path)) {
+            if (Files.getFileAttributeView(path, PosixFileAttributeView.class) != null) {
+                Files.setPosixFilePermissions(path, PosixFilePermissions.fromString("rwx------"));
+            }
+            File[] files = file.listFiles();
+            for (int i = 0; files != null && i < files.length; i++) {
+                delete(files[i]);
+            }
+        }
+        Files.delete(path);
+    }
+
+    /**
+     * 复制文件，名称以 bad 开头的文件处理失败
+     */
+    private static class XCopyWalker extends XDirWalker {
+        private final Set<String> processed = Collections.synchronizedSet(new HashSet<String>());
+
+        XCopyWalker(int threads) {
+            super(threads);
+        }
+
+        @Override
+        protected void process(File src, File dest) throws IOException {
+            assertTrue(processed.add(src.getPath()));
+            if (src.getName().startsWith("bad")) {
+                throw new IOException("bad");
+            }
+            Files.copy(src.toPath(), dest.toPath());
+        }
+    }
+}